@@ -503,6 +503,26 @@ class HoshIT {
 		assertThat(result).contains("hello world");
 	}
 
+	@Test
+	void sumAndParquetAggregateOfNullableColumn() throws Exception {
+		// Given
+		Path folder = temporaryFolder.newFolder("folder");
+		Files.write(folder.resolve("data.jsonl"), List.of("{\"x\": null}", "{\"x\": null}", "{\"x\": 5}"));
+		Path scriptPath = givenScript(
+				"cd " + folder.toAbsolutePath(),
+				"from-jsonl data.jsonl | to-parquet data.parquet",
+				"from-parquet data.parquet | take 3 | sum x", // not rewritten to --aggregate
+				"from-parquet --aggregate sum:x data.parquet"//
+		);
+		Process sut = givenHoshProcess(scriptPath.toString());
+		// When
+		String result = consumeOutput(sut);
+		int exitCode = sut.waitFor();
+		// Then
+		assertThat(result).isEqualTo("5" + System.lineSeparator() + "5");
+		assertThat(exitCode).isEqualTo(0);
+	}
+
 	@Test
 	void comments() throws Exception {
 		// Given
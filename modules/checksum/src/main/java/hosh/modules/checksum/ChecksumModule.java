@@ -45,16 +45,24 @@ import hosh.spi.Module;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
 
 public class ChecksumModule implements Module {
 
@@ -64,6 +72,7 @@ public class ChecksumModule implements Module {
 	public void initialize(CommandRegistry registry) {
 		registry.registerCommand(CommandName.constant("to-checksum"), ToChecksum::new);
 		registry.registerCommand(CommandName.constant("from-checksum"), FromChecksum::new);
+		registry.registerCommand(CommandName.constant("dedup"), Dedup::new);
 	}
 
 	@Description("compute checksum of files (MD5, SHA-1, SHA-256, SHA-512)")
@@ -233,6 +242,123 @@ public class ChecksumModule implements Module {
 		}
 	}
 
+	@Description("find files with the same content, reading as few bytes as possible")
+	@Examples({
+			@Example(description = "find duplicate files in the current directory", command = "walk . | dedup"),
+			@Example(description = "find duplicate 'jpg' files", command = "walk --include '*.jpg' /media | dedup"),
+	})
+	public static class Dedup implements Command, StateAware {
+
+		// bytes hashed at the start and at the end of each candidate
+		private static final int SAMPLE_SIZE = 4096;
+
+		private static final String ALGORITHM = "SHA-256";
+
+		private State state;
+
+		@Override
+		public void setState(State state) {
+			this.state = state;
+		}
+
+		// Files are pruned in 3 stages, each one considering only the files colliding in the previous one:
+		// same size (from the 'size' key when available), same hash of the first and last SAMPLE_SIZE bytes,
+		// same hash of the whole content; so files with a unique size are never read.
+		// Empty files are ignored.
+		@Override
+		public ExitStatus run(CommandArguments args, InputChannel in, OutputChannel out, OutputChannel err) {
+			if (!args.isEmpty()) {
+				err.send(Errors.usage("dedup"));
+				return ExitStatus.error();
+			}
+			Map<Long, List<Path>> bySize = new HashMap<>();
+			Set<Path> seen = new HashSet<>();
+			for (hosh.spi.Record record : InputChannel.iterate(in)) {
+				Optional<Value> pathValue = record.value(Keys.PATH);
+				if (pathValue.isEmpty()) {
+					err.send(Errors.message("record has no path key, skipping"));
+					continue;
+				}
+				Path file = state.getCwd().resolve(pathValue.get().unwrap(Path.class).orElseThrow()).normalize();
+				if (!Files.isRegularFile(file) || !seen.add(file)) {
+					continue;
+				}
+				try {
+					Optional<Long> size = record.value(Keys.SIZE).flatMap(v -> v.unwrap(Long.class));
+					bySize.computeIfAbsent(size.isPresent() ? size.get() : Files.size(file), k -> new ArrayList<>()).add(file);
+				} catch (IOException e) {
+					err.send(Errors.message("%s: %s", file, e.getMessage()));
+				}
+			}
+			List<Long> sizes = new ArrayList<>(bySize.keySet());
+			sizes.sort(Comparator.reverseOrder()); // biggest duplicates first
+			for (Long size : sizes) {
+				List<Path> sameSize = bySize.get(size);
+				if (size == 0 || sameSize.size() < 2) {
+					continue;
+				}
+				for (List<Path> sameSample : collisions(sameSize, file -> sampleHash(file, size), err).values()) {
+					Map<String, List<Path>> duplicates = collisions(sameSample, file -> computeHash(ALGORITHM, file), err);
+					for (Map.Entry<String, List<Path>> group : duplicates.entrySet()) {
+						for (Path file : group.getValue()) {
+							out.send(Records.builder()
+									.entry(Keys.of("hash"), Values.ofText(group.getKey()))
+									.entry(Keys.SIZE, Values.ofSize(size))
+									.entry(Keys.PATH, Values.ofPath(file))
+									.build());
+						}
+					}
+				}
+			}
+			return ExitStatus.success();
+		}
+
+		// groups of at least 2 files with the same hash; unreadable files are reported and skipped
+		private static Map<String, List<Path>> collisions(List<Path> files, Hasher hasher, OutputChannel err) {
+			Map<String, List<Path>> byHash = new TreeMap<>();
+			for (Path file : files) {
+				try {
+					byHash.computeIfAbsent(hasher.hash(file), k -> new ArrayList<>()).add(file);
+				} catch (IOException e) {
+					err.send(Errors.message("%s: %s", file, e.getMessage()));
+				} catch (NoSuchAlgorithmException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+			byHash.values().removeIf(group -> group.size() < 2);
+			return byHash;
+		}
+
+		private static String sampleHash(Path file, long size) throws IOException, NoSuchAlgorithmException {
+			MessageDigest digest = MessageDigest.getInstance(ALGORITHM);
+			ByteBuffer buffer = ByteBuffer.allocate(SAMPLE_SIZE);
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+				update(digest, channel, 0, buffer);
+				if (size > SAMPLE_SIZE) {
+					update(digest, channel, Math.max(SAMPLE_SIZE, size - SAMPLE_SIZE), buffer);
+				}
+			}
+			return HexFormat.of().formatHex(digest.digest());
+		}
+
+		private static void update(MessageDigest digest, FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+			buffer.clear();
+			while (buffer.hasRemaining()) {
+				int read = channel.read(buffer, position + buffer.position());
+				if (read == -1) {
+					break;
+				}
+			}
+			buffer.flip();
+			digest.update(buffer);
+		}
+
+		private interface Hasher {
+
+			String hash(Path file) throws IOException, NoSuchAlgorithmException;
+		}
+	}
+
 	static String computeHash(String algorithm, Path file) throws IOException, NoSuchAlgorithmException {
 		MessageDigest digest = MessageDigest.getInstance(algorithm);
 		try (InputStream is = Files.newInputStream(file)) {
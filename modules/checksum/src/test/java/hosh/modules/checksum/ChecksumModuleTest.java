@@ -23,6 +23,7 @@
  */
 package hosh.modules.checksum;
 
+import hosh.modules.checksum.ChecksumModule.Dedup;
 import hosh.modules.checksum.ChecksumModule.FromChecksum;
 import hosh.modules.checksum.ChecksumModule.ToChecksum;
 import hosh.spi.Values;
@@ -51,6 +52,7 @@ import hosh.spi.State;
 import hosh.test.support.TemporaryFolder;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.times;
 
 class ChecksumModuleTest {
 
@@ -409,4 +411,151 @@ class ChecksumModuleTest {
 			then(out).shouldHaveNoInteractions();
 		}
 	}
+
+	@Nested
+	@ExtendWith(MockitoExtension.class)
+	class DedupTest {
+
+		@RegisterExtension
+		final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+		@Mock(stubOnly = true)
+		State state;
+
+		@Mock
+		InputChannel in;
+
+		@Mock
+		OutputChannel out;
+
+		@Mock
+		OutputChannel err;
+
+		Dedup sut;
+
+		@BeforeEach
+		void createSut() {
+			sut = new Dedup();
+			sut.setState(state);
+		}
+
+		@Test
+		void oneArg() {
+			// Given
+			// (no setup)
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("file"), in, out, err);
+			// Then
+			assertThat(result).isError();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: dedup")));
+		}
+
+		@Test
+		void duplicates() throws IOException {
+			// Given
+			given(state.getCwd()).willReturn(temporaryFolder.toPath());
+			Path first = temporaryFolder.newFile("first.txt");
+			Path second = temporaryFolder.newFile("second.txt");
+			Path other = temporaryFolder.newFile("other.txt");
+			Files.writeString(first, "hello", StandardCharsets.UTF_8);
+			Files.writeString(second, "hello", StandardCharsets.UTF_8);
+			Files.writeString(other, "world", StandardCharsets.UTF_8);
+			given(in.recv()).willReturn(
+					Optional.of(Records.singleton(Keys.PATH, Values.ofPath(first))),
+					Optional.of(Records.singleton(Keys.PATH, Values.ofPath(other))),
+					Optional.of(Records.singleton(Keys.PATH, Values.ofPath(second))),
+					Optional.empty());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of(), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(out).should().send(Records.builder()
+					.entry(Keys.of("hash"), Values.ofText("2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824"))
+					.entry(Keys.SIZE, Values.ofSize(5))
+					.entry(Keys.PATH, Values.ofPath(first))
+					.build());
+			then(out).should().send(Records.builder()
+					.entry(Keys.of("hash"), Values.ofText("2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824"))
+					.entry(Keys.SIZE, Values.ofSize(5))
+					.entry(Keys.PATH, Values.ofPath(second))
+					.build());
+			then(out).shouldHaveNoMoreInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void sameSamplesButDifferentContent() throws IOException {
+			// Given
+			given(state.getCwd()).willReturn(temporaryFolder.toPath());
+			byte[] content = new byte[64 * 1024];
+			Path first = temporaryFolder.newFile("first.bin");
+			Files.write(first, content);
+			content[content.length / 2] = 1; // outside of the sampled head and tail
+			Path second = temporaryFolder.newFile("second.bin");
+			Files.write(second, content);
+			given(in.recv()).willReturn(
+					Optional.of(Records.singleton(Keys.PATH, Values.ofPath(first))),
+					Optional.of(Records.singleton(Keys.PATH, Values.ofPath(second))),
+					Optional.empty());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of(), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(out).shouldHaveNoInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void sameFileTwice() throws IOException {
+			// Given
+			given(state.getCwd()).willReturn(temporaryFolder.toPath());
+			Path file = temporaryFolder.newFile("file.txt");
+			Files.writeString(file, "hello", StandardCharsets.UTF_8);
+			given(in.recv()).willReturn(
+					Optional.of(Records.singleton(Keys.PATH, Values.ofPath(file))),
+					Optional.of(Records.singleton(Keys.PATH, Values.ofPath(file))),
+					Optional.empty());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of(), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(out).shouldHaveNoInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void emptyFilesAreIgnored() throws IOException {
+			// Given
+			given(state.getCwd()).willReturn(temporaryFolder.toPath());
+			Path first = temporaryFolder.newFile("first.txt");
+			Path second = temporaryFolder.newFile("second.txt");
+			given(in.recv()).willReturn(
+					Optional.of(Records.singleton(Keys.PATH, Values.ofPath(first))),
+					Optional.of(Records.singleton(Keys.PATH, Values.ofPath(second))),
+					Optional.empty());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of(), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(out).shouldHaveNoInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void recordsWithoutPath() {
+			// Given
+			given(in.recv()).willReturn(
+					Optional.of(Records.singleton(Keys.of("name"), Values.ofText("alice"))),
+					Optional.of(Records.singleton(Keys.of("name"), Values.ofText("bob"))),
+					Optional.empty());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of(), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(out).shouldHaveNoInteractions();
+			then(err).should(times(2)).send(Records.singleton(Keys.ERROR, Values.ofText("record has no path key, skipping")));
+		}
+	}
 }
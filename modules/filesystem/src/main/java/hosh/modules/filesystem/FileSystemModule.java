@@ -23,7 +23,6 @@
  */
 package hosh.modules.filesystem;
 
-import hosh.doc.Bug;
 import hosh.doc.Description;
 import hosh.doc.Example;
 import hosh.doc.Examples;
@@ -32,11 +31,14 @@ import hosh.doc.Todo;
 import hosh.spi.Command;
 import hosh.spi.CommandArguments;
 import hosh.spi.CommandName;
+import hosh.spi.CommandOptions;
 import hosh.spi.CommandRegistry;
 import hosh.spi.CommandWrapper;
+import hosh.spi.Compression;
 import hosh.spi.Errors;
 import hosh.spi.ExitStatus;
 import hosh.spi.InputChannel;
+import hosh.spi.Key;
 import hosh.spi.Keys;
 import hosh.spi.LoggerFactory;
 import hosh.spi.OutputChannel;
@@ -50,31 +52,83 @@ import hosh.spi.Values;
 import hosh.spi.Module;
 import hosh.spi.Record;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.io.UncheckedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.AccessDeniedException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryNotEmptyException;
 import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.FileStore;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileSystemLoopException;
 import java.nio.file.FileSystems;
 import java.nio.file.FileVisitOption;
 import java.nio.file.FileVisitResult;
 import java.nio.file.FileVisitor;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.NotDirectoryException;
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.StandardWatchEventKinds;
 import java.nio.file.WatchEvent;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributeView;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.IntPredicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -220,58 +274,545 @@ public class FileSystemModule implements Module {
 	@Description("output file line by line")
 	@Examples({
 			@Example(command = "lines file.txt", description = "output all lines of 'file.txt'"),
+			@Example(command = "lines --last 10 file.txt", description = "output last 10 lines of 'file.txt', without reading the whole file (like 'tail')"),
+			@Example(command = "lines --parallel 8 big.log | filter text ERROR", description = "decode lines of 'big.log' with 8 threads (same output order)"),
+			@Example(command = "lines --parallel 8 --unordered big.log | count", description = "same as above, outputting lines as soon as they are decoded"),
+			@Example(command = "lines --last 10 --follow app.log | filter text ERROR", description = "output last 10 lines of 'app.log', then lines appended to it (like 'tail -F')"),
+			@Example(command = "lines app.log.gz | filter text ERROR", description = "output lines of a compressed file (like 'zcat')"),
 	})
 	public static class Lines implements Command, StateAware {
 
+		private static final String LAST = "last";
+
+		private static final String PARALLEL = "parallel";
+
+		private static final String UNORDERED = "unordered";
+
+		private static final String FOLLOW = "follow";
+
 		private State state;
 
+		private int chunkSize = 8 * 1024 * 1024;
+
+		private IntPredicate followPredicate = count -> true; // by default, never stop; override for unit tests
+
 		@Override
 		public void setState(State state) {
 			this.state = state;
 		}
 
+		public void setChunkSize(int chunkSize) {
+			this.chunkSize = chunkSize;
+		}
+
+		public void setFollowPredicate(IntPredicate followPredicate) {
+			this.followPredicate = followPredicate;
+		}
+
 		@Override
 		public ExitStatus run(CommandArguments args, InputChannel in, OutputChannel out, OutputChannel err) {
-			if (args.size() != 1) {
-				err.send(Errors.usage("lines file"));
+			Optional<CommandOptions> options = CommandOptions.parse(args, Set.of(UNORDERED, FOLLOW), Set.of(LAST, PARALLEL));
+			if (options.isEmpty() || options.get().arguments().size() != 1) {
+				err.send(Errors.usage("lines [--last number] [--follow] [--parallel n] [--unordered] file"));
 				return ExitStatus.error();
 			}
-			Path source = args.get(0).asPath(state);
+			boolean parallel = options.get().has(PARALLEL) || options.get().has(UNORDERED);
+			if (parallel && options.get().has(LAST)) {
+				err.send(Errors.message("--last cannot be used with --parallel or --unordered"));
+				return ExitStatus.error();
+			}
+			if (parallel && options.get().has(FOLLOW)) {
+				err.send(Errors.message("--follow cannot be used with --parallel or --unordered"));
+				return ExitStatus.error();
+			}
+			OptionalInt parallelism = options.get().positiveInt(PARALLEL, 1, err);
+			if (parallelism.isEmpty()) {
+				return ExitStatus.error();
+			}
+			long last = Long.MAX_VALUE;
+			Optional<CommandArguments.CommandArgument> lastArg = options.get().get(LAST);
+			if (lastArg.isPresent()) {
+				OptionalLong n = lastArg.get().asLong();
+				if (n.isEmpty()) {
+					err.send(Errors.message("not a valid number: %s", lastArg.get().asString()));
+					return ExitStatus.error();
+				}
+				if (n.getAsLong() < 1) {
+					err.send(Errors.message("number must be >= 1"));
+					return ExitStatus.error();
+				}
+				last = n.getAsLong();
+			}
+			Path source = options.get().arguments().get(0).asPath(state);
 			if (!Files.isRegularFile(source)) {
 				err.send(Errors.message("not readable file"));
 				return ExitStatus.error();
 			}
-			try (Stream<String> lines = Files.lines(source, StandardCharsets.UTF_8)) {
-				lines.forEach(line -> out.send(Records.singleton(Keys.TEXT, Values.ofText(line))));
+			boolean compressed = Compression.isCompressed(source);
+			if (compressed && options.get().has(FOLLOW)) {
+				err.send(Errors.message("--follow cannot be used with compressed files"));
+				return ExitStatus.error();
+			}
+			try {
+				if (options.get().has(FOLLOW)) {
+					follow(source, last, out);
+				} else if (compressed) {
+					sendDecompressedLines(source, last, out);
+				} else if (parallel) {
+					new ParallelLineReader(parallelism.getAsInt(), chunkSize, out).read(source, !options.get().has(UNORDERED));
+				} else if (last == Long.MAX_VALUE) {
+					try (Stream<String> lines = Files.lines(source, StandardCharsets.UTF_8)) {
+						lines.forEach(line -> out.send(Records.singleton(Keys.TEXT, Values.ofText(line))));
+					}
+				} else {
+					sendLastLines(source, last, out);
+				}
 				return ExitStatus.success();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return ExitStatus.error();
 			} catch (IOException e) {
 				throw new UncheckedIOException(e);
 			}
 		}
+
+		private void follow(Path source, long last, OutputChannel out) throws IOException, InterruptedException {
+			long position = 0;
+			if (last != Long.MAX_VALUE) {
+				try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+					position = TailSeeker.startOfLastLines(channel, last);
+				}
+			}
+			try (Follower follower = new Follower(source, position, out)) {
+				follower.follow(followPredicate);
+			}
+		}
+
+		// compressed files cannot be split or read backwards: lines are decoded sequentially
+		// (while gzip blocks are decompressed in parallel when possible) and --last keeps only the last lines
+		private void sendDecompressedLines(Path source, long last, OutputChannel out) throws IOException {
+			try (BufferedReader reader = Compression.newBufferedReader(source, StandardCharsets.UTF_8)) {
+				Deque<String> lastLines = new ArrayDeque<>();
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (last == Long.MAX_VALUE) {
+						out.send(Records.singleton(Keys.TEXT, Values.ofText(line)));
+						continue;
+					}
+					if (lastLines.size() == last) {
+						lastLines.removeFirst();
+					}
+					lastLines.addLast(line);
+				}
+				for (String lastLine : lastLines) {
+					out.send(Records.singleton(Keys.TEXT, Values.ofText(lastLine)));
+				}
+			}
+		}
+
+		private void sendLastLines(Path source, long n, OutputChannel out) throws IOException {
+			try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+				channel.position(TailSeeker.startOfLastLines(channel, n));
+				BufferedReader reader = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8));
+				String line;
+				while ((line = reader.readLine()) != null) {
+					out.send(Records.singleton(Keys.TEXT, Values.ofText(line)));
+				}
+			}
+		}
+	}
+
+	// Reads the lines of a memory-mapped file in parallel: the file is split into chunks ending right after
+	// a line terminator ('\n', '\r' or "\r\n", like BufferedReader.readLine()) and each chunk is decoded
+	// by a virtual thread, at most 'parallelism' at time.
+	// In ordered mode the calling thread sends the chunks in file order, keeping at most 2 * parallelism
+	// of them in memory; in unordered mode each chunk is sent as soon as it is decoded.
+	// Unlike Files.lines(), malformed UTF-8 input is replaced by U+FFFD.
+	private static class ParallelLineReader {
+
+		private final int chunkSize;
+
+		private final int window;
+
+		private final Semaphore permits;
+
+		private final Lock sendLock = new ReentrantLock();
+
+		private final OutputChannel out;
+
+		public ParallelLineReader(int parallelism, int chunkSize, OutputChannel out) {
+			this.chunkSize = chunkSize;
+			this.window = 2 * parallelism;
+			this.permits = new Semaphore(parallelism);
+			this.out = out;
+		}
+
+		public void read(Path file, boolean ordered) throws IOException, InterruptedException {
+			try (Arena arena = Arena.ofShared();
+				 FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+				 ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+				MemorySegment segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena);
+				Deque<CompletableFuture<List<Record>>> pending = new ArrayDeque<>();
+				long start = 0;
+				while (start < segment.byteSize()) {
+					long chunkStart = start;
+					long chunkEnd = endOfChunk(segment, start + chunkSize);
+					pending.add(CompletableFuture.supplyAsync(() -> decode(segment, chunkStart, chunkEnd, ordered), executor));
+					if (pending.size() == window) {
+						sendAll(await(pending.remove()));
+					}
+					start = chunkEnd;
+				}
+				while (!pending.isEmpty()) {
+					sendAll(await(pending.remove()));
+				}
+			}
+		}
+
+		// first line boundary at or after 'position'
+		private static long endOfChunk(MemorySegment segment, long position) {
+			long size = segment.byteSize();
+			for (long i = position; i < size; i++) {
+				byte b = segment.get(ValueLayout.JAVA_BYTE, i);
+				if (b == '\n') {
+					return i + 1;
+				}
+				if (b == '\r') {
+					return i + 1 < size && segment.get(ValueLayout.JAVA_BYTE, i + 1) == '\n' ? i + 2 : i + 1;
+				}
+			}
+			return size;
+		}
+
+		// lines of the chunk, already sent in unordered mode
+		private List<Record> decode(MemorySegment segment, long start, long end, boolean ordered) {
+			permits.acquireUninterruptibly();
+			List<Record> lines = new ArrayList<>();
+			try {
+				byte[] bytes = segment.asSlice(start, end - start).toArray(ValueLayout.JAVA_BYTE);
+				int lineStart = 0;
+				for (int i = 0; i < bytes.length; i++) {
+					if (bytes[i] == '\n' || bytes[i] == '\r') {
+						lines.add(line(bytes, lineStart, i));
+						if (bytes[i] == '\r' && i + 1 < bytes.length && bytes[i + 1] == '\n') {
+							i++;
+						}
+						lineStart = i + 1;
+					}
+				}
+				if (lineStart < bytes.length) { // last line of the file, without terminator
+					lines.add(line(bytes, lineStart, bytes.length));
+				}
+			} finally {
+				permits.release();
+			}
+			if (ordered) {
+				return lines;
+			}
+			sendAll(lines);
+			return List.of();
+		}
+
+		private static Record line(byte[] bytes, int from, int to) {
+			return Records.singleton(Keys.TEXT, Values.ofText(new String(bytes, from, to - from, StandardCharsets.UTF_8)));
+		}
+
+		private void sendAll(List<Record> lines) {
+			if (lines.isEmpty()) {
+				return;
+			}
+			sendLock.lock();
+			try {
+				for (Record line : lines) {
+					out.send(line);
+				}
+			} finally {
+				sendLock.unlock();
+			}
+		}
+
+		private static <T> T await(CompletableFuture<T> future) throws InterruptedException {
+			try {
+				return future.get();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException runtimeException) {
+					throw runtimeException;
+				}
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+	}
+
+	// Follows a growing file like 'tail -F': lines are sent (directly) as soon as they are terminated.
+	// The parent directory is watched to wake up as soon as something changes in it, but the file is checked
+	// after a timeout anyway since some WatchService implementations are polling themselves or miss events
+	// (e.g. on network file systems): the timeout doubles while the file is idle, up to MAX_POLL.
+	// Rotation is handled without reading old data again: a truncated file is read again from its start,
+	// a replaced file (renamed or deleted, then created again) is read till its end before switching
+	// to the new one; the latter requires file keys (i.e. inodes), not available on every platform.
+	private static class Follower implements Closeable {
+
+		private static final Logger LOGGER = LoggerFactory.forEnclosingClass();
+
+		private static final long MIN_POLL_MILLIS = 10;
+
+		private static final long MAX_POLL_MILLIS = 1000;
+
+		private final Path file;
+
+		private final OutputChannel out;
+
+		private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+		private byte[] line = new byte[256];
+
+		private int length = 0;
+
+		private boolean carriageReturn = false;
+
+		private FileChannel channel;
+
+		private Object fileKey;
+
+		public Follower(Path file, long position, OutputChannel out) throws IOException {
+			this.file = file.toAbsolutePath();
+			this.out = out;
+			this.channel = FileChannel.open(file, StandardOpenOption.READ);
+			this.channel.position(position);
+			this.fileKey = Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+		}
+
+		public void follow(IntPredicate predicate) throws IOException, InterruptedException {
+			try (WatchService watchService = file.getFileSystem().newWatchService()) {
+				file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+				long timeout = MIN_POLL_MILLIS;
+				int count = 0;
+				while (predicate.test(count)) {
+					timeout = check() ? MIN_POLL_MILLIS : Math.min(2 * timeout, MAX_POLL_MILLIS);
+					WatchKey key = watchService.poll(timeout, TimeUnit.MILLISECONDS);
+					if (key != null) {
+						key.pollEvents(); // events of other files in the same directory are harmless
+						key.reset();
+					}
+					count += 1;
+				}
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+
+		// true when new data has been read
+		private boolean check() throws IOException {
+			boolean read = readAvailable();
+			Object currentFileKey = currentFileKey();
+			if (currentFileKey != null && !currentFileKey.equals(fileKey)) {
+				LOGGER.info(() -> String.format("file replaced: %s", file));
+				endOfData();
+				channel.close();
+				channel = FileChannel.open(file, StandardOpenOption.READ);
+				fileKey = currentFileKey;
+				return readAvailable() || read;
+			}
+			if (channel.size() < channel.position()) {
+				LOGGER.info(() -> String.format("file truncated: %s", file));
+				endOfData();
+				channel.position(0);
+				return readAvailable() || read;
+			}
+			return read;
+		}
+
+		// null when the file is missing (e.g. during rotation) or file keys are not supported
+		private Object currentFileKey() {
+			try {
+				return Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+			} catch (IOException e) {
+				return null;
+			}
+		}
+
+		private boolean readAvailable() throws IOException {
+			boolean read = false;
+			while (true) {
+				buffer.clear();
+				if (channel.read(buffer) <= 0) {
+					return read;
+				}
+				read = true;
+				buffer.flip();
+				while (buffer.hasRemaining()) {
+					accept(buffer.get());
+				}
+			}
+		}
+
+		// same line terminators of BufferedReader.readLine(): '\n', '\r' or "\r\n"
+		private void accept(byte b) {
+			if (carriageReturn) {
+				carriageReturn = false;
+				sendLine();
+				if (b == '\n') {
+					return;
+				}
+			}
+			if (b == '\r') {
+				carriageReturn = true;
+			} else if (b == '\n') {
+				sendLine();
+			} else {
+				if (length == line.length) {
+					line = Arrays.copyOf(line, 2 * length);
+				}
+				line[length++] = b;
+			}
+		}
+
+		// the unterminated line of the old data, if any
+		private void endOfData() {
+			if (carriageReturn || length > 0) {
+				carriageReturn = false;
+				sendLine();
+			}
+		}
+
+		private void sendLine() {
+			String text = new String(line, 0, length, StandardCharsets.UTF_8);
+			length = 0;
+			out.send(Records.singleton(Keys.TEXT, Values.ofText(text)), EnumSet.of(OutputChannel.Option.DIRECT));
+		}
+	}
+
+	// Finds where the last n lines of a file start by scanning backwards from the end, like 'tail' does.
+	// Line terminators are the same of BufferedReader.readLine(): '\n', '\r' or "\r\n".
+	// The scan stops at terminator bytes only: they cannot be part of a multibyte UTF-8 char.
+	private static class TailSeeker {
+
+		private static final int BLOCK_SIZE = 64 * 1024;
+
+		private TailSeeker() {
+		}
+
+		public static long startOfLastLines(FileChannel channel, long n) throws IOException {
+			long size = channel.size();
+			ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE);
+			// a terminator at the end of the file does not start a new line
+			long end = size;
+			if (end > 0 && byteAt(channel, end - 1, buffer) == '\n') {
+				end -= 1;
+				if (end > 0 && byteAt(channel, end - 1, buffer) == '\r') {
+					end -= 1;
+				}
+			} else if (end > 0 && byteAt(channel, end - 1, buffer) == '\r') {
+				end -= 1;
+			}
+			long terminators = 0;
+			byte next = 0; // byte following the current one
+			long blockEnd = end;
+			while (blockEnd > 0) {
+				long blockStart = Math.max(0, blockEnd - BLOCK_SIZE);
+				read(channel, blockStart, (int) (blockEnd - blockStart), buffer);
+				for (int i = buffer.limit() - 1; i >= 0; i--) {
+					byte current = buffer.get(i);
+					boolean terminator = current == '\n' || (current == '\r' && next != '\n');
+					if (terminator) {
+						terminators += 1;
+						if (terminators == n) {
+							return blockStart + i + 1;
+						}
+					}
+					next = current;
+				}
+				blockEnd = blockStart;
+			}
+			return 0;
+		}
+
+		private static byte byteAt(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+			read(channel, position, 1, buffer);
+			return buffer.get(0);
+		}
+
+		private static void read(FileChannel channel, long position, int length, ByteBuffer buffer) throws IOException {
+			buffer.clear().limit(length);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, position + buffer.position()) < 0) {
+					throw new EOFException("file truncated while reading: " + channel);
+				}
+			}
+			buffer.flip();
+		}
 	}
 
 	@Description("walk directory recursively")
 	@Examples({
 			@Example(command = "walk .", description = "recursively output all paths in '.'"),
 			@Example(command = "walk /tmp", description = "recursively output all paths in '/tmp'"),
+			@Example(command = "walk --depth 2 .", description = "output paths in '.' and its direct subdirectories"),
+			@Example(command = "walk --parallel 16 /data | sum size", description = "list up to 16 directories concurrently (same output order)"),
+			@Example(command = "walk --parallel 16 --unordered /data | sum size", description = "same as above, outputting paths as soon as they are found"),
+			@Example(command = "walk --include '*.java' --exclude target --exclude .git .", description = "find 'java' files, without entering 'target' and '.git' directories"),
+			@Example(command = "walk --type dir .", description = "recursively output all directories in '.'"),
+			@Example(command = "walk --indexed /data | sum size", description = "list again only the directories modified since the previous 'walk --indexed /data'"),
 	})
 	public static class Walk implements Command, StateAware {
 
+		private static final String PARALLEL = "parallel";
+
+		private static final String DEPTH = "depth";
+
+		private static final String UNORDERED = "unordered";
+
+		private static final String INCLUDE = "include";
+
+		private static final String EXCLUDE = "exclude";
+
+		private static final String TYPE = "type";
+
+		private static final String INDEXED = "indexed";
+
 		private State state;
 
+		private Path indexDirectory = Path.of(System.getProperty("user.home"), ".hosh_index");
+
 		@Override
 		public void setState(State state) {
 			this.state = state;
 		}
 
+		public void setIndexDirectory(Path indexDirectory) {
+			this.indexDirectory = indexDirectory;
+		}
+
 		@Override
 		public ExitStatus run(CommandArguments args, InputChannel in, OutputChannel out, OutputChannel err) {
-			if (args.size() != 1) {
-				err.send(Errors.usage("walk directory"));
+			Optional<CommandOptions> options = CommandOptions.parse(args, Set.of(UNORDERED, INDEXED), Set.of(PARALLEL, DEPTH, INCLUDE, EXCLUDE, TYPE));
+			if (options.isEmpty() || options.get().arguments().size() != 1) {
+				err.send(Errors.usage("walk [--parallel n] [--depth n] [--unordered] [--indexed] [--include glob] [--exclude glob] [--type file|dir] directory"));
+				return ExitStatus.error();
+			}
+			if (options.get().has(INDEXED) && (options.get().has(PARALLEL) || options.get().has(UNORDERED))) {
+				err.send(Errors.message("--indexed cannot be used with --parallel or --unordered"));
+				return ExitStatus.error();
+			}
+			OptionalInt parallelism = options.get().positiveInt(PARALLEL, 1, err);
+			OptionalInt maxDepth = options.get().positiveInt(DEPTH, Integer.MAX_VALUE, err);
+			if (parallelism.isEmpty() || maxDepth.isEmpty()) {
+				return ExitStatus.error();
+			}
+			String type = options.get().get(TYPE).map(CommandArguments.CommandArgument::asString).orElse("file");
+			if (!"file".equals(type) && !"dir".equals(type)) {
+				err.send(Errors.message("type must be 'file' or 'dir'"));
 				return ExitStatus.error();
 			}
+			WalkFilter filter = new WalkFilter(
+					globs(options.get().getAll(INCLUDE)),
+					globs(options.get().getAll(EXCLUDE)),
+					"dir".equals(type));
 			try {
-				Path target = followSymlinksRecursively(args.get(0).asPath(state));
+				Path target = followSymlinksRecursively(options.get().arguments().get(0).asPath(state));
 				if (!Files.exists(target)) {
 					err.send(Errors.message("not found"));
 					return ExitStatus.error();
@@ -280,50 +821,784 @@ public class FileSystemModule implements Module {
 					err.send(Errors.message("not a directory"));
 					return ExitStatus.error();
 				}
-				Files.walkFileTree(target, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new VisitCallback(out, err));
+				if (options.get().has(INDEXED)) {
+					new IndexedWalker(maxDepth.getAsInt(), filter, out, err).walk(target, indexDirectory);
+					return ExitStatus.success();
+				}
+				if (!options.get().has(PARALLEL) && !options.get().has(UNORDERED)) {
+					Files.walkFileTree(target, EnumSet.of(FileVisitOption.FOLLOW_LINKS), maxDepth.getAsInt(), new VisitCallback(target, filter, out, err));
+					return ExitStatus.success();
+				}
+				try (ParallelWalker walker = new ParallelWalker(parallelism.getAsInt(), maxDepth.getAsInt(), filter, out, err)) {
+					if (options.get().has(UNORDERED)) {
+						walker.walkUnordered(target);
+					} else {
+						walker.walkOrdered(target);
+					}
+				}
 				return ExitStatus.success();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return ExitStatus.error();
 			} catch (IOException e) {
 				throw new UncheckedIOException(e);
 			}
 		}
 
+		private List<PathMatcher> globs(List<CommandArguments.CommandArgument> patterns) {
+			List<PathMatcher> result = new ArrayList<>();
+			for (CommandArguments.CommandArgument pattern : patterns) {
+				result.add(state.getCwd().getFileSystem().getPathMatcher("glob:" + pattern.asString()));
+			}
+			return result;
+		}
+
+		private static Record fileRecord(Path file, long size) {
+			return Records
+					.builder()
+					.entry(Keys.PATH, Values.ofPath(file))
+					.entry(Keys.SIZE, Values.ofSize(size))
+					.build();
+		}
+
 		private static class VisitCallback implements FileVisitor<Path> {
 
 			private static final Logger LOGGER = LoggerFactory.forEnclosingClass();
 
-			private final OutputChannel out;
-			private final OutputChannel err;
+			private final Path root;
+			private final WalkFilter filter;
+			private final OutputChannel out;
+			private final OutputChannel err;
+
+			public VisitCallback(Path root, WalkFilter filter, OutputChannel out, OutputChannel err) {
+				this.root = root;
+				this.filter = filter;
+				this.out = out;
+				this.err = err;
+			}
+
+			@Override
+				public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+				if (dir.equals(root)) {
+					return FileVisitResult.CONTINUE;
+				}
+				if (filter.excluded(dir)) {
+					return FileVisitResult.SKIP_SUBTREE;
+				}
+				if (filter.outputDirectory(dir)) {
+					out.send(fileRecord(dir, attrs.size()));
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				if (filter.excluded(file)) {
+					return FileVisitResult.CONTINUE;
+				}
+				boolean output = attrs.isDirectory() ? filter.outputDirectory(file) : filter.outputFile(file); // directory at max depth
+				if (output) {
+					out.send(fileRecord(file, attrs.size()));
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException exc) {
+				LOGGER.log(Level.SEVERE, exc, () -> String.format("error while visiting: %s", file));
+				err.send(Errors.message(exc));
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+				return FileVisitResult.CONTINUE;
+			}
+		}
+
+		// Concurrent version of Files.walkFileTree() with FOLLOW_LINKS, reporting failures
+		// (including symlink loops) like VisitCallback does.
+		// Directories are listed by virtual threads (scheduled by a work-stealing pool),
+		// at most 'parallelism' at time.
+		// In ordered mode the calling thread outputs entries depth-first, exactly like the sequential walk,
+		// while subdirectories are listed ahead; in unordered mode each listing is sent as soon as it is ready.
+		private static class ParallelWalker implements AutoCloseable {
+
+			private static final Logger LOGGER = LoggerFactory.forEnclosingClass();
+
+			// max number of directories listed ahead of the output (ordered mode)
+			private static final int MAX_PREFETCH = 10_000;
+
+			private final int maxDepth;
+
+			private final WalkFilter filter;
+
+			private final Semaphore permits;
+
+			private final Semaphore prefetch = new Semaphore(MAX_PREFETCH);
+
+			private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+			private final Lock sendLock = new ReentrantLock();
+
+			private final OutputChannel out;
+
+			private final OutputChannel err;
+
+			public ParallelWalker(int parallelism, int maxDepth, WalkFilter filter, OutputChannel out, OutputChannel err) {
+				this.permits = new Semaphore(parallelism);
+				this.maxDepth = maxDepth;
+				this.filter = filter;
+				this.out = out;
+				this.err = err;
+			}
+
+			public void walkOrdered(Path root) throws IOException, InterruptedException {
+				Deque<Iterator<Entry>> stack = new ArrayDeque<>();
+				stack.push(entriesOf(rootDirectory(root)).iterator());
+				while (!stack.isEmpty()) {
+					Iterator<Entry> iterator = stack.peek();
+					if (!iterator.hasNext()) {
+						stack.pop();
+						continue;
+					}
+					Entry entry = iterator.next();
+					if (entry.output()) {
+						send(entry);
+					}
+					if (entry.directory() != null) {
+						stack.push(entriesOf(entry.directory()).iterator());
+					}
+				}
+			}
+
+			public void walkUnordered(Path root) throws IOException, InterruptedException {
+				AtomicLong pending = new AtomicLong(1);
+				CompletableFuture<Void> done = new CompletableFuture<>();
+				Directory directory = rootDirectory(root);
+				executor.execute(() -> visitUnordered(directory, pending, done));
+				await(done);
+			}
+
+			@Override
+			public void close() {
+				executor.shutdownNow();
+			}
+
+			private Directory rootDirectory(Path root) throws IOException {
+				Object fileKey = Files.readAttributes(root, BasicFileAttributes.class).fileKey();
+				return new Directory(root, fileKey, null, 0);
+			}
+
+			// entries of a directory, listing it in the calling thread when not already done (or in progress)
+			private List<Entry> entriesOf(Directory directory) throws InterruptedException {
+				List<Entry> entries;
+				if (directory.claim()) {
+					entries = listWithPermit(directory);
+				} else {
+					entries = await(directory.entries);
+				}
+				if (directory.prefetched) {
+					prefetch.release();
+				}
+				directory.entries = null; // no need to keep it around, it is only referenced by the caller
+				return entries;
+			}
+
+			private List<Entry> listWithPermit(Directory directory) throws InterruptedException {
+				permits.acquire();
+				try {
+					List<Entry> entries = list(directory);
+					prefetchSubdirectories(entries);
+					directory.entries.complete(entries);
+					return entries;
+				} catch (RuntimeException e) {
+					directory.entries.completeExceptionally(e);
+					throw e;
+				} finally {
+					permits.release();
+				}
+			}
+
+			private void prefetchSubdirectories(List<Entry> entries) {
+				for (Entry entry : entries) {
+					Directory directory = entry.directory();
+					if (directory != null && prefetch.tryAcquire()) {
+						directory.prefetched = true;
+						executor.execute(() -> {
+							if (directory.claim()) {
+								try {
+									listWithPermit(directory);
+								} catch (InterruptedException e) {
+									Thread.currentThread().interrupt();
+									directory.entries.completeExceptionally(e);
+								}
+							}
+						});
+					}
+				}
+			}
+
+			private void visitUnordered(Directory directory, AtomicLong pending, CompletableFuture<Void> done) {
+				try {
+					List<Entry> entries;
+					permits.acquire();
+					try {
+						entries = list(directory);
+					} finally {
+						permits.release();
+					}
+					sendLock.lock();
+					try {
+						for (Entry entry : entries) {
+							if (entry.output()) {
+								send(entry);
+							}
+						}
+					} finally {
+						sendLock.unlock();
+					}
+					for (Entry entry : entries) {
+						if (entry.directory() != null) {
+							pending.incrementAndGet();
+							executor.execute(() -> visitUnordered(entry.directory(), pending, done));
+						}
+					}
+					if (pending.decrementAndGet() == 0) {
+						done.complete(null);
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					done.completeExceptionally(e);
+				} catch (RuntimeException e) {
+					done.completeExceptionally(e);
+				}
+			}
+
+			private List<Entry> list(Directory directory) {
+				List<Entry> entries = new ArrayList<>();
+				try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory.path)) {
+					for (Path child : stream) {
+						Entry entry = entry(directory, child);
+						if (entry != null) {
+							entries.add(entry);
+						}
+					}
+				} catch (DirectoryIteratorException e) {
+					// like Files.walkFileTree(): the rest of the directory is silently skipped
+					LOGGER.log(Level.WARNING, e, () -> String.format("error while listing: %s", directory.path));
+				} catch (IOException e) {
+					return List.of(Entry.failed(directory.path, e));
+				}
+				return entries;
+			}
+
+			// null when the entry must be skipped
+			private Entry entry(Directory parent, Path child) {
+				BasicFileAttributes attrs;
+				try {
+					attrs = Files.readAttributes(child, BasicFileAttributes.class);
+				} catch (IOException e) {
+					// e.g. broken symlink
+					try {
+						attrs = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+					} catch (IOException e2) {
+						return Entry.failed(child, e2);
+					}
+				}
+				if (filter.excluded(child)) {
+					return null;
+				}
+				if (!attrs.isDirectory()) {
+					return filter.outputFile(child) ? Entry.file(child, attrs.size()) : null;
+				}
+				boolean output = filter.outputDirectory(child);
+				int depth = parent.depth + 1;
+				if (depth >= maxDepth) {
+					return output ? Entry.file(child, attrs.size()) : null;
+				}
+				if (parent.wouldLoop(child, attrs.fileKey())) {
+					return Entry.failed(child, new FileSystemLoopException(child.toString()));
+				}
+				return Entry.directory(new Directory(child, attrs.fileKey(), parent, depth), attrs.size(), output);
+			}
+
+			private void send(Entry entry) {
+				if (entry.failure() != null) {
+					LOGGER.log(Level.SEVERE, entry.failure(), () -> String.format("error while visiting: %s", entry.path()));
+					err.send(Errors.message(entry.failure()));
+				} else {
+					out.send(fileRecord(entry.path(), entry.size()));
+				}
+			}
+
+			private static <T> T await(CompletableFuture<T> future) throws InterruptedException {
+				try {
+					return future.get();
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof RuntimeException runtimeException) {
+						throw runtimeException;
+					}
+					if (e.getCause() instanceof InterruptedException interruptedException) {
+						throw interruptedException;
+					}
+					throw new IllegalStateException(e.getCause());
+				}
+			}
+		}
+
+		// Sequential version of Files.walkFileTree() with FOLLOW_LINKS, backed by a persistent MetadataIndex:
+		// a directory with the same modification time it had during the previous walk of the same root
+		// is not listed again, its entries (name, size, mtime and file key) are read from the index.
+		// Only one stat() per directory is needed to find what changed.
+		// Caveat: rewriting a file does not update the mtime of its directory, so the size of that file
+		// is stale until the directory itself changes (e.g. a file is created, renamed or deleted).
+		private static class IndexedWalker {
+
+			private static final Logger LOGGER = LoggerFactory.forEnclosingClass();
+
+			private final int maxDepth;
+
+			private final WalkFilter filter;
+
+			private final OutputChannel out;
+
+			private final OutputChannel err;
+
+			public IndexedWalker(int maxDepth, WalkFilter filter, OutputChannel out, OutputChannel err) {
+				this.maxDepth = maxDepth;
+				this.filter = filter;
+				this.out = out;
+				this.err = err;
+			}
+
+			// the new index replaces the previous one only when the walk completes
+			public void walk(Path root, Path indexDirectory) throws IOException {
+				Files.createDirectories(indexDirectory);
+				Path indexFile = indexDirectory.resolve(MetadataIndex.fileName(root));
+				Path temporaryFile = Files.createTempFile(indexDirectory, "walk", ".tmp");
+				boolean completed = false;
+				try {
+					try (MetadataIndex previous = MetadataIndex.open(indexFile, root);
+						 MetadataIndexWriter next = new MetadataIndexWriter(temporaryFile, root, Instant.now())) {
+						BasicFileAttributes attrs = Files.readAttributes(root, BasicFileAttributes.class);
+						visit(new Directory(root, attrs.fileKey(), null, 0), attrs, root, previous, next);
+					}
+					Files.move(temporaryFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+					completed = true;
+				} finally {
+					if (!completed) {
+						Files.deleteIfExists(temporaryFile);
+					}
+				}
+			}
+
+			private void visit(Directory directory, BasicFileAttributes attrs, Path root, MetadataIndex previous, MetadataIndexWriter next) throws IOException {
+				String key = root.relativize(directory.path).toString();
+				long mtime = attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+				Listing listing = previous.entries(key, mtime)
+						.map(entries -> new Listing(entries, true))
+						.orElseGet(() -> list(directory.path));
+				if (listing.complete()) {
+					next.add(key, mtime, listing.entries());
+				}
+				for (IndexEntry entry : listing.entries()) {
+					Path child = directory.path.resolve(entry.name());
+					if (entry.failure() != null) {
+						report(child, entry.failure());
+						continue;
+					}
+					if (filter.excluded(child)) {
+						continue;
+					}
+					if (!entry.directory()) {
+						if (filter.outputFile(child)) {
+							out.send(fileRecord(child, entry.size()));
+						}
+						continue;
+					}
+					boolean output = filter.outputDirectory(child);
+					int depth = directory.depth + 1;
+					if (depth >= maxDepth) {
+						if (output) {
+							out.send(fileRecord(child, entry.size()));
+						}
+						continue;
+					}
+					BasicFileAttributes childAttrs = entry.attributes();
+					if (childAttrs == null) { // from the index, mtime of the subdirectory must be checked anyway
+						try {
+							childAttrs = Files.readAttributes(child, BasicFileAttributes.class);
+						} catch (IOException e) {
+							report(child, e);
+							continue;
+						}
+					}
+					if (directory.wouldLoop(child, childAttrs.fileKey())) {
+						report(child, new FileSystemLoopException(child.toString()));
+						continue;
+					}
+					if (output) {
+						out.send(fileRecord(child, childAttrs.size()));
+					}
+					visit(new Directory(child, childAttrs.fileKey(), directory, depth), childAttrs, root, previous, next);
+				}
+			}
+
+			// incomplete listings are not indexed, so failures are reported again by the next walk
+			private Listing list(Path dir) {
+				List<IndexEntry> entries = new ArrayList<>();
+				boolean complete = true;
+				try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+					for (Path child : stream) {
+						IndexEntry entry = IndexEntry.of(child);
+						complete &= entry.failure() == null;
+						entries.add(entry);
+					}
+				} catch (DirectoryIteratorException e) {
+					// like Files.walkFileTree(): the rest of the directory is silently skipped
+					LOGGER.log(Level.WARNING, e, () -> String.format("error while listing: %s", dir));
+					complete = false;
+				} catch (IOException e) {
+					report(dir, e);
+					return new Listing(List.of(), false);
+				}
+				return new Listing(entries, complete);
+			}
+
+			private void report(Path path, IOException failure) {
+				LOGGER.log(Level.SEVERE, failure, () -> String.format("error while visiting: %s", path));
+				err.send(Errors.message(failure));
+			}
+		}
+
+		private record Listing(List<IndexEntry> entries, boolean complete) {
+		}
+
+		// 'attributes' are available only for fresh entries, not for the ones read from the index
+		private record IndexEntry(String name, boolean directory, long size, long mtime, String fileKey, BasicFileAttributes attributes, IOException failure) {
+
+			public static IndexEntry of(Path child) {
+				String name = child.getFileName().toString();
+				BasicFileAttributes attrs;
+				try {
+					attrs = Files.readAttributes(child, BasicFileAttributes.class);
+				} catch (IOException e) {
+					// e.g. broken symlink
+					try {
+						attrs = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+					} catch (IOException e2) {
+						return new IndexEntry(name, false, 0, 0, "", null, e2);
+					}
+				}
+				return new IndexEntry(name, attrs.isDirectory(), attrs.size(), attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS),
+						Objects.toString(attrs.fileKey(), ""), attrs, null);
+			}
+
+			public static IndexEntry indexed(String name, boolean directory, long size, long mtime, String fileKey) {
+				return new IndexEntry(name, directory, size, mtime, fileKey, null, null);
+			}
+		}
+
+		// Index written by MetadataIndexWriter, one file per root directory, read through a memory mapping.
+		// Layout (big-endian, strings are UTF-8 prefixed by their length):
+		// magic, root, directory blocks, directory table (count, [key, offset]...), table offset.
+		// Each directory block is: mtime, count, [kind, name, size, mtime, file key]...
+		private static class MetadataIndex implements AutoCloseable {
+
+			private static final Logger LOGGER = LoggerFactory.forEnclosingClass();
+
+			private static final long MAGIC = 0x484F534849445831L; // HOSHIDX1
+
+			// mtime of directories that must be listed again
+			private static final long UNTRUSTED = Long.MIN_VALUE;
+
+			private static final byte FILE = 0;
+
+			private static final byte DIRECTORY = 1;
+
+			private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+
+			private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+
+			private final Arena arena;
+
+			private final MemorySegment segment;
+
+			private final Map<String, Long> directories;
+
+			private MetadataIndex(Arena arena, MemorySegment segment, Map<String, Long> directories) {
+				this.arena = arena;
+				this.segment = segment;
+				this.directories = directories;
+			}
+
+			public static String fileName(Path root) {
+				return UUID.nameUUIDFromBytes(root.toString().getBytes(StandardCharsets.UTF_8)) + ".idx";
+			}
+
+			// a missing or unreadable index is just empty: it is rewritten by the walk anyway
+			public static MetadataIndex open(Path file, Path root) {
+				if (!Files.isRegularFile(file)) {
+					return new MetadataIndex(null, null, Map.of());
+				}
+				Arena arena = Arena.ofConfined();
+				try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+					MemorySegment segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena);
+					Cursor header = new Cursor(segment, 0);
+					if (header.readLong() != MAGIC || !header.readString().equals(root.toString())) {
+						throw new IOException("not an index of " + root);
+					}
+					Cursor table = new Cursor(segment, segment.get(LONG, segment.byteSize() - Long.BYTES));
+					int count = table.readInt();
+					Map<String, Long> directories = new HashMap<>();
+					for (int i = 0; i < count; i++) {
+						directories.put(table.readString(), table.readLong());
+					}
+					return new MetadataIndex(arena, segment, directories);
+				} catch (IOException | IndexOutOfBoundsException e) {
+					LOGGER.log(Level.WARNING, e, () -> String.format("ignoring index: %s", file));
+					arena.close();
+					return new MetadataIndex(null, null, Map.of());
+				}
+			}
+
+			// entries of the directory, only if not modified since indexed
+			public Optional<List<IndexEntry>> entries(String key, long mtime) {
+				Long offset = directories.get(key);
+				if (offset == null) {
+					return Optional.empty();
+				}
+				try {
+					Cursor cursor = new Cursor(segment, offset);
+					long indexedMtime = cursor.readLong();
+					if (indexedMtime == UNTRUSTED || indexedMtime != mtime) {
+						return Optional.empty();
+					}
+					int count = cursor.readInt();
+					List<IndexEntry> entries = new ArrayList<>();
+					for (int i = 0; i < count; i++) {
+						boolean directory = cursor.readByte() == DIRECTORY;
+						entries.add(IndexEntry.indexed(cursor.readString(), directory, cursor.readLong(), cursor.readLong(), cursor.readString()));
+					}
+					return Optional.of(entries);
+				} catch (IndexOutOfBoundsException e) {
+					LOGGER.log(Level.WARNING, e, () -> String.format("ignoring corrupted index entry: %s", key));
+					return Optional.empty();
+				}
+			}
+
+			@Override
+			public void close() {
+				if (arena != null) {
+					arena.close();
+				}
+			}
+
+			private static class Cursor {
+
+				private final MemorySegment segment;
+
+				private long position;
+
+				public Cursor(MemorySegment segment, long position) {
+					this.segment = segment;
+					this.position = position;
+				}
+
+				public byte readByte() {
+					byte value = segment.get(ValueLayout.JAVA_BYTE, position);
+					position += Byte.BYTES;
+					return value;
+				}
+
+				public int readInt() {
+					int value = segment.get(INT, position);
+					position += Integer.BYTES;
+					return value;
+				}
+
+				public long readLong() {
+					long value = segment.get(LONG, position);
+					position += Long.BYTES;
+					return value;
+				}
+
+				public String readString() {
+					int length = readInt();
+					if (length < 0) {
+						throw new IndexOutOfBoundsException(length);
+					}
+					byte[] bytes = segment.asSlice(position, length).toArray(ValueLayout.JAVA_BYTE);
+					position += length;
+					return new String(bytes, StandardCharsets.UTF_8);
+				}
+			}
+		}
+
+		private static class MetadataIndexWriter implements Closeable {
+
+			// a directory modified right before being listed could be modified again keeping the same mtime
+			// (timestamps are coarse on some file systems): it is marked to be listed again by the next walk
+			private static final Duration RACY_WINDOW = Duration.ofSeconds(2);
+
+			private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+			private final DataOutputStream data = new DataOutputStream(buffer);
+
+			private final Map<String, Long> directories = new LinkedHashMap<>();
+
+			private final long trustedBefore;
+
+			private final OutputStream output;
+
+			private long position = 0;
+
+			public MetadataIndexWriter(Path file, Path root, Instant now) throws IOException {
+				this.trustedBefore = FileTime.from(now.minus(RACY_WINDOW)).to(TimeUnit.NANOSECONDS);
+				this.output = new BufferedOutputStream(Files.newOutputStream(file));
+				data.writeLong(MetadataIndex.MAGIC);
+				writeString(root.toString());
+				flush();
+			}
+
+			public void add(String key, long mtime, List<IndexEntry> entries) throws IOException {
+				directories.put(key, position);
+				data.writeLong(mtime < trustedBefore ? mtime : MetadataIndex.UNTRUSTED);
+				data.writeInt(entries.size());
+				for (IndexEntry entry : entries) {
+					data.writeByte(entry.directory() ? MetadataIndex.DIRECTORY : MetadataIndex.FILE);
+					writeString(entry.name());
+					data.writeLong(entry.size());
+					data.writeLong(entry.mtime());
+					writeString(entry.fileKey());
+				}
+				flush();
+			}
+
+			@Override
+			public void close() throws IOException {
+				try {
+					long tableOffset = position;
+					data.writeInt(directories.size());
+					for (Map.Entry<String, Long> directory : directories.entrySet()) {
+						writeString(directory.getKey());
+						data.writeLong(directory.getValue());
+					}
+					data.writeLong(tableOffset);
+					flush();
+				} finally {
+					output.close();
+				}
+			}
+
+			private void writeString(String value) throws IOException {
+				byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+				data.writeInt(bytes.length);
+				data.write(bytes);
+			}
+
+			private void flush() throws IOException {
+				position += buffer.size();
+				buffer.writeTo(output);
+				buffer.reset();
+			}
+		}
+
+		// a directory to be listed once, by the first thread claiming it
+		private static class Directory {
+
+			private final Path path;
+
+			private final Object fileKey;
+
+			private final Directory parent;
+
+			private final int depth;
+
+			private final AtomicBoolean claimed = new AtomicBoolean();
+
+			private volatile CompletableFuture<List<Entry>> entries = new CompletableFuture<>();
+
+			private boolean prefetched = false; // holding a prefetch permit
+
+			public Directory(Path path, Object fileKey, Directory parent, int depth) {
+				this.path = path;
+				this.fileKey = fileKey;
+				this.parent = parent;
+				this.depth = depth;
+			}
+
+			public boolean claim() {
+				return claimed.compareAndSet(false, true);
+			}
+
+			// same check of Files.walkFileTree() with FOLLOW_LINKS: is dir one of the ancestors (this included)?
+			public boolean wouldLoop(Path dir, Object key) {
+				for (Directory ancestor = this; ancestor != null; ancestor = ancestor.parent) {
+					if (key != null && ancestor.fileKey != null) {
+						if (key.equals(ancestor.fileKey)) {
+							return true;
+						}
+					} else if (isSameFile(dir, ancestor.path)) {
+						return true;
+					}
+				}
+				return false;
+			}
+
+			private static boolean isSameFile(Path a, Path b) {
+				try {
+					return Files.isSameFile(a, b);
+				} catch (IOException | SecurityException e) {
+					return false;
+				}
+			}
+		}
+
+		// a file, a subdirectory or a failure; 'output' when it must be sent
+		private record Entry(Path path, long size, IOException failure, Directory directory, boolean output) {
+
+			public static Entry file(Path path, long size) {
+				return new Entry(path, size, null, null, true);
+			}
+
+			public static Entry failed(Path path, IOException failure) {
+				return new Entry(path, 0, failure, null, true);
+			}
 
-			public VisitCallback(OutputChannel out, OutputChannel err) {
-				this.out = out;
-				this.err = err;
+			public static Entry directory(Directory directory, long size, boolean output) {
+				return new Entry(directory.path, size, null, directory, output);
 			}
+		}
 
-			@Override
-				public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
-				return FileVisitResult.CONTINUE;
+		// filters applied during the traversal: files and directories are matched by name (like 'glob'),
+		// excluded directories are not entered at all
+		private record WalkFilter(List<PathMatcher> includes, List<PathMatcher> excludes, boolean directories) {
+
+			public boolean excluded(Path path) {
+				return matchesAny(excludes, path);
 			}
 
-			@Override
-			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-				out.send(Records
-						.builder()
-						.entry(Keys.PATH, Values.ofPath(file))
-						.entry(Keys.SIZE, Values.ofSize(attrs.size()))
-						.build());
-				return FileVisitResult.CONTINUE;
+			public boolean outputFile(Path file) {
+				return !directories && (includes.isEmpty() || matchesAny(includes, file));
 			}
 
-			@Override
-			public FileVisitResult visitFileFailed(Path file, IOException exc) {
-				LOGGER.log(Level.SEVERE, exc, () -> String.format("error while visiting: %s", file));
-				err.send(Errors.message(exc));
-				return FileVisitResult.CONTINUE;
+			public boolean outputDirectory(Path dir) {
+				return directories && (includes.isEmpty() || matchesAny(includes, dir));
 			}
 
-			@Override
-			public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
-				return FileVisitResult.CONTINUE;
+			private static boolean matchesAny(List<PathMatcher> matchers, Path path) {
+				Path name = path.getFileName();
+				if (name == null) {
+					return false;
+				}
+				for (PathMatcher matcher : matchers) {
+					if (matcher.matches(name)) {
+						return true;
+					}
+				}
+				return false;
 			}
 		}
 	}
@@ -366,6 +1641,8 @@ public class FileSystemModule implements Module {
 	@Examples({
 			@Example(command = "cp source.txt target.txt", description = "copy file using current working directory"),
 			@Example(command = "cp /tmp/source.txt /tmp/target.txt", description = "copy file by using absolute path"),
+			@Example(command = "walk build/libs | cp --parallel 8 /staging", description = "copy all files in 'build/libs' to '/staging/build/libs', 8 files at time"),
+			@Example(command = "walk build/libs | cp --base build/libs /staging", description = "copy all files in 'build/libs' to '/staging'"),
 	})
 	public static class Copy implements Command, StateAware {
 
@@ -378,18 +1655,19 @@ public class FileSystemModule implements Module {
 
 		@Override
 		public ExitStatus run(CommandArguments args, InputChannel in, OutputChannel out, OutputChannel err) {
-			if (args.size() != 2) {
-				err.send(Errors.usage("cp file file"));
+			Optional<BatchTransfer> transfer = BatchTransfer.parse(args, state, err, "cp");
+			if (transfer.isEmpty()) {
 				return ExitStatus.error();
 			}
-			Path source = args.get(0).asPath(state);
-			Path target = args.get(1).asPath(state);
-			try {
-				Files.copy(source, target);
-				return ExitStatus.success();
-			} catch (IOException e) {
-				throw new UncheckedIOException(e);
+			if (transfer.get().source().isPresent()) {
+				try {
+					Files.copy(transfer.get().source().get(), transfer.get().target());
+					return ExitStatus.success();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
 			}
+			return transfer.get().run(BatchTransfer::copy, in, out, err);
 		}
 	}
 
@@ -398,6 +1676,7 @@ public class FileSystemModule implements Module {
 	@Examples({
 			@Example(command = "mv source.txt target.txt", description = "move file using current working directory"),
 			@Example(command = "mv /tmp/source.txt /tmp/target.txt", description = "move file by using absolute path"),
+			@Example(command = "walk --include '*.log' . | mv --parallel 8 /archive", description = "move all 'log' files to '/archive', keeping their relative paths"),
 	})
 	public static class Move implements Command, StateAware {
 
@@ -410,28 +1689,214 @@ public class FileSystemModule implements Module {
 
 		@Override
 		public ExitStatus run(CommandArguments args, InputChannel in, OutputChannel out, OutputChannel err) {
-			if (args.size() != 2) {
-				err.send(Errors.usage("mv file file"));
+			Optional<BatchTransfer> transfer = BatchTransfer.parse(args, state, err, "mv");
+			if (transfer.isEmpty()) {
 				return ExitStatus.error();
 			}
-			Path source = args.get(0).asPath(state);
-			Path target = args.get(1).asPath(state);
+			if (transfer.get().source().isPresent()) {
+				try {
+					Files.move(transfer.get().source().get(), transfer.get().target());
+					return ExitStatus.success();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+			return transfer.get().run(BatchTransfer::move, in, out, err);
+		}
+	}
+
+	// Batch mode of 'cp' and 'mv': the files read from 'path' records are copied (or moved) into a target
+	// directory, keeping their paths relative to a base directory (cwd by default), at most 'parallelism'
+	// files at time, each by its own virtual thread.
+	// Each file is reported as soon as it is done, so the output order is not the input one;
+	// failures are reported per file without stopping the others.
+	private static class BatchTransfer {
+
+		private static final String PARALLEL = "parallel";
+
+		private static final String BASE = "base";
+
+		private static final Key SOURCE = Keys.of("source");
+
+		private final Path source; // null in batch mode
+
+		private final Path target;
+
+		private final Path base;
+
+		private final int parallelism;
+
+		private final Lock sendLock = new ReentrantLock();
+
+		private BatchTransfer(Path source, Path target, Path base, int parallelism) {
+			this.source = source;
+			this.target = target;
+			this.base = base;
+			this.parallelism = parallelism;
+		}
+
+		// validates both modes: 'source target' (without options) or 'target' (batch)
+		public static Optional<BatchTransfer> parse(CommandArguments args, State state, OutputChannel err, String command) {
+			Optional<CommandOptions> options = CommandOptions.parse(args, Set.of(), Set.of(PARALLEL, BASE));
+			int files = options.map(o -> o.arguments().size()).orElse(0);
+			if (files != 1 && (files != 2 || args.size() != 2)) {
+				err.send(Errors.usage("%s [--parallel n] [--base directory] [file] file", command));
+				return Optional.empty();
+			}
+			OptionalInt parallelism = options.get().positiveInt(PARALLEL, 1, err);
+			if (parallelism.isEmpty()) {
+				return Optional.empty();
+			}
+			CommandArguments arguments = options.get().arguments();
+			Path source = files == 2 ? arguments.get(0).asPath(state) : null;
+			Path target = arguments.get(files - 1).asPath(state);
+			Path base = options.get().get(BASE).map(arg -> arg.asPath(state)).orElseGet(state::getCwd);
+			return Optional.of(new BatchTransfer(source, target, base, parallelism.getAsInt()));
+		}
+
+		public Optional<Path> source() {
+			return Optional.ofNullable(source);
+		}
+
+		public Path target() {
+			return target;
+		}
+
+		public ExitStatus run(Operation operation, InputChannel in, OutputChannel out, OutputChannel err) {
+			Semaphore permits = new Semaphore(parallelism);
+			AtomicBoolean failed = new AtomicBoolean(false);
+			// a failure sending the result (e.g. the consumer stopped) is not a failure of the file,
+			// the first one is rethrown by the calling thread
+			AtomicReference<RuntimeException> stopped = new AtomicReference<>();
+			try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+				for (Record record : InputChannel.iterate(in)) {
+					Optional<Path> path = record.value(Keys.PATH).flatMap(v -> v.unwrap(Path.class));
+					if (path.isEmpty()) {
+						continue;
+					}
+					permits.acquire();
+					if (stopped.get() != null) {
+						break;
+					}
+					executor.execute(() -> {
+						try {
+							Record transferred;
+							try {
+								transferred = transfer(operation, path.get());
+							} catch (IOException | RuntimeException e) {
+								// any failure of a task fails the command, not only I/O errors
+								failed.set(true);
+								send(err, Errors.message("%s: %s", path.get(), reason(path.get(), e)));
+								return;
+							}
+							send(out, transferred);
+						} catch (RuntimeException e) {
+							stopped.compareAndSet(null, e);
+						} finally {
+							permits.release();
+						}
+					});
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return ExitStatus.error();
+			}
+			if (stopped.get() != null) {
+				throw stopped.get();
+			}
+			return failed.get() ? ExitStatus.error() : ExitStatus.success();
+		}
+
+		private Record transfer(Operation operation, Path path) throws IOException {
+			Path file = base.resolve(path).normalize();
+			Path relative = base.relativize(file);
+			if (relative.startsWith("..") || relative.toString().isEmpty()) {
+				throw new IOException("not in " + base);
+			}
+			Path destination = target.resolve(relative);
+			Files.createDirectories(destination.getParent());
+			long size = operation.apply(file, destination);
+			return Records.builder()
+					.entry(SOURCE, Values.ofPath(file))
+					.entry(Keys.PATH, Values.ofPath(destination))
+					.entry(Keys.SIZE, Values.ofSize(size))
+					.build();
+		}
+
+		private void send(OutputChannel channel, Record record) {
+			sendLock.lock();
 			try {
-				Files.move(source, target);
-				return ExitStatus.success();
-			} catch (IOException e) {
-				throw new UncheckedIOException(e);
+				channel.send(record);
+			} finally {
+				sendLock.unlock();
+			}
+		}
+
+		// FileChannel.transferTo() is implemented by copy_file_range() or sendfile() where available,
+		// without copying data through user space; timestamps are preserved.
+		// The target is deleted when the copy fails, so that it can be retried.
+		public static long copy(Path source, Path target) throws IOException {
+			BasicFileAttributes attrs = Files.readAttributes(source, BasicFileAttributes.class);
+			if (attrs.isDirectory()) {
+				Files.createDirectories(target);
+				return attrs.size();
+			}
+			try (FileChannel from = FileChannel.open(source, StandardOpenOption.READ)) {
+				FileChannel to = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+				boolean complete = false;
+				try {
+					long size = from.size();
+					try (to) {
+						long position = 0;
+						while (position < size) {
+							long transferred = from.transferTo(position, size - position, to);
+							if (transferred <= 0) {
+								throw new IOException("truncated while copying");
+							}
+							position += transferred;
+						}
+					}
+					Files.getFileAttributeView(target, BasicFileAttributeView.class)
+							.setTimes(attrs.lastModifiedTime(), attrs.lastAccessTime(), attrs.creationTime());
+					complete = true;
+					return size;
+				} finally {
+					if (!complete) {
+						Files.deleteIfExists(target);
+					}
+				}
 			}
 		}
+
+		// a rename within the same file system, copy and delete otherwise
+		public static long move(Path source, Path target) throws IOException {
+			long size = Files.readAttributes(source, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).size();
+			Files.move(source, target);
+			return size;
+		}
+
+		interface Operation {
+
+			long apply(Path source, Path target) throws IOException;
+		}
 	}
 
 	@Description("remove file")
 	@Examples({
 			@Example(command = "rm target.txt", description = "remove file using current working directory"),
 			@Example(command = "rm /tmp/target.txt", description = "remove file by using absolute path"),
+			@Example(command = "rm --recursive --parallel 16 /tmp/cache", description = "remove directory tree, deleting up to 16 files at time"),
+			@Example(command = "walk --include '*.tmp' . | rm", description = "remove all 'tmp' files"),
+			@Example(command = "rm --recursive --dry-run build | sum size", description = "show how much space removing 'build' would free"),
 	})
 	public static class Remove implements Command, StateAware {
 
+		private static final String RECURSIVE = "recursive";
+
+		private static final String PARALLEL = "parallel";
+
+		private static final String DRY_RUN = "dry-run";
+
 		private State state;
 
 		@Override
@@ -441,16 +1906,228 @@ public class FileSystemModule implements Module {
 
 		@Override
 		public ExitStatus run(CommandArguments args, InputChannel in, OutputChannel out, OutputChannel err) {
-			if (args.size() != 1) {
-				err.send(Errors.usage("rm file"));
+			Optional<CommandOptions> options = CommandOptions.parse(args, Set.of(RECURSIVE, DRY_RUN), Set.of(PARALLEL));
+			if (options.isEmpty() || options.get().arguments().size() > 1) {
+				err.send(Errors.usage("rm [--recursive] [--parallel n] [--dry-run] [file]"));
+				return ExitStatus.error();
+			}
+			OptionalInt parallelism = options.get().positiveInt(PARALLEL, 1, err);
+			if (parallelism.isEmpty()) {
+				return ExitStatus.error();
+			}
+			if (args.size() == 1 && options.get().arguments().size() == 1) { // without options, like before
+				Path target = args.get(0).asPath(state);
+				try {
+					Files.delete(target);
+					return ExitStatus.success();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+			boolean recursive = options.get().has(RECURSIVE);
+			try (TreeRemover remover = new TreeRemover(parallelism.getAsInt(), options.get().has(DRY_RUN), out, err)) {
+				if (options.get().arguments().isEmpty()) {
+					for (Record record : InputChannel.iterate(in)) {
+						Optional<Path> path = record.value(Keys.PATH).flatMap(v -> v.unwrap(Path.class));
+						if (path.isPresent()) {
+							remover.remove(state.getCwd().resolve(path.get()), recursive);
+						}
+					}
+				} else {
+					remover.remove(options.get().arguments().get(0).asPath(state), recursive);
+				}
+				return remover.failed() ? ExitStatus.error() : ExitStatus.success();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
 				return ExitStatus.error();
 			}
-			Path target = args.get(0).asPath(state);
+		}
+	}
+
+	// Removes files and directory trees, reporting each removed path as a record (path and size).
+	// Files are deleted by virtual threads, at most 'parallelism' at time, while the calling thread
+	// is listing directories; a directory is deleted as soon as all its entries have been deleted,
+	// by the thread deleting the last one (i.e. bottom-up). Symlinks are removed, never followed.
+	// When an entry cannot be deleted the failure is reported once, its ancestors are left in place.
+	// In dry-run mode paths are only reported.
+	private static class TreeRemover implements AutoCloseable {
+
+		private final Semaphore permits;
+
+		private final boolean dryRun;
+
+		private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+		private final Lock sendLock = new ReentrantLock();
+
+		private final AtomicBoolean failed = new AtomicBoolean(false);
+
+		private final OutputChannel out;
+
+		private final OutputChannel err;
+
+		public TreeRemover(int parallelism, boolean dryRun, OutputChannel out, OutputChannel err) {
+			this.permits = new Semaphore(parallelism);
+			this.dryRun = dryRun;
+			this.out = out;
+			this.err = err;
+		}
+
+		public void remove(Path path, boolean recursive) throws InterruptedException {
+			BasicFileAttributes attrs;
 			try {
-				Files.delete(target);
-				return ExitStatus.success();
+				attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
 			} catch (IOException e) {
-				throw new UncheckedIOException(e);
+				fail(path, e);
+				return;
+			}
+			if (attrs.isDirectory() && recursive) {
+				removeTree(path);
+			} else {
+				submit(path, attrs.size(), null);
+			}
+		}
+
+		// true when at least one path could not be removed
+		public boolean failed() {
+			return failed.get();
+		}
+
+		// waits for all pending deletions
+		@Override
+		public void close() {
+			executor.close();
+		}
+
+		private void removeTree(Path root) throws InterruptedException {
+			Deque<PendingDirectory> stack = new ArrayDeque<>();
+			try {
+				Files.walkFileTree(root, new SimpleFileVisitor<>() {
+
+					@Override
+					public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+						PendingDirectory parent = stack.peek();
+						if (parent != null) {
+							parent.entries.incrementAndGet();
+						}
+						stack.push(new PendingDirectory(dir, attrs.size(), parent));
+						return FileVisitResult.CONTINUE;
+					}
+
+					@Override
+					public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+						PendingDirectory parent = stack.peek();
+						parent.entries.incrementAndGet();
+						try {
+							submit(file, attrs.size(), parent);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							return FileVisitResult.TERMINATE;
+						}
+						return FileVisitResult.CONTINUE;
+					}
+
+					@Override
+					public FileVisitResult visitFileFailed(Path file, IOException exc) {
+						fail(file, exc);
+						PendingDirectory parent = stack.peek();
+						if (parent != null) {
+							parent.failed.set(true);
+						}
+						return FileVisitResult.CONTINUE;
+					}
+
+					@Override
+					public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+						PendingDirectory directory = stack.pop();
+						if (exc != null) {
+							fail(dir, exc);
+							directory.failed.set(true);
+						}
+						done(directory, true); // listing completed
+						return FileVisitResult.CONTINUE;
+					}
+				});
+			} catch (IOException e) {
+				fail(root, e);
+			}
+			if (Thread.currentThread().isInterrupted()) {
+				throw new InterruptedException();
+			}
+		}
+
+		private void submit(Path file, long size, PendingDirectory parent) throws InterruptedException {
+			permits.acquire();
+			executor.execute(() -> {
+				try {
+					done(parent, delete(file, size));
+				} finally {
+					permits.release();
+				}
+			});
+		}
+
+		// one entry of the directory has been processed
+		private void done(PendingDirectory directory, boolean deleted) {
+			while (directory != null) {
+				if (!deleted) {
+					directory.failed.set(true);
+				}
+				if (directory.entries.decrementAndGet() > 0) {
+					return;
+				}
+				deleted = !directory.failed.get() && delete(directory.path, directory.size);
+				directory = directory.parent;
+			}
+		}
+
+		private boolean delete(Path path, long size) {
+			try {
+				if (!dryRun) {
+					Files.delete(path);
+				}
+			} catch (IOException e) {
+				fail(path, e);
+				return false;
+			}
+			send(out, Records.builder()
+					.entry(Keys.PATH, Values.ofPath(path))
+					.entry(Keys.SIZE, Values.ofSize(size))
+					.build());
+			return true;
+		}
+
+		private void fail(Path path, IOException e) {
+			failed.set(true);
+			send(err, Errors.message("%s: %s", path, reason(path, e)));
+		}
+
+		private void send(OutputChannel channel, Record record) {
+			sendLock.lock();
+			try {
+				channel.send(record);
+			} finally {
+				sendLock.unlock();
+			}
+		}
+
+		// 'entries' counts the entries not yet deleted, plus one while the directory is being listed
+		private static class PendingDirectory {
+
+			private final Path path;
+
+			private final long size;
+
+			private final PendingDirectory parent;
+
+			private final AtomicInteger entries = new AtomicInteger(1);
+
+			private final AtomicBoolean failed = new AtomicBoolean(false);
+
+			public PendingDirectory(Path path, long size, PendingDirectory parent) {
+				this.path = path;
+				this.size = size;
+				this.parent = parent;
 			}
 		}
 	}
@@ -615,14 +2292,14 @@ public class FileSystemModule implements Module {
 		}
 	}
 
-	@Description("watch for filesystem change in the given directory")
+	@Description("watch for filesystem change in the given directory and its subdirectories")
 	@Examples({
-			@Example(command = "watch", description = "output records with type='CREATE|MODIFY|DELETE' and path in current working directory")
+			@Example(command = "watch .", description = "output records with type='CREATE|MODIFY|DELETE' and path relative to current working directory"),
+			@Example(command = "watch --debounce 2s src", description = "same as above, coalescing changes of the same path within 2 seconds"),
 	})
-	@Bug(description = "should be recursive by default", issue = "https://github.com/dfa1/hosh/issues/94")
 	public static class Watch implements Command, StateAware {
 
-		private static final Logger LOGGER = LoggerFactory.forEnclosingClass();
+		private static final String DEBOUNCE = "debounce";
 
 		private State state;
 		private IntPredicate watchPredicate = count -> true; // by default, never stop; override for unit tests
@@ -638,19 +2315,24 @@ public class FileSystemModule implements Module {
 
 		@Override
 		public ExitStatus run(CommandArguments args, InputChannel in, OutputChannel out, OutputChannel err) {
-			if (args.size() != 1) {
-				err.send(Errors.usage("watch directory"));
+			Optional<CommandOptions> options = CommandOptions.parse(args, Set.of(), Set.of(DEBOUNCE));
+			if (options.isEmpty() || options.get().arguments().size() != 1) {
+				err.send(Errors.usage("watch [--debounce duration] directory"));
 				return ExitStatus.error();
 			}
-			Path dir = state.getCwd().resolve(args.get(0).asString());
-			WatchEvent.Kind<?>[] events = {
-					StandardWatchEventKinds.ENTRY_CREATE,
-					StandardWatchEventKinds.ENTRY_DELETE,
-					StandardWatchEventKinds.ENTRY_MODIFY
-			};
+			Duration debounce = Duration.ofMillis(100);
+			Optional<CommandArguments.CommandArgument> debounceArg = options.get().get(DEBOUNCE);
+			if (debounceArg.isPresent()) {
+				Optional<Duration> duration = debounceArg.get().asDuration().filter(d -> !d.isNegative());
+				if (duration.isEmpty()) {
+					err.send(Errors.message("invalid duration: '%s'", debounceArg.get().asString()));
+					return ExitStatus.error();
+				}
+				debounce = duration.get();
+			}
+			Path dir = state.getCwd().resolve(options.get().arguments().get(0).asString());
 			try (WatchService watchService = dir.getFileSystem().newWatchService()) {
-				dir.register(watchService, events);
-				withService(watchService, out);
+				new Watcher(dir, watchService, debounce, out, err).watch(watchPredicate);
 				return ExitStatus.success();
 			} catch (InterruptedException ex) {
 				Thread.currentThread().interrupt();
@@ -660,33 +2342,245 @@ public class FileSystemModule implements Module {
 			}
 		}
 
-		private void withService(WatchService watchService, OutputChannel out) throws InterruptedException {
-			int count = 0;
-			while (watchPredicate.test(count)) {
-				LOGGER.info("waiting for events");
-				WatchKey key = watchService.take();
-				handle(out, key);
+		// Watches a directory tree: new subdirectories are registered as soon as they are created.
+		// Changes are collected for 'debounce' after the first one, then sent in batch; changes of the same path
+		// are coalesced (e.g. CREATE then MODIFY is just CREATE, CREATE then DELETE is nothing at all).
+		// The batch is sent earlier when MAX_PENDING paths changed.
+		// A snapshot of the modification times of the whole tree is kept, so that when events are lost
+		// (OVERFLOW) the changes are found by scanning the tree again.
+		private static class Watcher {
+
+			private static final Logger LOGGER = LoggerFactory.forEnclosingClass();
+
+			private static final int MAX_PENDING = 10_000;
+
+			private final Path root;
+
+			private final WatchService watchService;
+
+			private final long debounceNanos;
+
+			private final OutputChannel out;
+
+			private final OutputChannel err;
+
+			private final Map<WatchKey, Path> directories = new HashMap<>();
+
+			private final Map<Path, WatchKey> keys = new HashMap<>();
+
+			private final Map<Path, Long> snapshot = new HashMap<>();
+
+			private final Map<Path, Change> pending = new LinkedHashMap<>();
+
+			private long firstPendingNanos;
+
+			public Watcher(Path root, WatchService watchService, Duration debounce, OutputChannel out, OutputChannel err) {
+				this.root = root;
+				this.watchService = watchService;
+				this.debounceNanos = debounce.toNanos();
+				this.out = out;
+				this.err = err;
+			}
+
+			public void watch(IntPredicate predicate) throws IOException, InterruptedException {
+				scan(root, false);
+				int count = 0;
+				while (predicate.test(count)) {
+					WatchKey key;
+					if (pending.isEmpty()) {
+						LOGGER.info("waiting for events");
+						key = watchService.take();
+					} else {
+						key = watchService.poll(firstPendingNanos + debounceNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+					}
+					if (key != null && !handle(key)) {
+						flush();
+						break;
+					}
+					if (!pending.isEmpty() && (key == null || pending.size() >= MAX_PENDING || System.nanoTime() - firstPendingNanos >= debounceNanos)) {
+						flush();
+						count += 1;
+					}
+				}
+			}
+
+			// false when the root directory cannot be watched anymore
+			private boolean handle(WatchKey key) throws IOException {
+				Path dir = directories.get(key);
+				boolean overflow = false;
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+						overflow = true;
+						continue;
+					}
+					if (dir == null) {
+						continue;
+					}
+					@SuppressWarnings("unchecked")
+					WatchEvent<Path> pathEvent = (WatchEvent<Path>) event;
+					Path path = dir.resolve(pathEvent.context());
+					if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+						deleted(path);
+					} else if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+						change(path, Change.CREATE);
+						scan(path, true); // files created before the registration
+					} else {
+						change(path, event.kind() == StandardWatchEventKinds.ENTRY_CREATE ? Change.CREATE : Change.MODIFY);
+						snapshot.put(path, modifiedTime(path));
+					}
+				}
+				if (overflow) {
+					LOGGER.warning("got overflow, scanning again");
+					rescan();
+				}
 				if (!key.reset()) {
-					break;
+					directories.remove(key);
+					keys.remove(dir);
+					return !root.equals(dir);
 				}
-				count += 1;
+				return true;
+			}
+
+			// registers all directories in the tree, recording modification times of all paths
+			private void scan(Path start, boolean created) throws IOException {
+				Files.walkFileTree(start, new SimpleFileVisitor<>() {
+
+					@Override
+					public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+						if (!keys.containsKey(dir)) {
+							try {
+								register(dir);
+							} catch (IOException e) {
+								if (dir.equals(root)) {
+									throw e;
+								}
+								// an unreadable subdirectory is not watched, the rest of the tree is
+								err.send(Errors.message("cannot watch: %s", dir));
+								return FileVisitResult.SKIP_SUBTREE;
+							}
+						}
+						remember(dir, attrs);
+						return FileVisitResult.CONTINUE;
+					}
+
+					@Override
+					public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+						remember(file, attrs);
+						return FileVisitResult.CONTINUE;
+					}
+
+					@Override
+					public FileVisitResult visitFileFailed(Path file, IOException exc) {
+						LOGGER.log(Level.WARNING, exc, () -> String.format("cannot watch: %s", file));
+						return FileVisitResult.CONTINUE;
+					}
+
+					private void remember(Path path, BasicFileAttributes attrs) {
+						if (path.equals(root)) {
+							return;
+						}
+						Long previous = snapshot.put(path, attrs.lastModifiedTime().toMillis());
+						if (created && previous == null && !path.equals(start)) {
+							change(path, Change.CREATE);
+						}
+					}
+				});
+			}
+
+			private void register(Path dir) throws IOException {
+				WatchKey key = dir.register(watchService,
+						StandardWatchEventKinds.ENTRY_CREATE,
+						StandardWatchEventKinds.ENTRY_DELETE,
+						StandardWatchEventKinds.ENTRY_MODIFY);
+				directories.put(key, dir);
+				keys.put(dir, key);
 			}
-		}
 
-		private void handle(OutputChannel out, WatchKey key) {
-			for (var event : key.pollEvents()) {
-				if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
-					LOGGER.warning("got overflow");
-					continue;
+			// diff of the snapshot after a full scan
+			private void rescan() throws IOException {
+				Map<Path, Long> previous = new HashMap<>(snapshot);
+				snapshot.clear();
+				for (Path dir : List.copyOf(keys.keySet())) {
+					if (!Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)) {
+						unregister(dir);
+					}
+				}
+				scan(root, false);
+				for (Map.Entry<Path, Long> entry : snapshot.entrySet()) {
+					Long modifiedTime = previous.remove(entry.getKey());
+					if (modifiedTime == null) {
+						change(entry.getKey(), Change.CREATE);
+					} else if (!modifiedTime.equals(entry.getValue())) {
+						change(entry.getKey(), Change.MODIFY);
+					}
+				}
+				for (Path path : previous.keySet()) {
+					change(path, Change.DELETE);
+				}
+			}
+
+			private void deleted(Path path) {
+				change(path, Change.DELETE);
+				snapshot.remove(path);
+				if (keys.containsKey(path)) {
+					snapshot.keySet().removeIf(other -> other.startsWith(path));
+					for (Path dir : List.copyOf(keys.keySet())) {
+						if (dir.startsWith(path)) {
+							unregister(dir);
+						}
+					}
+				}
+			}
+
+			private void unregister(Path dir) {
+				WatchKey key = keys.remove(dir);
+				directories.remove(key);
+				key.cancel();
+			}
+
+			private void change(Path path, Change change) {
+				if (pending.isEmpty()) {
+					firstPendingNanos = System.nanoTime();
+				}
+				Change merged = pending.containsKey(path) ? pending.get(path).then(change) : change;
+				if (merged == null) {
+					pending.remove(path);
+				} else {
+					pending.put(path, merged);
+				}
+			}
+
+			private void flush() {
+				for (Map.Entry<Path, Change> entry : pending.entrySet()) {
+					Record record = Records.builder()
+							.entry(Keys.of("type"), Values.ofText(entry.getValue().name()))
+							.entry(Keys.PATH, Values.ofPath(root.relativize(entry.getKey())))
+							.build();
+					// using direct send, to prevent any buffering from happening
+					out.send(record, EnumSet.of(OutputChannel.Option.DIRECT));
+				}
+				pending.clear();
+			}
+
+			private static long modifiedTime(Path path) {
+				try {
+					return Files.getLastModifiedTime(path, LinkOption.NOFOLLOW_LINKS).toMillis();
+				} catch (IOException e) {
+					return 0; // already deleted, the DELETE event is coming
 				}
-				@SuppressWarnings("unchecked")
-				WatchEvent<Path> pathEvent = (WatchEvent<Path>) event;
-				Record record = Records.builder()
-						.entry(Keys.of("type"), Values.ofText(event.kind().name().replace("ENTRY_", "")))
-						.entry(Keys.PATH, Values.ofPath(pathEvent.context()))
-						.build();
-				// using direct send, to prevent any buffering from happening
-				out.send(record, EnumSet.of(OutputChannel.Option.DIRECT));
+			}
+		}
+
+		private enum Change {
+			CREATE, MODIFY, DELETE;
+
+			// null when the two changes cancel each other
+			public Change then(Change next) {
+				return switch (this) {
+					case CREATE -> next == DELETE ? null : CREATE;
+					case MODIFY -> next == DELETE ? DELETE : MODIFY;
+					case DELETE -> next == DELETE ? DELETE : MODIFY;
+				};
 			}
 		}
 	}
@@ -758,6 +2652,32 @@ public class FileSystemModule implements Module {
 
 	}
 
+	// FileSystemException.getMessage() is made of the paths, followed by the reason only when there is one;
+	// the file of the exception is added when it is not the failed path (e.g. the target of a copy)
+	private static String reason(Path path, Exception e) {
+		if (!(e instanceof FileSystemException fileSystemException)) {
+			return Objects.toString(e.getMessage(), e.getClass().getName());
+		}
+		String reason;
+		if (fileSystemException.getReason() != null) {
+			reason = fileSystemException.getReason();
+		} else if (e instanceof DirectoryNotEmptyException) {
+			reason = "directory not empty";
+		} else if (e instanceof NoSuchFileException) {
+			reason = "no such file or directory";
+		} else if (e instanceof FileAlreadyExistsException) {
+			reason = "file already exists";
+		} else if (e instanceof AccessDeniedException) {
+			reason = "access denied";
+		} else if (e instanceof NotDirectoryException) {
+			reason = "not a directory";
+		} else {
+			reason = e.getClass().getName();
+		}
+		String file = fileSystemException.getFile();
+		return file == null || file.equals(path.toString()) ? reason : reason + ": " + file;
+	}
+
 	private static final Logger LOGGER = LoggerFactory.forEnclosingClass();
 
 	private static Path followSymlinksRecursively(Path path) throws IOException {
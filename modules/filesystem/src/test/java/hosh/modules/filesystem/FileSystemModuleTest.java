@@ -39,14 +39,22 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
 
 import static hosh.spi.test.support.ExitStatusAssert.assertThat;
 import hosh.spi.CommandWrapper;
@@ -61,9 +69,11 @@ import hosh.spi.StateMutator;
 import hosh.spi.Values;
 import hosh.test.support.TemporaryFolder;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willThrow;
 import static org.mockito.Mockito.times;
 
 class FileSystemModuleTest {
@@ -599,6 +609,294 @@ class FileSystemModuleTest {
 			then(err).shouldHaveNoInteractions();
 		}
 
+		@Test
+		void lastLines() throws IOException {
+			// Given
+			Path newFile = temporaryFolder.newFile("data.txt");
+			Files.writeString(newFile, "a 1\nb 2\r\nc 3\rd 4\n", StandardCharsets.UTF_8);
+
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--last", "2", newFile.toAbsolutePath().toString()), in, out, err);
+
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).should().send(Records.singleton(Keys.TEXT, Values.ofText("c 3")));
+			then(out).should().send(Records.singleton(Keys.TEXT, Values.ofText("d 4")));
+			then(out).shouldHaveNoMoreInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void lastLinesMoreThanFile() throws IOException {
+			// Given
+			Path newFile = temporaryFolder.newFile("data.txt");
+			Files.writeString(newFile, "a 1\nb 2", StandardCharsets.UTF_8);
+
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--last", "10", newFile.toAbsolutePath().toString()), in, out, err);
+
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).should().send(Records.singleton(Keys.TEXT, Values.ofText("a 1")));
+			then(out).should().send(Records.singleton(Keys.TEXT, Values.ofText("b 2")));
+			then(out).shouldHaveNoMoreInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void lastInvalidNumber() {
+			// Given
+			// (no setup)
+
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--last", "0", "data.txt"), in, out, err);
+
+			// Then
+			assertThat(result).isError();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("number must be >= 1")));
+		}
+
+		@Test
+		void parallelHasSameOrderOfSequential() throws IOException {
+			// Given
+			Path newFile = temporaryFolder.newFile("data.txt");
+			Files.writeString(newFile, "a 1\nb 2\r\n\nc 3\rd 4\ré 5\r\nlast", StandardCharsets.UTF_8);
+			sut.setChunkSize(3);
+			List<Record> sequential = new ArrayList<>();
+			List<Record> parallel = new ArrayList<>();
+
+			// When
+			ExitStatus sequentialResult = sut.run(CommandArguments.of(newFile.toAbsolutePath().toString()), in, sequential::add, err);
+			ExitStatus parallelResult = sut.run(CommandArguments.of("--parallel", "3", newFile.toAbsolutePath().toString()), in, parallel::add, err);
+
+			// Then
+			assertThat(sequentialResult).isSuccess();
+			assertThat(parallelResult).isSuccess();
+			assertThat(parallel).hasSize(7).containsExactlyElementsOf(sequential);
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void parallelUnordered() throws IOException {
+			// Given
+			Path newFile = temporaryFolder.newFile("data.txt");
+			Files.writeString(newFile, "a 1\nb 2\nc 3\nd 4\n", StandardCharsets.UTF_8);
+			sut.setChunkSize(1);
+			List<Record> unordered = Collections.synchronizedList(new ArrayList<>());
+
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--parallel", "2", "--unordered", newFile.toAbsolutePath().toString()), in, unordered::add, err);
+
+			// Then
+			assertThat(result).isSuccess();
+			assertThat(unordered).containsExactlyInAnyOrder(
+					Records.singleton(Keys.TEXT, Values.ofText("a 1")),
+					Records.singleton(Keys.TEXT, Values.ofText("b 2")),
+					Records.singleton(Keys.TEXT, Values.ofText("c 3")),
+					Records.singleton(Keys.TEXT, Values.ofText("d 4")));
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void parallelEmptyFile() throws IOException {
+			// Given
+			Path newFile = temporaryFolder.newFile("data.txt");
+
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--parallel", "2", newFile.toAbsolutePath().toString()), in, out, err);
+
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void parallelWithLast() {
+			// Given
+			// (no setup)
+
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--parallel", "2", "--last", "1", "data.txt"), in, out, err);
+
+			// Then
+			assertThat(result).isError();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("--last cannot be used with --parallel or --unordered")));
+		}
+
+		@Test
+		void followAppendedLines() throws IOException {
+			// Given
+			Path newFile = temporaryFolder.newFile("app.log");
+			Files.writeString(newFile, "a 1\nb 2\n", StandardCharsets.UTF_8);
+			sut.setFollowPredicate(count -> {
+				if (count == 1) {
+					append(newFile, "c 3\nd");
+				}
+				if (count == 2) {
+					append(newFile, " 4\n");
+				}
+				return count < 3;
+			});
+
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--last", "1", "--follow", newFile.toAbsolutePath().toString()), in, out, err);
+
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).should().send(Records.singleton(Keys.TEXT, Values.ofText("b 2")), EnumSet.of(OutputChannel.Option.DIRECT));
+			then(out).should().send(Records.singleton(Keys.TEXT, Values.ofText("c 3")), EnumSet.of(OutputChannel.Option.DIRECT));
+			then(out).should().send(Records.singleton(Keys.TEXT, Values.ofText("d 4")), EnumSet.of(OutputChannel.Option.DIRECT));
+			then(out).shouldHaveNoMoreInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		@DisabledOnOs(value = {
+				OS.WINDOWS  // file keys are not available on Windows
+		})
+		void followRotatedFile() throws IOException {
+			// Given
+			Path newFile = temporaryFolder.newFile("app.log");
+			Files.writeString(newFile, "a 1\n", StandardCharsets.UTF_8);
+			sut.setFollowPredicate(count -> {
+				if (count == 1) {
+					append(newFile, "b 2\n");
+					rotate(newFile, "c 3\n");
+				}
+				if (count == 2) {
+					truncate(newFile, "d\n"); // shorter than the current content
+				}
+				return count < 3;
+			});
+
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--follow", newFile.toAbsolutePath().toString()), in, out, err);
+
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).should().send(Records.singleton(Keys.TEXT, Values.ofText("a 1")), EnumSet.of(OutputChannel.Option.DIRECT));
+			then(out).should().send(Records.singleton(Keys.TEXT, Values.ofText("b 2")), EnumSet.of(OutputChannel.Option.DIRECT));
+			then(out).should().send(Records.singleton(Keys.TEXT, Values.ofText("c 3")), EnumSet.of(OutputChannel.Option.DIRECT));
+			then(out).should().send(Records.singleton(Keys.TEXT, Values.ofText("d")), EnumSet.of(OutputChannel.Option.DIRECT));
+			then(out).shouldHaveNoMoreInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void followWithParallel() {
+			// Given
+			// (no setup)
+
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--follow", "--parallel", "2", "app.log"), in, out, err);
+
+			// Then
+			assertThat(result).isError();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("--follow cannot be used with --parallel or --unordered")));
+		}
+
+		@Test
+		void compressedFile() throws IOException {
+			// Given
+			Path newFile = temporaryFolder.toPath().resolve("data.txt.gz");
+			gzip(newFile, "a 1\nb 2\r\nc 3\n");
+
+			// When
+			ExitStatus result = sut.run(CommandArguments.of(newFile.toAbsolutePath().toString()), in, out, err);
+
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).should().send(Records.singleton(Keys.TEXT, Values.ofText("a 1")));
+			then(out).should().send(Records.singleton(Keys.TEXT, Values.ofText("b 2")));
+			then(out).should().send(Records.singleton(Keys.TEXT, Values.ofText("c 3")));
+			then(out).shouldHaveNoMoreInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void lastLinesOfCompressedFile() throws IOException {
+			// Given
+			Path newFile = temporaryFolder.toPath().resolve("data.txt.gz");
+			gzip(newFile, "a 1\nb 2\nc 3\nd 4");
+
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--last", "2", newFile.toAbsolutePath().toString()), in, out, err);
+
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).should().send(Records.singleton(Keys.TEXT, Values.ofText("c 3")));
+			then(out).should().send(Records.singleton(Keys.TEXT, Values.ofText("d 4")));
+			then(out).shouldHaveNoMoreInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void followCompressedFile() throws IOException {
+			// Given
+			Path newFile = temporaryFolder.toPath().resolve("app.log.gz");
+			gzip(newFile, "a 1\n");
+
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--follow", newFile.toAbsolutePath().toString()), in, out, err);
+
+			// Then
+			assertThat(result).isError();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("--follow cannot be used with compressed files")));
+		}
+
+		private void gzip(Path file, String text) throws IOException {
+			try (OutputStream output = new GZIPOutputStream(Files.newOutputStream(file))) {
+				output.write(text.getBytes(StandardCharsets.UTF_8));
+			}
+		}
+
+		private void append(Path file, String text) {
+			try {
+				Files.writeString(file, text, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		// like logrotate: the old file is renamed and a new one is created
+		private void rotate(Path file, String text) {
+			try {
+				Files.move(file, file.resolveSibling(file.getFileName() + ".1"));
+				Files.writeString(file, text, StandardCharsets.UTF_8);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		// like logrotate with copytruncate
+		private void truncate(Path file, String text) {
+			try {
+				Files.writeString(file, text, StandardCharsets.UTF_8, StandardOpenOption.TRUNCATE_EXISTING);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
 		@Test
 		void directory() {
 			// Given
@@ -625,7 +923,7 @@ class FileSystemModuleTest {
 			// Then
 			assertThat(result).isError();
 			then(in).shouldHaveNoInteractions();
-			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: lines file")));
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: lines [--last number] [--follow] [--parallel n] [--unordered] file")));
 			then(out).shouldHaveNoInteractions();
 		}
 	}
@@ -669,22 +967,37 @@ class FileSystemModuleTest {
 			assertThat(result).isError();
 			then(in).shouldHaveNoInteractions();
 			then(out).shouldHaveNoInteractions();
-			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: cp file file")));
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: cp [--parallel n] [--base directory] [file] file")));
 		}
 
 		@Test
-		void oneArg() {
+		void oneArgWithoutInput() {
+			// Given
+			given(state.getCwd()).willReturn(temporaryFolder.toPath());
+			given(in.recv()).willReturn(Optional.empty());
+
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("target"), in, out, err);
+
+			// Then
+			assertThat(result).isSuccess();
+			then(out).shouldHaveNoInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void threeArgs() {
 			// Given
 			// (no setup)
 
 			// When
-			ExitStatus result = sut.run(CommandArguments.of("source.txt"), in, out, err);
+			ExitStatus result = sut.run(CommandArguments.of("a", "b", "c"), in, out, err);
 
 			// Then
 			assertThat(result).isError();
 			then(in).shouldHaveNoInteractions();
 			then(out).shouldHaveNoInteractions();
-			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: cp file file")));
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: cp [--parallel n] [--base directory] [file] file")));
 		}
 
 		@Test
@@ -725,6 +1038,79 @@ class FileSystemModuleTest {
 			then(out).shouldHaveNoInteractions();
 			then(err).shouldHaveNoInteractions();
 		}
+
+		@Test
+		void copyBatch() throws IOException {
+			// Given
+			given(state.getCwd()).willReturn(temporaryFolder.toPath());
+			Path source = temporaryFolder.newFolder("source");
+			Path a = Files.writeString(source.resolve("a.txt"), "aaa");
+			Path b = Files.writeString(temporaryFolder.newFolder(source, "sub").resolve("b.txt"), "b");
+			Files.setLastModifiedTime(a, FileTime.from(Instant.parse("2020-01-01T00:00:00Z")));
+			Path target = temporaryFolder.toPath().resolve("target");
+			given(in.recv()).willReturn(
+					Optional.of(Records.singleton(Keys.PATH, Values.ofPath(a))),
+					Optional.of(Records.singleton(Keys.PATH, Values.ofPath(b))),
+					Optional.empty());
+
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--parallel", "2", "--base", "source", "target"), in, out, err);
+
+			// Then
+			assertThat(result).isSuccess();
+			assertThat(target.resolve("a.txt")).hasContent("aaa");
+			assertThat(target.resolve("sub").resolve("b.txt")).hasContent("b");
+			assertThat(Files.getLastModifiedTime(target.resolve("a.txt"))).isEqualTo(FileTime.from(Instant.parse("2020-01-01T00:00:00Z")));
+			assertThat(a).exists();
+			then(out).should().send(Records.builder()
+					.entry(Keys.of("source"), Values.ofPath(a))
+					.entry(Keys.PATH, Values.ofPath(target.resolve("a.txt")))
+					.entry(Keys.SIZE, Values.ofSize(3))
+					.build());
+			then(out).should().send(Records.builder()
+					.entry(Keys.of("source"), Values.ofPath(b))
+					.entry(Keys.PATH, Values.ofPath(target.resolve("sub").resolve("b.txt")))
+					.entry(Keys.SIZE, Values.ofSize(1))
+					.build());
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void copyBatchExistingTarget() throws IOException {
+			// Given
+			given(state.getCwd()).willReturn(temporaryFolder.toPath());
+			Path source = temporaryFolder.newFile("a.txt");
+			Path existing = Files.writeString(temporaryFolder.newFile(temporaryFolder.newFolder("target"), "a.txt"), "existing");
+			given(in.recv()).willReturn(
+					Optional.of(Records.singleton(Keys.PATH, Values.ofPath(source))),
+					Optional.empty());
+
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("target"), in, out, err);
+
+			// Then
+			assertThat(result).isError();
+			assertThat(existing).hasContent("existing"); // not deleted by the failed copy
+			then(out).shouldHaveNoInteractions();
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText(source + ": file already exists: " + existing)));
+		}
+
+		@Test
+		void copyBatchConsumerStopped() throws IOException {
+			// Given
+			given(state.getCwd()).willReturn(temporaryFolder.toPath());
+			Path source = temporaryFolder.newFile("a.txt");
+			given(in.recv()).willReturn(
+					Optional.of(Records.singleton(Keys.PATH, Values.ofPath(source))),
+					Optional.empty());
+			IllegalStateException stopped = new IllegalStateException("consumer stopped");
+			willThrow(stopped).given(out).send(any(Record.class));
+
+			// When / Then
+			assertThatThrownBy(() -> sut.run(CommandArguments.of("target"), in, out, err)).isSameAs(stopped);
+			assertThat(temporaryFolder.toPath().resolve("target").resolve("a.txt")).exists();
+			then(err).shouldHaveNoInteractions();
+		}
 	}
 
 	@Nested
@@ -766,22 +1152,37 @@ class FileSystemModuleTest {
 			assertThat(result).isError();
 			then(in).shouldHaveNoInteractions();
 			then(out).shouldHaveNoInteractions();
-			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: mv file file")));
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: mv [--parallel n] [--base directory] [file] file")));
 		}
 
 		@Test
-		void oneArg() {
+		void oneArgWithoutInput() {
+			// Given
+			given(state.getCwd()).willReturn(temporaryFolder.toPath());
+			given(in.recv()).willReturn(Optional.empty());
+
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("target"), in, out, err);
+
+			// Then
+			assertThat(result).isSuccess();
+			then(out).shouldHaveNoInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void threeArgs() {
 			// Given
 			// (no setup)
 
 			// When
-			ExitStatus result = sut.run(CommandArguments.of("source.txt"), in, out, err);
+			ExitStatus result = sut.run(CommandArguments.of("a", "b", "c"), in, out, err);
 
 			// Then
 			assertThat(result).isError();
 			then(in).shouldHaveNoInteractions();
 			then(out).shouldHaveNoInteractions();
-			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: mv file file")));
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: mv [--parallel n] [--base directory] [file] file")));
 		}
 
 		@Test
@@ -822,6 +1223,31 @@ class FileSystemModuleTest {
 			then(out).shouldHaveNoInteractions();
 			then(err).shouldHaveNoInteractions();
 		}
+
+		@Test
+		void moveBatch() throws IOException {
+			// Given
+			given(state.getCwd()).willReturn(temporaryFolder.toPath());
+			Path a = Files.writeString(temporaryFolder.newFolder("logs").resolve("a.log"), "aaa");
+			Path target = temporaryFolder.toPath().resolve("archive");
+			given(in.recv()).willReturn(
+					Optional.of(Records.singleton(Keys.PATH, Values.ofPath(a))),
+					Optional.empty());
+
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--parallel", "2", "archive"), in, out, err);
+
+			// Then
+			assertThat(result).isSuccess();
+			assertThat(a).doesNotExist();
+			assertThat(target.resolve("logs").resolve("a.log")).hasContent("aaa");
+			then(out).should().send(Records.builder()
+					.entry(Keys.of("source"), Values.ofPath(a))
+					.entry(Keys.PATH, Values.ofPath(target.resolve("logs").resolve("a.log")))
+					.entry(Keys.SIZE, Values.ofSize(3))
+					.build());
+			then(err).shouldHaveNoInteractions();
+		}
 	}
 
 	@Nested
@@ -840,64 +1266,159 @@ class FileSystemModuleTest {
 		@Mock
 		OutputChannel out;
 
-		@Mock
-		OutputChannel err;
+		@Mock
+		OutputChannel err;
+
+		FileSystemModule.Remove sut;
+
+		@BeforeEach
+		void createSut() {
+			sut = new FileSystemModule.Remove();
+			sut.setState(state);
+		}
+
+		@Test
+		void zeroArgs() {
+			// Given
+			given(in.recv()).willReturn(Optional.empty());
+
+			// When
+			ExitStatus result = sut.run(CommandArguments.of(), in, out, err);
+
+			// Then
+			assertThat(result).isSuccess();
+			then(out).shouldHaveNoInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void twoArgs() {
+			// Given
+			// (no setup)
+
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("a", "b"), in, out, err);
+
+			// Then
+			assertThat(result).isError();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: rm [--recursive] [--parallel n] [--dry-run] [file]")));
+		}
+
+		@Test
+		void removeRelative() throws IOException {
+			// Given
+			given(state.getCwd()).willReturn(temporaryFolder.toPath());
+			Path target = temporaryFolder.newFile("target.txt");
+
+			// When
+			ExitStatus result = sut.run(CommandArguments.of(target.getFileName().toString()), in, out, err);
+
+			// Then
+			assertThat(result).isSuccess();
+			assertThat(target).doesNotExist();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void removeAbsolute() throws IOException {
+			// Given
+			Path target = temporaryFolder.newFile("target.txt");
+
+			// When
+			ExitStatus result = sut.run(CommandArguments.of(target.toAbsolutePath().toString()), in, out, err);
+
+			// Then
+			assertThat(result).isSuccess();
+			assertThat(target).doesNotExist();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void removeRecursive() throws IOException {
+			// Given
+			Path tree = givenTree();
 
-		FileSystemModule.Remove sut;
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--recursive", "--parallel", "4", tree.toString()), in, out, err);
 
-		@BeforeEach
-		void createSut() {
-			sut = new FileSystemModule.Remove();
-			sut.setState(state);
+			// Then
+			assertThat(result).isSuccess();
+			assertThat(tree).doesNotExist();
+			assertThat(temporaryFolder.toPath()).exists();
+			then(in).shouldHaveNoInteractions();
+			then(out).should(times(6)).send(any(Record.class));
+			then(out).should().send(Records.builder().entry(Keys.PATH, Values.ofPath(tree.resolve("a").resolve("a.txt"))).entry(Keys.SIZE, Values.ofSize(3)).build());
+			then(err).shouldHaveNoInteractions();
 		}
 
 		@Test
-		void zeroArgs() {
+		void removeRecursiveDryRun() throws IOException {
 			// Given
-			// (no setup)
+			Path tree = givenTree();
 
 			// When
-			ExitStatus result = sut.run(CommandArguments.of(), in, out, err);
+			ExitStatus result = sut.run(CommandArguments.of("--recursive", "--dry-run", tree.toString()), in, out, err);
 
 			// Then
-			assertThat(result).isError();
+			assertThat(result).isSuccess();
+			assertThat(tree.resolve("a").resolve("a.txt")).exists();
 			then(in).shouldHaveNoInteractions();
-			then(out).shouldHaveNoInteractions();
-			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: rm file")));
+			then(out).should(times(6)).send(any(Record.class));
+			then(err).shouldHaveNoInteractions();
 		}
 
 		@Test
-		void removeRelative() throws IOException {
+		void removeNonEmptyDirectoryWithoutRecursive() throws IOException {
 			// Given
-			given(state.getCwd()).willReturn(temporaryFolder.toPath());
-			Path target = temporaryFolder.newFile("target.txt");
+			Path tree = givenTree();
 
 			// When
-			ExitStatus result = sut.run(CommandArguments.of(target.getFileName().toString()), in, out, err);
+			ExitStatus result = sut.run(CommandArguments.of("--parallel", "2", tree.toString()), in, out, err);
 
 			// Then
-			assertThat(result).isSuccess();
-			assertThat(target).doesNotExist();
+			assertThat(result).isError();
+			assertThat(tree).exists();
 			then(in).shouldHaveNoInteractions();
 			then(out).shouldHaveNoInteractions();
-			then(err).shouldHaveNoInteractions();
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText(tree + ": directory not empty")));
 		}
 
 		@Test
-		void removeAbsolute() throws IOException {
+		void removeFromInput() throws IOException {
 			// Given
-			Path target = temporaryFolder.newFile("target.txt");
+			given(state.getCwd()).willReturn(temporaryFolder.toPath());
+			Path tree = givenTree();
+			Path file = tree.resolve("a").resolve("a.txt");
+			given(in.recv()).willReturn(
+					Optional.of(Records.singleton(Keys.PATH, Values.ofPath(file))),
+					Optional.empty());
 
 			// When
-			ExitStatus result = sut.run(CommandArguments.of(target.toAbsolutePath().toString()), in, out, err);
+			ExitStatus result = sut.run(CommandArguments.of(), in, out, err);
 
 			// Then
 			assertThat(result).isSuccess();
-			assertThat(target).doesNotExist();
-			then(in).shouldHaveNoInteractions();
-			then(out).shouldHaveNoInteractions();
+			assertThat(file).doesNotExist();
+			assertThat(tree.resolve("a")).exists();
+			then(out).should().send(Records.builder().entry(Keys.PATH, Values.ofPath(file)).entry(Keys.SIZE, Values.ofSize(3)).build());
 			then(err).shouldHaveNoInteractions();
 		}
+
+		// 6 entries: tree, tree/a, tree/a/a.txt, tree/a/b, tree/a/b/b.txt, tree/c.txt
+		private Path givenTree() throws IOException {
+			Path tree = temporaryFolder.newFolder("tree");
+			Path a = temporaryFolder.newFolder(tree, "a");
+			Files.writeString(a.resolve("a.txt"), "aaa");
+			temporaryFolder.newFile(temporaryFolder.newFolder(a, "b"), "b.txt");
+			temporaryFolder.newFile(tree, "c.txt");
+			return tree;
+		}
 	}
 
 	@Nested
@@ -958,6 +1479,9 @@ class FileSystemModuleTest {
 		@RegisterExtension
 		final TemporaryFolder temporaryFolder = new TemporaryFolder();
 
+		@RegisterExtension
+		final TemporaryFolder indexFolder = new TemporaryFolder();
+
 		@Mock(stubOnly = true)
 		State state;
 
@@ -976,6 +1500,7 @@ class FileSystemModuleTest {
 		void createSut() {
 			sut = new FileSystemModule.Walk();
 			sut.setState(state);
+			sut.setIndexDirectory(indexFolder.toPath());
 		}
 
 		@Test
@@ -989,7 +1514,7 @@ class FileSystemModuleTest {
 			// Then
 			assertThat(result).isError();
 			then(in).shouldHaveNoInteractions();
-			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: walk directory")));
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: walk [--parallel n] [--depth n] [--unordered] [--indexed] [--include glob] [--exclude glob] [--type file|dir] directory")));
 			then(out).shouldHaveNoInteractions();
 		}
 
@@ -1087,6 +1612,256 @@ class FileSystemModuleTest {
 			then(out).should().send(RecordMatcher.of(Keys.PATH, Values.ofPath(newFile), Keys.SIZE, Values.ofSize(0)));
 			then(err).shouldHaveNoInteractions();
 		}
+
+		@Test
+		void parallelHasSameOrderOfSequential() throws IOException {
+			// Given
+			givenTree();
+			List<Record> sequential = new ArrayList<>();
+			List<Record> parallel = new ArrayList<>();
+
+			// When
+			ExitStatus sequentialResult = sut.run(CommandArguments.of(temporaryFolder.toPath().toString()), in, sequential::add, err);
+			ExitStatus parallelResult = sut.run(CommandArguments.of("--parallel", "4", temporaryFolder.toPath().toString()), in, parallel::add, err);
+
+			// Then
+			assertThat(sequentialResult).isSuccess();
+			assertThat(parallelResult).isSuccess();
+			assertThat(parallel).hasSize(4).containsExactlyElementsOf(sequential);
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void parallelUnordered() throws IOException {
+			// Given
+			givenTree();
+			List<Record> sequential = new ArrayList<>();
+			List<Record> unordered = new ArrayList<>();
+
+			// When
+			ExitStatus sequentialResult = sut.run(CommandArguments.of(temporaryFolder.toPath().toString()), in, sequential::add, err);
+			ExitStatus unorderedResult = sut.run(CommandArguments.of("--parallel", "4", "--unordered", temporaryFolder.toPath().toString()), in, unordered::add, err);
+
+			// Then
+			assertThat(sequentialResult).isSuccess();
+			assertThat(unorderedResult).isSuccess();
+			assertThat(unordered).hasSize(4).containsExactlyInAnyOrderElementsOf(sequential);
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void depth() throws IOException {
+			// Given
+			givenTree();
+
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--depth", "1", temporaryFolder.toPath().toString()), in, out, err);
+
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).should().send(RecordMatcher.of(Keys.PATH, Values.ofPath(temporaryFolder.toPath().resolve("root.txt")), Keys.SIZE, Values.ofSize(0)));
+			then(out).shouldHaveNoMoreInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void parallelDepth() throws IOException {
+			// Given
+			givenTree();
+
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--parallel", "2", "--depth", "1", temporaryFolder.toPath().toString()), in, out, err);
+
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).should().send(RecordMatcher.of(Keys.PATH, Values.ofPath(temporaryFolder.toPath().resolve("root.txt")), Keys.SIZE, Values.ofSize(0)));
+			then(out).shouldHaveNoMoreInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void includeAndExclude() throws IOException {
+			// Given
+			givenTree();
+			given(state.getCwd()).willReturn(temporaryFolder.toPath());
+
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--include", "*.txt", "--exclude", "a", "."), in, out, err);
+
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).should().send(RecordMatcher.of(Keys.PATH, Values.ofPath(temporaryFolder.toPath().resolve("root.txt")), Keys.SIZE, Values.ofSize(0)));
+			then(out).should().send(RecordMatcher.of(Keys.PATH, Values.ofPath(temporaryFolder.toPath().resolve("c").resolve("c.txt")), Keys.SIZE, Values.ofSize(0)));
+			then(out).shouldHaveNoMoreInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void typeDir() throws IOException {
+			// Given
+			givenTree();
+			List<Record> sequential = new ArrayList<>();
+			List<Record> parallel = new ArrayList<>();
+
+			// When
+			ExitStatus sequentialResult = sut.run(CommandArguments.of("--type", "dir", temporaryFolder.toPath().toString()), in, sequential::add, err);
+			ExitStatus parallelResult = sut.run(CommandArguments.of("--type", "dir", "--parallel", "2", temporaryFolder.toPath().toString()), in, parallel::add, err);
+
+			// Then
+			assertThat(sequentialResult).isSuccess();
+			assertThat(parallelResult).isSuccess();
+			assertThat(sequential)
+					.map(record -> record.value(Keys.PATH).flatMap(v -> v.unwrap(Path.class)).orElseThrow())
+					.containsExactlyInAnyOrder(
+							temporaryFolder.toPath().resolve("a"),
+							temporaryFolder.toPath().resolve("a").resolve("b"),
+							temporaryFolder.toPath().resolve("c"));
+			assertThat(parallel).containsExactlyElementsOf(sequential);
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void invalidType() {
+			// Given
+			// (no setup)
+
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--type", "socket", "."), in, out, err);
+
+			// Then
+			assertThat(result).isError();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("type must be 'file' or 'dir'")));
+		}
+
+		@Test
+		void invalidParallelism() {
+			// Given
+			// (no setup)
+
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--parallel", "0", "."), in, out, err);
+
+			// Then
+			assertThat(result).isError();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("parallel must be >= 1")));
+		}
+
+		@Test
+		void indexedHasSameOrderOfSequential() throws IOException {
+			// Given
+			givenTree();
+			List<Record> sequential = new ArrayList<>();
+			List<Record> indexed = new ArrayList<>();
+
+			// When
+			ExitStatus sequentialResult = sut.run(CommandArguments.of(temporaryFolder.toPath().toString()), in, sequential::add, err);
+			ExitStatus indexedResult = sut.run(CommandArguments.of("--indexed", temporaryFolder.toPath().toString()), in, indexed::add, err);
+
+			// Then
+			assertThat(sequentialResult).isSuccess();
+			assertThat(indexedResult).isSuccess();
+			assertThat(indexed).hasSize(4).containsExactlyElementsOf(sequential);
+			assertThat(indexFolder.toPath()).isDirectoryContaining(path -> path.toString().endsWith(".idx"));
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void indexedListsOnlyModifiedDirectories() throws IOException {
+			// Given
+			givenTree();
+			Path a = temporaryFolder.toPath().resolve("a");
+			for (Path dir : List.of(temporaryFolder.toPath(), a, a.resolve("b"), temporaryFolder.toPath().resolve("c"))) {
+				Files.setLastModifiedTime(dir, FileTime.from(Instant.parse("2020-01-01T00:00:00Z")));
+			}
+			ExitStatus first = sut.run(CommandArguments.of("--indexed", temporaryFolder.toPath().toString()), in, out, err);
+			Files.writeString(a.resolve("a.txt"), "abc"); // mtime of 'a' is unchanged
+
+			// When
+			List<Record> reused = new ArrayList<>();
+			ExitStatus second = sut.run(CommandArguments.of("--indexed", temporaryFolder.toPath().toString()), in, reused::add, err);
+			temporaryFolder.newFile(a, "new.txt");
+			List<Record> modified = new ArrayList<>();
+			ExitStatus third = sut.run(CommandArguments.of("--indexed", temporaryFolder.toPath().toString()), in, modified::add, err);
+
+			// Then
+			assertThat(first).isSuccess();
+			assertThat(second).isSuccess();
+			assertThat(third).isSuccess();
+			assertThat(reused)
+					.contains(Records.builder().entry(Keys.PATH, Values.ofPath(a.resolve("a.txt"))).entry(Keys.SIZE, Values.ofSize(0)).build())
+					.hasSize(4);
+			assertThat(modified)
+					.contains(Records.builder().entry(Keys.PATH, Values.ofPath(a.resolve("a.txt"))).entry(Keys.SIZE, Values.ofSize(3)).build())
+					.contains(Records.builder().entry(Keys.PATH, Values.ofPath(a.resolve("new.txt"))).entry(Keys.SIZE, Values.ofSize(0)).build())
+					.hasSize(5);
+			then(in).shouldHaveNoInteractions();
+			then(out).should(times(4)).send(any(Record.class));
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void indexedListsRecentlyModifiedDirectoriesAgain() throws IOException {
+			// Given
+			givenTree();
+			Path a = temporaryFolder.toPath().resolve("a");
+			Files.setLastModifiedTime(a, FileTime.from(Instant.now()));
+			ExitStatus first = sut.run(CommandArguments.of("--indexed", temporaryFolder.toPath().toString()), in, out, err);
+			Files.writeString(a.resolve("a.txt"), "abc"); // mtime of 'a' is unchanged
+
+			// When
+			List<Record> listed = new ArrayList<>();
+			ExitStatus second = sut.run(CommandArguments.of("--indexed", temporaryFolder.toPath().toString()), in, listed::add, err);
+
+			// Then
+			assertThat(first).isSuccess();
+			assertThat(second).isSuccess();
+			assertThat(listed)
+					.contains(Records.builder().entry(Keys.PATH, Values.ofPath(a.resolve("a.txt"))).entry(Keys.SIZE, Values.ofSize(3)).build())
+					.hasSize(4);
+			then(in).shouldHaveNoInteractions();
+			then(out).should(times(4)).send(any(Record.class));
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void indexedWithParallel() {
+			// Given
+			// (no setup)
+
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--indexed", "--parallel", "2", "."), in, out, err);
+
+			// Then
+			assertThat(result).isError();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("--indexed cannot be used with --parallel or --unordered")));
+		}
+
+		private void givenTree() throws IOException {
+			temporaryFolder.newFile("root.txt");
+			Path a = temporaryFolder.newFolder("a");
+			temporaryFolder.newFile(a, "a.txt");
+			Path b = temporaryFolder.newFolder(a, "b");
+			temporaryFolder.newFile(b, "b.txt");
+			Path c = temporaryFolder.newFolder("c");
+			temporaryFolder.newFile(c, "c.txt");
+		}
 	}
 
 	@Nested
@@ -1516,7 +2291,7 @@ class FileSystemModuleTest {
 			assertThat(result).isError();
 			then(in).shouldHaveNoInteractions();
 			then(out).shouldHaveNoInteractions();
-			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: watch directory")));
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: watch [--debounce duration] directory")));
 		}
 
 		@Test
@@ -1531,7 +2306,7 @@ class FileSystemModuleTest {
 			assertThat(result).isError();
 			then(in).shouldHaveNoInteractions();
 			then(out).shouldHaveNoInteractions();
-			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: watch directory")));
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: watch [--debounce duration] directory")));
 		}
 
 		@Test
@@ -1589,6 +2364,94 @@ class FileSystemModuleTest {
 
 		}
 
+		@Test
+		void createInSubdirectory() throws IOException, InterruptedException {
+			// Given
+			given(state.getCwd()).willReturn(temporaryFolder.toPath());
+			Path subdirectory = temporaryFolder.newFolder("sub");
+			sut.setWatchPredicate(count -> count < 1);
+			Thread modifyFileSystem = new Thread(() -> {
+				try {
+					TimeUnit.SECONDS.sleep(2);
+					temporaryFolder.newFile(subdirectory, "watcher.test");
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+			modifyFileSystem.start();
+
+			// When
+			ExitStatus result = sut.run(CommandArguments.of(temporaryFolder.toPath().toString()), in, out, err);
+			modifyFileSystem.join();
+
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).should().send(
+					Records.builder()
+							.entry(Keys.of("type"), Values.ofText("CREATE"))
+							.entry(Keys.PATH, Values.ofPath(Paths.get("sub", "watcher.test")))
+							.build(),
+					EnumSet.of(OutputChannel.Option.DIRECT)
+			);
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void coalesceChangesOfSamePath() throws InterruptedException {
+			// Given
+			given(state.getCwd()).willReturn(temporaryFolder.toPath());
+			sut.setWatchPredicate(count -> count < 1);
+			Thread modifyFileSystem = new Thread(() -> {
+				try {
+					TimeUnit.SECONDS.sleep(2);
+					Path file = temporaryFolder.newFile("watcher.test");
+					for (int i = 0; i < 10; i++) {
+						Files.writeString(file, "version " + i);
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+			modifyFileSystem.start();
+
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--debounce", "1s", temporaryFolder.toPath().toString()), in, out, err);
+			modifyFileSystem.join();
+
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).should().send(
+					Records.builder()
+							.entry(Keys.of("type"), Values.ofText("CREATE"))
+							.entry(Keys.PATH, Values.ofPath(Paths.get("watcher.test")))
+							.build(),
+					EnumSet.of(OutputChannel.Option.DIRECT)
+			);
+			then(out).shouldHaveNoMoreInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void invalidDebounce() {
+			// Given
+			// (no setup)
+
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--debounce", "soon", "."), in, out, err);
+
+			// Then
+			assertThat(result).isError();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("invalid duration: 'soon'")));
+		}
+
 
 	}
 
@@ -29,7 +29,9 @@ import hosh.doc.Examples;
 import hosh.spi.Command;
 import hosh.spi.CommandArguments;
 import hosh.spi.CommandName;
+import hosh.spi.CommandOptions;
 import hosh.spi.CommandRegistry;
+import hosh.spi.Compression;
 import hosh.spi.Errors;
 import hosh.spi.ExitStatus;
 import hosh.spi.InputChannel;
@@ -40,35 +42,71 @@ import hosh.spi.State;
 import hosh.spi.StateAware;
 import hosh.spi.Values;
 import hosh.spi.Module;
-import jakarta.json.JsonArray;
 import jakarta.json.JsonNumber;
 import jakarta.json.JsonObject;
 import jakarta.json.JsonReader;
+import jakarta.json.JsonReaderFactory;
 import jakarta.json.JsonString;
 import jakarta.json.JsonValue;
-import jakarta.json.JsonWriter;
-import jakarta.json.JsonWriterFactory;
 import jakarta.json.stream.JsonGenerator;
+import jakarta.json.stream.JsonGeneratorFactory;
+import jakarta.json.stream.JsonParser;
 import de.siegmar.fastcsv.reader.CsvReader;
-import de.siegmar.fastcsv.reader.NamedCsvRecord;
+import de.siegmar.fastcsv.reader.CsvRecord;
 import de.siegmar.fastcsv.writer.CsvWriter;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.io.UncheckedIOException;
 import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.Deque;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class FormatsModule implements Module {
 
+	// thread-safe, reused to avoid looking up the provider for each line
+	private static final JsonReaderFactory READER_FACTORY = jakarta.json.Json.createReaderFactory(Map.of());
+
 	@Override
 	public void initialize(CommandRegistry registry) {
 		registry.registerCommand(CommandName.constant("from-json"), FromJson::new);
 		registry.registerCommand(CommandName.constant("to-json"), ToJson::new);
+		registry.registerCommand(CommandName.constant("from-jsonl"), FromJsonLines::new);
+		registry.registerCommand(CommandName.constant("to-jsonl"), ToJsonLines::new);
+		registry.registerCommand(CommandName.constant("parse-json"), ParseJson::new);
 		registry.registerCommand(CommandName.constant("from-csv"), FromCsv::new);
 		registry.registerCommand(CommandName.constant("to-csv"), ToCsv::new);
 		registry.registerCommand(CommandName.constant("from-base64"), FromBase64::new);
@@ -104,22 +142,27 @@ public class FormatsModule implements Module {
 				err.send(Errors.message("not a regular file: %s", source));
 				return ExitStatus.error();
 			}
-			try (JsonReader reader = jakarta.json.Json.createReader(Files.newBufferedReader(source, StandardCharsets.UTF_8))) {
-				JsonValue root = reader.readValue();
-				if (!(root instanceof JsonArray array)) {
+			// streaming: only one element of the array is materialized at a time,
+			// so the first records are sent before reading the rest of the file
+			try (JsonParser parser = jakarta.json.Json.createParser(Compression.newBufferedReader(source, StandardCharsets.UTF_8))) {
+				if (!parser.hasNext() || parser.next() != JsonParser.Event.START_ARRAY) {
 					err.send(Errors.message("expected a JSON array"));
 					return ExitStatus.error();
 				}
-				for (JsonValue element : array) {
-					if (element instanceof JsonObject obj) {
-						Records.Builder builder = Records.builder();
-						for (var entry : obj.entrySet()) {
-							builder.entry(Keys.of(entry.getKey()), toValue(entry.getValue()));
+				while (parser.hasNext()) {
+					switch (parser.next()) {
+						case START_OBJECT -> out.send(toRecord(parser.getObject()));
+						case START_ARRAY -> parser.skipArray(); // not an object, ignored
+						case END_ARRAY -> {
+							return ExitStatus.success();
+						}
+						default -> {
+							// scalar element, ignored
 						}
-						out.send(builder.build());
 					}
 				}
-				return ExitStatus.success();
+				err.send(Errors.message("unterminated JSON array"));
+				return ExitStatus.error();
 			} catch (jakarta.json.JsonException e) {
 				err.send(Errors.message(e));
 				return ExitStatus.error();
@@ -128,21 +171,274 @@ public class FormatsModule implements Module {
 			}
 		}
 
-		private hosh.spi.Value toValue(JsonValue jsonValue) {
-			return switch (jsonValue.getValueType()) {
-				case STRING -> Values.ofText(((JsonString) jsonValue).getString());
-				case NUMBER -> {
-					JsonNumber num = (JsonNumber) jsonValue;
-					yield num.isIntegral() ? Values.ofNumeric(num.longValue()) : Values.ofText(num.toString());
+	}
+
+	@Description("parse a JSON Lines (newline-delimited JSON) file, one object per line, into records")
+	@Examples({
+			@Example(description = "read records from a JSON Lines file", command = "from-jsonl events.jsonl"),
+			@Example(description = "read records using 2 threads", command = "from-jsonl --parallel 2 events.jsonl | count"),
+	})
+	public static class FromJsonLines implements Command, StateAware {
+
+		private static final String PARALLEL = "parallel";
+
+		private State state;
+
+		@Override
+		public void setState(State state) {
+			this.state = state;
+		}
+
+		@Override
+		public ExitStatus run(CommandArguments args, InputChannel in, OutputChannel out, OutputChannel err) {
+			Optional<CommandOptions> options = CommandOptions.parse(args, Set.of(), Set.of(PARALLEL));
+			if (options.isEmpty() || options.get().arguments().size() != 1) {
+				err.send(Errors.usage("from-jsonl [--parallel n] file"));
+				return ExitStatus.error();
+			}
+			OptionalInt parallelism = options.get().positiveInt(PARALLEL, Runtime.getRuntime().availableProcessors(), err);
+			if (parallelism.isEmpty()) {
+				return ExitStatus.error();
+			}
+			Path source = options.get().arguments().get(0).asPath(state);
+			if (!Files.exists(source)) {
+				err.send(Errors.message("file not found: %s", source));
+				return ExitStatus.error();
+			}
+			if (!Files.isRegularFile(source)) {
+				err.send(Errors.message("not a regular file: %s", source));
+				return ExitStatus.error();
+			}
+			try {
+				new JsonLinesReader(parallelism.getAsInt(), out, err).read(source);
+				return ExitStatus.success();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return ExitStatus.error();
+			}
+		}
+	}
+
+	// Lines are independent: chunks of lines are parsed concurrently (at most 'parallelism' at a time)
+	// while reading the next ones, then sent in the same order of the file.
+	// Blank lines are skipped, invalid lines are reported and skipped.
+	private static class JsonLinesReader {
+
+		private static final int CHUNK_LINES = 4096;
+
+		private final int window;
+
+		private final Semaphore permits;
+
+		private final OutputChannel out;
+
+		private final OutputChannel err;
+
+		public JsonLinesReader(int parallelism, OutputChannel out, OutputChannel err) {
+			this.window = 2 * parallelism;
+			this.permits = new Semaphore(parallelism);
+			this.out = out;
+			this.err = err;
+		}
+
+		public void read(Path file) throws IOException, InterruptedException {
+			try (BufferedReader reader = Compression.newBufferedReader(file, StandardCharsets.UTF_8);
+				 ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+				Deque<CompletableFuture<ParsedChunk>> pending = new ArrayDeque<>();
+				long lineNumber = 1;
+				List<String> chunk = new ArrayList<>(CHUNK_LINES);
+				String line;
+				while ((line = reader.readLine()) != null) {
+					chunk.add(line);
+					if (chunk.size() == CHUNK_LINES) {
+						pending.add(submit(chunk, lineNumber, executor));
+						lineNumber += chunk.size();
+						chunk = new ArrayList<>(CHUNK_LINES);
+					}
+					if (pending.size() == window) {
+						sendAll(await(pending.remove()));
+					}
 				}
-				case TRUE -> Values.ofText("true");
-				case FALSE -> Values.ofText("false");
-				case NULL -> Values.none();
-				default -> Values.ofText(jsonValue.toString());
-			};
+				if (!chunk.isEmpty()) {
+					pending.add(submit(chunk, lineNumber, executor));
+				}
+				while (!pending.isEmpty()) {
+					sendAll(await(pending.remove()));
+				}
+			}
+		}
+
+		private CompletableFuture<ParsedChunk> submit(List<String> lines, long firstLineNumber, ExecutorService executor) {
+			return CompletableFuture.supplyAsync(() -> parse(lines, firstLineNumber), executor);
+		}
+
+		// errors are kept apart from the records, that may have an 'error' key too (e.g. logs)
+		private ParsedChunk parse(List<String> lines, long firstLineNumber) {
+			permits.acquireUninterruptibly();
+			try {
+				List<hosh.spi.Record> records = new ArrayList<>(lines.size());
+				List<hosh.spi.Record> errors = new ArrayList<>();
+				for (int i = 0; i < lines.size(); i++) {
+					String line = lines.get(i);
+					if (line.isBlank()) {
+						continue;
+					}
+					try {
+						records.add(toRecord(parseObject(line)));
+					} catch (jakarta.json.JsonException e) {
+						errors.add(Errors.message("line %d: %s", firstLineNumber + i, e.getMessage()));
+					}
+				}
+				return new ParsedChunk(records, errors);
+			} finally {
+				permits.release();
+			}
+		}
+
+		private void sendAll(ParsedChunk chunk) {
+			chunk.records().forEach(out::send);
+			chunk.errors().forEach(err::send);
+		}
+
+		private static <T> T await(CompletableFuture<T> future) throws InterruptedException {
+			try {
+				return future.get();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException runtimeException) {
+					throw runtimeException;
+				}
+				throw new IllegalStateException(e.getCause());
+			}
 		}
 	}
 
+	// records parsed from a chunk of a file, with the errors found in the same chunk
+	private record ParsedChunk(List<hosh.spi.Record> records, List<hosh.spi.Record> errors) {
+	}
+
+	@Description("write a stream of records to a JSON Lines file, one object per line")
+	@Examples({
+			@Example(description = "save ls output to a JSON Lines file", command = "ls | to-jsonl output.jsonl"),
+			@Example(description = "convert a JSON file to JSON Lines", command = "from-json data.json | to-jsonl data.jsonl"),
+	})
+	public static class ToJsonLines implements Command, StateAware {
+
+		private State state;
+
+		@Override
+		public void setState(State state) {
+			this.state = state;
+		}
+
+		@Override
+		public ExitStatus run(CommandArguments args, InputChannel in, OutputChannel out, OutputChannel err) {
+			if (args.size() != 1) {
+				err.send(Errors.usage("to-jsonl file"));
+				return ExitStatus.error();
+			}
+			Path target = args.get(0).asPath(state);
+			Locale locale = Locale.getDefault();
+			JsonGeneratorFactory generatorFactory = jakarta.json.Json.createGeneratorFactory(Map.of());
+			StringWriter line = new StringWriter();
+			try (Writer writer = Compression.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+				for (hosh.spi.Record record : InputChannel.iterate(in)) {
+					line.getBuffer().setLength(0);
+					try (JsonGenerator generator = generatorFactory.createGenerator(line)) {
+						generator.writeStartObject();
+						writeEntries(generator, record, locale);
+						generator.writeEnd();
+					}
+					writer.append(line.getBuffer()).append('\n');
+				}
+				return ExitStatus.success();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	@Description("parse the JSON object contained in the given key of each record")
+	@Examples({
+			@Example(description = "parse a JSON Lines log file", command = "lines app.log | parse-json text"),
+			@Example(description = "parse JSON lines appended to a log file", command = "lines --follow app.log | parse-json text"),
+	})
+	public static class ParseJson implements Command {
+
+		@Override
+		public ExitStatus run(CommandArguments args, InputChannel in, OutputChannel out, OutputChannel err) {
+			if (args.size() != 1) {
+				err.send(Errors.usage("parse-json key"));
+				return ExitStatus.error();
+			}
+			hosh.spi.Key key = args.get(0).asKey();
+			for (hosh.spi.Record record : InputChannel.iterate(in)) {
+				record.value(key)
+						.flatMap(v -> v.unwrap(String.class))
+						.filter(text -> !text.isBlank())
+						.ifPresent(text -> {
+							try {
+								out.send(toRecord(parseObject(text)));
+							} catch (jakarta.json.JsonException e) {
+								err.send(Errors.message("invalid JSON: %s", e.getMessage()));
+							}
+						}); // side effect
+			}
+			return ExitStatus.success();
+		}
+	}
+
+	private static JsonObject parseObject(String text) {
+		try (JsonReader reader = READER_FACTORY.createReader(new StringReader(text))) {
+			return reader.readObject();
+		}
+	}
+
+	// numbers and sizes are written as JSON numbers, instants and durations as ISO-8601 strings,
+	// anything else as shown in the terminal
+	private static void writeEntries(JsonGenerator generator, hosh.spi.Record record, Locale locale) {
+		record.keys().forEach(key -> {
+			hosh.spi.Value value = record.value(key).orElse(Values.none());
+			Optional<Long> number = value.unwrap(Long.class);
+			Optional<Instant> instant = value.unwrap(Instant.class);
+			Optional<Duration> duration = value.unwrap(Duration.class);
+			if (Values.none().equals(value)) {
+				generator.writeNull(key.name());
+			} else if (number.isPresent()) {
+				generator.write(key.name(), number.get());
+			} else if (instant.isPresent()) {
+				generator.write(key.name(), instant.get().toString());
+			} else if (duration.isPresent()) {
+				generator.write(key.name(), duration.get().toString());
+			} else {
+				generator.write(key.name(), value.show(locale));
+			}
+		});
+	}
+
+	private static hosh.spi.Record toRecord(JsonObject obj) {
+		Records.Builder builder = Records.builder();
+		for (var entry : obj.entrySet()) {
+			builder.entry(Keys.of(entry.getKey()), toValue(entry.getValue()));
+		}
+		return builder.build();
+	}
+
+	private static hosh.spi.Value toValue(JsonValue jsonValue) {
+		return switch (jsonValue.getValueType()) {
+			case STRING -> Values.ofText(((JsonString) jsonValue).getString());
+			case NUMBER -> {
+				JsonNumber num = (JsonNumber) jsonValue;
+				yield num.isIntegral() ? Values.ofNumeric(num.longValue()) : Values.ofText(num.toString());
+			}
+			case TRUE -> Values.ofText("true");
+			case FALSE -> Values.ofText("false");
+			case NULL -> Values.none();
+			default -> Values.ofText(jsonValue.toString());
+		};
+	}
+
 	@Description("parse a RFC 4180 CSV file with a header row into records")
 	@Examples({
 			@Example(description = "read records from a CSV file", command = "from-csv data.csv"),
@@ -150,20 +446,35 @@ public class FormatsModule implements Module {
 	})
 	public static class FromCsv implements Command, StateAware {
 
+		private static final String PARALLEL = "parallel";
+
+		private static final String INFER = "infer";
+
 		private State state;
 
+		private int chunkSize = 1024 * 1024;
+
 		@Override
 		public void setState(State state) {
 			this.state = state;
 		}
 
+		public void setChunkSize(int chunkSize) {
+			this.chunkSize = chunkSize;
+		}
+
 		@Override
 		public ExitStatus run(CommandArguments args, InputChannel in, OutputChannel out, OutputChannel err) {
-			if (args.size() != 1) {
-				err.send(Errors.usage("from-csv file"));
+			Optional<CommandOptions> options = CommandOptions.parse(args, Set.of(INFER), Set.of(PARALLEL));
+			if (options.isEmpty() || options.get().arguments().size() != 1) {
+				err.send(Errors.usage("from-csv [--parallel n] [--infer] file"));
 				return ExitStatus.error();
 			}
-			Path source = args.get(0).asPath(state);
+			OptionalInt parallelism = options.get().positiveInt(PARALLEL, Runtime.getRuntime().availableProcessors(), err);
+			if (parallelism.isEmpty()) {
+				return ExitStatus.error();
+			}
+			Path source = options.get().arguments().get(0).asPath(state);
 			if (!Files.exists(source)) {
 				err.send(Errors.message("file not found: %s", source));
 				return ExitStatus.error();
@@ -172,28 +483,328 @@ public class FormatsModule implements Module {
 				err.send(Errors.message("not a regular file: %s", source));
 				return ExitStatus.error();
 			}
-			try (CsvReader<NamedCsvRecord> csvReader = CsvReader.builder().ofNamedCsvRecord(source)) {
-				for (NamedCsvRecord record : csvReader) {
+			try {
+				new CsvChunkReader(parallelism.getAsInt(), chunkSize, options.get().has(INFER), out, err).read(source);
+				return ExitStatus.success();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return ExitStatus.error();
+			}
+		}
+	}
+
+	// The file is split in chunks of whole rows (at least 'chunkSize' bytes, ending with a newline outside
+	// of quoted fields), parsed concurrently (at most 'parallelism' at a time) and sent in the same order of the file.
+	// Splitting looks only at '"' and '\n', that never occur inside multibyte UTF-8 sequences.
+	// Keys are created once from the header; with 'infer' the types of the columns are guessed
+	// from the first rows, otherwise all values are text.
+	// Rows with more or less fields than the header are reported and skipped.
+	private static class CsvChunkReader {
+
+		private static final int SAMPLE_ROWS = 100;
+
+		private final int chunkSize;
+
+		private final int window;
+
+		private final Semaphore permits;
+
+		private final boolean infer;
+
+		private final OutputChannel out;
+
+		private final OutputChannel err;
+
+		public CsvChunkReader(int parallelism, int chunkSize, boolean infer, OutputChannel out, OutputChannel err) {
+			this.chunkSize = chunkSize;
+			this.window = 2 * parallelism;
+			this.permits = new Semaphore(parallelism);
+			this.infer = infer;
+			this.out = out;
+			this.err = err;
+		}
+
+		public void read(Path file) throws IOException, InterruptedException {
+			try (CsvSplitter splitter = new CsvSplitter(Compression.newInputStream(file));
+				 ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+				List<String> header = List.of();
+				while (header.isEmpty()) {
+					Optional<String> row = splitter.next(1);
+					if (row.isEmpty()) {
+						return; // empty file
+					}
+					header = parse(row.get()).stream().findFirst().map(CsvRecord::getFields).orElse(List.of());
+				}
+				hosh.spi.Key[] keys = header.stream().map(Keys::of).toArray(hosh.spi.Key[]::new);
+				long firstLine = splitter.lines() + 1;
+				Optional<String> first = splitter.next(chunkSize);
+				if (first.isEmpty()) {
+					return; // header only
+				}
+				ColumnType[] types = infer ? ColumnType.infer(keys.length, parse(first.get()), SAMPLE_ROWS) : ColumnType.text(keys.length);
+				Deque<CompletableFuture<ParsedChunk>> pending = new ArrayDeque<>();
+				Optional<String> chunk = first;
+				while (chunk.isPresent()) {
+					String text = chunk.get();
+					long chunkFirstLine = firstLine;
+					pending.add(CompletableFuture.supplyAsync(() -> toRecords(text, chunkFirstLine, keys, types), executor));
+					if (pending.size() == window) {
+						sendAll(await(pending.remove()));
+					}
+					firstLine = splitter.lines() + 1;
+					chunk = splitter.next(chunkSize);
+				}
+				while (!pending.isEmpty()) {
+					sendAll(await(pending.remove()));
+				}
+			}
+		}
+
+		private ParsedChunk toRecords(String text, long firstLine, hosh.spi.Key[] keys, ColumnType[] types) {
+			permits.acquireUninterruptibly();
+			try {
+				List<CsvRecord> rows = parse(text);
+				List<hosh.spi.Record> records = new ArrayList<>(rows.size());
+				List<hosh.spi.Record> errors = new ArrayList<>();
+				for (CsvRecord row : rows) {
+					if (row.getFieldCount() != keys.length) {
+						errors.add(Errors.message("line %d: expected %d fields, found %d", firstLine + row.getStartingLineNumber() - 1, keys.length, row.getFieldCount()));
+						continue;
+					}
 					Records.Builder builder = Records.builder();
-					for (String header : record.getHeader()) {
-						builder.entry(Keys.of(header), Values.ofText(record.getField(header)));
+					for (int i = 0; i < keys.length; i++) {
+						builder.entry(keys[i], types[i].toValue(row.getField(i)));
 					}
-					out.send(builder.build());
+					records.add(builder.build());
 				}
-				return ExitStatus.success();
+				return new ParsedChunk(records, errors);
+			} finally {
+				permits.release();
+			}
+		}
+
+		// the number of fields is checked by the caller, with the line number in the file
+		private static List<CsvRecord> parse(String text) {
+			List<CsvRecord> rows = new ArrayList<>();
+			try (CsvReader<CsvRecord> reader = CsvReader.builder().allowExtraFields(true).allowMissingFields(true).ofCsvRecord(text)) {
+				reader.forEach(rows::add);
 			} catch (IOException e) {
 				throw new UncheckedIOException(e);
 			}
+			return rows;
+		}
+
+		private void sendAll(ParsedChunk chunk) {
+			chunk.records().forEach(out::send);
+			chunk.errors().forEach(err::send);
+		}
+
+		private static <T> T await(CompletableFuture<T> future) throws InterruptedException {
+			try {
+				return future.get();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException runtimeException) {
+					throw runtimeException;
+				}
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+	}
+
+	// Reads whole rows of a CSV file, keeping track of quoted fields (that could contain newlines)
+	// with the same rules of FastCSV: a quote opens a quoted field only at the start of the field,
+	// elsewhere in an unquoted field it is just a char.
+	private static class CsvSplitter implements Closeable {
+
+		private static final int FIELD_START = 0;
+
+		private static final int UNQUOTED = 1;
+
+		private static final int QUOTED = 2;
+
+		private static final int QUOTE_IN_QUOTED = 3; // closing the field or escaping the next quote
+
+		private final InputStream in;
+
+		private final byte[] block = new byte[64 * 1024];
+
+		private int blockLength = 0;
+
+		private int blockPosition = 0;
+
+		private int state = FIELD_START;
+
+		private long lines = 0;
+
+		public CsvSplitter(InputStream in) {
+			this.in = in;
+		}
+
+		// newlines read so far, including the ones in quoted fields
+		public long lines() {
+			return lines;
+		}
+
+		// the next rows, at least 'minSize' bytes unless at the end of the file
+		public Optional<String> next(int minSize) throws IOException {
+			ByteArrayOutputStream chunk = new ByteArrayOutputStream(minSize);
+			while (true) {
+				if (blockPosition == blockLength) {
+					blockLength = in.read(block);
+					blockPosition = 0;
+					if (blockLength == -1) {
+						blockLength = 0;
+						return chunk.size() == 0 ? Optional.empty() : Optional.of(chunk.toString(StandardCharsets.UTF_8));
+					}
+				}
+				for (int i = blockPosition; i < blockLength; i++) {
+					byte b = block[i];
+					if (b == '\n') {
+						lines += 1;
+					}
+					state = next(state, b);
+					if (b == '\n' && state == FIELD_START && chunk.size() + (i + 1 - blockPosition) >= minSize) {
+						chunk.write(block, blockPosition, i + 1 - blockPosition);
+						blockPosition = i + 1;
+						return Optional.of(chunk.toString(StandardCharsets.UTF_8));
+					}
+				}
+				chunk.write(block, blockPosition, blockLength - blockPosition);
+				blockPosition = blockLength;
+			}
+		}
+
+		private static int next(int state, byte b) {
+			return switch (state) {
+				case QUOTED -> b == '"' ? QUOTE_IN_QUOTED : QUOTED;
+				case QUOTE_IN_QUOTED -> b == '"' ? QUOTED : afterField(b);
+				case FIELD_START -> b == '"' ? QUOTED : afterField(b);
+				default -> afterField(b);
+			};
+		}
+
+		// outside of quotes: separators and line breaks (LF, CR or CRLF) start a new field
+		private static int afterField(byte b) {
+			return b == ',' || b == '\n' || b == '\r' ? FIELD_START : UNQUOTED;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+
+	private enum ColumnType {
+
+		TEXT {
+			@Override
+			protected hosh.spi.Value parse(String field) {
+				return Values.ofText(field);
+			}
+		},
+
+		NUMERIC {
+			@Override
+			protected hosh.spi.Value parse(String field) {
+				return Values.ofNumeric(Long.parseLong(field));
+			}
+		},
+
+		SIZE {
+			@Override
+			protected hosh.spi.Value parse(String field) {
+				Matcher matcher = SIZE_PATTERN.matcher(field);
+				if (!matcher.matches()) {
+					throw new IllegalArgumentException("not a size: " + field);
+				}
+				int exponent = SIZE_UNITS.indexOf(matcher.group(2).toUpperCase(Locale.ROOT));
+				return Values.ofSize(new BigDecimal(matcher.group(1))
+						.multiply(BigDecimal.valueOf(1024).pow(exponent))
+						.setScale(0, RoundingMode.HALF_UP)
+						.longValueExact());
+			}
+		},
+
+		INSTANT {
+			@Override
+			protected hosh.spi.Value parse(String field) {
+				return Values.ofInstant(Instant.parse(field));
+			}
+		};
+
+		// same units of Values.ofSize() (i.e. 1KB is 1024 bytes), 'B' is required to not match plain numbers
+		private static final Pattern SIZE_PATTERN = Pattern.compile("(\\d+(?:\\.\\d+)?)\\s*([KMGT]?B)", Pattern.CASE_INSENSITIVE);
+
+		private static final List<String> SIZE_UNITS = List.of("B", "KB", "MB", "GB", "TB");
+
+		protected abstract hosh.spi.Value parse(String field);
+
+		// empty fields are none, unless in text columns; fields not matching the type of the column are text
+		public hosh.spi.Value toValue(String field) {
+			if (this == TEXT) {
+				return Values.ofText(field);
+			}
+			if (field.isEmpty()) {
+				return Values.none();
+			}
+			try {
+				return parse(field);
+			} catch (RuntimeException e) {
+				return Values.ofText(field);
+			}
+		}
+
+		public static ColumnType[] text(int columns) {
+			ColumnType[] types = new ColumnType[columns];
+			Arrays.fill(types, TEXT);
+			return types;
+		}
+
+		// first type, in order of declaration, accepting all the non-empty samples of the column
+		public static ColumnType[] infer(int columns, List<CsvRecord> rows, int sampleRows) {
+			List<CsvRecord> samples = rows.subList(0, Math.min(sampleRows, rows.size()));
+			ColumnType[] types = text(columns);
+			for (int i = 0; i < columns; i++) {
+				types[i] = inferColumn(i, samples);
+			}
+			return types;
+		}
+
+		private static ColumnType inferColumn(int column, List<CsvRecord> samples) {
+			for (ColumnType candidate : List.of(NUMERIC, SIZE, INSTANT)) {
+				boolean accepted = false;
+				boolean rejected = false;
+				for (CsvRecord sample : samples) {
+					if (column >= sample.getFieldCount() || sample.getField(column).isEmpty()) {
+						continue;
+					}
+					try {
+						candidate.parse(sample.getField(column));
+						accepted = true;
+					} catch (RuntimeException e) {
+						rejected = true;
+						break;
+					}
+				}
+				if (accepted && !rejected) {
+					return candidate;
+				}
+			}
+			return TEXT;
 		}
 	}
 
 	@Description("write a stream of records to a JSON file as an array of objects")
 	@Examples({
 			@Example(description = "save ls output to a JSON file", command = "ls | to-json output.json"),
-			@Example(description = "save process list to a JSON file", command = "ps | to-json procs.json"),
+			@Example(description = "save process list to an indented JSON file", command = "ps | to-json --pretty procs.json"),
 	})
 	public static class ToJson implements Command, StateAware {
 
+		private static final String PRETTY = "pretty";
+
 		private State state;
 
 		@Override
@@ -203,29 +814,25 @@ public class FormatsModule implements Module {
 
 		@Override
 		public ExitStatus run(CommandArguments args, InputChannel in, OutputChannel out, OutputChannel err) {
-			if (args.size() != 1) {
-				err.send(Errors.usage("to-json file"));
+			Optional<CommandOptions> options = CommandOptions.parse(args, Set.of(PRETTY), Set.of());
+			if (options.isEmpty() || options.get().arguments().size() != 1) {
+				err.send(Errors.usage("to-json [--pretty] file"));
 				return ExitStatus.error();
 			}
-			Path target = args.get(0).asPath(state);
+			Path target = options.get().arguments().get(0).asPath(state);
 			Locale locale = Locale.getDefault();
-			JsonWriterFactory writerFactory = jakarta.json.Json.createWriterFactory(Map.of(JsonGenerator.PRETTY_PRINTING, true));
-			try (Writer writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8);
-				 JsonWriter jsonWriter = writerFactory.createWriter(writer)) {
-				jakarta.json.JsonArrayBuilder arrayBuilder = jakarta.json.Json.createArrayBuilder();
+			Map<String, ?> config = options.get().has(PRETTY) ? Map.of(JsonGenerator.PRETTY_PRINTING, true) : Map.of();
+			JsonGeneratorFactory generatorFactory = jakarta.json.Json.createGeneratorFactory(config);
+			// streaming: each record is written as soon as received
+			try (Writer writer = Compression.newBufferedWriter(target, StandardCharsets.UTF_8);
+				 JsonGenerator generator = generatorFactory.createGenerator(writer)) {
+				generator.writeStartArray();
 				for (hosh.spi.Record record : InputChannel.iterate(in)) {
-					jakarta.json.JsonObjectBuilder objectBuilder = jakarta.json.Json.createObjectBuilder();
-					record.keys().forEach(key -> {
-						hosh.spi.Value value = record.value(key).orElse(Values.none());
-						if (Values.none().equals(value)) {
-							objectBuilder.addNull(key.name());
-						} else {
-							objectBuilder.add(key.name(), value.show(locale));
-						}
-					});
-					arrayBuilder.add(objectBuilder);
+					generator.writeStartObject();
+					writeEntries(generator, record, locale);
+					generator.writeEnd();
 				}
-				jsonWriter.writeArray(arrayBuilder.build());
+				generator.writeEnd();
 				return ExitStatus.success();
 			} catch (IOException e) {
 				throw new UncheckedIOException(e);
@@ -256,7 +863,7 @@ public class FormatsModule implements Module {
 			Path target = args.get(0).asPath(state);
 			Locale locale = Locale.getDefault();
 			boolean headerWritten = false;
-			try (CsvWriter csvWriter = CsvWriter.builder().build(target, StandardCharsets.UTF_8)) {
+			try (CsvWriter csvWriter = CsvWriter.builder().build(Compression.newBufferedWriter(target, StandardCharsets.UTF_8))) {
 				for (hosh.spi.Record record : InputChannel.iterate(in)) {
 					if (!headerWritten) {
 						String[] headers = record.keys().map(hosh.spi.Key::name).toArray(String[]::new);
@@ -273,28 +880,62 @@ public class FormatsModule implements Module {
 		}
 	}
 
-	@Description("decode base64-encoded text from stdin")
+	@Description("decode base64 from a key of the records (as text when valid UTF-8, as bytes otherwise) or from a file, streaming into a file")
 	@Examples({
 			@Example(description = "decode base64 string", command = "echo 'SGVsbG8gV29ybGQ=' | from-base64 text"),
 			@Example(description = "decode and show text", command = "echo 'SGVsbG8gV29ybGQ=' | from-base64 text | sort text"),
+			@Example(description = "decode the lines of a base64 file into a binary file", command = "lines photo.b64 | from-base64 --output photo.jpg text"),
+			@Example(description = "decode a base64 file (line breaks are ignored) into a binary file", command = "from-base64 --input photo.b64 --output photo.jpg"),
 	})
-	public static class FromBase64 implements Command {
+	public static class FromBase64 implements Command, StateAware {
+
+		private static final String INPUT = "input";
+
+		private static final String OUTPUT = "output";
+
+		private State state;
+
+		@Override
+		public void setState(State state) {
+			this.state = state;
+		}
 
 		@Override
 		public ExitStatus run(CommandArguments args, InputChannel in, OutputChannel out, OutputChannel err) {
-			if (args.size() != 1) {
-				err.send(Errors.usage("from-base64 key"));
+			Optional<CommandOptions> options = CommandOptions.parse(args, Set.of(), Set.of(INPUT, OUTPUT));
+			boolean valid = options.isPresent() && (options.get().has(INPUT)
+					? options.get().has(OUTPUT) && options.get().arguments().isEmpty()
+					: options.get().arguments().size() == 1);
+			if (!valid) {
+				err.send(Errors.usage("from-base64 [--input file] [--output file] [key]"));
 				return ExitStatus.error();
 			}
-			hosh.spi.Key key = args.get(0).asKey();
+			if (options.get().has(OUTPUT)) {
+				Path target = options.get().get(OUTPUT).orElseThrow().asPath(state);
+				Optional<Path> source = options.get().get(INPUT).map(input -> input.asPath(state));
+				if (source.isPresent() && !Files.isRegularFile(source.get())) {
+					err.send(Errors.message("not a regular file: %s", source.get()));
+					return ExitStatus.error();
+				}
+				Base64.Decoder decoder = source.isPresent() ? Base64Streams.MIME_DECODER : Base64.getDecoder();
+				try (InputStream encoded = source.isPresent()
+						? Files.newInputStream(source.get())
+						: new RecordInputStream(in, options.get().arguments().getFirst().asKey())) {
+					return Base64Streams.decode(decoder, encoded, target, err) ? ExitStatus.success() : ExitStatus.error();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+			hosh.spi.Key key = options.get().arguments().getFirst().asKey();
+			CharsetDecoder utf8 = StandardCharsets.UTF_8.newDecoder();
+			Base64.Decoder decoder = Base64.getDecoder();
 			for (hosh.spi.Record record : InputChannel.iterate(in)) {
 				record.value(key)
-						.flatMap(v -> v.unwrap(String.class))
+						.flatMap(Base64Streams::bytes)
 						.ifPresent(encoded -> {
 							try {
-								byte[] decoded = Base64.getDecoder().decode(encoded);
-								String decodedText = new String(decoded, StandardCharsets.UTF_8);
-								out.send(Records.singleton(key, Values.ofText(decodedText)));
+								byte[] decoded = decoder.decode(encoded);
+								out.send(Records.singleton(key, textOrBytes(utf8, decoded)));
 							} catch (IllegalArgumentException e) {
 								err.send(Errors.message("invalid base64: %s", e.getMessage()));
 							}
@@ -302,32 +943,229 @@ public class FormatsModule implements Module {
 			}
 			return ExitStatus.success();
 		}
+
+		private static hosh.spi.Value textOrBytes(CharsetDecoder utf8, byte[] decoded) {
+			try {
+				return Values.ofText(utf8.decode(ByteBuffer.wrap(decoded)).toString());
+			} catch (CharacterCodingException e) {
+				return Values.ofBytes(decoded);
+			}
+		}
 	}
 
-	@Description("encode text as base64")
+	@Description("encode text or bytes of a key of the records as base64, or a file streaming it into lines or into another file")
 	@Examples({
 			@Example(description = "encode string to base64", command = "echo 'Hello World' | to-base64 text"),
 			@Example(description = "encode and show result", command = "echo 'Hello World' | to-base64 text | sort text"),
+			@Example(description = "encode a binary file as lines of 76 characters", command = "to-base64 --input photo.jpg"),
+			@Example(description = "encode a binary file into another file", command = "to-base64 --input photo.jpg --output photo.b64"),
 	})
-	public static class ToBase64 implements Command {
+	public static class ToBase64 implements Command, StateAware {
+
+		private static final String INPUT = "input";
+
+		private static final String OUTPUT = "output";
+
+		// 57 bytes are encoded in 76 characters, the line length of MIME (and of the base64 utility)
+		private static final int LINE_BYTES = 57;
+
+		private State state;
+
+		@Override
+		public void setState(State state) {
+			this.state = state;
+		}
 
 		@Override
 		public ExitStatus run(CommandArguments args, InputChannel in, OutputChannel out, OutputChannel err) {
-			if (args.size() != 1) {
-				err.send(Errors.usage("to-base64 key"));
+			Optional<CommandOptions> options = CommandOptions.parse(args, Set.of(), Set.of(INPUT, OUTPUT));
+			boolean valid = options.isPresent() && (options.get().has(INPUT)
+					? options.get().arguments().isEmpty()
+					: options.get().arguments().size() == 1 && !options.get().has(OUTPUT));
+			if (!valid) {
+				err.send(Errors.usage("to-base64 [--input file] [--output file] [key]"));
 				return ExitStatus.error();
 			}
-			hosh.spi.Key key = args.get(0).asKey();
+			Base64.Encoder encoder = Base64.getEncoder();
+			if (options.get().has(INPUT)) {
+				Path source = options.get().get(INPUT).orElseThrow().asPath(state);
+				if (!Files.isRegularFile(source)) {
+					err.send(Errors.message("not a regular file: %s", source));
+					return ExitStatus.error();
+				}
+				try (InputStream input = Files.newInputStream(source)) {
+					Optional<CommandArguments.CommandArgument> output = options.get().get(OUTPUT);
+					if (output.isPresent()) {
+						Base64Streams.encode(encoder, input, output.get().asPath(state));
+					} else {
+						for (byte[] line = input.readNBytes(LINE_BYTES); line.length > 0; line = input.readNBytes(LINE_BYTES)) {
+							out.send(Records.singleton(Keys.TEXT, Values.ofText(encoder.encodeToString(line))));
+						}
+					}
+					return ExitStatus.success();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+			hosh.spi.Key key = options.get().arguments().getFirst().asKey();
 			for (hosh.spi.Record record : InputChannel.iterate(in)) {
 				record.value(key)
-						.flatMap(v -> v.unwrap(String.class))
-						.ifPresent(text -> {
-							String encoded = Base64.getEncoder().encodeToString(text.getBytes(StandardCharsets.UTF_8));
-							out.send(Records.singleton(key, Values.ofText(encoded)));
-						}); // side effect
+						.flatMap(Base64Streams::bytes)
+						.ifPresent(bytes -> out.send(Records.singleton(key, Values.ofText(encoder.encodeToString(bytes))))); // side effect
 			}
 			return ExitStatus.success();
 		}
 	}
 
+	private static final class Base64Streams {
+
+		// ignores line breaks (and any other character outside of the base64 alphabet)
+		static final Base64.Decoder MIME_DECODER = Base64.getMimeDecoder();
+
+		private static final int CHUNK_SIZE = 64 * 1024;
+
+		private Base64Streams() {
+		}
+
+		// bytes values as they are, anything else as UTF-8 text
+		static Optional<byte[]> bytes(hosh.spi.Value value) {
+			return value.unwrap(byte[].class)
+					.or(() -> value.unwrap(String.class).map(text -> text.getBytes(StandardCharsets.UTF_8)));
+		}
+
+		// streams the encoded bytes into the target, that is deleted when anything fails (no partial output)
+		static void encode(Base64.Encoder encoder, InputStream input, Path target) throws IOException {
+			OutputStream encoded = encoder.wrap(Files.newOutputStream(target));
+			boolean complete = false;
+			try {
+				try (encoded) {
+					input.transferTo(encoded);
+				}
+				complete = true;
+			} finally {
+				if (!complete) {
+					Files.deleteIfExists(target);
+				}
+			}
+		}
+
+		// streams the decoded bytes into the target, that is deleted when anything fails (no partial output)
+		static boolean decode(Base64.Decoder decoder, InputStream encoded, Path target, OutputChannel err) throws IOException {
+			OutputStream decoded = Files.newOutputStream(target);
+			boolean complete = false;
+			try {
+				try (decoded) {
+					if (!copy(decoder.wrap(new EncodedInputStream(encoded)), decoded, err)) {
+						return false;
+					}
+				}
+				complete = true;
+				return true;
+			} finally {
+				if (!complete) {
+					Files.deleteIfExists(target);
+				}
+			}
+		}
+
+		// copies in fixed-size chunks: only errors of the decoder are reported as invalid base64,
+		// errors reading the encoded bytes or writing the decoded ones are thrown as they are
+		private static boolean copy(InputStream decoding, OutputStream decoded, OutputChannel err) throws IOException {
+			byte[] buffer = new byte[CHUNK_SIZE];
+			while (true) {
+				int n;
+				try {
+					n = decoding.read(buffer);
+				} catch (UncheckedIOException e) {
+					throw e.getCause();
+				} catch (IOException e) {
+					err.send(Errors.message("invalid base64: %s", e.getMessage()));
+					return false;
+				}
+				if (n == -1) {
+					return true;
+				}
+				decoded.write(buffer, 0, n);
+			}
+		}
+
+		// errors reading the encoded bytes pass through the decoder as UncheckedIOException,
+		// the decoder itself throws IOException only for invalid base64
+		private static final class EncodedInputStream extends FilterInputStream {
+
+			public EncodedInputStream(InputStream in) {
+				super(in);
+			}
+
+			@Override
+			public int read() {
+				try {
+					return super.read();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+
+			@Override
+			public int read(byte[] buffer, int offset, int length) {
+				try {
+					return super.read(buffer, offset, length);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		}
+	}
+
+	// the given key of the records as a stream of bytes, records without the key are skipped
+	private static final class RecordInputStream extends InputStream {
+
+		private final InputChannel in;
+
+		private final hosh.spi.Key key;
+
+		private byte[] current = new byte[0];
+
+		private int position = 0;
+
+		public RecordInputStream(InputChannel in, hosh.spi.Key key) {
+			this.in = in;
+			this.key = key;
+		}
+
+		@Override
+		public int read() {
+			if (!fill()) {
+				return -1;
+			}
+			return current[position++] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) {
+			if (length == 0) {
+				return 0;
+			}
+			if (!fill()) {
+				return -1;
+			}
+			int n = Math.min(length, current.length - position);
+			System.arraycopy(current, position, buffer, offset, n);
+			position += n;
+			return n;
+		}
+
+		private boolean fill() {
+			while (position == current.length) {
+				Optional<hosh.spi.Record> record = in.recv();
+				if (record.isEmpty()) {
+					return false;
+				}
+				current = record.get().value(key).flatMap(Base64Streams::bytes).orElse(new byte[0]);
+				position = 0;
+			}
+			return true;
+		}
+	}
+
 }
@@ -25,8 +25,11 @@ package hosh.modules.formats;
 
 import hosh.modules.formats.FormatsModule.FromCsv;
 import hosh.modules.formats.FormatsModule.FromJson;
+import hosh.modules.formats.FormatsModule.FromJsonLines;
+import hosh.modules.formats.FormatsModule.ParseJson;
 import hosh.modules.formats.FormatsModule.ToCsv;
 import hosh.modules.formats.FormatsModule.ToJson;
+import hosh.modules.formats.FormatsModule.ToJsonLines;
 import hosh.modules.formats.FormatsModule.FromBase64;
 import hosh.modules.formats.FormatsModule.ToBase64;
 import hosh.spi.Values;
@@ -36,14 +39,24 @@ import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.extension.RegisterExtension;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static hosh.spi.test.support.ExitStatusAssert.assertThat;
 
@@ -57,8 +70,10 @@ import hosh.spi.State;
 import hosh.test.support.TemporaryFolder;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.times;
 
 class FormatsModuleTest {
 
@@ -234,6 +249,40 @@ class FormatsModuleTest {
 			then(err).should().send(org.mockito.ArgumentMatchers.argThat(r -> r.value(Keys.ERROR).isPresent()));
 		}
 
+		@Test
+		void elementsOtherThanObjectsAreIgnored() throws IOException {
+			// Given
+			Path file = temporaryFolder.newFile("data.json");
+			Files.writeString(file, """
+					[1, "text", [{"nested":true}], {"name":"alice"}, null]
+					""", StandardCharsets.UTF_8);
+			// When
+			ExitStatus result = sut.run(CommandArguments.of(file.toAbsolutePath().toString()), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).should().send(Records.singleton(Keys.of("name"), Values.ofText("alice")));
+			then(out).shouldHaveNoMoreInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void recordsSentBeforeInvalidJson() throws IOException {
+			// Given
+			Path file = temporaryFolder.newFile("data.json");
+			Files.writeString(file, """
+					[{"name":"alice"},{"name":
+					""", StandardCharsets.UTF_8);
+			// When
+			ExitStatus result = sut.run(CommandArguments.of(file.toAbsolutePath().toString()), in, out, err);
+			// Then
+			assertThat(result).isError();
+			then(in).shouldHaveNoInteractions();
+			then(out).should().send(Records.singleton(Keys.of("name"), Values.ofText("alice")));
+			then(out).shouldHaveNoMoreInteractions();
+			then(err).should().send(org.mockito.ArgumentMatchers.argThat(r -> r.value(Keys.ERROR).isPresent()));
+		}
+
 		@Test
 		void relativePathResolvedAgainstCwd() throws IOException {
 			// Given
@@ -269,6 +318,9 @@ class FormatsModuleTest {
 		@Mock
 		OutputChannel err;
 
+		@Captor
+		ArgumentCaptor<Record> records;
+
 		FromCsv sut;
 
 		@BeforeEach
@@ -287,7 +339,7 @@ class FormatsModuleTest {
 			assertThat(result).isError();
 			then(in).shouldHaveNoInteractions();
 			then(out).shouldHaveNoInteractions();
-			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: from-csv file")));
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: from-csv [--parallel n] [--infer] file")));
 		}
 
 		@Test
@@ -300,7 +352,7 @@ class FormatsModuleTest {
 			assertThat(result).isError();
 			then(in).shouldHaveNoInteractions();
 			then(out).shouldHaveNoInteractions();
-			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: from-csv file")));
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: from-csv [--parallel n] [--infer] file")));
 		}
 
 		@Test
@@ -372,6 +424,127 @@ class FormatsModuleTest {
 			then(err).shouldHaveNoInteractions();
 		}
 
+		@Test
+		void quotedNewlinesInParallelChunks() throws IOException {
+			// Given
+			Path file = temporaryFolder.newFile("data.csv");
+			Files.writeString(file, "name,note\nalice,\"first\nline\"\nbob,\"say \"\"hi\"\"\nagain\"\ncarol,plain\n", StandardCharsets.UTF_8);
+			sut.setChunkSize(1);
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--parallel", "2", file.toAbsolutePath().toString()), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).should(times(3)).send(records.capture());
+			assertThat(records.getAllValues()).containsExactly(
+					Records.builder().entry(Keys.of("name"), Values.ofText("alice")).entry(Keys.of("note"), Values.ofText("first\nline")).build(),
+					Records.builder().entry(Keys.of("name"), Values.ofText("bob")).entry(Keys.of("note"), Values.ofText("say \"hi\"\nagain")).build(),
+					Records.builder().entry(Keys.of("name"), Values.ofText("carol")).entry(Keys.of("note"), Values.ofText("plain")).build());
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void quoteInsideUnquotedFieldInParallelChunks() throws IOException {
+			// Given
+			Path file = temporaryFolder.newFile("data.csv");
+			Files.writeString(file, "name,note\nalice,5\" tall\nbob,\"x\ny\"\ncarol,z\n", StandardCharsets.UTF_8);
+			sut.setChunkSize(1);
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--parallel", "2", file.toAbsolutePath().toString()), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).should(times(3)).send(records.capture());
+			assertThat(records.getAllValues()).containsExactly(
+					Records.builder().entry(Keys.of("name"), Values.ofText("alice")).entry(Keys.of("note"), Values.ofText("5\" tall")).build(),
+					Records.builder().entry(Keys.of("name"), Values.ofText("bob")).entry(Keys.of("note"), Values.ofText("x\ny")).build(),
+					Records.builder().entry(Keys.of("name"), Values.ofText("carol")).entry(Keys.of("note"), Values.ofText("z")).build());
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void differentFieldCountIsReported() throws IOException {
+			// Given
+			Path file = temporaryFolder.newFile("data.csv");
+			Files.writeString(file, "name,age\nalice,30,extra\nbob\ncarol,25\n", StandardCharsets.UTF_8);
+			// When
+			ExitStatus result = sut.run(CommandArguments.of(file.toAbsolutePath().toString()), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).should().send(Records.builder().entry(Keys.of("name"), Values.ofText("carol")).entry(Keys.of("age"), Values.ofText("25")).build());
+			then(out).shouldHaveNoMoreInteractions();
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("line 2: expected 2 fields, found 3")));
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("line 3: expected 2 fields, found 1")));
+		}
+
+		@Test
+		void compressedFile() throws IOException {
+			// Given
+			Path file = temporaryFolder.toPath().resolve("data.csv.gz");
+			try (OutputStream output = new GZIPOutputStream(Files.newOutputStream(file))) {
+				output.write("name,age\nalice,30\n".getBytes(StandardCharsets.UTF_8));
+			}
+			// When
+			ExitStatus result = sut.run(CommandArguments.of(file.toAbsolutePath().toString()), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).should().send(Records.builder()
+					.entry(Keys.of("name"), Values.ofText("alice"))
+					.entry(Keys.of("age"), Values.ofText("30"))
+					.build());
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void inferTypes() throws IOException {
+			// Given
+			Path file = temporaryFolder.newFile("data.csv");
+			Files.writeString(file, """
+					name,count,size,created
+					alice,30,1KB,2020-01-02T03:04:05Z
+					bob,,1.5 MB,2021-01-02T03:04:05Z
+					""", StandardCharsets.UTF_8);
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--infer", file.toAbsolutePath().toString()), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).should().send(Records.builder()
+					.entry(Keys.of("name"), Values.ofText("alice"))
+					.entry(Keys.of("count"), Values.ofNumeric(30))
+					.entry(Keys.of("size"), Values.ofSize(1024))
+					.entry(Keys.of("created"), Values.ofInstant(Instant.parse("2020-01-02T03:04:05Z")))
+					.build());
+			then(out).should().send(Records.builder()
+					.entry(Keys.of("name"), Values.ofText("bob"))
+					.entry(Keys.of("count"), Values.none())
+					.entry(Keys.of("size"), Values.ofSize(1536 * 1024))
+					.entry(Keys.of("created"), Values.ofInstant(Instant.parse("2021-01-02T03:04:05Z")))
+					.build());
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void inferMixedColumnAsText() throws IOException {
+			// Given
+			Path file = temporaryFolder.newFile("data.csv");
+			Files.writeString(file, """
+					id
+					1
+					x2
+					""", StandardCharsets.UTF_8);
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--infer", file.toAbsolutePath().toString()), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).should().send(Records.singleton(Keys.of("id"), Values.ofText("1")));
+			then(out).should().send(Records.singleton(Keys.of("id"), Values.ofText("x2")));
+			then(err).shouldHaveNoInteractions();
+		}
+
 		@Test
 		void relativePathResolvedAgainstCwd() throws IOException {
 			// Given
@@ -425,7 +598,7 @@ class FormatsModuleTest {
 			assertThat(result).isError();
 			then(in).shouldHaveNoInteractions();
 			then(out).shouldHaveNoInteractions();
-			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: to-json file")));
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: to-json [--pretty] file")));
 		}
 
 		@Test
@@ -438,7 +611,23 @@ class FormatsModuleTest {
 			assertThat(result).isError();
 			then(in).shouldHaveNoInteractions();
 			then(out).shouldHaveNoInteractions();
-			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: to-json file")));
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: to-json [--pretty] file")));
+		}
+
+		@Test
+		void compressedFile() throws IOException {
+			// Given
+			Path file = temporaryFolder.toPath().resolve("output.json.gz");
+			given(in.recv()).willReturn(Optional.of(Records.singleton(Keys.NAME, Values.ofText("alice"))), Optional.empty());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of(file.toAbsolutePath().toString()), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(out).shouldHaveNoInteractions();
+			then(err).shouldHaveNoInteractions();
+			try (InputStream input = new GZIPInputStream(Files.newInputStream(file))) {
+				assertThat(new String(input.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("[{\"name\":\"alice\"}]");
+			}
 		}
 
 		@Test
@@ -493,6 +682,48 @@ class FormatsModuleTest {
 			assertThat(Files.readString(file, StandardCharsets.UTF_8)).contains("\"name\"").contains("null");
 		}
 
+		@Test
+		void compactWithNativeTypes() throws IOException {
+			// Given
+			given(state.getCwd()).willReturn(temporaryFolder.toPath());
+			Record record = Records.builder()
+					.entry(Keys.of("name"), Values.ofText("alice"))
+					.entry(Keys.COUNT, Values.ofNumeric(30))
+					.entry(Keys.SIZE, Values.ofSize(2048))
+					.entry(Keys.TIMESTAMP, Values.ofInstant(Instant.parse("2020-01-02T03:04:05Z")))
+					.entry(Keys.DURATION, Values.ofDuration(Duration.ofMillis(1500)))
+					.build();
+			given(in.recv())
+					.willReturn(Optional.of(record))
+					.willReturn(Optional.empty());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("output.json"), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(out).shouldHaveNoInteractions();
+			then(err).shouldHaveNoInteractions();
+			assertThat(temporaryFolder.toPath().resolve("output.json"))
+					.hasContent("[{\"name\":\"alice\",\"count\":30,\"size\":2048,\"timestamp\":\"2020-01-02T03:04:05Z\",\"duration\":\"PT1.5S\"}]");
+		}
+
+		@Test
+		void pretty() throws IOException {
+			// Given
+			given(state.getCwd()).willReturn(temporaryFolder.toPath());
+			given(in.recv())
+					.willReturn(Optional.of(Records.singleton(Keys.of("name"), Values.ofText("alice"))))
+					.willReturn(Optional.empty());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--pretty", "output.json"), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(out).shouldHaveNoInteractions();
+			then(err).shouldHaveNoInteractions();
+			assertThat(Files.readAllLines(temporaryFolder.toPath().resolve("output.json"), StandardCharsets.UTF_8))
+					.hasSizeGreaterThan(1)
+					.anySatisfy(line -> assertThat(line).contains("\"name\"").contains("\"alice\""));
+		}
+
 		@Test
 		void relativePathResolvedAgainstCwd() {
 			// Given
@@ -508,6 +739,298 @@ class FormatsModuleTest {
 		}
 	}
 
+	@Nested
+	@ExtendWith(MockitoExtension.class)
+	class FromJsonLinesTest {
+
+		@RegisterExtension
+		final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+		@Mock(stubOnly = true)
+		State state;
+
+		@Mock
+		InputChannel in;
+
+		@Mock
+		OutputChannel out;
+
+		@Mock
+		OutputChannel err;
+
+		@Captor
+		ArgumentCaptor<Record> records;
+
+		FromJsonLines sut;
+
+		@BeforeEach
+		void createSut() {
+			sut = new FromJsonLines();
+			sut.setState(state);
+		}
+
+		@Test
+		void missingArg() {
+			// Given
+			// (no setup)
+			// When
+			ExitStatus result = sut.run(CommandArguments.of(), in, out, err);
+			// Then
+			assertThat(result).isError();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: from-jsonl [--parallel n] file")));
+		}
+
+		@Test
+		void invalidParallel() {
+			// Given
+			// (no setup)
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--parallel", "0", "data.jsonl"), in, out, err);
+			// Then
+			assertThat(result).isError();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("parallel must be >= 1")));
+		}
+
+		@Test
+		void fileNotFound() {
+			// Given
+			given(state.getCwd()).willReturn(temporaryFolder.toPath());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("missing.jsonl"), in, out, err);
+			// Then
+			assertThat(result).isError();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("file not found: " + temporaryFolder.toPath().resolve("missing.jsonl"))));
+		}
+
+		@Test
+		void objectPerLine() throws IOException {
+			// Given
+			given(state.getCwd()).willReturn(temporaryFolder.toPath());
+			Path file = temporaryFolder.newFile("data.jsonl");
+			Files.writeString(file, """
+					{"name":"alice","age":30}
+
+					{"name":"bob","age":25}
+					""", StandardCharsets.UTF_8);
+			// When
+			ExitStatus result = sut.run(CommandArguments.of(file.getFileName().toString()), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).should(times(2)).send(records.capture());
+			assertThat(records.getAllValues()).containsExactly(
+					Records.builder().entry(Keys.of("name"), Values.ofText("alice")).entry(Keys.of("age"), Values.ofNumeric(30)).build(),
+					Records.builder().entry(Keys.of("name"), Values.ofText("bob")).entry(Keys.of("age"), Values.ofNumeric(25)).build());
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void invalidLinesAreReported() throws IOException {
+			// Given
+			given(state.getCwd()).willReturn(temporaryFolder.toPath());
+			Path file = temporaryFolder.newFile("data.jsonl");
+			Files.writeString(file, """
+					{"name":"alice"}
+					not json
+					[1, 2]
+					{"name":"bob"}
+					""", StandardCharsets.UTF_8);
+			// When
+			ExitStatus result = sut.run(CommandArguments.of(file.getFileName().toString()), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).should().send(Records.singleton(Keys.of("name"), Values.ofText("alice")));
+			then(out).should().send(Records.singleton(Keys.of("name"), Values.ofText("bob")));
+			then(err).should().send(org.mockito.ArgumentMatchers.argThat(r -> r.value(Keys.ERROR).flatMap(v -> v.unwrap(String.class)).orElse("").startsWith("line 2: ")));
+			then(err).should().send(org.mockito.ArgumentMatchers.argThat(r -> r.value(Keys.ERROR).flatMap(v -> v.unwrap(String.class)).orElse("").startsWith("line 3: ")));
+		}
+
+		@Test
+		void errorKeyIsData() throws IOException {
+			// Given
+			given(state.getCwd()).willReturn(temporaryFolder.toPath());
+			Path file = temporaryFolder.newFile("app.jsonl");
+			Files.writeString(file, """
+					{"level":"warn","error":"timeout"}
+					""", StandardCharsets.UTF_8);
+			// When
+			ExitStatus result = sut.run(CommandArguments.of(file.getFileName().toString()), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).should().send(Records.builder().entry(Keys.of("level"), Values.ofText("warn")).entry(Keys.ERROR, Values.ofText("timeout")).build());
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void parallelHasSameOrderOfSequential() throws IOException {
+			// Given
+			given(state.getCwd()).willReturn(temporaryFolder.toPath());
+			Path file = temporaryFolder.newFile("data.jsonl");
+			StringBuilder content = new StringBuilder();
+			List<Record> expected = new ArrayList<>();
+			for (int i = 0; i < 10_000; i++) {
+				content.append("{\"id\":").append(i).append("}\n");
+				expected.add(Records.singleton(Keys.of("id"), Values.ofNumeric(i)));
+			}
+			Files.writeString(file, content, StandardCharsets.UTF_8);
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--parallel", "4", file.getFileName().toString()), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).should(times(10_000)).send(records.capture());
+			assertThat(records.getAllValues()).containsExactlyElementsOf(expected);
+			then(err).shouldHaveNoInteractions();
+		}
+	}
+
+	@Nested
+	@ExtendWith(MockitoExtension.class)
+	class ToJsonLinesTest {
+
+		@RegisterExtension
+		final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+		@Mock(stubOnly = true)
+		State state;
+
+		@Mock
+		InputChannel in;
+
+		@Mock
+		OutputChannel out;
+
+		@Mock
+		OutputChannel err;
+
+		ToJsonLines sut;
+
+		@BeforeEach
+		void createSut() {
+			sut = new ToJsonLines();
+			sut.setState(state);
+		}
+
+		@Test
+		void missingArg() {
+			// Given
+			// (no setup)
+			// When
+			ExitStatus result = sut.run(CommandArguments.of(), in, out, err);
+			// Then
+			assertThat(result).isError();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: to-jsonl file")));
+		}
+
+		@Test
+		void emptyStream() throws IOException {
+			// Given
+			given(state.getCwd()).willReturn(temporaryFolder.toPath());
+			given(in.recv()).willReturn(Optional.empty());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("output.jsonl"), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(out).shouldHaveNoInteractions();
+			then(err).shouldHaveNoInteractions();
+			assertThat(temporaryFolder.toPath().resolve("output.jsonl")).isEmptyFile();
+		}
+
+		@Test
+		void objectPerLine() throws IOException {
+			// Given
+			given(state.getCwd()).willReturn(temporaryFolder.toPath());
+			given(in.recv()).willReturn(
+					Optional.of(Records.builder().entry(Keys.of("name"), Values.ofText("alice")).entry(Keys.of("nick"), Values.none()).build()),
+					Optional.of(Records.singleton(Keys.of("name"), Values.ofText("bob"))),
+					Optional.empty());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("output.jsonl"), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(out).shouldHaveNoInteractions();
+			then(err).shouldHaveNoInteractions();
+			assertThat(temporaryFolder.toPath().resolve("output.jsonl")).hasContent("""
+					{"name":"alice","nick":null}
+					{"name":"bob"}
+					""");
+		}
+	}
+
+	@Nested
+	@ExtendWith(MockitoExtension.class)
+	class ParseJsonKeyTest {
+
+		@Mock
+		InputChannel in;
+
+		@Mock
+		OutputChannel out;
+
+		@Mock
+		OutputChannel err;
+
+		ParseJson sut;
+
+		@BeforeEach
+		void createSut() {
+			sut = new ParseJson();
+		}
+
+		@Test
+		void missingArg() {
+			// Given
+			// (no setup)
+			// When
+			ExitStatus result = sut.run(CommandArguments.of(), in, out, err);
+			// Then
+			assertThat(result).isError();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: parse-json key")));
+		}
+
+		@Test
+		void parseObject() {
+			// Given
+			given(in.recv()).willReturn(
+					Optional.of(Records.singleton(Keys.TEXT, Values.ofText("{\"level\":\"INFO\",\"took\":12}"))),
+					Optional.empty());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("text"), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(out).should().send(Records.builder().entry(Keys.of("level"), Values.ofText("INFO")).entry(Keys.of("took"), Values.ofNumeric(12)).build());
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void invalidJsonIsReported() {
+			// Given
+			given(in.recv()).willReturn(
+					Optional.of(Records.singleton(Keys.TEXT, Values.ofText("not json"))),
+					Optional.of(Records.singleton(Keys.TEXT, Values.ofText(""))),
+					Optional.of(Records.singleton(Keys.of("other"), Values.ofText("{}"))),
+					Optional.empty());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("text"), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(out).shouldHaveNoInteractions();
+			then(err).should().send(org.mockito.ArgumentMatchers.argThat(r -> r.value(Keys.ERROR).isPresent()));
+		}
+	}
+
 	@Nested
 	@ExtendWith(MockitoExtension.class)
 	class ToCsvTest {
@@ -651,6 +1174,12 @@ class FormatsModuleTest {
 	@ExtendWith(MockitoExtension.class)
 	class FromBase64Test {
 
+		@RegisterExtension
+		final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+		@Mock(stubOnly = true)
+		State state;
+
 		@Mock
 		InputChannel in;
 
@@ -665,6 +1194,7 @@ class FormatsModuleTest {
 		@BeforeEach
 		void createSut() {
 			sut = new FromBase64();
+			sut.setState(state);
 		}
 
 		@Test
@@ -677,7 +1207,7 @@ class FormatsModuleTest {
 			assertThat(result).isError();
 			then(in).shouldHaveNoInteractions();
 			then(out).shouldHaveNoInteractions();
-			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: from-base64 key")));
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: from-base64 [--input file] [--output file] [key]")));
 		}
 
 		@Test
@@ -690,7 +1220,7 @@ class FormatsModuleTest {
 			assertThat(result).isError();
 			then(in).shouldHaveNoInteractions();
 			then(out).shouldHaveNoInteractions();
-			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: from-base64 key")));
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: from-base64 [--input file] [--output file] [key]")));
 		}
 
 		@Test
@@ -750,12 +1280,145 @@ class FormatsModuleTest {
 			then(out).should().send(Records.singleton(key, Values.ofText("Hello")));
 			then(out).should().send(Records.singleton(key, Values.ofText("World")));
 		}
+
+		@Test
+		void decodeBinaryAsBytes() {
+			// Given
+			hosh.spi.Key key = Keys.of("data");
+			hosh.spi.Record input = Records.singleton(key, Values.ofText("/wDA"));
+			given(in.recv()).willReturn(Optional.of(input)).willReturn(Optional.empty());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("data"), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(out).should().send(Records.singleton(key, Values.ofBytes(new byte[]{(byte) 0xff, 0x00, (byte) 0xc0})));
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void decodeRecordsIntoFile() throws IOException {
+			// Given
+			Path target = temporaryFolder.toPath().resolve("data.bin").toAbsolutePath();
+			hosh.spi.Key key = Keys.of("text");
+			given(in.recv()).willReturn(
+					Optional.of(Records.singleton(key, Values.ofText("/wDA"))),
+					Optional.of(Records.singleton(Keys.of("other"), Values.ofText("ignored"))),
+					Optional.of(Records.singleton(key, Values.ofText("SGk="))),
+					Optional.empty());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--output", target.toString(), "text"), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(out).shouldHaveNoInteractions();
+			then(err).shouldHaveNoInteractions();
+			assertThat(Files.readAllBytes(target)).containsExactly(0xff, 0x00, 0xc0, 'H', 'i');
+		}
+
+		@Test
+		void decodeFileIntoFile() throws IOException {
+			// Given
+			Path source = temporaryFolder.newFile("data.b64");
+			Files.writeString(source, "/wDA\nSGk=\n", StandardCharsets.US_ASCII);
+			Path target = temporaryFolder.toPath().resolve("data.bin").toAbsolutePath();
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--input", source.toAbsolutePath().toString(), "--output", target.toString()), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).shouldHaveNoInteractions();
+			assertThat(Files.readAllBytes(target)).containsExactly(0xff, 0x00, 0xc0, 'H', 'i');
+		}
+
+		@Test
+		void invalidBase64IntoFile() {
+			// Given
+			Path target = temporaryFolder.toPath().resolve("data.bin").toAbsolutePath();
+			given(in.recv()).willReturn(Optional.of(Records.singleton(Keys.TEXT, Values.ofText("!!!"))), Optional.empty());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--output", target.toString(), "text"), in, out, err);
+			// Then
+			assertThat(result).isError();
+			then(out).shouldHaveNoInteractions();
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("invalid base64: Illegal base64 character 0x21")));
+		}
+
+		@Test
+		void invalidBase64DeletesPartialFile() throws IOException {
+			// Given
+			Path source = temporaryFolder.newFile("data.b64");
+			Files.writeString(source, "SGVsbG8gV29y\nS\n", StandardCharsets.US_ASCII);
+			Path target = temporaryFolder.toPath().resolve("data.bin").toAbsolutePath();
+			Files.writeString(target, "previous content");
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--input", source.toAbsolutePath().toString(), "--output", target.toString()), in, out, err);
+			// Then
+			assertThat(result).isError();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("invalid base64: Base64 stream has one un-decoded dangling byte.")));
+			assertThat(target).doesNotExist();
+		}
+
+		@Test
+		void inputFailureIsNotInvalidBase64() {
+			// Given
+			Path target = temporaryFolder.toPath().resolve("data.bin").toAbsolutePath();
+			given(in.recv())
+					.willReturn(Optional.of(Records.singleton(Keys.TEXT, Values.ofText("SGVsbG8gV29y"))))
+					.willThrow(new IllegalStateException("simulated failure"));
+			// When / Then
+			assertThatThrownBy(() -> sut.run(CommandArguments.of("--output", target.toString(), "text"), in, out, err))
+					.isInstanceOf(IllegalStateException.class)
+					.hasMessage("simulated failure");
+			then(out).shouldHaveNoInteractions();
+			then(err).shouldHaveNoInteractions();
+			assertThat(target).doesNotExist();
+		}
+
+		@Test
+		void inputNotARegularFile() throws IOException {
+			// Given
+			Path source = temporaryFolder.newFolder("data.b64").toAbsolutePath();
+			Path missing = temporaryFolder.toPath().resolve("missing.b64").toAbsolutePath();
+			Path target = temporaryFolder.toPath().resolve("data.bin").toAbsolutePath();
+			// When
+			ExitStatus directory = sut.run(CommandArguments.of("--input", source.toString(), "--output", target.toString()), in, out, err);
+			ExitStatus notFound = sut.run(CommandArguments.of("--input", missing.toString(), "--output", target.toString()), in, out, err);
+			// Then
+			assertThat(directory).isError();
+			assertThat(notFound).isError();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("not a regular file: " + source)));
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("not a regular file: " + missing)));
+			assertThat(target).doesNotExist();
+		}
+
+		@Test
+		void inputWithoutOutput() {
+			// Given
+			// (no setup)
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--input", "data.b64"), in, out, err);
+			// Then
+			assertThat(result).isError();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: from-base64 [--input file] [--output file] [key]")));
+		}
 	}
 
 	@Nested
 	@ExtendWith(MockitoExtension.class)
 	class ToBase64Test {
 
+		@RegisterExtension
+		final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+		@Mock(stubOnly = true)
+		State state;
+
 		@Mock
 		InputChannel in;
 
@@ -770,6 +1433,7 @@ class FormatsModuleTest {
 		@BeforeEach
 		void createSut() {
 			sut = new ToBase64();
+			sut.setState(state);
 		}
 
 		@Test
@@ -782,7 +1446,7 @@ class FormatsModuleTest {
 			assertThat(result).isError();
 			then(in).shouldHaveNoInteractions();
 			then(out).shouldHaveNoInteractions();
-			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: to-base64 key")));
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: to-base64 [--input file] [--output file] [key]")));
 		}
 
 		@Test
@@ -795,7 +1459,7 @@ class FormatsModuleTest {
 			assertThat(result).isError();
 			then(in).shouldHaveNoInteractions();
 			then(out).shouldHaveNoInteractions();
-			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: to-base64 key")));
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: to-base64 [--input file] [--output file] [key]")));
 		}
 
 		@Test
@@ -839,6 +1503,51 @@ class FormatsModuleTest {
 			then(out).should().send(Records.singleton(key, Values.ofText("V29ybGQ=")));
 		}
 
+		@Test
+		void encodeBytes() {
+			// Given
+			hosh.spi.Key key = Keys.of("data");
+			hosh.spi.Record input = Records.singleton(key, Values.ofBytes(new byte[]{(byte) 0xff, 0x00, (byte) 0xc0}));
+			given(in.recv()).willReturn(Optional.of(input)).willReturn(Optional.empty());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("data"), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(out).should().send(Records.singleton(key, Values.ofText("/wDA")));
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void encodeFileAsLines() throws IOException {
+			// Given
+			Path source = temporaryFolder.newFile("data.bin");
+			Files.write(source, new byte[100]);
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--input", source.toAbsolutePath().toString()), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).should().send(Records.singleton(Keys.TEXT, Values.ofText("A".repeat(76))));
+			then(out).should().send(Records.singleton(Keys.TEXT, Values.ofText("A".repeat(58) + "==")));
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void encodeFileIntoFile() throws IOException {
+			// Given
+			Path source = temporaryFolder.newFile("data.bin");
+			Files.write(source, new byte[]{(byte) 0xff, 0x00, (byte) 0xc0, 'H', 'i'});
+			Path target = temporaryFolder.toPath().resolve("data.b64").toAbsolutePath();
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--input", source.toAbsolutePath().toString(), "--output", target.toString()), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).shouldHaveNoInteractions();
+			assertThat(Files.readString(target, StandardCharsets.US_ASCII)).isEqualTo("/wDASGk=");
+		}
+
 		@Test
 		void encodeSpecialCharacters() {
 			// Given
@@ -35,30 +35,74 @@ import hosh.doc.Examples;
 import hosh.spi.Command;
 import hosh.spi.CommandArguments;
 import hosh.spi.CommandName;
+import hosh.spi.CommandOptions;
 import hosh.spi.CommandRegistry;
 import hosh.spi.Errors;
 import hosh.spi.ExitStatus;
 import hosh.spi.InputChannel;
+import hosh.spi.Key;
 import hosh.spi.Keys;
 import hosh.spi.Module;
 import hosh.spi.OutputChannel;
+import hosh.spi.Record;
 import hosh.spi.Records;
 import hosh.spi.State;
 import hosh.spi.StateAware;
 import hosh.spi.Value;
 import hosh.spi.Values;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardOpenOption;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 public class ParquetModule implements Module {
 
@@ -68,13 +112,32 @@ public class ParquetModule implements Module {
 		registry.registerCommand(CommandName.constant("to-parquet"), ToParquet::new);
 	}
 
-	@Description("read a Parquet file into records, one record per row")
+	@Description("read Parquet files into records, one record per row")
 	@Examples({
 			@Example(description = "read records from a Parquet file", command = "from-parquet data.parquet"),
 			@Example(description = "read and count records from a Parquet file", command = "from-parquet data.parquet | count"),
+			@Example(description = "read only 2 columns", command = "from-parquet --columns name,age data.parquet"),
+			@Example(description = "read only rows matching a regex", command = "from-parquet --filter 'name=a.*' data.parquet"),
+			@Example(description = "sum a column without creating a record per row", command = "from-parquet --aggregate sum:age data.parquet"),
+			@Example(description = "read all Parquet files of a partitioned dataset, 8 files at time", command = "from-parquet --parallel 8 /data/events"),
+			@Example(description = "read some files of a dataset as soon as rows are decoded", command = "from-parquet --unordered --include 'part-*.parquet' /data/events"),
 	})
 	public static class FromParquet implements Command, StateAware {
 
+		private static final String COLUMNS = "columns";
+
+		private static final String FILTER = "filter";
+
+		private static final String AGGREGATE = "aggregate";
+
+		private static final String PARALLEL = "parallel";
+
+		private static final String UNORDERED = "unordered";
+
+		private static final String INCLUDE = "include";
+
+		private static final Set<String> AGGREGATES = Set.of("count", "sum", "min", "max");
+
 		private State state;
 
 		@Override
@@ -84,38 +147,769 @@ public class ParquetModule implements Module {
 
 		@Override
 		public ExitStatus run(CommandArguments args, InputChannel in, OutputChannel out, OutputChannel err) {
-			if (args.size() != 1) {
-				err.send(Errors.usage("from-parquet file"));
+			Optional<CommandOptions> options = CommandOptions.parse(args, Set.of(UNORDERED), Set.of(COLUMNS, FILTER, AGGREGATE, PARALLEL, INCLUDE));
+			if (options.isEmpty() || options.get().arguments().isEmpty()) {
+				err.send(Errors.usage("from-parquet [--columns name,...] [--filter name=regex] [--aggregate count|sum:name|min:name|max:name] [--parallel n] [--unordered] [--include glob] file|directory..."));
+				return ExitStatus.error();
+			}
+			List<String> projection = options.get().getAll(COLUMNS).stream()
+					.flatMap(arg -> Arrays.stream(arg.asString().split(",")))
+					.toList();
+			List<String> filters = options.get().getAll(FILTER).stream().map(CommandArguments.CommandArgument::asString).toList();
+			for (String filter : filters) {
+				if (filter.indexOf('=') < 1) {
+					err.send(Errors.message("invalid filter: '%s' (expected name=regex)", filter));
+					return ExitStatus.error();
+				}
+			}
+			Optional<String> aggregateSpec = options.get().get(AGGREGATE).map(CommandArguments.CommandArgument::asString);
+			if (aggregateSpec.isPresent() && !isValidAggregate(aggregateSpec.get())) {
+				err.send(Errors.message("invalid aggregate: '%s' (expected count, sum:name, min:name or max:name)", aggregateSpec.get()));
 				return ExitStatus.error();
 			}
-			Path source = args.get(0).asPath(state);
-			if (!Files.exists(source)) {
-				err.send(Errors.message("file not found: %s", source));
+			OptionalInt parallelism = options.get().positiveInt(PARALLEL, Runtime.getRuntime().availableProcessors(), err);
+			if (parallelism.isEmpty()) {
 				return ExitStatus.error();
 			}
-			if (!Files.isRegularFile(source)) {
-				err.send(Errors.message("not a regular file: %s", source));
+			Query query = new Query(projection, filters, aggregateSpec);
+			String include = options.get().get(INCLUDE).map(CommandArguments.CommandArgument::asString).orElse("*.parquet");
+			List<Path> files = new ArrayList<>();
+			for (CommandArguments.CommandArgument arg : options.get().arguments()) {
+				Path source = arg.asPath(state);
+				if (!Files.exists(source)) {
+					err.send(Errors.message("file not found: %s", source));
+					return ExitStatus.error();
+				}
+				if (Files.isDirectory(source)) {
+					files.addAll(datasetFiles(source, include));
+				} else if (Files.isRegularFile(source)) {
+					files.add(source);
+				} else {
+					err.send(Errors.message("not a regular file: %s", source));
+					return ExitStatus.error();
+				}
+			}
+			try {
+				Optional<Aggregate> result;
+				if (files.size() == 1 && !options.get().has(PARALLEL) && !options.get().has(UNORDERED)) {
+					result = read(files.getFirst(), query, out::send);
+				} else {
+					result = new ParallelReader(query, parallelism.getAsInt(), out).read(files, !options.get().has(UNORDERED));
+				}
+				// an empty directory still produces the aggregate, e.g. a count of 0
+				query.aggregate().ifPresent(spec -> out.send(result.orElseGet(() -> aggregate(spec)).result()));
+				return ExitStatus.success();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
 				return ExitStatus.error();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		// the files of a partitioned dataset (e.g. year=2026/month=01/part-0.parquet) in path order
+		private List<Path> datasetFiles(Path directory, String glob) {
+			PathMatcher include = directory.getFileSystem().getPathMatcher("glob:" + glob);
+			try (Stream<Path> paths = Files.walk(directory)) {
+				return paths
+						.filter(path -> Files.isRegularFile(path) && include.matches(path.getFileName()))
+						.sorted()
+						.toList();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private record Query(List<String> projection, List<String> filters, Optional<String> aggregate) {
+		}
+
+		// reads one file, sending the rows or returning the aggregate of them
+		private Optional<Aggregate> read(Path source, Query query, Consumer<Record> sink) throws IOException {
+			try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+				Optional<Scan> scan = ParquetFooter.read(channel).flatMap(footer -> scan(footer, query));
+				if (scan.isPresent()) {
+					return read(channel, scan.get(), query, sink);
+				}
+			}
+			return readRows(source, query, sink);
+		}
+
+		// reads a part of a dataset, i.e. a row group or a whole file not readable by ColumnChunkReader
+		private Optional<Aggregate> read(Part part, Query query, Consumer<Record> sink) throws IOException {
+			if (part.scan().isEmpty()) {
+				return readRows(part.file(), query, sink);
+			}
+			try (FileChannel channel = FileChannel.open(part.file(), StandardOpenOption.READ)) {
+				return read(channel, part.scan().get(), query, sink);
+			}
+		}
+
+		private Optional<Aggregate> read(FileChannel channel, Scan scan, Query query, Consumer<Record> sink) throws IOException {
+			Optional<Aggregate> aggregate = query.aggregate().map(this::aggregate);
+			for (RowGroup rowGroup : scan.rowGroups()) {
+				read(channel, scan, rowGroup, aggregate, sink);
+			}
+			return aggregate;
+		}
+
+		// one part for each row group to read, the whole file when it is read row by row
+		private List<Part> parts(Path source, Query query) throws IOException {
+			try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+				Optional<Scan> scan = ParquetFooter.read(channel).flatMap(footer -> scan(footer, query));
+				if (scan.isPresent()) {
+					return scan.get().rowGroups().stream()
+							.map(rowGroup -> new Part(source, Optional.of(scan.get().only(rowGroup))))
+							.toList();
+				}
+			}
+			return List.of(new Part(source, Optional.empty()));
+		}
+
+		private record Part(Path file, Optional<Scan> scan) {
+		}
+
+		// the columns and the row groups to read by ColumnChunkReader, empty if some needed column cannot be decoded
+		private Optional<Scan> scan(ParquetFooter footer, Query query) {
+			Map<String, ColumnDescriptor> byName = new HashMap<>();
+			for (ColumnDescriptor column : footer.columns()) {
+				byName.put(column.name(), column);
+			}
+			List<ColumnDescriptor> columns = query.projection().isEmpty() ? footer.columns() : query.projection().stream()
+					.filter(byName::containsKey) // like 'select', missing keys are skipped
+					.map(byName::get)
+					.toList();
+			List<Key> keys = columns.stream().map(column -> Keys.of(column.name())).toList();
+			Optional<ColumnDescriptor> aggregated = query.aggregate().flatMap(FromParquet::aggregatedColumn)
+					.flatMap(name -> columns.stream().filter(column -> column.name().equals(name)).findFirst());
+			List<ColumnFilter> filters = new ArrayList<>();
+			for (String filter : query.filters()) {
+				int separator = filter.indexOf('=');
+				ColumnDescriptor column = byName.get(filter.substring(0, separator));
+				if (column == null) {
+					return Optional.of(new Scan(columns, keys, aggregated, List.of(), List.of())); // like 'filter', no record has the key
+				}
+				filters.add(new ColumnFilter(column, Pattern.compile(filter.substring(separator + 1))));
+			}
+			// an aggregate needs just its column, not the whole projection
+			List<ColumnDescriptor> needed = Stream.concat(filters.stream().map(ColumnFilter::column), query.aggregate().isPresent() ? aggregated.stream() : columns.stream())
+					.distinct()
+					.toList();
+			if (!footer.canRead(needed)) {
+				return Optional.empty();
+			}
+			List<RowGroup> rowGroups = footer.rowGroups().stream()
+					.filter(rowGroup -> rowGroup.rows() > 0 && filters.stream().noneMatch(filter -> filter.excludes(rowGroup)))
+					.toList();
+			return Optional.of(new Scan(columns, keys, aggregated, filters, rowGroups));
+		}
+
+		private record Scan(List<ColumnDescriptor> columns, List<Key> keys, Optional<ColumnDescriptor> aggregated,
+							List<ColumnFilter> filters, List<RowGroup> rowGroups) {
+
+			public Scan only(RowGroup rowGroup) {
+				return new Scan(columns, keys, aggregated, filters, List.of(rowGroup));
+			}
+		}
+
+		// Decodes the columns of the filters first, the other columns only when some rows are matching.
+		// The aggregate gets the matching rows at once, with just its column decoded (nothing at all for count).
+		private void read(FileChannel channel, Scan scan, RowGroup rowGroup, Optional<Aggregate> aggregate, Consumer<Record> sink) throws IOException {
+			Map<ColumnDescriptor, ColumnVector> vectors = new HashMap<>();
+			BitSet selected = new BitSet();
+			selected.set(0, (int) rowGroup.rows());
+			for (ColumnFilter filter : scan.filters()) {
+				ColumnVector vector = decode(channel, filter.column(), rowGroup, vectors);
+				Matcher matcher = filter.pattern().matcher("");
+				for (int row = selected.nextSetBit(0); row >= 0; row = selected.nextSetBit(row + 1)) {
+					Optional<String> text = vector.value(row).unwrap(String.class);
+					if (text.isEmpty() || !matcher.reset(text.get()).matches()) {
+						selected.clear(row);
+					}
+				}
+			}
+			if (selected.isEmpty()) {
+				return;
+			}
+			if (aggregate.isPresent()) {
+				Optional<ColumnVector> column = Optional.empty();
+				if (scan.aggregated().isPresent()) {
+					column = Optional.of(decode(channel, scan.aggregated().get(), rowGroup, vectors));
+				}
+				aggregate.get().accept(column, selected);
+				return;
+			}
+			List<ColumnVector> columns = new ArrayList<>();
+			for (ColumnDescriptor column : scan.columns()) {
+				columns.add(decode(channel, column, rowGroup, vectors));
+			}
+			for (int row = selected.nextSetBit(0); row >= 0; row = selected.nextSetBit(row + 1)) {
+				Records.Builder builder = Records.builder();
+				for (int i = 0; i < columns.size(); i++) {
+					builder.entry(scan.keys().get(i), columns.get(i).value(row));
+				}
+				sink.accept(builder.build());
+			}
+		}
+
+		// each column chunk is decoded at most once
+		private ColumnVector decode(FileChannel channel, ColumnDescriptor column, RowGroup rowGroup, Map<ColumnDescriptor, ColumnVector> vectors) throws IOException {
+			ColumnVector vector = vectors.get(column);
+			if (vector == null) {
+				vector = ColumnChunkReader.read(channel, column, rowGroup);
+				vectors.put(column, vector);
+			}
+			return vector;
+		}
+
+		// Column and regex of a filter, with the same semantic of 'filter name regex' on the record.
+		// A row group is skipped when the statistics of its chunk tell that no value can match: only nulls,
+		// values that are never a text (instants and bytes), texts not starting with the literal prefix of
+		// the regex and numbers different from the regex (when it is just a number).
+		private record ColumnFilter(ColumnDescriptor column, Pattern pattern) {
+
+			private static final Pattern NUMBER = Pattern.compile("-?[0-9]+");
+
+			private static final String METACHARACTERS = "\\[](){}.*+?^$|";
+
+			public boolean excludes(RowGroup rowGroup) {
+				ThriftStruct statistics = rowGroup.chunks().get(column.index()).statistics();
+				if (statistics.has(3) && statistics.i64(3) >= rowGroup.rows()) { // null_count
+					return true;
+				}
+				return switch (column.kind().orElseThrow()) {
+					case TIMESTAMP_MILLIS, TIMESTAMP_MICROS, TIMESTAMP_NANOS, BYTES -> true;
+					case TEXT -> column.typeDefinedOrder() && excludesText(statistics);
+					case LONG -> column.typeDefinedOrder() && excludesNumber(statistics);
+					default -> false;
+				};
+			}
+
+			// min_value and max_value are compared as unsigned bytes
+			private boolean excludesText(ThriftStruct statistics) {
+				byte[] prefix = literalPrefix(pattern.pattern()).getBytes(StandardCharsets.UTF_8);
+				if (prefix.length == 0) {
+					return false;
+				}
+				Optional<byte[]> max = statistics.binary(5);
+				if (max.isPresent() && Arrays.compareUnsigned(max.get(), prefix) < 0) {
+					return true;
+				}
+				Optional<byte[]> min = statistics.binary(6);
+				return min.isPresent() && Arrays.compareUnsigned(min.get(), 0, Math.min(min.get().length, prefix.length), prefix, 0, prefix.length) > 0;
+			}
+
+			private boolean excludesNumber(ThriftStruct statistics) {
+				String regex = pattern.pattern();
+				if (!NUMBER.matcher(regex).matches()) {
+					return false;
+				}
+				long number;
+				try {
+					number = Long.parseLong(regex);
+				} catch (NumberFormatException e) { // too big for a long
+					return true;
+				}
+				if (!Long.toString(number).equals(regex)) { // i.e. leading zeros
+					return true;
+				}
+				Optional<Long> max = statistics.binary(5).map(ColumnFilter::signed);
+				Optional<Long> min = statistics.binary(6).map(ColumnFilter::signed);
+				return max.isPresent() && number > max.get() || min.isPresent() && number < min.get();
+			}
+
+			// little endian INT32 or INT64
+			private static long signed(byte[] value) {
+				ByteBuffer buffer = ByteBuffer.wrap(value).order(ByteOrder.LITTLE_ENDIAN);
+				return value.length == 4 ? buffer.getInt() : buffer.getLong();
+			}
+
+			// the text matched by the regex before its first metacharacter, nothing when there are alternatives
+			private static String literalPrefix(String regex) {
+				if (regex.indexOf('|') >= 0) {
+					return "";
+				}
+				int end = 0;
+				while (end < regex.length() && METACHARACTERS.indexOf(regex.charAt(end)) < 0) {
+					end++;
+				}
+				if (end > 0 && end < regex.length() && "?*{".indexOf(regex.charAt(end)) >= 0) {
+					end = regex.offsetByCodePoints(end, -1); // the last character is optional
+				}
+				return regex.substring(0, end);
 			}
+		}
+
+		// reads one file row by row with hardwood, when it cannot be read by ColumnChunkReader
+		private Optional<Aggregate> readRows(Path source, Query query, Consumer<Record> sink) throws IOException {
 			try (InputFile inputFile = InputFile.of(source);
 				 ParquetFileReader fileReader = ParquetFileReader.open(inputFile)) {
 				FileSchema schema = fileReader.getFileSchema();
-				List<ColumnSchema> columns = schema.getColumns();
+				Map<String, ColumnSchema> byName = new HashMap<>();
+				for (ColumnSchema col : schema.getColumns()) {
+					byName.put(col.name(), col);
+				}
+				List<ColumnSchema> columns = query.projection().isEmpty() ? schema.getColumns() : query.projection().stream()
+						.filter(byName::containsKey) // like 'select', missing keys are skipped
+						.map(byName::get)
+						.toList();
+				List<Key> keys = columns.stream().map(col -> Keys.of(col.name())).toList();
+				Optional<Aggregate> aggregate = query.aggregate().map(this::aggregate);
+				Optional<ColumnSchema> aggregated = query.aggregate().flatMap(FromParquet::aggregatedColumn)
+						.flatMap(name -> columns.stream().filter(col -> col.name().equals(name)).findFirst());
+				List<RowFilter> rowFilters = new ArrayList<>();
+				for (String filter : query.filters()) {
+					int separator = filter.indexOf('=');
+					ColumnSchema col = byName.get(filter.substring(0, separator));
+					if (col == null) {
+						return aggregate; // like 'filter', no record has the key
+					}
+					rowFilters.add(new RowFilter(col, Pattern.compile(filter.substring(separator + 1)).matcher("")));
+				}
 				try (RowReader rowReader = fileReader.rowReader()) {
 					while (rowReader.hasNext()) {
 						rowReader.next();
+						if (!matches(rowReader, rowFilters)) {
+							continue; // other columns not converted at all
+						}
+						if (aggregate.isPresent()) {
+							aggregate.get().accept(rowReader, aggregated);
+							continue;
+						}
 						Records.Builder builder = Records.builder();
-						for (ColumnSchema col : columns) {
-							int idx = col.columnIndex();
-							Value value = rowReader.isNull(idx) ? Values.none() : toValue(col, rowReader.getValue(idx));
-							builder.entry(Keys.of(col.name()), value);
+						for (int i = 0; i < columns.size(); i++) {
+							builder.entry(keys.get(i), value(rowReader, columns.get(i)));
 						}
-						out.send(builder.build());
+						sink.accept(builder.build());
 					}
 				}
-				return ExitStatus.success();
-			} catch (IOException e) {
-				throw new UncheckedIOException(e);
+				return aggregate;
+			}
+		}
+
+		// same semantic of 'filter name regex' on the record
+		private boolean matches(RowReader rowReader, List<RowFilter> rowFilters) {
+			for (RowFilter rowFilter : rowFilters) {
+				Optional<String> text = value(rowReader, rowFilter.column()).unwrap(String.class);
+				if (text.isEmpty() || !rowFilter.matcher().reset(text.get()).matches()) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private Value value(RowReader rowReader, ColumnSchema col) {
+			int idx = col.columnIndex();
+			return rowReader.isNull(idx) ? Values.none() : toValue(col, rowReader.getValue(idx));
+		}
+
+		private record RowFilter(ColumnSchema column, Matcher matcher) {
+		}
+
+		// Reads the row groups of many files concurrently, each one by a virtual thread, at most 'parallelism' at time;
+		// a file not readable by ColumnChunkReader is read row by row as a single part.
+		// The calling thread reads the footers while submitting the parts.
+		// In ordered mode at most 'parallelism' parts are read ahead, each one buffering at most
+		// QUEUED_BATCHES batches of rows, and the calling thread sends them part after part;
+		// in unordered mode each batch is sent as soon as it is decoded.
+		// Aggregates of the parts are combined in file order.
+		private final class ParallelReader {
+
+			private static final int BATCH_SIZE = 1024;
+
+			private static final int QUEUED_BATCHES = 4;
+
+			private static final List<Record> END = List.of(); // batches are never empty
+
+			private final Query query;
+
+			private final int parallelism;
+
+			private final Semaphore permits;
+
+			private final Lock sendLock = new ReentrantLock();
+
+			private final OutputChannel out;
+
+			public ParallelReader(Query query, int parallelism, OutputChannel out) {
+				this.query = query;
+				this.parallelism = parallelism;
+				this.permits = new Semaphore(parallelism);
+				this.out = out;
+			}
+
+			public Optional<Aggregate> read(List<Path> files, boolean ordered) throws IOException, InterruptedException {
+				try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+					try {
+						int window = ordered ? parallelism : Integer.MAX_VALUE;
+						Deque<Task> pending = new ArrayDeque<>();
+						Optional<Aggregate> result = Optional.empty();
+						for (Path file : files) {
+							for (Part part : parts(file, query)) {
+								pending.add(submit(part, ordered, executor));
+								if (pending.size() == window) {
+									result = combine(result, drain(pending.remove(), ordered));
+								}
+							}
+						}
+						while (!pending.isEmpty()) {
+							result = combine(result, drain(pending.remove(), ordered));
+						}
+						return result;
+					} catch (IOException | InterruptedException | RuntimeException e) {
+						executor.shutdownNow(); // readers blocked on a full queue are not waiting forever
+						throw e;
+					}
+				}
+			}
+
+			private Task submit(Part part, boolean ordered, ExecutorService executor) {
+				BlockingQueue<List<Record>> batches = new ArrayBlockingQueue<>(QUEUED_BATCHES);
+				CompletableFuture<Optional<Aggregate>> result = CompletableFuture.supplyAsync(() -> {
+					permits.acquireUninterruptibly();
+					List<Record> batch = new ArrayList<>(BATCH_SIZE);
+					try {
+						Optional<Aggregate> aggregate = FromParquet.this.read(part, query, record -> {
+							batch.add(record);
+							if (batch.size() == BATCH_SIZE) {
+								emit(batches, List.copyOf(batch), ordered);
+								batch.clear();
+							}
+						});
+						if (!batch.isEmpty()) {
+							emit(batches, List.copyOf(batch), ordered);
+						}
+						return aggregate;
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					} finally {
+						permits.release();
+						if (ordered) {
+							put(batches, END);
+						}
+					}
+				}, executor);
+				return new Task(batches, result);
+			}
+
+			private void emit(BlockingQueue<List<Record>> batches, List<Record> batch, boolean ordered) {
+				if (ordered) {
+					put(batches, batch);
+					return;
+				}
+				sendLock.lock();
+				try {
+					batch.forEach(out::send);
+				} finally {
+					sendLock.unlock();
+				}
+			}
+
+			// sends the rows of the part (only in ordered mode) then returns its aggregate
+			private Optional<Aggregate> drain(Task task, boolean ordered) throws IOException, InterruptedException {
+				if (ordered) {
+					for (List<Record> batch = task.batches().take(); !batch.isEmpty(); batch = task.batches().take()) {
+						batch.forEach(out::send);
+					}
+				}
+				return await(task.result());
+			}
+
+			private static Optional<Aggregate> combine(Optional<Aggregate> result, Optional<Aggregate> next) {
+				if (result.isEmpty()) {
+					return next;
+				}
+				next.ifPresent(aggregate -> result.get().combine(aggregate));
+				return result;
+			}
+
+			private static void put(BlockingQueue<List<Record>> batches, List<Record> batch) {
+				try {
+					batches.put(batch);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new CancellationException("interrupted");
+				}
+			}
+
+			private static <T> T await(CompletableFuture<T> future) throws IOException, InterruptedException {
+				try {
+					return future.get();
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof UncheckedIOException uncheckedIOException) {
+						throw uncheckedIOException.getCause();
+					}
+					if (e.getCause() instanceof RuntimeException runtimeException) {
+						throw runtimeException;
+					}
+					throw new IllegalStateException(e.getCause());
+				}
+			}
+
+			private record Task(BlockingQueue<List<Record>> batches, CompletableFuture<Optional<Aggregate>> result) {
+			}
+		}
+
+		private static boolean isValidAggregate(String spec) {
+			int separator = spec.indexOf(':');
+			String function = separator < 0 ? spec : spec.substring(0, separator);
+			if (!AGGREGATES.contains(function)) {
+				return false;
+			}
+			return function.equals("count") ? separator < 0 : separator > 0 && separator < spec.length() - 1;
+		}
+
+		private Aggregate aggregate(String spec) {
+			if (spec.equals("count")) {
+				return new CountRows();
+			}
+			int separator = spec.indexOf(':');
+			String function = spec.substring(0, separator);
+			String name = spec.substring(separator + 1);
+			return switch (function) {
+				case "sum" -> new SumColumn(Keys.of(name));
+				case "min" -> new Extreme(Keys.of("min"), Values.Comparators.noneLast(Comparator.naturalOrder()), -1);
+				default -> new Extreme(Keys.of("max"), Values.Comparators.noneFirst(Comparator.naturalOrder()), 1);
+			};
+		}
+
+		// the aggregated column must be in the projection, otherwise it is missing like after 'select'
+		private static Optional<String> aggregatedColumn(String spec) {
+			int separator = spec.indexOf(':');
+			return separator < 0 ? Optional.empty() : Optional.of(spec.substring(separator + 1));
+		}
+
+		// Same output of 'count', 'sum', 'min' and 'max' on the records, computed while scanning the rows:
+		// no record is created and integer columns are accumulated as primitives.
+		// Row groups decoded by ColumnChunkReader are accepted at once: loops over the primitive arrays
+		// for integers (and instants for min and max), with a Value for each row only for the other columns.
+		// Aggregates of many files are combined like the records of the files were read one after the other.
+		private interface Aggregate {
+
+			// a row read by hardwood, the column is empty when not in the projection
+			void accept(RowReader rowReader, Optional<ColumnSchema> column);
+
+			// the rows of a row group matching the filters, the column is empty when not in the projection
+			void accept(Optional<ColumnVector> column, BitSet selected);
+
+			void combine(Aggregate other);
+
+			Record result();
+		}
+
+		private static final class CountRows implements Aggregate {
+
+			private long count = 0;
+
+			@Override
+			public void accept(RowReader rowReader, Optional<ColumnSchema> column) {
+				count += 1;
+			}
+
+			@Override
+			public void accept(Optional<ColumnVector> column, BitSet selected) {
+				count += selected.cardinality();
+			}
+
+			@Override
+			public void combine(Aggregate other) {
+				count += ((CountRows) other).count;
+			}
+
+			@Override
+			public Record result() {
+				return Records.singleton(Keys.COUNT, Values.ofNumeric(count));
+			}
+		}
+
+		private final class SumColumn implements Aggregate {
+
+			private final Key key;
+
+			// exactly the running result of 'sum', unless it is a number kept in total
+			private Optional<Value> result = Optional.empty();
+
+			private boolean numeric = false;
+
+			private long total = 0;
+
+			public SumColumn(Key key) {
+				this.key = key;
+			}
+
+			@Override
+			public void accept(RowReader rowReader, Optional<ColumnSchema> column) {
+				if (column.isEmpty()) {
+					return;
+				}
+				int idx = column.get().columnIndex();
+				if (rowReader.isNull(idx)) {
+					if (!numeric) { // otherwise a number merged with none is the same number
+						add(Values.none());
+					}
+					return;
+				}
+				Object obj = rowReader.getValue(idx);
+				switch (obj) {
+					case Long l -> addNumber(l);
+					case Integer i -> addNumber(i);
+					default -> add(toValue(column.get(), obj));
+				}
+			}
+
+			@Override
+			public void accept(Optional<ColumnVector> column, BitSet selected) {
+				if (column.isEmpty()) {
+					return;
+				}
+				ColumnVector vector = column.get();
+				boolean integers = vector.kind() == ColumnKind.LONG;
+				int row = selected.nextSetBit(0);
+				// row after row until the result is a number, then the remaining integers at once
+				for (; row >= 0 && !(integers && numeric); row = selected.nextSetBit(row + 1)) {
+					if (vector.isNull(row)) {
+						if (!numeric) {
+							add(Values.none());
+						}
+					} else if (integers) {
+						addNumber(vector.longAt(row));
+					} else {
+						add(vector.value(row));
+					}
+				}
+				if (row >= 0) {
+					total += vector.sum(selected, row);
+				}
+			}
+
+			@Override
+			public void combine(Aggregate other) {
+				SumColumn that = (SumColumn) other;
+				if (that.numeric) {
+					addNumber(that.total);
+				} else { // an empty result is skipped: 'sum' starts again after it
+					that.result.ifPresent(this::add);
+				}
+			}
+
+			private void addNumber(long number) {
+				if (numeric) {
+					total += number;
+				} else {
+					add(Values.ofNumeric(number));
+				}
+			}
+
+			private void add(Value value) {
+				if (numeric) {
+					result = Optional.of(Values.ofNumeric(total));
+					numeric = false;
+				}
+				if (result.isEmpty()) { // 'sum' starts again after values that cannot be merged
+					result = Optional.of(value);
+				} else {
+					result = result.flatMap(v -> v.merge(value));
+				}
+				Optional<Long> number = result.flatMap(v -> v.unwrap(Long.class));
+				if (number.isPresent()) {
+					total = number.get();
+					numeric = true;
+				}
+			}
+
+			@Override
+			public Record result() {
+				return Records.singleton(key, numeric ? Values.ofNumeric(total) : result.orElse(Values.none()));
+			}
+		}
+
+		// min (sign -1) or max (sign 1), nulls are never selected as in the comparators of 'min' and 'max'
+		private final class Extreme implements Aggregate {
+
+			private final Key key;
+
+			private final Comparator<Value> comparator;
+
+			private final int sign;
+
+			private Value best = Values.none();
+
+			private boolean numeric = false;
+
+			private long bestNumber = 0;
+
+			public Extreme(Key key, Comparator<Value> comparator, int sign) {
+				this.key = key;
+				this.comparator = comparator;
+				this.sign = sign;
+			}
+
+			@Override
+			public void accept(RowReader rowReader, Optional<ColumnSchema> column) {
+				if (column.isEmpty()) {
+					return;
+				}
+				int idx = column.get().columnIndex();
+				if (rowReader.isNull(idx)) {
+					return;
+				}
+				Object obj = rowReader.getValue(idx);
+				switch (obj) {
+					case Long l -> offerNumber(l);
+					case Integer i -> offerNumber(i);
+					default -> offer(toValue(column.get(), obj));
+				}
+			}
+
+			// integers and instants are compared as longs, offering only the extreme of the row group
+			@Override
+			public void accept(Optional<ColumnVector> column, BitSet selected) {
+				if (column.isEmpty()) {
+					return;
+				}
+				ColumnVector vector = column.get();
+				switch (vector.kind()) {
+					case LONG -> vector.extreme(selected, sign).ifPresent(row -> offerNumber(vector.longAt(row)));
+					case TIMESTAMP_MILLIS, TIMESTAMP_MICROS, TIMESTAMP_NANOS -> vector.extreme(selected, sign).ifPresent(row -> offer(vector.value(row)));
+					default -> {
+						for (int row = selected.nextSetBit(0); row >= 0; row = selected.nextSetBit(row + 1)) {
+							if (!vector.isNull(row)) {
+								offer(vector.value(row));
+							}
+						}
+					}
+				}
+			}
+
+			@Override
+			public void combine(Aggregate other) {
+				Extreme that = (Extreme) other;
+				if (that.numeric) {
+					offerNumber(that.bestNumber);
+				} else if (!Values.none().equals(that.best)) {
+					offer(that.best);
+				}
+			}
+
+			private void offerNumber(long number) {
+				if (numeric || Values.none().equals(best)) {
+					if (!numeric || Long.compare(number, bestNumber) * sign > 0) {
+						bestNumber = number;
+						numeric = true;
+					}
+				} else {
+					offer(Values.ofNumeric(number));
+				}
+			}
+
+			private void offer(Value current) {
+				Value previous = numeric ? Values.ofNumeric(bestNumber) : best;
+				best = comparator.compare(current, previous) * sign > 0 ? current : previous;
+				numeric = false;
+			}
+
+			@Override
+			public Record result() {
+				return Records.singleton(key, numeric ? Values.ofNumeric(bestNumber) : best);
 			}
 		}
 
@@ -139,15 +933,1384 @@ public class ParquetModule implements Module {
 		}
 	}
 
-	@Description("write a stream of records to a Parquet file")
+	@Description("write a stream of records to a Parquet file, with the schema inferred from the first records")
 	@Examples({
 			@Example(description = "save ls output to a Parquet file", command = "ls | to-parquet output.parquet"),
+			@Example(description = "save a big walk in row groups of 10000 rows, uncompressed", command = "walk . | to-parquet --row-group-size 10000 --compression none files.parquet"),
 	})
-	public static class ToParquet implements Command {
+	public static class ToParquet implements Command, StateAware {
+
+		private static final String ROW_GROUP_SIZE = "row-group-size";
+
+		private static final String COMPRESSION = "compression";
+
+		private State state;
+
+		@Override
+		public void setState(State state) {
+			this.state = state;
+		}
 
 		@Override
 		public ExitStatus run(CommandArguments args, InputChannel in, OutputChannel out, OutputChannel err) {
-			throw new UnsupportedOperationException("to-parquet: write support not yet available in hardwood");
+			Optional<CommandOptions> options = CommandOptions.parse(args, Set.of(), Set.of(ROW_GROUP_SIZE, COMPRESSION));
+			if (options.isEmpty() || options.get().arguments().size() != 1) {
+				err.send(Errors.usage("to-parquet [--row-group-size rows] [--compression gzip|none] file"));
+				return ExitStatus.error();
+			}
+			int rowGroupSize = ParquetWriter.DEFAULT_ROW_GROUP_SIZE;
+			Optional<CommandArguments.CommandArgument> rowGroupSizeArg = options.get().get(ROW_GROUP_SIZE);
+			if (rowGroupSizeArg.isPresent()) {
+				OptionalInt value = rowGroupSizeArg.get().asInt();
+				if (value.isEmpty() || value.getAsInt() < 1) {
+					err.send(Errors.message("%s must be a number >= 1: %s", ROW_GROUP_SIZE, rowGroupSizeArg.get().asString()));
+					return ExitStatus.error();
+				}
+				rowGroupSize = value.getAsInt();
+			}
+			String compression = options.get().get(COMPRESSION).map(CommandArguments.CommandArgument::asString).orElse("gzip");
+			Optional<Codec> codec = Codec.of(compression);
+			if (codec.isEmpty()) {
+				err.send(Errors.message("unsupported compression: %s", compression));
+				return ExitStatus.error();
+			}
+			Path target = options.get().arguments().get(0).asPath(state);
+			try {
+				ParquetWriter writer = new ParquetWriter(Files.newOutputStream(target), rowGroupSize, codec.get(), err);
+				boolean complete = false;
+				try {
+					try (writer) {
+						for (Record record : InputChannel.iterate(in)) {
+							writer.write(record);
+						}
+						writer.finish();
+					}
+					complete = true;
+					return ExitStatus.success();
+				} finally {
+					if (!complete) { // without a footer the file cannot be read at all
+						Files.deleteIfExists(target);
+					}
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	// CompressionCodec of parquet.thrift
+	private enum Codec {
+
+		UNCOMPRESSED(0) {
+			@Override
+			public byte[] compress(byte[] data) {
+				return data;
+			}
+
+			@Override
+			public byte[] decompress(byte[] data, int uncompressedSize) {
+				return data;
+			}
+		},
+
+		GZIP(2) {
+			@Override
+			public byte[] compress(byte[] data) throws IOException {
+				ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 4 + 64);
+				try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+					gzip.write(data);
+				}
+				return compressed.toByteArray();
+			}
+
+			@Override
+			public byte[] decompress(byte[] data, int uncompressedSize) throws IOException {
+				try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(data))) {
+					return gzip.readNBytes(uncompressedSize);
+				}
+			}
+		};
+
+		private final int id;
+
+		Codec(int id) {
+			this.id = id;
+		}
+
+		public abstract byte[] compress(byte[] data) throws IOException;
+
+		public abstract byte[] decompress(byte[] data, int uncompressedSize) throws IOException;
+
+		public static Optional<Codec> of(String name) {
+			return switch (name.toLowerCase(Locale.ROOT)) {
+				case "none" -> Optional.of(UNCOMPRESSED);
+				case "gzip" -> Optional.of(GZIP);
+				default -> Optional.empty();
+			};
+		}
+
+		public static Optional<Codec> byId(int id) {
+			return Arrays.stream(values()).filter(codec -> codec.id == id).findFirst();
+		}
+	}
+
+	// Physical and logical types written for hosh values, all columns are optional (i.e. nullable).
+	private enum ColumnType {
+
+		INT64(2, OptionalInt.empty()) {
+			@Override
+			public boolean accepts(Value value) {
+				return value.unwrap(Long.class).isPresent();
+			}
+
+			@Override
+			public void encode(Value value, ByteArrayOutputStream out, Statistics statistics) {
+				long number = value.unwrap(Long.class).orElseThrow();
+				writeLongLE(out, number);
+				statistics.update(number);
+			}
+		},
+
+		// converted type TIMESTAMP_MICROS
+		TIMESTAMP(2, OptionalInt.of(10)) {
+			@Override
+			public boolean accepts(Value value) {
+				return value.unwrap(Instant.class).isPresent();
+			}
+
+			@Override
+			public void encode(Value value, ByteArrayOutputStream out, Statistics statistics) {
+				Instant instant = value.unwrap(Instant.class).orElseThrow();
+				long micros = Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000L), instant.getNano() / 1_000);
+				writeLongLE(out, micros);
+				statistics.update(micros);
+			}
+
+			@Override
+			public void logicalType(ThriftWriter thrift) {
+				thrift.beginStruct(8); // TimestampType
+				thrift.bool(1, true); // isAdjustedToUTC
+				thrift.beginStruct(2); // unit
+				thrift.beginStruct(2); // MICROS
+				thrift.endStruct();
+				thrift.endStruct();
+				thrift.endStruct();
+			}
+		},
+
+		// converted type UTF8
+		STRING(6, OptionalInt.of(0)) {
+			@Override
+			public boolean accepts(Value value) {
+				return true;
+			}
+
+			@Override
+			public void encode(Value value, ByteArrayOutputStream out, Statistics statistics) {
+				byte[] bytes = text(value).getBytes(StandardCharsets.UTF_8);
+				writeIntLE(out, bytes.length);
+				out.writeBytes(bytes);
+				statistics.update(bytes);
+			}
+
+			@Override
+			public void logicalType(ThriftWriter thrift) {
+				thrift.beginStruct(1); // StringType
+				thrift.endStruct();
+			}
+
+			// the same file regardless of the locale, e.g. 1234567 and not 1.234.567
+			private static String text(Value value) {
+				return value.unwrap(String.class)
+						.or(() -> value.unwrap(Long.class).map(String::valueOf))
+						.orElseGet(() -> value.show(Locale.ROOT));
+			}
+		},
+
+		BINARY(6, OptionalInt.empty()) {
+			@Override
+			public boolean accepts(Value value) {
+				return value.unwrap(byte[].class).isPresent();
+			}
+
+			@Override
+			public void encode(Value value, ByteArrayOutputStream out, Statistics statistics) {
+				byte[] bytes = value.unwrap(byte[].class).orElseThrow();
+				writeIntLE(out, bytes.length);
+				out.writeBytes(bytes);
+				statistics.update(bytes);
+			}
+		};
+
+		// Type of parquet.thrift
+		private final int physicalType;
+
+		// ConvertedType of parquet.thrift, for older readers
+		private final OptionalInt convertedType;
+
+		ColumnType(int physicalType, OptionalInt convertedType) {
+			this.physicalType = physicalType;
+			this.convertedType = convertedType;
+		}
+
+		public abstract boolean accepts(Value value);
+
+		// PLAIN encoding, updating the min and max of the chunk
+		public abstract void encode(Value value, ByteArrayOutputStream out, Statistics statistics);
+
+		// field of the LogicalType union, only for types having a converted type too
+		public void logicalType(ThriftWriter thrift) {
+		}
+
+		// the type of the first value, unless values of other types follow (then they are all written as text)
+		public static ColumnType infer(List<Value> values) {
+			Optional<ColumnType> inferred = Optional.empty();
+			for (Value value : values) {
+				ColumnType type = Stream.of(INT64, TIMESTAMP, BINARY).filter(t -> t.accepts(value)).findFirst().orElse(STRING);
+				if (inferred.isPresent() && inferred.get() != type) {
+					return STRING;
+				}
+				inferred = Optional.of(type);
+			}
+			return inferred.orElse(STRING);
+		}
+	}
+
+	// Writes Parquet files (format version 1) buffering a row group at a time: each column chunk is a single
+	// data page (v1) with RLE definition levels and PLAIN values, compressed as a whole.
+	// The schema is inferred from the first row group: keys in order of first appearance, types from their values.
+	// Later values not matching the type of their column are written as null, later keys are ignored
+	// (both reported once).
+	// The last row group and the footer are written by finish, close just closes the stream: a failed write
+	// leaves a file without footer.
+	private static class ParquetWriter implements Closeable {
+
+		public static final int DEFAULT_ROW_GROUP_SIZE = 100_000;
+
+		private static final byte[] MAGIC = "PAR1".getBytes(StandardCharsets.US_ASCII);
+
+		private final OutputStream out;
+
+		private final int rowGroupSize;
+
+		private final Codec codec;
+
+		private final OutputChannel err;
+
+		private final List<Record> firstRows = new ArrayList<>();
+
+		private final Map<Key, ColumnBuffer> columns = new LinkedHashMap<>();
+
+		private final Set<Key> ignoredKeys = new HashSet<>();
+
+		private final List<RowGroupMetaData> rowGroups = new ArrayList<>();
+
+		private boolean schemaInferred = false;
+
+		private int rows = 0;
+
+		private long position = 0;
+
+		public ParquetWriter(OutputStream out, int rowGroupSize, Codec codec, OutputChannel err) throws IOException {
+			this.out = new BufferedOutputStream(out, 1024 * 1024);
+			this.rowGroupSize = rowGroupSize;
+			this.codec = codec;
+			this.err = err;
+			writeBytes(MAGIC);
+		}
+
+		public void write(Record record) throws IOException {
+			if (!schemaInferred) {
+				firstRows.add(record);
+				if (firstRows.size() == rowGroupSize) {
+					inferSchema();
+				}
+				return;
+			}
+			for (ColumnBuffer column : columns.values()) {
+				column.add(record.value(column.key()).orElse(Values.none()), err);
+			}
+			record.keys()
+					.filter(key -> !columns.containsKey(key) && ignoredKeys.add(key))
+					.forEach(key -> err.send(Errors.message("%s: not in the schema, ignored", key.name())));
+			rows++;
+			if (rows == rowGroupSize) {
+				writeRowGroup();
+			}
+		}
+
+		private void inferSchema() throws IOException {
+			Map<Key, List<Value>> samples = new LinkedHashMap<>();
+			for (Record record : firstRows) {
+				record.entries().forEach(entry -> {
+					List<Value> values = samples.computeIfAbsent(entry.key(), k -> new ArrayList<>());
+					if (!Values.none().equals(entry.value())) {
+						values.add(entry.value());
+					}
+				});
+			}
+			samples.forEach((key, values) -> columns.put(key, new ColumnBuffer(key, ColumnType.infer(values))));
+			schemaInferred = true;
+			for (Record record : firstRows) {
+				write(record);
+			}
+			firstRows.clear();
+		}
+
+		private void writeRowGroup() throws IOException {
+			List<ColumnChunkMetaData> chunks = new ArrayList<>();
+			for (ColumnBuffer column : columns.values()) {
+				byte[] page = column.page();
+				byte[] compressed = codec.compress(page);
+				ThriftWriter header = new ThriftWriter();
+				header.i32(1, 0); // DATA_PAGE
+				header.i32(2, page.length);
+				header.i32(3, compressed.length);
+				header.beginStruct(5); // DataPageHeader
+				header.i32(1, column.count());
+				header.i32(2, 0); // PLAIN
+				header.i32(3, 3); // RLE definition levels
+				header.i32(4, 3); // RLE repetition levels (none, max level is 0)
+				header.endStruct();
+				header.endStruct();
+				byte[] headerBytes = header.toByteArray();
+				long offset = position;
+				writeBytes(headerBytes);
+				writeBytes(compressed);
+				chunks.add(new ColumnChunkMetaData(column.key().name(), column.type(), column.count(), column.nullCount(),
+						column.statistics(), headerBytes.length + page.length, headerBytes.length + compressed.length, offset));
+				column.clear();
+			}
+			rowGroups.add(new RowGroupMetaData(chunks, rows));
+			rows = 0;
+		}
+
+		public void finish() throws IOException {
+			if (!schemaInferred) {
+				inferSchema();
+			}
+			if (rows > 0) {
+				writeRowGroup();
+			}
+			byte[] footer = footer();
+			writeBytes(footer);
+			ByteArrayOutputStream length = new ByteArrayOutputStream(4);
+			writeIntLE(length, footer.length);
+			writeBytes(length.toByteArray());
+			writeBytes(MAGIC);
+		}
+
+		@Override
+		public void close() throws IOException {
+			out.close();
+		}
+
+		// FileMetaData
+		private byte[] footer() {
+			ThriftWriter thrift = new ThriftWriter();
+			thrift.i32(1, 1); // version
+			thrift.beginList(2, ThriftWriter.STRUCT, columns.size() + 1); // schema, flattened depth-first
+			thrift.beginElement();
+			thrift.string(4, "schema");
+			thrift.i32(5, columns.size());
+			thrift.endStruct();
+			for (ColumnBuffer column : columns.values()) {
+				ColumnType type = column.type();
+				thrift.beginElement();
+				thrift.i32(1, type.physicalType);
+				thrift.i32(3, 1); // OPTIONAL
+				thrift.string(4, column.key().name());
+				if (type.convertedType.isPresent()) {
+					thrift.i32(6, type.convertedType.getAsInt());
+				}
+				if (type.convertedType.isPresent()) {
+					thrift.beginStruct(10);
+					type.logicalType(thrift);
+					thrift.endStruct();
+				}
+				thrift.endStruct();
+			}
+			thrift.i64(3, rowGroups.stream().mapToLong(RowGroupMetaData::rows).sum());
+			thrift.beginList(4, ThriftWriter.STRUCT, rowGroups.size());
+			for (RowGroupMetaData rowGroup : rowGroups) {
+				thrift.beginElement();
+				thrift.beginList(1, ThriftWriter.STRUCT, rowGroup.chunks().size());
+				for (ColumnChunkMetaData chunk : rowGroup.chunks()) {
+					thrift.beginElement();
+					thrift.i64(2, chunk.offset()); // file_offset
+					thrift.beginStruct(3); // ColumnMetaData
+					thrift.i32(1, chunk.type().physicalType);
+					thrift.beginList(2, ThriftWriter.I32, 2); // encodings
+					thrift.i32Element(0); // PLAIN
+					thrift.i32Element(3); // RLE
+					thrift.beginList(3, ThriftWriter.BINARY, 1); // path_in_schema
+					thrift.stringElement(chunk.name());
+					thrift.i32(4, codec.id);
+					thrift.i64(5, chunk.values());
+					thrift.i64(6, chunk.uncompressedSize());
+					thrift.i64(7, chunk.compressedSize());
+					thrift.i64(9, chunk.offset()); // data_page_offset
+					chunk.statistics().write(thrift, chunk.nulls());
+					thrift.endStruct();
+					thrift.endStruct();
+				}
+				thrift.i64(2, rowGroup.chunks().stream().mapToLong(ColumnChunkMetaData::uncompressedSize).sum()); // total_byte_size
+				thrift.i64(3, rowGroup.rows());
+				if (!rowGroup.chunks().isEmpty()) {
+					thrift.i64(5, rowGroup.chunks().getFirst().offset()); // file_offset
+				}
+				thrift.i64(6, rowGroup.chunks().stream().mapToLong(ColumnChunkMetaData::compressedSize).sum());
+				thrift.endStruct();
+			}
+			thrift.string(6, "hosh");
+			thrift.beginList(7, ThriftWriter.STRUCT, columns.size()); // column_orders, needed for min_value and max_value
+			for (int i = 0; i < columns.size(); i++) {
+				thrift.beginElement();
+				thrift.beginStruct(1); // TypeDefinedOrder: signed for INT64, unsigned bytes for BYTE_ARRAY
+				thrift.endStruct();
+				thrift.endStruct();
+			}
+			thrift.endStruct();
+			return thrift.toByteArray();
+		}
+
+		private void writeBytes(byte[] bytes) throws IOException {
+			out.write(bytes);
+			position += bytes.length;
+		}
+
+		private record RowGroupMetaData(List<ColumnChunkMetaData> chunks, long rows) {
+		}
+
+		private record ColumnChunkMetaData(String name, ColumnType type, long values, long nulls, Statistics statistics,
+										   long uncompressedSize, long compressedSize, long offset) {
+		}
+	}
+
+	// values of a column chunk, PLAIN encoded, and their definition levels (1 defined, 0 null)
+	private static class ColumnBuffer {
+
+		private final Key key;
+
+		private final ColumnType type;
+
+		private final ByteArrayOutputStream values = new ByteArrayOutputStream();
+
+		private final BitSet defined = new BitSet();
+
+		private int count = 0;
+
+		private int nullCount = 0;
+
+		private boolean mismatchReported = false;
+
+		private Statistics statistics = new Statistics();
+
+		public ColumnBuffer(Key key, ColumnType type) {
+			this.key = key;
+			this.type = type;
+		}
+
+		public Key key() {
+			return key;
+		}
+
+		public ColumnType type() {
+			return type;
+		}
+
+		public int count() {
+			return count;
+		}
+
+		public int nullCount() {
+			return nullCount;
+		}
+
+		public Statistics statistics() {
+			return statistics;
+		}
+
+		public void add(Value value, OutputChannel err) {
+			if (!Values.none().equals(value) && type.accepts(value) && tryEncode(value)) {
+				defined.set(count);
+			} else {
+				if (!Values.none().equals(value) && !mismatchReported) {
+					err.send(Errors.message("%s: not a %s value, written as null", key.name(), type.name().toLowerCase(Locale.ROOT)));
+					mismatchReported = true;
+				}
+				nullCount++;
+			}
+			count++;
+		}
+
+		private boolean tryEncode(Value value) {
+			try {
+				type.encode(value, values, statistics);
+				return true;
+			} catch (ArithmeticException e) { // i.e. instant overflowing microseconds, nothing written
+				return false;
+			}
+		}
+
+		// definition levels (RLE runs, with 4 bytes length) followed by values
+		public byte[] page() throws IOException {
+			ByteArrayOutputStream levels = new ByteArrayOutputStream();
+			int start = 0;
+			while (start < count) {
+				boolean isDefined = defined.get(start);
+				int end = isDefined ? defined.nextClearBit(start) : defined.nextSetBit(start);
+				if (end == -1 || end > count) {
+					end = count;
+				}
+				writeVarInt(levels, (long) (end - start) << 1); // RLE run header
+				levels.write(isDefined ? 1 : 0);
+				start = end;
+			}
+			ByteArrayOutputStream page = new ByteArrayOutputStream(4 + levels.size() + values.size());
+			writeIntLE(page, levels.size());
+			levels.writeTo(page);
+			values.writeTo(page);
+			return page.toByteArray();
+		}
+
+		public void clear() {
+			values.reset();
+			defined.clear();
+			count = 0;
+			nullCount = 0;
+			statistics = new Statistics();
+		}
+	}
+
+	// Min and max of the defined values of a column chunk: signed numbers for INT64 columns,
+	// unsigned bytes for BYTE_ARRAY ones (i.e. the TypeDefinedOrder of parquet.thrift).
+	// Byte arrays longer than MAX_BYTES are not kept whole: the min is truncated, still
+	// a lower bound, and the max is not written at all.
+	private static class Statistics {
+
+		private static final int MAX_BYTES = 64;
+
+		private boolean numeric = false;
+
+		private long minNumber = Long.MAX_VALUE;
+
+		private long maxNumber = Long.MIN_VALUE;
+
+		private byte[] minBytes = null;
+
+		private byte[] maxBytes = null;
+
+		public void update(long value) {
+			numeric = true;
+			minNumber = Math.min(minNumber, value);
+			maxNumber = Math.max(maxNumber, value);
+		}
+
+		public void update(byte[] value) {
+			if (minBytes == null || Arrays.compareUnsigned(value, minBytes) < 0) {
+				minBytes = value;
+			}
+			if (maxBytes == null || Arrays.compareUnsigned(value, maxBytes) > 0) {
+				maxBytes = value;
+			}
+		}
+
+		public void write(ThriftWriter thrift, long nulls) {
+			thrift.beginStruct(12);
+			if (numeric) { // the deprecated max and min too, for INT64 they have the same order
+				thrift.binary(1, littleEndian(maxNumber));
+				thrift.binary(2, littleEndian(minNumber));
+			}
+			thrift.i64(3, nulls);
+			if (numeric) {
+				thrift.binary(5, littleEndian(maxNumber)); // max_value
+				thrift.binary(6, littleEndian(minNumber)); // min_value
+			} else if (minBytes != null) {
+				if (maxBytes.length <= MAX_BYTES) {
+					thrift.binary(5, maxBytes);
+				}
+				thrift.binary(6, minBytes.length <= MAX_BYTES ? minBytes : Arrays.copyOf(minBytes, MAX_BYTES));
+				if (minBytes.length > MAX_BYTES) {
+					thrift.bool(8, false); // is_min_value_exact
+				}
+			}
+			thrift.endStruct();
+		}
+
+		private static byte[] littleEndian(long value) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(8);
+			writeLongLE(out, value);
+			return out.toByteArray();
+		}
+	}
+
+	// Thrift compact protocol, just what is needed by the metadata of Parquet
+	private static class ThriftWriter {
+
+		static final int I32 = 5;
+
+		static final int I64 = 6;
+
+		static final int BINARY = 8;
+
+		static final int LIST = 9;
+
+		static final int STRUCT = 12;
+
+		private static final int TRUE = 1;
+
+		private static final int FALSE = 2;
+
+		private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		// last field id of the enclosing structs
+		private final Deque<Integer> enclosing = new ArrayDeque<>();
+
+		private int lastFieldId = 0;
+
+		public void i32(int id, int value) {
+			field(id, I32);
+			writeVarInt(out, zigZag(value));
+		}
+
+		public void i64(int id, long value) {
+			field(id, I64);
+			writeVarInt(out, zigZag(value));
+		}
+
+		public void bool(int id, boolean value) {
+			field(id, value ? TRUE : FALSE);
+		}
+
+		public void string(int id, String value) {
+			field(id, BINARY);
+			writeString(value);
+		}
+
+		public void binary(int id, byte[] value) {
+			field(id, BINARY);
+			writeVarInt(out, value.length);
+			out.writeBytes(value);
+		}
+
+		public void beginStruct(int id) {
+			field(id, STRUCT);
+			enclosing.push(lastFieldId);
+			lastFieldId = 0;
+		}
+
+		public void endStruct() {
+			out.write(0); // STOP
+			if (!enclosing.isEmpty()) {
+				lastFieldId = enclosing.pop();
+			}
+		}
+
+		public void beginList(int id, int elementType, int size) {
+			field(id, LIST);
+			if (size < 15) {
+				out.write(size << 4 | elementType);
+			} else {
+				out.write(0xf0 | elementType);
+				writeVarInt(out, size);
+			}
+		}
+
+		// struct element of a list
+		public void beginElement() {
+			enclosing.push(lastFieldId);
+			lastFieldId = 0;
+		}
+
+		public void i32Element(int value) {
+			writeVarInt(out, zigZag(value));
+		}
+
+		public void stringElement(String value) {
+			writeString(value);
+		}
+
+		public byte[] toByteArray() {
+			return out.toByteArray();
+		}
+
+		private void field(int id, int type) {
+			int delta = id - lastFieldId;
+			if (delta > 0 && delta <= 15) {
+				out.write(delta << 4 | type);
+			} else {
+				out.write(type);
+				writeVarInt(out, zigZag(id));
+			}
+			lastFieldId = id;
+		}
+
+		private void writeString(String value) {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			writeVarInt(out, bytes.length);
+			out.writeBytes(bytes);
+		}
+
+		private static long zigZag(int value) {
+			return Integer.toUnsignedLong((value << 1) ^ (value >> 31));
+		}
+
+		private static long zigZag(long value) {
+			return (value << 1) ^ (value >> 63);
+		}
+	}
+
+	// Parquet files with a flat schema (no nested or repeated columns) are read without hardwood when the needed
+	// column chunks use the codecs and encodings decoded here: only those chunks are read from the file, page
+	// after page, into primitive arrays, and row groups are skipped by the statistics of the chunks.
+	// Other files (e.g. snappy or zstd pages, DELTA or BYTE_STREAM_SPLIT encodings, booleans) are read row by row
+	// by hardwood.
+
+	// FileMetaData of parquet.thrift, just what is needed to read the column chunks of a flat schema
+	private record ParquetFooter(List<ColumnDescriptor> columns, List<RowGroup> rowGroups) {
+
+		// empty when the schema is not flat
+		public static Optional<ParquetFooter> read(FileChannel channel) throws IOException {
+			long size = channel.size();
+			if (size < 12) {
+				throw new IOException("not a Parquet file");
+			}
+			ByteBuffer tail = readFully(channel, size - 8, 8);
+			if (!Arrays.equals(tail.array(), 4, 8, ParquetWriter.MAGIC, 0, 4)) {
+				throw new IOException("not a Parquet file");
+			}
+			int length = tail.getInt(0);
+			if (length < 0 || length > size - 12) {
+				throw new IOException("invalid Parquet footer");
+			}
+			ByteBuffer footer = readFully(channel, size - 8 - length, length);
+			try {
+				return parse(new ThriftReader(footer).readStruct());
+			} catch (RuntimeException e) { // i.e. truncated footer or fields of unexpected types
+				throw new IOException("invalid Parquet footer", e);
+			}
+		}
+
+		private static Optional<ParquetFooter> parse(ThriftStruct metadata) {
+			List<ThriftStruct> schema = metadata.structs(2);
+			if (schema.isEmpty() || schema.getFirst().i32(5, 0) != schema.size() - 1) {
+				return Optional.empty();
+			}
+			List<ThriftStruct> columnOrders = metadata.structs(7);
+			List<ColumnDescriptor> columns = new ArrayList<>();
+			for (ThriftStruct element : schema.subList(1, schema.size())) {
+				int repetition = element.i32(3, 0);
+				if (element.has(5) || repetition == 2) { // group or REPEATED
+					return Optional.empty();
+				}
+				int index = columns.size();
+				boolean typeDefinedOrder = index < columnOrders.size() && columnOrders.get(index).has(1);
+				columns.add(new ColumnDescriptor(element.string(4), index, element.i32(1), repetition == 1, ColumnKind.of(element), typeDefinedOrder));
+			}
+			List<RowGroup> rowGroups = new ArrayList<>();
+			for (ThriftStruct rowGroup : metadata.structs(4)) {
+				List<ColumnChunk> chunks = new ArrayList<>();
+				for (ThriftStruct chunk : rowGroup.structs(1)) {
+					if (chunk.has(1)) { // file_path, the chunk is in another file
+						return Optional.empty();
+					}
+					chunks.add(ColumnChunk.of(chunk.struct(3).orElseThrow()));
+				}
+				if (chunks.size() != columns.size()) {
+					throw new IllegalArgumentException("expected " + columns.size() + " column chunks");
+				}
+				rowGroups.add(new RowGroup(rowGroup.i64(3), chunks));
+			}
+			return Optional.of(new ParquetFooter(columns, rowGroups));
+		}
+
+		// true when the columns can be decoded by ColumnChunkReader in every row group
+		public boolean canRead(List<ColumnDescriptor> needed) {
+			for (RowGroup rowGroup : rowGroups) {
+				if (rowGroup.rows() > Integer.MAX_VALUE) {
+					return false;
+				}
+				for (ColumnDescriptor column : needed) {
+					if (column.kind().isEmpty() || !rowGroup.chunks().get(column.index()).isSupported()) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+	}
+
+	// SchemaElement of parquet.thrift, for a leaf of a flat schema
+	private record ColumnDescriptor(String name, int index, int physicalType, boolean optional, Optional<ColumnKind> kind,
+									boolean typeDefinedOrder) {
+	}
+
+	// RowGroup of parquet.thrift, with a chunk for each column
+	private record RowGroup(long rows, List<ColumnChunk> chunks) {
+	}
+
+	// ColumnMetaData of parquet.thrift
+	private record ColumnChunk(int codec, List<Integer> encodings, long start, long size, ThriftStruct statistics) {
+
+		// PLAIN, PLAIN_DICTIONARY, RLE (only for definition levels) and RLE_DICTIONARY
+		private static final Set<Integer> ENCODINGS = Set.of(0, 2, 3, 8);
+
+		public static ColumnChunk of(ThriftStruct metadata) {
+			long dataPageOffset = metadata.i64(9);
+			// some writers set the offset of the dictionary page to 0 when there is none
+			long dictionaryPageOffset = metadata.has(11) ? metadata.i64(11) : 0;
+			long start = dictionaryPageOffset > 0 && dictionaryPageOffset < dataPageOffset ? dictionaryPageOffset : dataPageOffset;
+			List<Integer> encodings = metadata.list(2).stream().map(Integer.class::cast).toList();
+			ThriftStruct statistics = metadata.struct(12).orElseGet(() -> new ThriftStruct(Map.of()));
+			return new ColumnChunk(metadata.i32(4), encodings, start, metadata.i64(7), statistics);
+		}
+
+		public boolean isSupported() {
+			return Codec.byId(codec).isPresent() && ENCODINGS.containsAll(encodings) && size <= Integer.MAX_VALUE - 8;
+		}
+	}
+
+	// Columns decoded by ColumnChunkReader, with the same values returned by hardwood (see FromParquet.toValue)
+	private enum ColumnKind {
+
+		LONG, TIMESTAMP_MILLIS, TIMESTAMP_MICROS, TIMESTAMP_NANOS, FLOAT, DOUBLE, TEXT, BYTES;
+
+		// from the physical type, the logical type or the converted type of the schema element
+		public static Optional<ColumnKind> of(ThriftStruct element) {
+			int physicalType = element.i32(1);
+			boolean integer = physicalType == 1 || physicalType == 2; // INT32 or INT64
+			Optional<ThriftStruct> logicalType = element.struct(10);
+			if (logicalType.isPresent()) {
+				ThriftStruct union = logicalType.get();
+				if (union.has(1) && physicalType == 6) { // STRING
+					return Optional.of(TEXT);
+				}
+				if (union.has(8) && physicalType == 2) { // TIMESTAMP
+					ThriftStruct timestamp = union.struct(8).orElseThrow();
+					ThriftStruct unit = timestamp.struct(2).orElseThrow();
+					if (!timestamp.bool(1, false)) { // local date time
+						return Optional.empty();
+					}
+					return unit.has(1) ? Optional.of(TIMESTAMP_MILLIS) : unit.has(2) ? Optional.of(TIMESTAMP_MICROS) : unit.has(3) ? Optional.of(TIMESTAMP_NANOS) : Optional.empty();
+				}
+				if (union.has(10) && integer && union.struct(10).orElseThrow().bool(2, false)) { // signed INTEGER
+					return Optional.of(LONG);
+				}
+				return Optional.empty();
+			}
+			if (element.has(6)) {
+				return switch (element.i32(6)) {
+					case 0 -> physicalType == 6 ? Optional.of(TEXT) : Optional.empty(); // UTF8
+					case 9 -> physicalType == 2 ? Optional.of(TIMESTAMP_MILLIS) : Optional.empty();
+					case 10 -> physicalType == 2 ? Optional.of(TIMESTAMP_MICROS) : Optional.empty();
+					case 15, 16, 17, 18 -> integer ? Optional.of(LONG) : Optional.empty(); // INT_8 to INT_64
+					default -> Optional.empty();
+				};
+			}
+			return switch (physicalType) {
+				case 1, 2 -> Optional.of(LONG);
+				case 4 -> Optional.of(FLOAT);
+				case 5 -> Optional.of(DOUBLE);
+				case 6 -> Optional.of(BYTES);
+				default -> Optional.empty(); // BOOLEAN (i.e. RLE values), INT96 and FIXED_LEN_BYTE_ARRAY
+			};
+		}
+	}
+
+	// Values of a column chunk, one for each row of the row group, in a primitive array by kind:
+	// longs for integers and instants, doubles for floats, byte arrays for texts and bytes.
+	// Nulls have a 0 (or null) slot.
+	private static final class ColumnVector {
+
+		private final ColumnKind kind;
+
+		private final BitSet nulls = new BitSet();
+
+		private final long[] longs;
+
+		private final double[] doubles;
+
+		private final byte[][] bytes;
+
+		public ColumnVector(ColumnKind kind, int size) {
+			this.kind = kind;
+			this.longs = switch (kind) {
+				case FLOAT, DOUBLE, TEXT, BYTES -> null;
+				default -> new long[size];
+			};
+			this.doubles = kind == ColumnKind.FLOAT || kind == ColumnKind.DOUBLE ? new double[size] : null;
+			this.bytes = kind == ColumnKind.TEXT || kind == ColumnKind.BYTES ? new byte[size][] : null;
+		}
+
+		public ColumnKind kind() {
+			return kind;
+		}
+
+		public boolean isNull(int row) {
+			return nulls.get(row);
+		}
+
+		// only for the kinds stored as longs
+		public long longAt(int row) {
+			return longs[row];
+		}
+
+		// the sum of the longs of the selected rows from a row on, in a plain loop when there are no nulls
+		// nor rows filtered out
+		public long sum(BitSet selected, int from) {
+			long sum = 0;
+			if (nulls.isEmpty() && selected.nextClearBit(from) >= longs.length) {
+				for (int row = from; row < longs.length; row++) {
+					sum += longs[row];
+				}
+				return sum;
+			}
+			for (int row = selected.nextSetBit(from); row >= 0; row = selected.nextSetBit(row + 1)) {
+				if (!nulls.get(row)) {
+					sum += longs[row];
+				}
+			}
+			return sum;
+		}
+
+		// the selected row with the min (sign -1) or max (sign 1) long, empty if they are all null
+		public OptionalInt extreme(BitSet selected, int sign) {
+			int best = -1;
+			for (int row = selected.nextSetBit(0); row >= 0; row = selected.nextSetBit(row + 1)) {
+				if (!nulls.get(row) && (best < 0 || Long.compare(longs[row], longs[best]) * sign > 0)) {
+					best = row;
+				}
+			}
+			return best < 0 ? OptionalInt.empty() : OptionalInt.of(best);
+		}
+
+		public Value value(int row) {
+			if (nulls.get(row)) {
+				return Values.none();
+			}
+			return switch (kind) {
+				case LONG -> Values.ofNumeric(longs[row]);
+				case TIMESTAMP_MILLIS -> Values.ofInstant(Instant.ofEpochMilli(longs[row]));
+				case TIMESTAMP_MICROS -> Values.ofInstant(Instant.ofEpochSecond(Math.floorDiv(longs[row], 1_000_000L), Math.floorMod(longs[row], 1_000_000L) * 1_000L));
+				case TIMESTAMP_NANOS -> Values.ofInstant(Instant.ofEpochSecond(Math.floorDiv(longs[row], 1_000_000_000L), Math.floorMod(longs[row], 1_000_000_000L)));
+				case FLOAT -> Values.ofText(Float.toString((float) doubles[row]));
+				case DOUBLE -> Values.ofText(Double.toString(doubles[row]));
+				case TEXT -> Values.ofText(new String(bytes[row], StandardCharsets.UTF_8));
+				case BYTES -> Values.ofBytes(bytes[row]);
+			};
+		}
+
+		// the value of another vector (i.e. a dictionary)
+		public void copy(int row, ColumnVector from, int index) {
+			if (longs != null) {
+				longs[row] = from.longs[index];
+			} else if (doubles != null) {
+				doubles[row] = from.doubles[index];
+			} else {
+				bytes[row] = from.bytes[index];
+			}
+		}
+	}
+
+	// Decodes a column chunk page after page: dictionary pages and data pages (v1 and v2) with RLE definition
+	// levels and PLAIN or dictionary values.
+	private static final class ColumnChunkReader {
+
+		private final ColumnDescriptor column;
+
+		private final Codec codec;
+
+		private final ColumnVector vector;
+
+		private final int rows;
+
+		private ColumnVector dictionary = null;
+
+		private int row = 0;
+
+		private ColumnChunkReader(ColumnDescriptor column, Codec codec, int rows) {
+			this.column = column;
+			this.codec = codec;
+			this.vector = new ColumnVector(column.kind().orElseThrow(), rows);
+			this.rows = rows;
+		}
+
+		public static ColumnVector read(FileChannel channel, ColumnDescriptor column, RowGroup rowGroup) throws IOException {
+			ColumnChunk chunk = rowGroup.chunks().get(column.index());
+			ByteBuffer data = readFully(channel, chunk.start(), Math.toIntExact(chunk.size()));
+			ColumnChunkReader reader = new ColumnChunkReader(column, Codec.byId(chunk.codec()).orElseThrow(), Math.toIntExact(rowGroup.rows()));
+			try {
+				while (reader.row < reader.rows) {
+					reader.page(data);
+				}
+			} catch (RuntimeException e) { // i.e. truncated pages or more values than rows
+				throw new IOException("invalid column chunk: " + column.name(), e);
+			}
+			return reader.vector;
+		}
+
+		// PageHeader of parquet.thrift followed by the page
+		private void page(ByteBuffer data) throws IOException {
+			ThriftStruct header = new ThriftReader(data).readStruct();
+			int uncompressedSize = header.i32(2);
+			byte[] page = new byte[checkSize(header.i32(3), data)];
+			data.get(page);
+			switch (header.i32(1)) {
+				case 0 -> dataPage(header.struct(5).orElseThrow(), decompress(page, uncompressedSize));
+				case 2 -> dictionaryPage(header.struct(7).orElseThrow(), decompress(page, uncompressedSize));
+				case 3 -> dataPageV2(header.struct(8).orElseThrow(), page, uncompressedSize);
+				default -> { // INDEX_PAGE, not needed
+				}
+			}
+		}
+
+		private ByteBuffer decompress(byte[] page, int uncompressedSize) throws IOException {
+			byte[] decompressed = codec.decompress(page, uncompressedSize);
+			if (decompressed.length != uncompressedSize) {
+				throw new IOException("invalid page size in column chunk: " + column.name());
+			}
+			return ByteBuffer.wrap(decompressed).order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		private void dictionaryPage(ThriftStruct header, ByteBuffer page) {
+			int size = header.i32(1);
+			dictionary = new ColumnVector(vector.kind, size);
+			plain(page, dictionary, 0, size);
+		}
+
+		private void dataPage(ThriftStruct header, ByteBuffer page) throws IOException {
+			int count = header.i32(1);
+			if (column.optional()) {
+				levels(page, header.i32(3), count);
+			}
+			values(page, header.i32(2), count);
+		}
+
+		// levels are never compressed, only the values
+		private void dataPageV2(ThriftStruct header, byte[] page, int uncompressedSize) throws IOException {
+			int count = header.i32(1);
+			int levelsSize = header.i32(6) + header.i32(5);
+			if (column.optional()) {
+				ByteBuffer levels = ByteBuffer.wrap(page, header.i32(6), header.i32(5)).slice().order(ByteOrder.LITTLE_ENDIAN);
+				levels(new RleDecoder(levels, 1), count);
+			}
+			byte[] values = Arrays.copyOfRange(page, levelsSize, page.length);
+			boolean compressed = header.bool(7, true);
+			values(compressed ? decompress(values, uncompressedSize - levelsSize) : ByteBuffer.wrap(values).order(ByteOrder.LITTLE_ENDIAN), header.i32(4), count);
+		}
+
+		// definition levels of the next rows, with max level 1
+		private void levels(ByteBuffer page, int encoding, int count) throws IOException {
+			if (encoding != 3) {
+				throw new IOException("unsupported encoding of definition levels: " + encoding);
+			}
+			int size = page.getInt(); // RLE, after its size
+			levels(new RleDecoder(page.slice(page.position(), size).order(ByteOrder.LITTLE_ENDIAN), 1), count);
+			page.position(page.position() + size);
+		}
+
+		private void levels(RleDecoder levels, int count) {
+			for (int i = 0; i < count; i++) {
+				if (levels.next() == 0) {
+					vector.nulls.set(row + i);
+				}
+			}
+		}
+
+		// values of the defined rows among the next count rows
+		private void values(ByteBuffer page, int encoding, int count) throws IOException {
+			int end = row + count;
+			if (end > rows) {
+				throw new IOException("too many values in column chunk: " + column.name());
+			}
+			switch (encoding) {
+				case 0 -> plain(page, vector, row, end);
+				case 2, 8 -> { // PLAIN_DICTIONARY and RLE_DICTIONARY: ids after their bit width
+					if (dictionary == null) {
+						throw new IOException("missing dictionary page in column chunk: " + column.name());
+					}
+					RleDecoder ids = new RleDecoder(page, page.get() & 0xff);
+					for (int i = vector.nulls.nextClearBit(row); i < end; i = vector.nulls.nextClearBit(i + 1)) {
+						vector.copy(i, dictionary, ids.next());
+					}
+				}
+				default -> throw new IOException("unsupported encoding: " + encoding);
+			}
+			row = end;
+		}
+
+		// PLAIN values of the defined rows in [start, end), a loop for each physical type
+		private void plain(ByteBuffer page, ColumnVector target, int start, int end) {
+			BitSet nulls = target.nulls;
+			switch (column.physicalType()) {
+				case 1 -> {
+					for (int i = nulls.nextClearBit(start); i < end; i = nulls.nextClearBit(i + 1)) {
+						target.longs[i] = page.getInt();
+					}
+				}
+				case 2 -> {
+					for (int i = nulls.nextClearBit(start); i < end; i = nulls.nextClearBit(i + 1)) {
+						target.longs[i] = page.getLong();
+					}
+				}
+				case 4 -> {
+					for (int i = nulls.nextClearBit(start); i < end; i = nulls.nextClearBit(i + 1)) {
+						target.doubles[i] = page.getFloat();
+					}
+				}
+				case 5 -> {
+					for (int i = nulls.nextClearBit(start); i < end; i = nulls.nextClearBit(i + 1)) {
+						target.doubles[i] = page.getDouble();
+					}
+				}
+				default -> { // BYTE_ARRAY
+					for (int i = nulls.nextClearBit(start); i < end; i = nulls.nextClearBit(i + 1)) {
+						byte[] value = new byte[checkSize(page.getInt(), page)];
+						page.get(value);
+						target.bytes[i] = value;
+					}
+				}
+			}
+		}
+	}
+
+	// RLE/bit-packing hybrid encoding of Parquet, for definition levels and dictionary ids
+	private static final class RleDecoder {
+
+		private final ByteBuffer in;
+
+		private final int bitWidth;
+
+		private final long mask;
+
+		private final int[] unpacked = new int[8];
+
+		// values left in the current RLE run
+		private int repeated = 0;
+
+		private int value = 0;
+
+		// values left in the current bit-packed run, unpacked 8 at time
+		private int packed = 0;
+
+		private int next = 0;
+
+		public RleDecoder(ByteBuffer in, int bitWidth) {
+			if (bitWidth > 32) {
+				throw new IllegalArgumentException("invalid bit width: " + bitWidth);
+			}
+			this.in = in;
+			this.bitWidth = bitWidth;
+			this.mask = (1L << bitWidth) - 1;
+		}
+
+		public int next() {
+			while (repeated == 0 && packed == 0) {
+				long header = readVarInt(in);
+				if ((header & 1) == 0) {
+					repeated = Math.toIntExact(header >>> 1);
+					value = 0;
+					for (int i = 0; i < (bitWidth + 7) / 8; i++) {
+						value |= (in.get() & 0xff) << (8 * i);
+					}
+				} else {
+					packed = Math.toIntExact((header >>> 1) * 8);
+					next = unpacked.length;
+				}
+			}
+			if (repeated > 0) {
+				repeated--;
+				return value;
+			}
+			if (next == unpacked.length) {
+				unpack();
+			}
+			packed--;
+			return unpacked[next++];
+		}
+
+		// 8 values of bitWidth bits, from the least significant bit (the last group can be truncated)
+		private void unpack() {
+			long buffer = 0;
+			int bits = 0;
+			for (int i = 0; i < unpacked.length; i++) {
+				while (bits < bitWidth) {
+					buffer |= (long) (in.hasRemaining() ? in.get() & 0xff : 0) << bits;
+					bits += 8;
+				}
+				unpacked[i] = (int) (buffer & mask);
+				buffer >>>= bitWidth;
+				bits -= bitWidth;
+			}
+			next = 0;
+		}
+	}
+
+	// Thrift compact protocol, reading every field of a struct (the metadata of Parquet is small)
+	private static class ThriftReader {
+
+		private final ByteBuffer in;
+
+		public ThriftReader(ByteBuffer in) {
+			this.in = in;
+		}
+
+		public ThriftStruct readStruct() {
+			Map<Integer, Object> fields = new HashMap<>();
+			int lastFieldId = 0;
+			for (int header = in.get() & 0xff; header != 0; header = in.get() & 0xff) {
+				int delta = header >>> 4;
+				int id = delta == 0 ? (int) zigZag(readVarInt(in)) : lastFieldId + delta;
+				int type = header & 0x0f;
+				fields.put(id, type == ThriftWriter.TRUE || type == ThriftWriter.FALSE ? type == ThriftWriter.TRUE : read(type));
+				lastFieldId = id;
+			}
+			return new ThriftStruct(fields);
+		}
+
+		private Object read(int type) {
+			return switch (type) {
+				case ThriftWriter.TRUE, ThriftWriter.FALSE -> in.get() == ThriftWriter.TRUE; // only in lists
+				case 3 -> (int) in.get(); // i8
+				case 4, ThriftWriter.I32 -> (int) zigZag(readVarInt(in)); // i16 or i32
+				case ThriftWriter.I64 -> zigZag(readVarInt(in));
+				case 7 -> in.getDouble();
+				case ThriftWriter.BINARY -> {
+					byte[] bytes = new byte[checkSize(Math.toIntExact(readVarInt(in)), in)];
+					in.get(bytes);
+					yield bytes;
+				}
+				case ThriftWriter.LIST, 10 -> { // list or set
+					int header = in.get() & 0xff;
+					int size = header >>> 4 == 15 ? Math.toIntExact(readVarInt(in)) : header >>> 4;
+					List<Object> elements = new ArrayList<>(Math.min(size, 1024));
+					for (int i = 0; i < size; i++) {
+						elements.add(read(header & 0x0f));
+					}
+					yield elements;
+				}
+				case 11 -> { // map, as a list of keys and values
+					int size = Math.toIntExact(readVarInt(in));
+					int types = size == 0 ? 0 : in.get() & 0xff;
+					List<Object> entries = new ArrayList<>();
+					for (int i = 0; i < size; i++) {
+						entries.add(read(types >>> 4));
+						entries.add(read(types & 0x0f));
+					}
+					yield entries;
+				}
+				case ThriftWriter.STRUCT -> readStruct();
+				default -> throw new IllegalArgumentException("unknown thrift type: " + type);
+			};
+		}
+
+		private static long zigZag(long value) {
+			return (value >>> 1) ^ -(value & 1);
+		}
+	}
+
+	// fields of a thrift struct by id: booleans, integers (i8, i16, i32), longs, doubles, byte arrays,
+	// lists and structs
+	private record ThriftStruct(Map<Integer, Object> fields) {
+
+		public boolean has(int id) {
+			return fields.containsKey(id);
+		}
+
+		public boolean bool(int id, boolean defaultValue) {
+			return (Boolean) fields.getOrDefault(id, defaultValue);
+		}
+
+		public int i32(int id) {
+			return (Integer) required(id);
+		}
+
+		public int i32(int id, int defaultValue) {
+			return (Integer) fields.getOrDefault(id, defaultValue);
+		}
+
+		public long i64(int id) {
+			return (Long) required(id);
+		}
+
+		public String string(int id) {
+			return new String((byte[]) required(id), StandardCharsets.UTF_8);
+		}
+
+		public Optional<byte[]> binary(int id) {
+			return Optional.ofNullable(fields.get(id)).map(byte[].class::cast);
+		}
+
+		public Optional<ThriftStruct> struct(int id) {
+			return Optional.ofNullable(fields.get(id)).map(ThriftStruct.class::cast);
+		}
+
+		public List<?> list(int id) {
+			return (List<?>) fields.getOrDefault(id, List.of());
+		}
+
+		public List<ThriftStruct> structs(int id) {
+			return list(id).stream().map(ThriftStruct.class::cast).toList();
+		}
+
+		private Object required(int id) {
+			Object value = fields.get(id);
+			if (value == null) {
+				throw new IllegalArgumentException("missing thrift field: " + id);
+			}
+			return value;
+		}
+	}
+
+	// unsigned LEB128
+	private static void writeVarInt(ByteArrayOutputStream out, long value) {
+		while ((value & ~0x7fL) != 0) {
+			out.write((int) (value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	private static long readVarInt(ByteBuffer in) {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.get();
+			value |= (long) (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("invalid varint");
+	}
+
+	private static void writeIntLE(ByteArrayOutputStream out, int value) {
+		out.write(value);
+		out.write(value >>> 8);
+		out.write(value >>> 16);
+		out.write(value >>> 24);
+	}
+
+	private static void writeLongLE(ByteArrayOutputStream out, long value) {
+		writeIntLE(out, (int) value);
+		writeIntLE(out, (int) (value >>> 32));
+	}
+
+	// a size read from a file, before allocating its bytes
+	private static int checkSize(int size, ByteBuffer in) {
+		if (size < 0 || size > in.remaining()) {
+			throw new IllegalArgumentException("invalid size: " + size);
+		}
+		return size;
+	}
+
+	private static ByteBuffer readFully(FileChannel channel, long position, int size) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new EOFException("unexpected end of file");
+			}
 		}
+		return buffer.flip();
 	}
 }
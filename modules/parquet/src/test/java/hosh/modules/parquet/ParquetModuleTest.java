@@ -30,6 +30,7 @@ import hosh.spi.ExitStatus;
 import hosh.spi.InputChannel;
 import hosh.spi.Keys;
 import hosh.spi.OutputChannel;
+import hosh.spi.Record;
 import hosh.spi.Records;
 import hosh.spi.State;
 import hosh.spi.Values;
@@ -39,15 +40,29 @@ import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.extension.RegisterExtension;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
 
 import static hosh.spi.test.support.ExitStatusAssert.assertThat;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.times;
 
 class ParquetModuleTest {
 
@@ -70,6 +85,12 @@ class ParquetModuleTest {
 		@Mock
 		OutputChannel err;
 
+		@Mock
+		InputChannel input;
+
+		@Captor
+		ArgumentCaptor<Record> records;
+
 		FromParquet sut;
 
 		@BeforeEach
@@ -88,20 +109,20 @@ class ParquetModuleTest {
 			assertThat(result).isError();
 			then(in).shouldHaveNoInteractions();
 			then(out).shouldHaveNoInteractions();
-			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: from-parquet file")));
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: from-parquet [--columns name,...] [--filter name=regex] [--aggregate count|sum:name|min:name|max:name] [--parallel n] [--unordered] [--include glob] file|directory...")));
 		}
 
 		@Test
-		void tooManyArgs() {
+		void invalidParallel() {
 			// Given
 			// (no setup)
 			// When
-			ExitStatus result = sut.run(CommandArguments.of("a.parquet", "b.parquet"), in, out, err);
+			ExitStatus result = sut.run(CommandArguments.of("--parallel", "0", "a.parquet", "b.parquet"), in, out, err);
 			// Then
 			assertThat(result).isError();
 			then(in).shouldHaveNoInteractions();
 			then(out).shouldHaveNoInteractions();
-			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: from-parquet file")));
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("parallel must be >= 1")));
 		}
 
 		@Test
@@ -118,16 +139,94 @@ class ParquetModuleTest {
 		}
 
 		@Test
-		void notAFile() {
+		void emptyDirectory() {
 			// Given
 			Path dir = temporaryFolder.toPath().toAbsolutePath();
 			// When
 			ExitStatus result = sut.run(CommandArguments.of(dir.toString()), in, out, err);
 			// Then
-			assertThat(result).isError();
+			assertThat(result).isSuccess();
 			then(in).shouldHaveNoInteractions();
 			then(out).shouldHaveNoInteractions();
-			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("not a regular file: " + dir)));
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void multipleFilesInOrder() throws URISyntaxException {
+			// Given
+			Path fixture = Path.of(getClass().getResource("test.parquet").toURI());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--parallel", "2", "--columns", "name", fixture.toString(), fixture.toString()), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).should(times(4)).send(records.capture());
+			assertThat(records.getAllValues()).containsExactly(
+					Records.singleton(Keys.of("name"), Values.ofText("alice")),
+					Records.singleton(Keys.of("name"), Values.ofText("bob")),
+					Records.singleton(Keys.of("name"), Values.ofText("alice")),
+					Records.singleton(Keys.of("name"), Values.ofText("bob")));
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void partitionedDirectory() throws URISyntaxException, IOException {
+			// Given
+			Path fixture = Path.of(getClass().getResource("test.parquet").toURI());
+			Path dataset = temporaryFolder.toPath().toAbsolutePath();
+			Files.createDirectories(dataset.resolve("day=1"));
+			Files.createDirectories(dataset.resolve("day=2"));
+			Files.copy(fixture, dataset.resolve("day=1").resolve("part-0.parquet"));
+			Files.copy(fixture, dataset.resolve("day=2").resolve("part-0.parquet"));
+			Files.copy(fixture, dataset.resolve("day=2").resolve("part-1.parquet"));
+			Files.writeString(dataset.resolve("day=2").resolve("_SUCCESS"), "");
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--aggregate", "sum:age", dataset.toString()), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).should().send(Records.singleton(Keys.of("age"), Values.ofNumeric(3 * 55)));
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void rowGroupsOfOneFileInOrder() {
+			// Given
+			Path file = write("1",
+					Records.singleton(Keys.NAME, Values.ofText("alice")),
+					Records.singleton(Keys.NAME, Values.ofText("bob")),
+					Records.singleton(Keys.NAME, Values.ofText("carol")),
+					Records.singleton(Keys.NAME, Values.ofText("dave")));
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--parallel", "3", file.toString()), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).should(times(4)).send(records.capture());
+			assertThat(records.getAllValues()).containsExactly(
+					Records.singleton(Keys.NAME, Values.ofText("alice")),
+					Records.singleton(Keys.NAME, Values.ofText("bob")),
+					Records.singleton(Keys.NAME, Values.ofText("carol")),
+					Records.singleton(Keys.NAME, Values.ofText("dave")));
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void unordered() throws URISyntaxException {
+			// Given
+			Path fixture = Path.of(getClass().getResource("test.parquet").toURI());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--unordered", "--columns", "age", fixture.toString(), fixture.toString()), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).should(times(4)).send(records.capture());
+			assertThat(records.getAllValues()).containsExactlyInAnyOrder(
+					Records.singleton(Keys.of("age"), Values.ofNumeric(30)),
+					Records.singleton(Keys.of("age"), Values.ofNumeric(25)),
+					Records.singleton(Keys.of("age"), Values.ofNumeric(30)),
+					Records.singleton(Keys.of("age"), Values.ofNumeric(25)));
+			then(err).shouldHaveNoInteractions();
 		}
 
 		@Test
@@ -143,12 +242,260 @@ class ParquetModuleTest {
 			then(out).should().send(Records.builder().entry(Keys.of("name"), Values.ofText("bob")).entry(Keys.of("age"), Values.ofNumeric(25)).build());
 			then(err).shouldHaveNoInteractions();
 		}
+
+		@Test
+		void projection() throws URISyntaxException {
+			// Given
+			Path fixture = Path.of(getClass().getResource("test.parquet").toURI());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--columns", "age,missing", "--columns", "name", fixture.toString()), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).should().send(Records.builder().entry(Keys.of("age"), Values.ofNumeric(30)).entry(Keys.of("name"), Values.ofText("alice")).build());
+			then(out).should().send(Records.builder().entry(Keys.of("age"), Values.ofNumeric(25)).entry(Keys.of("name"), Values.ofText("bob")).build());
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void filter() throws URISyntaxException {
+			// Given
+			Path fixture = Path.of(getClass().getResource("test.parquet").toURI());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--filter", "age=2.", "--columns", "name", fixture.toString()), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).should().send(Records.singleton(Keys.of("name"), Values.ofText("bob")));
+			then(out).shouldHaveNoMoreInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void filterMissingColumn() throws URISyntaxException {
+			// Given
+			Path fixture = Path.of(getClass().getResource("test.parquet").toURI());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--filter", "missing=.*", fixture.toString()), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void projectionReadsOnlyTheNeededColumns() throws IOException {
+			// Given
+			Path file = write("2",
+					Records.builder().entry(Keys.NAME, Values.ofText("alice")).entry(Keys.of("secret"), Values.ofText("secret-of-alice")).build(),
+					Records.builder().entry(Keys.NAME, Values.ofText("bob")).entry(Keys.of("secret"), Values.ofText("secret-of-bob")).build());
+			corrupt(file, "secret-of-alice");
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--columns", "name", file.toString()), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).should(times(2)).send(records.capture());
+			assertThat(records.getAllValues()).containsExactly(
+					Records.singleton(Keys.NAME, Values.ofText("alice")),
+					Records.singleton(Keys.NAME, Values.ofText("bob")));
+			then(err).shouldHaveNoInteractions();
+			assertThatThrownBy(() -> sut.run(CommandArguments.of(file.toString()), in, out, err))
+					.isInstanceOf(UncheckedIOException.class)
+					.hasMessageContaining("invalid column chunk: secret");
+		}
+
+		@Test
+		void filterSkipsRowGroupsByStatistics() throws IOException {
+			// Given
+			Path file = write("2",
+					Records.builder().entry(Keys.NAME, Values.ofText("alice")).entry(Keys.SIZE, Values.ofNumeric(1)).build(),
+					Records.builder().entry(Keys.NAME, Values.ofText("bob")).entry(Keys.SIZE, Values.ofNumeric(2)).build(),
+					Records.builder().entry(Keys.NAME, Values.ofText("carol")).entry(Keys.SIZE, Values.ofNumeric(3)).build(),
+					Records.builder().entry(Keys.NAME, Values.ofText("dave")).entry(Keys.SIZE, Values.ofNumeric(4)).build());
+			corrupt(file, "alice"); // the first row group cannot be decoded anymore
+			// When
+			ExitStatus byText = sut.run(CommandArguments.of("--filter", "name=c.*", "--columns", "size", file.toString()), in, out, err);
+			ExitStatus byNumber = sut.run(CommandArguments.of("--filter", "size=4", "--columns", "name", file.toString()), in, out, err);
+			// Then
+			assertThat(byText).isSuccess();
+			assertThat(byNumber).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).should(times(2)).send(records.capture());
+			assertThat(records.getAllValues()).containsExactly(
+					Records.singleton(Keys.SIZE, Values.ofNumeric(3)),
+					Records.singleton(Keys.NAME, Values.ofText("dave")));
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void invalidFilter() {
+			// Given
+			// (no setup)
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--filter", "name", "data.parquet"), in, out, err);
+			// Then
+			assertThat(result).isError();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("invalid filter: 'name' (expected name=regex)")));
+		}
+
+		@Test
+		void aggregateCount() throws URISyntaxException {
+			// Given
+			Path fixture = Path.of(getClass().getResource("test.parquet").toURI());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--aggregate", "count", fixture.toString()), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).should().send(Records.singleton(Keys.COUNT, Values.ofNumeric(2)));
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void aggregateSum() throws URISyntaxException {
+			// Given
+			Path fixture = Path.of(getClass().getResource("test.parquet").toURI());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--aggregate", "sum:age", fixture.toString()), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).should().send(Records.singleton(Keys.of("age"), Values.ofNumeric(55)));
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void aggregateMinAndMax() throws URISyntaxException {
+			// Given
+			Path fixture = Path.of(getClass().getResource("test.parquet").toURI());
+			// When
+			ExitStatus min = sut.run(CommandArguments.of("--aggregate", "min:age", fixture.toString()), in, out, err);
+			ExitStatus max = sut.run(CommandArguments.of("--aggregate", "max:name", fixture.toString()), in, out, err);
+			// Then
+			assertThat(min).isSuccess();
+			assertThat(max).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).should().send(Records.singleton(Keys.of("min"), Values.ofNumeric(25)));
+			then(out).should().send(Records.singleton(Keys.of("max"), Values.ofText("bob")));
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void aggregateFilteredRows() throws URISyntaxException {
+			// Given
+			Path fixture = Path.of(getClass().getResource("test.parquet").toURI());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--filter", "name=a.*", "--aggregate", "sum:age", fixture.toString()), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).should().send(Records.singleton(Keys.of("age"), Values.ofNumeric(30)));
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void aggregateColumnOutsideOfProjection() throws URISyntaxException {
+			// Given
+			Path fixture = Path.of(getClass().getResource("test.parquet").toURI());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--columns", "name", "--aggregate", "max:age", fixture.toString()), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).should().send(Records.singleton(Keys.of("max"), Values.none()));
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void aggregateReadsOnlyItsColumn() throws IOException {
+			// Given
+			Path file = write("2",
+					Records.builder().entry(Keys.NAME, Values.ofText("alice")).entry(Keys.SIZE, Values.ofNumeric(1)).build(),
+					Records.builder().entry(Keys.NAME, Values.ofText("bob")).entry(Keys.SIZE, Values.none()).build(),
+					Records.builder().entry(Keys.NAME, Values.ofText("carol")).entry(Keys.SIZE, Values.ofNumeric(3)).build());
+			corrupt(file, "alice"); // names cannot be decoded anymore
+			// When
+			ExitStatus count = sut.run(CommandArguments.of("--aggregate", "count", file.toString()), in, out, err);
+			ExitStatus sum = sut.run(CommandArguments.of("--aggregate", "sum:size", file.toString()), in, out, err);
+			ExitStatus max = sut.run(CommandArguments.of("--aggregate", "max:size", file.toString()), in, out, err);
+			// Then
+			assertThat(count).isSuccess();
+			assertThat(sum).isSuccess();
+			assertThat(max).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).should(times(3)).send(records.capture());
+			assertThat(records.getAllValues()).containsExactly(
+					Records.singleton(Keys.COUNT, Values.ofNumeric(3)),
+					Records.singleton(Keys.SIZE, Values.ofNumeric(4)),
+					Records.singleton(Keys.of("max"), Values.ofNumeric(3)));
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void aggregateSumAfterNulls() {
+			// Given
+			Path file = write("3",
+					Records.singleton(Keys.SIZE, Values.none()),
+					Records.singleton(Keys.SIZE, Values.none()),
+					Records.singleton(Keys.SIZE, Values.ofNumeric(5)));
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--aggregate", "sum:size", file.toString()), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(in).shouldHaveNoInteractions();
+			then(out).should().send(Records.singleton(Keys.SIZE, Values.ofNumeric(5))); // like 'sum': none merged with none is nothing
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void invalidAggregate() {
+			// Given
+			// (no setup)
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--aggregate", "avg:age", "data.parquet"), in, out, err);
+			// Then
+			assertThat(result).isError();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("invalid aggregate: 'avg:age' (expected count, sum:name, min:name or max:name)")));
+		}
+
+		// uncompressed, to find the values in the file
+		private Path write(String rowGroupSize, Record... rows) {
+			Path file = temporaryFolder.toPath().resolve("data.parquet").toAbsolutePath();
+			Iterator<Record> iterator = List.of(rows).iterator();
+			given(input.recv()).willAnswer(invocation -> iterator.hasNext() ? Optional.of(iterator.next()) : Optional.empty());
+			ToParquet writer = new ToParquet();
+			writer.setState(state);
+			ExitStatus result = writer.run(CommandArguments.of("--row-group-size", rowGroupSize, "--compression", "none", file.toString()), input, out, err);
+			assertThat(result).isSuccess();
+			return file;
+		}
+
+		// the length before the first occurrence of the text (i.e. in a page) is too big to be decoded
+		private void corrupt(Path file, String text) throws IOException {
+			byte[] bytes = Files.readAllBytes(file);
+			int offset = new String(bytes, StandardCharsets.ISO_8859_1).indexOf(text);
+			assertThat(offset).isGreaterThan(4);
+			bytes[offset - 1] = 0x7f;
+			Files.write(file, bytes);
+		}
 	}
 
 	@Nested
 	@ExtendWith(MockitoExtension.class)
 	class ToParquetTest {
 
+		@RegisterExtension
+		final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+		@Mock(stubOnly = true)
+		State state;
+
 		@Mock
 		InputChannel in;
 
@@ -158,18 +505,201 @@ class ParquetModuleTest {
 		@Mock
 		OutputChannel err;
 
+		@Mock
+		InputChannel unused;
+
+		@Mock
+		OutputChannel readOut;
+
+		@Mock
+		OutputChannel readErr;
+
 		ToParquet sut;
 
 		@BeforeEach
 		void createSut() {
 			sut = new ToParquet();
+			sut.setState(state);
 		}
 
 		@Test
-		void notYetImplemented() {
-			assertThatThrownBy(() -> sut.run(CommandArguments.of("output.parquet"), in, out, err))
-					.isInstanceOf(UnsupportedOperationException.class)
-					.hasMessage("to-parquet: write support not yet available in hardwood");
+		void missingArg() {
+			// Given
+			// (no setup)
+			// When
+			ExitStatus result = sut.run(CommandArguments.of(), in, out, err);
+			// Then
+			assertThat(result).isError();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: to-parquet [--row-group-size rows] [--compression gzip|none] file")));
+		}
+
+		@Test
+		void unsupportedCompression() {
+			// Given
+			// (no setup)
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--compression", "lzo", "output.parquet"), in, out, err);
+			// Then
+			assertThat(result).isError();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("unsupported compression: lzo")));
+		}
+
+		@Test
+		void invalidRowGroupSize() {
+			// Given
+			// (no setup)
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--row-group-size", "0", "output.parquet"), in, out, err);
+			// Then
+			assertThat(result).isError();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("row-group-size must be a number >= 1: 0")));
+		}
+
+		@Test
+		void writeAndReadBack() {
+			// Given
+			given(state.getCwd()).willReturn(temporaryFolder.toPath());
+			Record alice = Records.builder()
+					.entry(Keys.NAME, Values.ofText("alice"))
+					.entry(Keys.SIZE, Values.ofSize(1024))
+					.entry(Keys.TIMESTAMP, Values.ofInstant(Instant.parse("2020-01-02T03:04:05.123456Z")))
+					.build();
+			Record bob = Records.builder()
+					.entry(Keys.NAME, Values.ofText("bob"))
+					.entry(Keys.SIZE, Values.none())
+					.entry(Keys.TIMESTAMP, Values.ofInstant(Instant.parse("2021-01-02T03:04:05Z")))
+					.build();
+			Record carol = Records.builder()
+					.entry(Keys.NAME, Values.ofText("carol"))
+					.entry(Keys.SIZE, Values.ofSize(0))
+					.build();
+			given(in.recv()).willReturn(Optional.of(alice), Optional.of(bob), Optional.of(carol), Optional.empty());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--row-group-size", "2", "output.parquet"), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(out).shouldHaveNoInteractions();
+			then(err).shouldHaveNoInteractions();
+			assertThat(readBack("output.parquet")).containsExactly(
+					Records.builder()
+							.entry(Keys.NAME, Values.ofText("alice"))
+							.entry(Keys.SIZE, Values.ofNumeric(1024))
+							.entry(Keys.TIMESTAMP, Values.ofInstant(Instant.parse("2020-01-02T03:04:05.123456Z")))
+							.build(),
+					Records.builder()
+							.entry(Keys.NAME, Values.ofText("bob"))
+							.entry(Keys.SIZE, Values.none())
+							.entry(Keys.TIMESTAMP, Values.ofInstant(Instant.parse("2021-01-02T03:04:05Z")))
+							.build(),
+					Records.builder()
+							.entry(Keys.NAME, Values.ofText("carol"))
+							.entry(Keys.SIZE, Values.ofNumeric(0))
+							.entry(Keys.TIMESTAMP, Values.none())
+							.build());
+		}
+
+		@Test
+		void uncompressed() {
+			// Given
+			given(state.getCwd()).willReturn(temporaryFolder.toPath());
+			given(in.recv()).willReturn(Optional.of(Records.singleton(Keys.COUNT, Values.ofNumeric(42))), Optional.empty());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--compression", "none", "output.parquet"), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(out).shouldHaveNoInteractions();
+			then(err).shouldHaveNoInteractions();
+			assertThat(readBack("output.parquet")).containsExactly(Records.singleton(Keys.COUNT, Values.ofNumeric(42)));
+		}
+
+		@Test
+		void valueNotMatchingSchema() {
+			// Given
+			given(state.getCwd()).willReturn(temporaryFolder.toPath());
+			given(in.recv()).willReturn(
+					Optional.of(Records.singleton(Keys.COUNT, Values.ofNumeric(1))),
+					Optional.of(Records.singleton(Keys.COUNT, Values.ofText("many"))),
+					Optional.empty());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("--row-group-size", "1", "output.parquet"), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(out).shouldHaveNoInteractions();
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("count: not a int64 value, written as null")));
+			assertThat(readBack("output.parquet")).containsExactly(
+					Records.singleton(Keys.COUNT, Values.ofNumeric(1)),
+					Records.singleton(Keys.COUNT, Values.none()));
+		}
+
+		@Test
+		void failedInputDeletesTheFile() {
+			// Given
+			given(state.getCwd()).willReturn(temporaryFolder.toPath());
+			given(in.recv())
+					.willReturn(Optional.of(Records.singleton(Keys.COUNT, Values.ofNumeric(1))))
+					.willThrow(new IllegalStateException("simulated failure"));
+			// When / Then
+			assertThatThrownBy(() -> sut.run(CommandArguments.of("--row-group-size", "1", "output.parquet"), in, out, err))
+					.isInstanceOf(IllegalStateException.class)
+					.hasMessage("simulated failure");
+			then(out).shouldHaveNoInteractions();
+			then(err).shouldHaveNoInteractions();
+			assertThat(temporaryFolder.toPath().resolve("output.parquet")).doesNotExist();
+		}
+
+		@Test
+		void mixedValuesWrittenAsPlainText() {
+			// Given
+			given(state.getCwd()).willReturn(temporaryFolder.toPath());
+			given(in.recv()).willReturn(
+					Optional.of(Records.singleton(Keys.COUNT, Values.ofText("many"))),
+					Optional.of(Records.singleton(Keys.COUNT, Values.ofNumeric(1234567))),
+					Optional.empty());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("output.parquet"), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(out).shouldHaveNoInteractions();
+			then(err).shouldHaveNoInteractions();
+			assertThat(readBack("output.parquet")).containsExactly(
+					Records.singleton(Keys.COUNT, Values.ofText("many")),
+					Records.singleton(Keys.COUNT, Values.ofText("1234567")));
+		}
+
+		@Test
+		void statisticsOfNegativeNumbersAndLongText() {
+			// Given
+			given(state.getCwd()).willReturn(temporaryFolder.toPath());
+			String longText = "x".repeat(100);
+			given(in.recv()).willReturn(
+					Optional.of(Records.builder().entry(Keys.COUNT, Values.ofNumeric(-5)).entry(Keys.NAME, Values.ofText(longText)).build()),
+					Optional.of(Records.builder().entry(Keys.COUNT, Values.ofNumeric(3)).entry(Keys.NAME, Values.ofText("a")).build()),
+					Optional.empty());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("output.parquet"), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(out).shouldHaveNoInteractions();
+			then(err).shouldHaveNoInteractions();
+			assertThat(readBack("output.parquet")).containsExactly(
+					Records.builder().entry(Keys.COUNT, Values.ofNumeric(-5)).entry(Keys.NAME, Values.ofText(longText)).build(),
+					Records.builder().entry(Keys.COUNT, Values.ofNumeric(3)).entry(Keys.NAME, Values.ofText("a")).build());
+		}
+
+		private List<Record> readBack(String file) {
+			FromParquet reader = new FromParquet();
+			reader.setState(state);
+			ArgumentCaptor<Record> records = ArgumentCaptor.forClass(Record.class);
+			ExitStatus result = reader.run(CommandArguments.of(file), unused, readOut, readErr);
+			assertThat(result).isSuccess();
+			then(readOut).should(atLeast(0)).send(records.capture());
+			return records.getAllValues();
 		}
 	}
 }
@@ -32,6 +32,7 @@ import hosh.spi.CommandArguments;
 import hosh.spi.CommandName;
 import hosh.spi.CommandRegistry;
 import hosh.spi.CommandWrapper;
+import hosh.spi.Compression;
 import hosh.spi.Errors;
 import hosh.spi.ExitStatus;
 import hosh.spi.InputChannel;
@@ -60,7 +61,6 @@ import java.io.OutputStreamWriter;
 import java.io.UncheckedIOException;
 import java.lang.ProcessHandle.Info;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.OpenOption;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
@@ -980,13 +980,16 @@ public class SystemModule implements Module {
 			}
 			Locale locale = Locale.getDefault();
 			var path = state.getCwd().resolve(Paths.get(args.get(0).asString()));
-			try (var writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(path, toOpenOptions(args)), StandardCharsets.UTF_8))) {
+			try (var writer = new BufferedWriter(new OutputStreamWriter(Compression.newOutputStream(path, toOpenOptions(args)), StandardCharsets.UTF_8))) {
 				for (Record incoming : InputChannel.iterate(in)) {
 					String line = incoming.values().map(v -> v.show(locale)).collect(Collectors.joining(" "));
 					writer.append(line);
 					writer.newLine();
 				}
 				return ExitStatus.success();
+			} catch (UnsupportedOperationException e) { // e.g. APPEND to a zlib file
+				err.send(Errors.message(e));
+				return ExitStatus.error();
 			} catch (IOException e) {
 				throw new UncheckedIOException(e);
 			}
@@ -1789,6 +1789,22 @@ class SystemModuleTest {
 			assertThat(lines).isEmpty();
 		}
 
+		@Test
+		void appendToZlibFile() {
+			// Given
+			given(state.getCwd()).willReturn(temporaryFolder.toPath());
+
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("data.zz", "APPEND", "CREATE"), in, out, err);
+
+			// Then
+			assertThat(result).isError();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("cannot append to zlib file: " + temporaryFolder.toPath().resolve("data.zz"))));
+			assertThat(temporaryFolder.toPath().resolve("data.zz")).doesNotExist();
+		}
+
 		@SuppressWarnings("unchecked")
 		@Test
 		void oneLine() throws IOException {
@@ -31,6 +31,7 @@ import hosh.spi.Command;
 import hosh.spi.CommandArguments;
 import hosh.spi.CommandName;
 import hosh.spi.CommandRegistry;
+import hosh.spi.CommandWrapper;
 import hosh.spi.Errors;
 import hosh.spi.ExitStatus;
 import hosh.spi.InputChannel;
@@ -41,29 +42,50 @@ import hosh.spi.Records;
 import hosh.spi.Value;
 import hosh.spi.Values;
 import hosh.spi.Module;
+import hosh.spi.State;
+import hosh.spi.StateAware;
 import hosh.spi.Record;
 import hosh.spi.Record.Entry;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Optional;
 import java.util.OptionalLong;
-import java.util.Queue;
 import java.util.Random;
 import java.util.Set;
 import java.util.StringJoiner;
+import java.util.TreeMap;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class TextModule implements Module {
 
@@ -76,6 +98,7 @@ public class TextModule implements Module {
 		registry.registerCommand(CommandName.constant("regex"), Regex::new);
 		registry.registerCommand(CommandName.constant("schema"), Schema::new);
 		registry.registerCommand(CommandName.constant("filter"), Filter::new);
+		registry.registerCommand(CommandName.constant("filter-any"), FilterAny::new);
 		registry.registerCommand(CommandName.constant("enumerate"), Enumerate::new);
 		registry.registerCommand(CommandName.constant("timestamp"), Timestamp::new);
 		registry.registerCommand(CommandName.constant("distinct"), Distinct::new);
@@ -90,6 +113,8 @@ public class TextModule implements Module {
 		registry.registerCommand(CommandName.constant("freq"), Freq::new);
 		registry.registerCommand(CommandName.constant("min"), Min::new);
 		registry.registerCommand(CommandName.constant("max"), Max::new);
+		registry.registerCommand(CommandName.constant("window"), Window::new);
+		registry.registerCommand(CommandName.constant("joinWith"), JoinWith::new);
 	}
 
 	@Description("select a subset of keys from a record")
@@ -125,20 +150,24 @@ public class TextModule implements Module {
 				return ExitStatus.error();
 			}
 			Key key = args.get(0).asKey();
-			Pattern pattern = Pattern.compile(args.get(1).asString());
+			String regex = args.get(1).asString();
+			Matcher matcher = Pattern.compile(regex).matcher("");
+			Optional<String> literal = RequiredLiteral.of(regex);
+			List<String> parts = new ArrayList<>();
 			Map<Integer, Key> cachedKeys = new HashMap<>();
 			for (Record record : InputChannel.iterate(in)) {
 				record.value(key)
 						.flatMap(v -> v.unwrap(String.class))
-						.ifPresent(str -> out.send(split(pattern, str, cachedKeys))); // side effect
+						.ifPresent(str -> out.send(split(matcher, literal, str, parts, cachedKeys))); // side effect
 			}
 			return ExitStatus.success();
 		}
 
-		private Record split(Pattern pattern, String str, Map<Integer, Key> cachedKeys) {
+		private Record split(Matcher matcher, Optional<String> literal, String str, List<String> parts, Map<Integer, Key> cachedKeys) {
+			splitInto(matcher, literal, str, parts);
 			int k = 1;
 			Records.Builder builder = Records.builder();
-			for (String value : pattern.split(str)) {
+			for (String value : parts) {
 				Key key = cachedKeys.computeIfAbsent(k, this::makeKey);
 				builder.entry(key, Values.ofText(value));
 				k++;
@@ -146,6 +175,35 @@ public class TextModule implements Module {
 			return builder.build();
 		}
 
+		// same semantics of Pattern.split(str) but reusing the matcher
+		private void splitInto(Matcher matcher, Optional<String> literal, String str, List<String> parts) {
+			parts.clear();
+			if (literal.isPresent() && !str.contains(literal.get())) {
+				parts.add(str);
+				return;
+			}
+			matcher.reset(str);
+			int index = 0;
+			while (matcher.find()) {
+				if (index == 0 && matcher.start() == 0 && matcher.end() == 0) {
+					// no empty leading substring for a zero-width match at the beginning
+					continue;
+				}
+				parts.add(str.substring(index, matcher.start()));
+				index = matcher.end();
+			}
+			if (index == 0) {
+				parts.add(str);
+				return;
+			}
+			parts.add(str.substring(index));
+			// like limit == 0, trailing empty strings are discarded
+			int size = parts.size();
+			while (size > 0 && parts.get(size - 1).isEmpty()) {
+				parts.remove(--size);
+			}
+		}
+
 		private Key makeKey(Integer i) {
 			return Keys.of(Integer.toString(i));
 		}
@@ -232,20 +290,28 @@ public class TextModule implements Module {
 				return ExitStatus.error();
 			}
 			Key key = args.get(0).asKey();
-			Pattern pattern = Pattern.compile(args.get(1).asString());
-			List<String> groupNames = extractNamedGroups(args.get(1).asString());
+			String regex = args.get(1).asString();
+			Matcher matcher = Pattern.compile(regex).matcher("");
+			Optional<String> literal = RequiredLiteral.of(regex);
+			List<String> groupNames = extractNamedGroups(regex);
+			Key[] groupKeys = groupNames.stream().map(Keys::of).toArray(Key[]::new);
 			Locale locale = Locale.getDefault();
 			for (Record record : InputChannel.iterate(in)) {
-				record.value(key).ifPresent(v -> {
-					Matcher matcher = pattern.matcher(v.show(locale));
+				Optional<Value> value = record.value(key);
+				if (value.isEmpty()) {
+					continue;
+				}
+				String str = value.get().show(locale);
+				if (literal.isPresent() && !str.contains(literal.get())) {
+					continue;
+				}
+				if (matcher.reset(str).find()) {
 					Records.Builder builder = Records.builder();
-					if (matcher.find()) {
-						for (String groupName : groupNames) {
-							builder.entry(Keys.of(groupName), Values.ofText(matcher.group(groupName)));
-						}
-						out.send(builder.build());
+					for (int i = 0; i < groupKeys.length; i++) {
+						builder.entry(groupKeys[i], Values.ofText(matcher.group(groupNames.get(i))));
 					}
-				});
+					out.send(builder.build());
+				}
 			}
 			return ExitStatus.success();
 		}
@@ -295,18 +361,217 @@ public class TextModule implements Module {
 				return ExitStatus.error();
 			}
 			Key key = args.get(0).asKey();
-			Pattern pattern = Pattern.compile(args.get(1).asString());
+			String regex = args.get(1).asString();
+			Matcher matcher = Pattern.compile(regex).matcher("");
+			Optional<String> literal = RequiredLiteral.of(regex);
 			for (Record record : InputChannel.iterate(in)) {
-				// this could be allocation intensive but let's see
 				record.value(key)
 						.flatMap(v -> v.unwrap(String.class))
-						.filter(s -> pattern.matcher(s).matches())
+						.filter(s -> literal.isEmpty() || s.contains(literal.get())) // cheap rejection before running the regex
+						.filter(s -> matcher.reset(s).matches())
 						.ifPresent(v -> out.send(record)); // side effect
 			}
 			return ExitStatus.success();
 		}
 	}
 
+	@Description("copy incoming records to the output only if they contain any of the literals listed in a file (one per line)")
+	@Examples({
+			@Example(command = "lines access.log | filter-any text blocked-ips.txt", description = "output lines containing any of the blocked IPs"),
+			@Example(command = "lines access.log | filter-any text request-ids.txt emit", description = "same as above, adding 'pattern' key with the literal found"),
+	})
+	public static class FilterAny implements Command, StateAware {
+
+		public static final Key PATTERN = Keys.of("pattern");
+
+		private State state;
+
+		@Override
+		public void setState(State state) {
+			this.state = state;
+		}
+
+		@Override
+		public ExitStatus run(CommandArguments args, InputChannel in, OutputChannel out, OutputChannel err) {
+			if (args.size() < 2 || args.size() > 3) {
+				err.send(Errors.usage("filter-any key patterns-file [emit]"));
+				return ExitStatus.error();
+			}
+			boolean emit = args.size() == 3;
+			if (emit && !"emit".equals(args.get(2).asString())) {
+				err.send(Errors.usage("filter-any key patterns-file [emit]"));
+				return ExitStatus.error();
+			}
+			Key key = args.get(0).asKey();
+			Path source = args.get(1).asPath(state);
+			if (!Files.isRegularFile(source)) {
+				err.send(Errors.message("not a regular file: %s", source));
+				return ExitStatus.error();
+			}
+			List<String> patterns;
+			try (Stream<String> lines = Files.lines(source, StandardCharsets.UTF_8)) {
+				patterns = lines.filter(line -> !line.isEmpty()).toList();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			AhoCorasick automaton = new AhoCorasick(patterns);
+			for (Record record : InputChannel.iterate(in)) {
+				Optional<String> text = record.value(key).flatMap(v -> v.unwrap(String.class));
+				if (text.isEmpty()) {
+					continue;
+				}
+				int found = automaton.find(text.get());
+				if (found >= 0) {
+					out.send(emit ? record.append(PATTERN, Values.ofText(patterns.get(found))) : record);
+				}
+			}
+			return ExitStatus.success();
+		}
+	}
+
+	// Aho-Corasick automaton over UTF-16 chars: all the patterns are searched in one pass
+	// over the input, so the cost per char does not depend on the number of patterns.
+	// States are plain ints and transitions are stored in primitive arrays to keep
+	// the automaton compact (no object per state).
+	private static class AhoCorasick {
+
+		private static final int ROOT = 0;
+
+		private static final int NONE = -1;
+
+		// dense transitions from root: almost every step starts or restarts from there
+		private final int[] rootTransitions = new int[Character.MAX_VALUE + 1];
+
+		private final Transitions transitions;
+
+		private final int[] failure;
+
+		// index of the pattern found when entering a state (including suffixes via failure links), NONE otherwise
+		private final int[] found;
+
+		public AhoCorasick(List<String> patterns) {
+			int maxStates = 1 + patterns.stream().mapToInt(String::length).sum();
+			transitions = new Transitions(maxStates);
+			int[] parent = new int[maxStates];
+			char[] label = new char[maxStates];
+			int[] depth = new int[maxStates];
+			int[] terminal = new int[maxStates];
+			Arrays.fill(terminal, NONE);
+			int states = 1;
+			for (int p = 0; p < patterns.size(); p++) {
+				String pattern = patterns.get(p);
+				int state = ROOT;
+				for (int i = 0; i < pattern.length(); i++) {
+					char c = pattern.charAt(i);
+					int next = state == ROOT ? rootTransitions[c] : transitions.get(state, c);
+					if (next == ROOT || next == NONE) {
+						next = states++;
+						parent[next] = state;
+						label[next] = c;
+						depth[next] = depth[state] + 1;
+						if (state == ROOT) {
+							rootTransitions[c] = next;
+						} else {
+							transitions.put(state, c, next);
+						}
+					}
+					state = next;
+				}
+				if (terminal[state] == NONE) {
+					terminal[state] = p;
+				}
+			}
+			// breadth first (i.e. by depth) since failure links always point to a shorter state
+			Integer[] order = new Integer[states];
+			Arrays.setAll(order, i -> i);
+			Arrays.sort(order, Comparator.comparingInt(i -> depth[i]));
+			failure = new int[states];
+			found = new int[states];
+			found[ROOT] = NONE;
+			for (int k = 1; k < states; k++) {
+				int state = order[k];
+				if (depth[state] > 1) {
+					failure[state] = step(failure[parent[state]], label[state]);
+				}
+				found[state] = terminal[state] != NONE ? terminal[state] : found[failure[state]];
+			}
+		}
+
+		// index of the first pattern found in text, NONE if there is no match
+		public int find(String text) {
+			int state = ROOT;
+			for (int i = 0; i < text.length(); i++) {
+				state = step(state, text.charAt(i));
+				if (found[state] != NONE) {
+					return found[state];
+				}
+			}
+			return NONE;
+		}
+
+		private int step(int state, char c) {
+			while (state != ROOT) {
+				int next = transitions.get(state, c);
+				if (next != NONE) {
+					return next;
+				}
+				state = failure[state];
+			}
+			return rootTransitions[c];
+		}
+	}
+
+	// open addressing hash table (linear probing) of (state, char) -> state
+	private static class Transitions {
+
+		private static final long EMPTY = -1;
+
+		private final long[] keys;
+
+		private final int[] values;
+
+		private final int mask;
+
+		public Transitions(int expectedSize) {
+			// load factor <= 0.5
+			int capacity = Integer.highestOneBit(Math.max(2, expectedSize) * 2 - 1) << 1;
+			keys = new long[capacity];
+			values = new int[capacity];
+			mask = capacity - 1;
+			Arrays.fill(keys, EMPTY);
+		}
+
+		public int get(int state, char c) {
+			long key = key(state, c);
+			int i = index(key);
+			while (keys[i] != EMPTY) {
+				if (keys[i] == key) {
+					return values[i];
+				}
+				i = (i + 1) & mask;
+			}
+			return AhoCorasick.NONE;
+		}
+
+		public void put(int state, char c, int next) {
+			long key = key(state, c);
+			int i = index(key);
+			while (keys[i] != EMPTY && keys[i] != key) {
+				i = (i + 1) & mask;
+			}
+			keys[i] = key;
+			values[i] = next;
+		}
+
+		private static long key(int state, char c) {
+			return ((long) state << 16) | c;
+		}
+
+		private int index(long key) {
+			return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+		}
+	}
+
 	@Description("prepend 'index' key to all incoming records")
 	@Examples({
 			@Example(command = "lines file.txt | enumerate", description = "similar to 'cat -n'"),
@@ -566,26 +831,65 @@ public class TextModule implements Module {
 				err.send(Errors.message("number must be >= 1"));
 				return ExitStatus.error();
 			}
-			Queue<Record> queue = keepLastRecords(in, n);
-			output(out, queue);
+			RingBuffer buffer = keepLastRecords(in, n);
+			buffer.forEach(out::send);
 			return ExitStatus.success();
 		}
 
-		private void output(OutputChannel out, Queue<Record> queue) {
-			for (Record record : queue) {
-				out.send(record);
+		private RingBuffer keepLastRecords(InputChannel in, long n) {
+			RingBuffer buffer = new RingBuffer(n);
+			for (Record record : InputChannel.iterate(in)) {
+				buffer.add(record);
 			}
+			return buffer;
 		}
+	}
 
-		private Queue<Record> keepLastRecords(InputChannel in, long n) {
-			Queue<Record> queue = new LinkedList<>();
-			for (Record record : InputChannel.iterate(in)) {
-				queue.add(record);
-				if (queue.size() > n) {
-					queue.remove();
+	// keeps the last 'capacity' records, overwriting the oldest one when full
+	// (no allocation per record, unlike a linked list)
+	private static class RingBuffer {
+
+		private static final int INITIAL_SIZE = 16;
+
+		// a very big capacity is usually just a way to say "all"
+		private static final int MAX_SIZE = Integer.MAX_VALUE - 8;
+
+		private final int capacity;
+
+		private Record[] records;
+
+		private int next = 0; // slot of the next record
+
+		private boolean full = false;
+
+		public RingBuffer(long capacity) {
+			this.capacity = (int) Math.min(capacity, MAX_SIZE);
+			this.records = new Record[Math.min(this.capacity, INITIAL_SIZE)];
+		}
+
+		public void add(Record record) {
+			if (next == records.length && records.length < capacity) {
+				// still growing: the buffer is not yet wrapping around
+				records = Arrays.copyOf(records, (int) Math.min((long) records.length * 2, capacity));
+			}
+			if (next == records.length) {
+				next = 0;
+				full = true;
+			}
+			records[next] = record;
+			next += 1;
+		}
+
+		// from oldest to newest
+		public void forEach(Consumer<Record> consumer) {
+			if (full) {
+				for (int i = next; i < records.length; i++) {
+					consumer.accept(records[i]);
 				}
 			}
-			return queue;
+			for (int i = 0; i < next; i++) {
+				consumer.accept(records[i]);
+			}
 		}
 	}
 
@@ -772,4 +1076,797 @@ public class TextModule implements Module {
 
 	}
 
+	@Description("aggregate records over tumbling or sliding time windows, emitting every window as soon as it is closed")
+	@Examples({
+			@Example(command = "watch . | timestamp | window 10s count", description = "count filesystem events every 10 seconds"),
+			@Example(command = "watch . | timestamp | window 1m by type count", description = "count filesystem events by type every minute"),
+			@Example(command = "watch . | timestamp | window 1m 10s count", description = "count events of the last minute, every 10 seconds (sliding window)"),
+			@Example(command = "ls | window 1s sum size", description = "records without 'timestamp' are bucketed by arrival time"),
+	})
+	public static class Window implements Command {
+
+		public static final Key START = Keys.of("start");
+
+		public static final Key END = Keys.of("end");
+
+		private static final String USAGE = "window size [slide] [by key] count|sum key|min key|max key";
+
+		private Clock clock = Clock.systemUTC();
+
+		public void setClock(Clock clock) {
+			this.clock = clock;
+		}
+
+		@Override
+		public ExitStatus run(CommandArguments args, InputChannel in, OutputChannel out, OutputChannel err) {
+			if (args.size() < 2) {
+				err.send(Errors.usage(USAGE));
+				return ExitStatus.error();
+			}
+			Optional<Duration> size = args.get(0).asDuration().filter(this::isPositive);
+			if (size.isEmpty()) {
+				err.send(Errors.message("not a valid duration: %s", args.get(0).asString()));
+				return ExitStatus.error();
+			}
+			int i = 1;
+			Duration slide = size.get();
+			Optional<Duration> maybeSlide = args.get(i).asDuration();
+			if (maybeSlide.isPresent()) {
+				if (!isPositive(maybeSlide.get()) || maybeSlide.get().compareTo(size.get()) > 0) {
+					err.send(Errors.message("slide must be > 0 and <= %s", args.get(0).asString()));
+					return ExitStatus.error();
+				}
+				slide = maybeSlide.get();
+				i += 1;
+			}
+			Key groupBy = null;
+			if (i + 1 < args.size() && "by".equals(args.get(i).asString())) {
+				groupBy = args.get(i + 1).asKey();
+				i += 2;
+			}
+			Optional<Supplier<Aggregation>> aggregation = aggregation(args, i);
+			if (aggregation.isEmpty()) {
+				err.send(Errors.usage(USAGE));
+				return ExitStatus.error();
+			}
+			Windows windows = new Windows(size.get().toMillis(), slide.toMillis(), groupBy, aggregation.get(), clock, out, err);
+			// on a quiet stream no record arrives to close the last window, the timer closes it on time
+			Thread timer = Thread.ofVirtual().name("window-timer").start(() -> closeOnTime(windows));
+			try {
+				for (Record record : InputChannel.iterate(in)) {
+					Optional<Value> group = groupBy == null ? Optional.of(Values.none()) : record.value(groupBy);
+					Optional<Instant> eventTime = eventTimeOf(record);
+					group.ifPresent(g -> windows.add(eventTime.orElseGet(clock::instant).toEpochMilli(), eventTime.isEmpty(), g, record)); // side effect
+				}
+			} finally {
+				stop(timer);
+			}
+			windows.flush();
+			return ExitStatus.success();
+		}
+
+		private void closeOnTime(Windows windows) {
+			try {
+				while (!Thread.currentThread().isInterrupted()) {
+					Thread.sleep(windows.expire());
+				}
+			} catch (InterruptedException e) {
+				// end of input
+			} catch (RuntimeException e) {
+				windows.fail(e); // e.g. the consumer stopped, the reading thread gets it at its next step
+			}
+		}
+
+		private void stop(Thread timer) {
+			timer.interrupt();
+			try {
+				timer.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		private boolean isPositive(Duration duration) {
+			return duration.toMillis() > 0;
+		}
+
+		// event time when available (e.g. 'timestamp' command), arrival time otherwise
+		private Optional<Instant> eventTimeOf(Record record) {
+			return record.value(Keys.TIMESTAMP).flatMap(v -> v.unwrap(Instant.class));
+		}
+
+		private Optional<Supplier<Aggregation>> aggregation(CommandArguments args, int i) {
+			int remaining = args.size() - i;
+			if (remaining == 1 && "count".equals(args.get(i).asString())) {
+				return Optional.of(CountAggregation::new);
+			}
+			if (remaining == 2) {
+				Key key = args.get(i + 1).asKey();
+				return switch (args.get(i).asString()) {
+					case "sum" -> Optional.of(() -> new SumAggregation(key));
+					case "min" -> Optional.of(() -> new SelectAggregation(key, Min.MIN, Values.Comparators.noneLast(Comparator.naturalOrder())));
+					case "max" -> Optional.of(() -> new SelectAggregation(key, Max.MAX, Values.Comparators.noneFirst(Comparator.<Value>naturalOrder()).reversed()));
+					default -> Optional.empty();
+				};
+			}
+			return Optional.empty();
+		}
+
+		// open windows, indexed by start (epoch millis) and then by group;
+		// shared by the reading thread and the timer
+		private static class Windows {
+
+			private final long size;
+			private final long slide;
+			private final Key groupBy;
+			private final Supplier<Aggregation> aggregation;
+			private final Clock clock;
+			private final OutputChannel out;
+			private final OutputChannel err;
+			private final NavigableMap<Long, Map<Value, Aggregation>> open = new TreeMap<>();
+			private long watermark = Long.MIN_VALUE;
+			private long lastArrival;
+			private boolean arrivalTime;
+			private RuntimeException failure;
+
+			public Windows(long size, long slide, Key groupBy, Supplier<Aggregation> aggregation, Clock clock, OutputChannel out, OutputChannel err) {
+				this.size = size;
+				this.slide = slide;
+				this.groupBy = groupBy;
+				this.aggregation = aggregation;
+				this.clock = clock;
+				this.out = out;
+				this.err = err;
+			}
+
+			public synchronized void add(long timestamp, boolean arrival, Value group, Record record) {
+				rethrowFailure();
+				watermark = Math.max(watermark, timestamp);
+				lastArrival = clock.millis();
+				arrivalTime = arrival;
+				while (!open.isEmpty() && open.firstKey() + size <= watermark) {
+					emit(open.pollFirstEntry());
+				}
+				boolean added = false;
+				long lastStart = Math.floorDiv(timestamp, slide) * slide;
+				for (long start = lastStart; start > timestamp - size; start -= slide) {
+					if (start + size <= watermark) {
+						break; // late record, this window (and all previous ones) has been already emitted
+					}
+					open.computeIfAbsent(start, k -> new LinkedHashMap<>())
+							.computeIfAbsent(group, k -> aggregation.get())
+							.add(record);
+					added = true;
+				}
+				if (!added) {
+					err.send(Errors.message("late record dropped: %s", Instant.ofEpochMilli(timestamp)));
+				}
+			}
+
+			// While no record arrives the watermark moves forward with the wall clock,
+			// emitting the windows that ended in the meantime.
+			// Only for records bucketed by arrival time: event time (e.g. of a replayed log)
+			// moves forward just with the records.
+			// Yields the milliseconds until the first open window ends.
+			public synchronized long expire() {
+				if (watermark == Long.MIN_VALUE || !arrivalTime) {
+					return slide;
+				}
+				long now = clock.millis();
+				watermark += Math.max(0, now - lastArrival);
+				lastArrival = now;
+				while (!open.isEmpty() && open.firstKey() + size <= watermark) {
+					emit(open.pollFirstEntry());
+				}
+				return open.isEmpty() ? slide : open.firstKey() + size - watermark;
+			}
+
+			public synchronized void flush() {
+				rethrowFailure();
+				while (!open.isEmpty()) {
+					emit(open.pollFirstEntry());
+				}
+			}
+
+			// a send failed on the timer thread
+			public synchronized void fail(RuntimeException e) {
+				failure = e;
+			}
+
+			private void rethrowFailure() {
+				if (failure != null) {
+					throw failure;
+				}
+			}
+
+			private void emit(Map.Entry<Long, Map<Value, Aggregation>> window) {
+				long start = window.getKey();
+				for (var group : window.getValue().entrySet()) {
+					Records.Builder builder = Records.builder()
+							.entry(START, Values.ofInstant(Instant.ofEpochMilli(start)))
+							.entry(END, Values.ofInstant(Instant.ofEpochMilli(start + size)));
+					if (groupBy != null) {
+						builder.entry(groupBy, group.getKey());
+					}
+					builder.entry(group.getValue().result());
+					// using direct send, windows are usually computed over unbounded streams
+					out.send(builder.build(), EnumSet.of(OutputChannel.Option.DIRECT));
+				}
+			}
+		}
+
+		private interface Aggregation {
+
+			void add(Record record);
+
+			Entry result();
+		}
+
+		private static class CountAggregation implements Aggregation {
+
+			private long count = 0;
+
+			@Override
+			public void add(Record record) {
+				count += 1;
+			}
+
+			@Override
+			public Entry result() {
+				return new Entry(Keys.COUNT, Values.ofNumeric(count));
+			}
+		}
+
+		private static class SumAggregation implements Aggregation {
+
+			private final Key key;
+			private Optional<Value> sum = Optional.empty();
+
+			public SumAggregation(Key key) {
+				this.key = key;
+			}
+
+			@Override
+			public void add(Record record) {
+				Optional<Value> value = record.value(key);
+				if (value.isEmpty()) {
+					return;
+				}
+				if (sum.isEmpty()) {
+					sum = value;
+				} else {
+					sum = sum.flatMap(v -> v.merge(value.get()));
+				}
+			}
+
+			@Override
+			public Entry result() {
+				return new Entry(key, sum.orElse(Values.none()));
+			}
+		}
+
+		// keeps the smallest value according to the comparator
+		private static class SelectAggregation implements Aggregation {
+
+			private final Key key;
+			private final Key resultKey;
+			private final Comparator<Value> comparator;
+			private Value selected = Values.none();
+
+			public SelectAggregation(Key key, Key resultKey, Comparator<Value> comparator) {
+				this.key = key;
+				this.resultKey = resultKey;
+				this.comparator = comparator;
+			}
+
+			@Override
+			public void add(Record record) {
+				record.value(key).ifPresent(current -> {
+					if (comparator.compare(current, selected) < 0) {
+						selected = current;
+					}
+				}); // side effect
+			}
+
+			@Override
+			public Entry result() {
+				return new Entry(resultKey, selected);
+			}
+		}
+	}
+
+	@Description("hash join of incoming records with the records produced by the inner block, matching by key")
+	@Examples({
+			@Example(command = "ps | joinWith user { from-csv owners.csv }", description = "add owner columns to processes (inner join)"),
+			@Example(command = "walk . | to-checksum SHA-256 | joinWith path left { from-checksum manifest.sha256 }", description = "keep all files, adding expected hash when available (left join)"),
+	})
+	public static class JoinWith implements CommandWrapper {
+
+		private static final String INNER = "inner";
+		private static final String LEFT = "left";
+
+		private NestedCommand nestedCommand;
+
+		// number of records of the inner block kept in memory (whatever their size), above it they are spilled to disk
+		private long maxRecordsInMemory = 1_000_000;
+
+		@Override
+		public void setNestedCommand(NestedCommand nestedCommand) {
+			this.nestedCommand = nestedCommand;
+		}
+
+		public void setMaxRecordsInMemory(long maxRecordsInMemory) {
+			this.maxRecordsInMemory = maxRecordsInMemory;
+		}
+
+		@Override
+		public ExitStatus run(CommandArguments args, InputChannel in, OutputChannel out, OutputChannel err) {
+			if (args.isEmpty() || args.size() > 2) {
+				err.send(Errors.usage("joinWith key [%s|%s] { ... }", INNER, LEFT));
+				return ExitStatus.error();
+			}
+			Key key = args.get(0).asKey();
+			String mode = args.size() == 2 ? args.get(1).asString() : INNER;
+			if (!INNER.equals(mode) && !LEFT.equals(mode)) {
+				err.send(Errors.message("must be '%s' or '%s'", INNER, LEFT));
+				return ExitStatus.error();
+			}
+			if (!(nestedCommand instanceof RedirectableNestedCommand buildSide)) {
+				err.send(Errors.message("cannot collect the records of the inner block"));
+				return ExitStatus.error();
+			}
+			try (HashTable hashTable = new HashTable(key, maxRecordsInMemory)) {
+				// build side: the inner block, never reading from the pipeline
+				ExitStatus exitStatus = buildSide.run(Optional::empty, hashTable::add);
+				if (exitStatus.isError()) {
+					return exitStatus;
+				}
+				// probe side: the pipeline
+				hashTable.probe(in, LEFT.equals(mode), out);
+				return ExitStatus.success();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private static class HashTable implements Closeable {
+
+			private final Key key;
+			private final long maxRecordsInMemory;
+			private final Map<Value, List<Record>> table = new HashMap<>();
+			private long count = 0;
+			private Spill spilled; // not null after exceeding maxRecordsInMemory
+
+			public HashTable(Key key, long maxRecordsInMemory) {
+				this.key = key;
+				this.maxRecordsInMemory = maxRecordsInMemory;
+			}
+
+			public void add(Record record) {
+				Optional<Value> value = record.value(key);
+				if (value.isEmpty()) {
+					return; // cannot match anything
+				}
+				try {
+					if (spilled != null) {
+						spilled.write(value.get(), record);
+						return;
+					}
+					table.computeIfAbsent(value.get(), k -> new ArrayList<>()).add(record);
+					count += 1;
+					if (count > maxRecordsInMemory) {
+						spilled = new Spill();
+						for (var entry : table.entrySet()) {
+							for (Record r : entry.getValue()) {
+								spilled.write(entry.getKey(), r);
+							}
+						}
+						table.clear();
+					}
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+
+			public void probe(InputChannel in, boolean left, OutputChannel out) throws IOException {
+				if (spilled == null) {
+					for (Record record : InputChannel.iterate(in)) {
+						List<Record> matches = record.value(key).map(table::get).orElse(List.of());
+						emit(record, matches, left, out);
+					}
+					return;
+				}
+				// grace hash join: partitioning the pipeline as well, then joining one partition at time
+				try (Spill probe = new Spill()) {
+					for (Record record : InputChannel.iterate(in)) {
+						Optional<Value> value = record.value(key);
+						if (value.isPresent()) {
+							probe.write(value.get(), record);
+						} else if (left) {
+							out.send(record);
+						}
+					}
+					spilled.flush();
+					probe.flush();
+					for (int partition = 0; partition < Spill.PARTITIONS; partition++) {
+						Map<Value, List<Record>> partitionTable = new HashMap<>();
+						spilled.read(partition, r -> partitionTable.computeIfAbsent(r.value(key).orElseThrow(), k -> new ArrayList<>()).add(r));
+						probe.read(partition, r -> emit(r, partitionTable.getOrDefault(r.value(key).orElseThrow(), List.of()), left, out));
+					}
+				}
+			}
+
+			private void emit(Record record, List<Record> matches, boolean left, OutputChannel out) {
+				if (matches.isEmpty() && left) {
+					out.send(record);
+				}
+				for (Record match : matches) {
+					Records.Builder builder = Records.builder();
+					record.entries().forEach(builder::entry);
+					match.entries()
+							.filter(e -> record.value(e.key()).isEmpty())
+							.forEach(builder::entry);
+					out.send(builder.build());
+				}
+			}
+
+			@Override
+			public void close() throws IOException {
+				if (spilled != null) {
+					spilled.close();
+				}
+			}
+		}
+
+		// records partitioned by hash of the join value into temporary files
+		private static class Spill implements Closeable {
+
+			private static final int PARTITIONS = 64;
+
+			private final Path[] files = new Path[PARTITIONS];
+			private final DataOutputStream[] outputs = new DataOutputStream[PARTITIONS];
+
+			public Spill() throws IOException {
+				try {
+					for (int i = 0; i < PARTITIONS; i++) {
+						files[i] = Files.createTempFile("hosh-join-", ".bin");
+						outputs[i] = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(files[i])));
+					}
+				} catch (IOException | RuntimeException e) {
+					// the partitions created so far are not leaked
+					try {
+						close();
+					} catch (IOException suppressed) {
+						e.addSuppressed(suppressed);
+					}
+					throw e;
+				}
+			}
+
+			public void write(Value value, Record record) throws IOException {
+				int partition = Math.floorMod(value.hashCode(), PARTITIONS);
+				RecordCodec.write(outputs[partition], record);
+			}
+
+			public void flush() throws IOException {
+				for (DataOutputStream output : outputs) {
+					output.flush();
+				}
+			}
+
+			public void read(int partition, Consumer<Record> consumer) throws IOException {
+				try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(files[partition])))) {
+					while (true) {
+						Optional<Record> record = RecordCodec.read(input);
+						if (record.isEmpty()) {
+							break;
+						}
+						consumer.accept(record.get());
+					}
+				}
+			}
+
+			// deletes every partition, even after a failure
+			@Override
+			public void close() throws IOException {
+				IOException failure = null;
+				for (int i = 0; i < PARTITIONS; i++) {
+					try {
+						if (outputs[i] != null) {
+							outputs[i].close();
+						}
+					} catch (IOException e) {
+						failure = chain(failure, e);
+					}
+					try {
+						if (files[i] != null) {
+							Files.deleteIfExists(files[i]);
+						}
+					} catch (IOException e) {
+						failure = chain(failure, e);
+					}
+				}
+				if (failure != null) {
+					throw failure;
+				}
+			}
+
+			private static IOException chain(IOException first, IOException next) {
+				if (first == null) {
+					return next;
+				}
+				first.addSuppressed(next);
+				return first;
+			}
+		}
+	}
+
+	// binary encoding of records, using only the public API of values
+	// (i.e. a styled value loses its style)
+	private static class RecordCodec {
+
+		private static final byte NONE = 0;
+		private static final byte TEXT = 1;
+		private static final byte NUMERIC = 2;
+		private static final byte SIZE = 3;
+		private static final byte PATH = 4;
+		private static final byte INSTANT = 5;
+		private static final byte DURATION = 6;
+		private static final byte BYTES = 7;
+
+		private RecordCodec() {
+		}
+
+		public static void write(DataOutputStream output, Record record) throws IOException {
+			output.writeInt(record.size());
+			Iterator<Entry> entries = record.entries().iterator();
+			while (entries.hasNext()) {
+				Entry entry = entries.next();
+				writeString(output, entry.key().name());
+				writeValue(output, entry.value());
+			}
+		}
+
+		public static Optional<Record> read(DataInputStream input) throws IOException {
+			int size;
+			try {
+				size = input.readInt();
+			} catch (EOFException e) {
+				return Optional.empty();
+			}
+			Records.Builder builder = Records.builder();
+			for (int i = 0; i < size; i++) {
+				Key key = Keys.of(readString(input));
+				builder.entry(key, readValue(input));
+			}
+			return Optional.of(builder.build());
+		}
+
+		private static void writeValue(DataOutputStream output, Value value) throws IOException {
+			if (Values.none().equals(value)) {
+				output.writeByte(NONE);
+				return;
+			}
+			Optional<Path> path = value.unwrap(Path.class);
+			if (path.isPresent()) {
+				output.writeByte(PATH);
+				writeString(output, path.get().toString());
+				return;
+			}
+			Optional<Instant> instant = value.unwrap(Instant.class);
+			if (instant.isPresent()) {
+				output.writeByte(INSTANT);
+				output.writeLong(instant.get().getEpochSecond());
+				output.writeInt(instant.get().getNano());
+				return;
+			}
+			Optional<Duration> duration = value.unwrap(Duration.class);
+			if (duration.isPresent()) {
+				output.writeByte(DURATION);
+				output.writeLong(duration.get().getSeconds());
+				output.writeInt(duration.get().getNano());
+				return;
+			}
+			Optional<byte[]> bytes = value.unwrap(byte[].class);
+			if (bytes.isPresent()) {
+				output.writeByte(BYTES);
+				output.writeInt(bytes.get().length);
+				output.write(bytes.get());
+				return;
+			}
+			Optional<Long> number = value.unwrap(Long.class);
+			if (number.isPresent()) {
+				// sizes cannot be unwrapped as String
+				output.writeByte(value.unwrap(String.class).isPresent() ? NUMERIC : SIZE);
+				output.writeLong(number.get());
+				return;
+			}
+			output.writeByte(TEXT);
+			writeString(output, value.unwrap(String.class).orElseGet(() -> value.show(Locale.ROOT)));
+		}
+
+		private static Value readValue(DataInputStream input) throws IOException {
+			byte type = input.readByte();
+			return switch (type) {
+				case NONE -> Values.none();
+				case TEXT -> Values.ofText(readString(input));
+				case NUMERIC -> Values.ofNumeric(input.readLong());
+				case SIZE -> Values.ofSize(input.readLong());
+				case PATH -> Values.ofPath(Path.of(readString(input)));
+				case INSTANT -> Values.ofInstant(Instant.ofEpochSecond(input.readLong(), input.readInt()));
+				case DURATION -> Values.ofDuration(Duration.ofSeconds(input.readLong(), input.readInt()));
+				case BYTES -> {
+					byte[] bytes = new byte[input.readInt()];
+					input.readFully(bytes);
+					yield Values.ofBytes(bytes);
+				}
+				default -> throw new IllegalStateException("unknown value type: " + type);
+			};
+		}
+
+		// not using writeUTF(), limited to 64KB
+		private static void writeString(DataOutputStream output, String string) throws IOException {
+			byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+			output.writeInt(bytes.length);
+			output.write(bytes);
+		}
+
+		private static String readString(DataInputStream input) throws IOException {
+			byte[] bytes = new byte[input.readInt()];
+			input.readFully(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+	}
+
+	// Longest literal that must appear in any input matched by a regex, e.g. "ERROR" for ".*ERROR.*".
+	// String.contains() is way faster than running the regex engine (indexOf() is an intrinsic),
+	// so it is used to reject most of the non matching inputs.
+	// The analysis is conservative: when in doubt no literal is extracted.
+	static class RequiredLiteral {
+
+		private RequiredLiteral() {
+		}
+
+		public static Optional<String> of(String regex) {
+			String longest = "";
+			StringBuilder run = new StringBuilder();
+			int depth = 0;
+			int i = 0;
+			while (i < regex.length()) {
+				char c = regex.charAt(i);
+				switch (c) {
+					case '\\' -> {
+						if (i + 1 >= regex.length()) {
+							return Optional.empty();
+						}
+						char next = regex.charAt(i + 1);
+						if (next == 'Q') {
+							return Optional.empty(); // quoting is not worth the complexity
+						}
+						if (Character.isLetterOrDigit(next)) {
+							// character classes, boundaries, back references, etc
+							longest = longest(longest, run);
+							i = skipEscape(regex, i + 1);
+						} else {
+							if (depth == 0) {
+								run.append(next);
+							}
+							i += 2;
+						}
+					}
+					case '[' -> {
+						longest = longest(longest, run);
+						i = skipCharacterClass(regex, i);
+					}
+					case '(' -> {
+						if (regex.startsWith("(?", i) && i + 2 < regex.length()) {
+							char flag = regex.charAt(i + 2);
+							if (Character.isLetter(flag) || flag == '-') {
+								return Optional.empty(); // inline flags, like (?i)
+							}
+						}
+						longest = longest(longest, run);
+						depth += 1;
+						i += 1;
+					}
+					case ')' -> {
+						depth -= 1;
+						i += 1;
+					}
+					case '|' -> {
+						if (depth == 0) {
+							return Optional.empty(); // any alternative can match
+						}
+						i += 1;
+					}
+					case '?', '*', '{' -> {
+						// the previous code point is optional
+						if (!run.isEmpty()) {
+							run.setLength(run.offsetByCodePoints(run.length(), -1));
+						}
+						longest = longest(longest, run);
+						i = c == '{' ? regex.indexOf('}', i) + 1 : i + 1;
+						if (i == 0) {
+							return Optional.empty();
+						}
+					}
+					case '+', '.', '^', '$' -> {
+						longest = longest(longest, run);
+						i += 1;
+					}
+					default -> {
+						if (depth == 0) {
+							run.append(c);
+						}
+						i += 1;
+					}
+				}
+			}
+			longest = longest(longest, run);
+			return longest.isEmpty() ? Optional.empty() : Optional.of(longest);
+		}
+
+		// moves the current run to the candidates
+		private static String longest(String longest, StringBuilder run) {
+			String candidate = run.toString();
+			run.setLength(0);
+			return candidate.length() > longest.length() ? candidate : longest;
+		}
+
+		// i is the index of the char after the backslash
+		private static int skipEscape(String regex, int i) {
+			char c = regex.charAt(i);
+			int next = i + 1;
+			if (next < regex.length() && (regex.charAt(next) == '{' || regex.charAt(next) == '<') && "pPxNk".indexOf(c) >= 0) {
+				char close = regex.charAt(next) == '{' ? '}' : '>';
+				int end = regex.indexOf(close, next);
+				return end < 0 ? regex.length() : end + 1;
+			}
+			int length = switch (c) {
+				case 'x' -> 2;
+				case 'u' -> 4;
+				case 'c', 'p', 'P' -> 1;
+				case '0' -> countOctalDigits(regex, next);
+				default -> 0;
+			};
+			return Math.min(regex.length(), next + length);
+		}
+
+		private static int countOctalDigits(String regex, int i) {
+			int count = 0;
+			while (count < 3 && i + count < regex.length() && regex.charAt(i + count) >= '0' && regex.charAt(i + count) <= '7') {
+				count += 1;
+			}
+			return count;
+		}
+
+		// i is the index of the opening bracket, returns the index after the closing bracket
+		private static int skipCharacterClass(String regex, int i) {
+			int nesting = 0;
+			int j = i;
+			while (j < regex.length()) {
+				char c = regex.charAt(j);
+				if (c == '\\') {
+					j += 2;
+					continue;
+				}
+				if (c == '[') {
+					nesting += 1;
+					if (j + 1 < regex.length() && regex.charAt(j + 1) == '^') {
+						j += 1;
+					}
+					if (j + 1 < regex.length() && regex.charAt(j + 1) == ']') {
+						j += 1; // leading ']' is a literal
+					}
+				} else if (c == ']') {
+					nesting -= 1;
+					if (nesting == 0) {
+						return j + 1;
+					}
+				}
+				j += 1;
+			}
+			return regex.length();
+		}
+	}
 }
@@ -30,6 +30,7 @@ import hosh.modules.text.TextModule.Duplicated;
 import hosh.modules.text.TextModule.Enumerate;
 import hosh.modules.text.TextModule.Filter;
 import hosh.modules.text.TextModule.Join;
+import hosh.modules.text.TextModule.Last;
 import hosh.modules.text.TextModule.Regex;
 import hosh.modules.text.TextModule.Schema;
 import hosh.modules.text.TextModule.Select;
@@ -41,6 +42,7 @@ import hosh.modules.text.TextModule.Timestamp;
 import hosh.modules.text.TextModule.Trim;
 import hosh.spi.test.support.RecordMatcher;
 import hosh.spi.CommandArguments;
+import hosh.spi.CommandWrapper;
 import net.jqwik.api.Arbitrary;
 import net.jqwik.api.Arbitraries;
 import net.jqwik.api.Assume;
@@ -60,12 +62,19 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Clock;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 import static hosh.spi.test.support.ExitStatusAssert.assertThat;
 import hosh.spi.ExitStatus;
@@ -74,11 +83,16 @@ import hosh.spi.Keys;
 import hosh.spi.OutputChannel;
 import hosh.spi.Record;
 import hosh.spi.Records;
+import hosh.spi.State;
 import hosh.spi.Values;
 import hosh.test.support.WithThread;
+import hosh.test.support.TemporaryFolder;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willAnswer;
 import static org.mockito.Mockito.times;
 
 class TextModuleTest {
@@ -1944,6 +1958,501 @@ class TextModuleTest {
 		}
 	}
 
+	@Nested
+	@ExtendWith(MockitoExtension.class)
+	class WindowTest {
+
+		@Mock
+		InputChannel in;
+
+		@Mock
+		OutputChannel out;
+
+		@Mock
+		OutputChannel err;
+
+		TextModule.Window sut;
+
+		@BeforeEach
+		void createSut() {
+			sut = new TextModule.Window();
+		}
+
+		@Test
+		void zeroArgs() {
+			// Given
+			// (no setup)
+			// When
+			ExitStatus result = sut.run(CommandArguments.of(), in, out, err);
+			// Then
+			assertThat(result).isError();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: window size [slide] [by key] count|sum key|min key|max key")));
+		}
+
+		@Test
+		void invalidDuration() {
+			// Given
+			// (no setup)
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("asd", "count"), in, out, err);
+			// Then
+			assertThat(result).isError();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("not a valid duration: asd")));
+		}
+
+		@Test
+		void invalidAggregation() {
+			// Given
+			// (no setup)
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("10s", "avg", "size"), in, out, err);
+			// Then
+			assertThat(result).isError();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: window size [slide] [by key] count|sum key|min key|max key")));
+		}
+
+		@SuppressWarnings("unchecked")
+		@Test
+		void tumblingCount() {
+			// Given
+			given(in.recv()).willReturn(
+					Optional.of(event(1, "CREATE")),
+					Optional.of(event(5, "MODIFY")),
+					Optional.of(event(12, "MODIFY")),
+					Optional.empty());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("10s", "count"), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(out).should().send(window(0, 10).entry(Keys.COUNT, Values.ofNumeric(2)).build(), EnumSet.of(OutputChannel.Option.DIRECT));
+			then(out).should().send(window(10, 20).entry(Keys.COUNT, Values.ofNumeric(1)).build(), EnumSet.of(OutputChannel.Option.DIRECT));
+			then(out).shouldHaveNoMoreInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@SuppressWarnings("unchecked")
+		@Test
+		void tumblingCountByKey() {
+			// Given
+			given(in.recv()).willReturn(
+					Optional.of(event(1, "CREATE")),
+					Optional.of(event(2, "MODIFY")),
+					Optional.of(event(3, "MODIFY")),
+					Optional.empty());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("10s", "by", "type", "count"), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(out).should().send(window(0, 10).entry(Keys.of("type"), Values.ofText("CREATE")).entry(Keys.COUNT, Values.ofNumeric(1)).build(), EnumSet.of(OutputChannel.Option.DIRECT));
+			then(out).should().send(window(0, 10).entry(Keys.of("type"), Values.ofText("MODIFY")).entry(Keys.COUNT, Values.ofNumeric(2)).build(), EnumSet.of(OutputChannel.Option.DIRECT));
+			then(out).shouldHaveNoMoreInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@SuppressWarnings("unchecked")
+		@Test
+		void slidingSum() {
+			// Given
+			given(in.recv()).willReturn(
+					Optional.of(event(1, "CREATE").append(Keys.SIZE, Values.ofSize(1))),
+					Optional.of(event(6, "CREATE").append(Keys.SIZE, Values.ofSize(2))),
+					Optional.empty());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("10s", "5s", "sum", "size"), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(out).should().send(window(-5, 5).entry(Keys.SIZE, Values.ofSize(1)).build(), EnumSet.of(OutputChannel.Option.DIRECT));
+			then(out).should().send(window(0, 10).entry(Keys.SIZE, Values.ofSize(3)).build(), EnumSet.of(OutputChannel.Option.DIRECT));
+			then(out).should().send(window(5, 15).entry(Keys.SIZE, Values.ofSize(2)).build(), EnumSet.of(OutputChannel.Option.DIRECT));
+			then(out).shouldHaveNoMoreInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@Test
+		void quietStream() {
+			// Given
+			CountDownLatch emitted = new CountDownLatch(1);
+			willAnswer(invocation -> {
+				emitted.countDown();
+				return null;
+			}).given(out).send(any(Record.class), any());
+			given(in.recv()).willReturn(Optional.of(Records.singleton(Keys.of("type"), Values.ofText("CREATE")))).willAnswer(invocation -> {
+				// no more records for a while, the window must be closed anyway
+				assertThat(emitted.await(5, TimeUnit.SECONDS)).isTrue();
+				return Optional.empty();
+			});
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("0.1s", "count"), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(out).should().send(Mockito.argThat(record -> record.value(Keys.COUNT).equals(Optional.of(Values.ofNumeric(1)))), any());
+			then(out).shouldHaveNoMoreInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@SuppressWarnings("unchecked")
+		@Test
+		void slowEventTimeProducer() {
+			// Given
+			given(in.recv()).willReturn(Optional.of(eventAt(0, "CREATE"))).willAnswer(invocation -> {
+				Thread.sleep(300); // much longer than the window, but event time does not move
+				return Optional.of(eventAt(50, "MODIFY"));
+			}).willReturn(Optional.empty());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("0.1s", "count"), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(out).should().send(Records.builder()
+					.entry(TextModule.Window.START, Values.ofInstant(Instant.ofEpochMilli(0)))
+					.entry(TextModule.Window.END, Values.ofInstant(Instant.ofEpochMilli(100)))
+					.entry(Keys.COUNT, Values.ofNumeric(2))
+					.build(), EnumSet.of(OutputChannel.Option.DIRECT));
+			then(out).shouldHaveNoMoreInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@SuppressWarnings("unchecked")
+		@Test
+		void lateRecordReported() {
+			// Given
+			given(in.recv()).willReturn(
+					Optional.of(event(12, "CREATE")),
+					Optional.of(event(1, "MODIFY")),
+					Optional.empty());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("10s", "count"), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(out).should().send(window(10, 20).entry(Keys.COUNT, Values.ofNumeric(1)).build(), EnumSet.of(OutputChannel.Option.DIRECT));
+			then(out).shouldHaveNoMoreInteractions();
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("late record dropped: 1970-01-01T00:00:01Z")));
+		}
+
+		@Test
+		void failureOfTheTimer() {
+			// Given
+			IllegalStateException failure = new IllegalStateException("consumer stopped");
+			CountDownLatch failed = new CountDownLatch(1);
+			willAnswer(invocation -> {
+				failed.countDown();
+				throw failure;
+			}).given(out).send(any(Record.class), any());
+			given(in.recv()).willReturn(Optional.of(Records.singleton(Keys.of("type"), Values.ofText("CREATE")))).willAnswer(invocation -> {
+				assertThat(failed.await(5, TimeUnit.SECONDS)).isTrue();
+				return Optional.empty();
+			});
+			// When / Then
+			assertThatThrownBy(() -> sut.run(CommandArguments.of("0.1s", "count"), in, out, err)).isSameAs(failure);
+			then(err).shouldHaveNoInteractions();
+		}
+
+		private Record eventAt(long millis, String type) {
+			return Records.builder()
+					.entry(Keys.TIMESTAMP, Values.ofInstant(Instant.ofEpochMilli(millis)))
+					.entry(Keys.of("type"), Values.ofText(type))
+					.build();
+		}
+
+		private Record event(long seconds, String type) {
+			return Records.builder()
+					.entry(Keys.TIMESTAMP, Values.ofInstant(Instant.ofEpochSecond(seconds)))
+					.entry(Keys.of("type"), Values.ofText(type))
+					.build();
+		}
+
+		private Records.Builder window(long startSeconds, long endSeconds) {
+			return Records.builder()
+					.entry(TextModule.Window.START, Values.ofInstant(Instant.ofEpochSecond(startSeconds)))
+					.entry(TextModule.Window.END, Values.ofInstant(Instant.ofEpochSecond(endSeconds)));
+		}
+	}
+
+	@Nested
+	@ExtendWith(MockitoExtension.class)
+	class JoinWithTest {
+
+		@Mock
+		InputChannel in;
+
+		@Mock
+		OutputChannel out;
+
+		@Mock
+		OutputChannel err;
+
+		@Mock
+		CommandWrapper.RedirectableNestedCommand nestedCommand;
+
+		TextModule.JoinWith sut;
+
+		@BeforeEach
+		void createSut() {
+			sut = new TextModule.JoinWith();
+			sut.setNestedCommand(nestedCommand);
+		}
+
+		@Test
+		void zeroArgs() {
+			// Given
+			// (no setup)
+			// When
+			ExitStatus result = sut.run(CommandArguments.of(), in, out, err);
+			// Then
+			assertThat(result).isError();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(nestedCommand).shouldHaveNoInteractions();
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: joinWith key [inner|left] { ... }")));
+		}
+
+		@Test
+		void invalidMode() {
+			// Given
+			// (no setup)
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("id", "outer"), in, out, err);
+			// Then
+			assertThat(result).isError();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(nestedCommand).shouldHaveNoInteractions();
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("must be 'inner' or 'left'")));
+		}
+
+		@Test
+		void nestedCommandNotRedirectable() {
+			// Given
+			sut.setNestedCommand(ExitStatus::success);
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("id"), in, out, err);
+			// Then
+			assertThat(result).isError();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("cannot collect the records of the inner block")));
+		}
+
+		@Test
+		void nestedCommandError() {
+			// Given
+			given(nestedCommand.run(any(), any())).willReturn(ExitStatus.error());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("id"), in, out, err);
+			// Then
+			assertThat(result).isError();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@SuppressWarnings("unchecked")
+		@Test
+		void inner() {
+			// Given
+			Record build = Records.builder().entry(Keys.of("id"), Values.ofNumeric(1)).entry(Keys.NAME, Values.ofText("one")).build();
+			givenBuildSide(build);
+			Record probe1 = Records.builder().entry(Keys.of("id"), Values.ofNumeric(1)).entry(Keys.SIZE, Values.ofSize(10)).build();
+			Record probe2 = Records.builder().entry(Keys.of("id"), Values.ofNumeric(2)).entry(Keys.SIZE, Values.ofSize(20)).build();
+			given(in.recv()).willReturn(Optional.of(probe1), Optional.of(probe2), Optional.empty());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("id"), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(out).should().send(probe1.append(Keys.NAME, Values.ofText("one")));
+			then(out).shouldHaveNoMoreInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@SuppressWarnings("unchecked")
+		@Test
+		void left() {
+			// Given
+			Record build = Records.builder().entry(Keys.of("id"), Values.ofNumeric(1)).entry(Keys.NAME, Values.ofText("one")).build();
+			givenBuildSide(build);
+			Record probe1 = Records.builder().entry(Keys.of("id"), Values.ofNumeric(1)).entry(Keys.SIZE, Values.ofSize(10)).build();
+			Record probe2 = Records.builder().entry(Keys.of("id"), Values.ofNumeric(2)).entry(Keys.SIZE, Values.ofSize(20)).build();
+			given(in.recv()).willReturn(Optional.of(probe1), Optional.of(probe2), Optional.empty());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("id", "left"), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(out).should().send(probe1.append(Keys.NAME, Values.ofText("one")));
+			then(out).should().send(probe2);
+			then(out).shouldHaveNoMoreInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@SuppressWarnings("unchecked")
+		@Test
+		void spillToDisk() {
+			// Given
+			sut.setMaxRecordsInMemory(1);
+			givenBuildSide(
+					Records.builder().entry(Keys.of("id"), Values.ofNumeric(1)).entry(Keys.NAME, Values.ofText("one")).build(),
+					Records.builder().entry(Keys.of("id"), Values.ofNumeric(2)).entry(Keys.TIMESTAMP, Values.ofInstant(Instant.EPOCH)).build(),
+					Records.builder().entry(Keys.of("id"), Values.ofNumeric(2)).entry(Keys.PATH, Values.ofPath(Path.of("two"))).build());
+			Record probe1 = Records.singleton(Keys.of("id"), Values.ofNumeric(1));
+			Record probe2 = Records.singleton(Keys.of("id"), Values.ofNumeric(2));
+			Record probe3 = Records.singleton(Keys.of("id"), Values.ofNumeric(3));
+			given(in.recv()).willReturn(Optional.of(probe1), Optional.of(probe2), Optional.of(probe3), Optional.empty());
+			List<Record> output = new ArrayList<>();
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("id"), in, output::add, err);
+			// Then
+			assertThat(result).isSuccess();
+			assertThat(output).containsExactlyInAnyOrder(
+					probe1.append(Keys.NAME, Values.ofText("one")),
+					probe2.append(Keys.TIMESTAMP, Values.ofInstant(Instant.EPOCH)),
+					probe2.append(Keys.PATH, Values.ofPath(Path.of("two"))));
+			then(out).shouldHaveNoInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		private void givenBuildSide(Record... records) {
+			given(nestedCommand.run(any(), any())).willAnswer(invocation -> {
+				OutputChannel channel = invocation.getArgument(1);
+				for (Record record : records) {
+					channel.send(record);
+				}
+				return ExitStatus.success();
+			});
+		}
+	}
+
+	@Nested
+	@ExtendWith(MockitoExtension.class)
+	class FilterAnyTest {
+
+		@RegisterExtension
+		final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+		@Mock(stubOnly = true)
+		State state;
+
+		@Mock
+		InputChannel in;
+
+		@Mock
+		OutputChannel out;
+
+		@Mock
+		OutputChannel err;
+
+		TextModule.FilterAny sut;
+
+		@BeforeEach
+		void createSut() {
+			sut = new TextModule.FilterAny();
+			sut.setState(state);
+		}
+
+		@Test
+		void zeroArgs() {
+			// Given
+			// (no setup)
+			// When
+			ExitStatus result = sut.run(CommandArguments.of(), in, out, err);
+			// Then
+			assertThat(result).isError();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("usage: filter-any key patterns-file [emit]")));
+		}
+
+		@Test
+		void notARegularFile() {
+			// Given
+			given(state.getCwd()).willReturn(temporaryFolder.toPath());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("text", "."), in, out, err);
+			// Then
+			assertThat(result).isError();
+			then(in).shouldHaveNoInteractions();
+			then(out).shouldHaveNoInteractions();
+			then(err).should().send(Records.singleton(Keys.ERROR, Values.ofText("not a regular file: " + temporaryFolder.toPath())));
+		}
+
+		@SuppressWarnings("unchecked")
+		@Test
+		void filter() throws IOException {
+			// Given
+			given(state.getCwd()).willReturn(temporaryFolder.toPath());
+			Files.writeString(temporaryFolder.newFile("patterns.txt"), "10.0.0.1\n\nreq-42\n");
+			Record record1 = Records.singleton(Keys.TEXT, Values.ofText("GET / from 10.0.0.1"));
+			Record record2 = Records.singleton(Keys.TEXT, Values.ofText("GET / from 10.0.0.2"));
+			Record record3 = Records.singleton(Keys.TEXT, Values.ofText("POST /login req-42"));
+			given(in.recv()).willReturn(Optional.of(record1), Optional.of(record2), Optional.of(record3), Optional.empty());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("text", "patterns.txt"), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(out).should().send(record1);
+			then(out).should().send(record3);
+			then(out).shouldHaveNoMoreInteractions();
+			then(err).shouldHaveNoInteractions();
+		}
+
+		@SuppressWarnings("unchecked")
+		@Test
+		void emit() throws IOException {
+			// Given
+			given(state.getCwd()).willReturn(temporaryFolder.toPath());
+			Files.writeString(temporaryFolder.newFile("patterns.txt"), "she\nhis\nhers\n");
+			Record record = Records.singleton(Keys.TEXT, Values.ofText("ushers"));
+			given(in.recv()).willReturn(Optional.of(record), Optional.empty());
+			// When
+			ExitStatus result = sut.run(CommandArguments.of("text", "patterns.txt", "emit"), in, out, err);
+			// Then
+			assertThat(result).isSuccess();
+			then(out).should().send(record.append(TextModule.FilterAny.PATTERN, Values.ofText("she")));
+			then(err).shouldHaveNoInteractions();
+		}
+	}
+
+	@Nested
+	class RequiredLiteralTest {
+
+		@Test
+		void literal() {
+			assertThat(TextModule.RequiredLiteral.of(".*ERROR.*")).hasValue("ERROR");
+			assertThat(TextModule.RequiredLiteral.of("^\\d+ WARN(ING)? in [a-z]+$")).hasValue(" WARN");
+			assertThat(TextModule.RequiredLiteral.of("a.b\\.com")).hasValue("b.com");
+			assertThat(TextModule.RequiredLiteral.of("(?<user>\\w+)@example")).hasValue("@example");
+			assertThat(TextModule.RequiredLiteral.of("abc+d")).hasValue("abc");
+		}
+
+		@Test
+		void optionalChars() {
+			assertThat(TextModule.RequiredLiteral.of("colou?r")).hasValue("colo");
+			assertThat(TextModule.RequiredLiteral.of("ab*")).hasValue("a");
+			assertThat(TextModule.RequiredLiteral.of("x{0,3}yz")).hasValue("yz");
+		}
+
+		@Test
+		void optionalSupplementaryChars() {
+			// a surrogate pair is a single optional char for the regex
+			assertThat(TextModule.RequiredLiteral.of("a\uD83D\uDE00?")).hasValue("a");
+			assertThat(TextModule.RequiredLiteral.of("\uD83D\uDE00\uD83D\uDE01*")).hasValue("\uD83D\uDE00");
+			assertThat(TextModule.RequiredLiteral.of("x\uD83D\uDE00+")).hasValue("x\uD83D\uDE00");
+			assertThat(Pattern.matches("a\uD83D\uDE00?", "a")).isTrue();
+		}
+
+		@Test
+		void noLiteral() {
+			assertThat(TextModule.RequiredLiteral.of(".*")).isEmpty();
+			assertThat(TextModule.RequiredLiteral.of("ERROR|WARN")).isEmpty();
+			assertThat(TextModule.RequiredLiteral.of("(?i)error")).isEmpty();
+			assertThat(TextModule.RequiredLiteral.of("\\Qa.b\\E")).isEmpty();
+			assertThat(TextModule.RequiredLiteral.of("[abc]\\pL\\x41")).isEmpty();
+		}
+	}
+
 	@Group
 	class SortPropertyTest {
 
@@ -1985,6 +2494,53 @@ class TextModuleTest {
 		}
 	}
 
+	@Group
+	class LastPropertyTest {
+
+		@Property
+		void lastIsTailOfInput(@ForAll("textRecordLists") List<Record> input,
+				@ForAll @IntRange(min = 1, max = 30) int n) {
+			Last sut = new Last();
+			List<Record> result = new ArrayList<>();
+			sut.run(CommandArguments.of(String.valueOf(n)), fromList(input), result::add, record -> {});
+			assertThat(result).containsExactlyElementsOf(input.subList(Math.max(0, input.size() - n), input.size()));
+		}
+	}
+
+	@Group
+	class RegexPropertyTest {
+
+		@Property
+		void filterIsSameAsMatches(@ForAll("logLines") String line, @ForAll("regexes") String regex) {
+			Filter sut = new Filter();
+			Record record = Records.singleton(Keys.TEXT, Values.ofText(line));
+			List<Record> result = new ArrayList<>();
+			sut.run(CommandArguments.of("text", regex), fromList(List.of(record)), result::add, r -> {});
+			assertThat(!result.isEmpty()).isEqualTo(line.matches(regex));
+		}
+
+		@Property
+		void splitIsSameAsPatternSplit(@ForAll("logLines") String line, @ForAll("regexes") String regex) {
+			Split sut = new Split();
+			Record record = Records.singleton(Keys.TEXT, Values.ofText(line));
+			List<Record> result = new ArrayList<>();
+			sut.run(CommandArguments.of("text", regex), fromList(List.of(record)), result::add, r -> {});
+			List<String> expected = List.of(line.split(regex));
+			assertThat(result).hasSize(1);
+			assertThat(result.get(0).values().map(v -> v.unwrap(String.class).orElseThrow()).toList()).isEqualTo(expected);
+		}
+
+		@Provide
+		Arbitrary<String> logLines() {
+			return Arbitraries.strings().withChars("ERO ,.:ab").ofMinLength(0).ofMaxLength(20);
+		}
+
+		@Provide
+		Arbitrary<String> regexes() {
+			return Arbitraries.of(".*ERROR.*", "ERR?OR", ",", ", *", "a|b", "(ab)+", "E.R", "", "\\.", "[ab]:", "O*");
+		}
+	}
+
 	@Provide
 	Arbitrary<List<Record>> textRecordLists() {
 		return Arbitraries.strings().alpha().ofMinLength(0).ofMaxLength(10)
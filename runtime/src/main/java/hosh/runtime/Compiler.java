@@ -60,6 +60,8 @@ public class Compiler {
 
 	private final CommandResolver commandResolver;
 
+	private final Planner planner = new Planner();
+
 	public Compiler(CommandResolver commandResolver) {
 		this.commandResolver = commandResolver;
 	}
@@ -106,8 +108,7 @@ public class Compiler {
 		if (ctx.getChildCount() == 3) { // pipeline
 			Statement producer = compileCommand(ctx.command());
 			Statement consumer = compileStatement(ctx.stmt());
-			PipelineCommand command = new PipelineCommand(producer, consumer);
-			return new Statement(command, List.of(), "");
+			return planner.plan(producer, consumer);
 		}
 		throw new InternalBug(ctx.getText());
 	}
@@ -327,6 +328,10 @@ public class Compiler {
 			this.value = value;
 		}
 
+		public String getValue() {
+			return value;
+		}
+
 		@Override
 		public CommandArguments.CommandArgument resolve(State state) {
 			return CommandArguments.CommandArgument.of(value);
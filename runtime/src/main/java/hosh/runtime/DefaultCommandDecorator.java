@@ -35,7 +35,7 @@ import hosh.spi.OutputChannel;
  * Generated by {@link Compiler} — not instantiated directly.
  * <p>
  * Bridges the runtime internals to the {@link hosh.spi.CommandWrapper} SPI:
- * the nested block is wrapped in a {@link hosh.spi.CommandWrapper.NestedCommand} lambda
+ * the nested block is wrapped in a {@link hosh.spi.CommandWrapper.RedirectableNestedCommand}
  * so that the wrapper command can invoke it without depending on {@link Interpreter} directly.
  */
 class DefaultCommandDecorator implements CompilerCommand, InterpreterAware {
@@ -58,11 +58,36 @@ class DefaultCommandDecorator implements CompilerCommand, InterpreterAware {
 
 	@Override
 	public ExitStatus run(CommandArguments args, InputChannel in, OutputChannel out, OutputChannel err) {
-		// CommandNested is just a way to hide Interpreter and other internals to the modules
-		commandWrapper.setNestedCommand(() -> interpreter.eval(nested, in, out, err));
+		commandWrapper.setNestedCommand(new Nested(in, out, err));
 		return commandWrapper.run(args, in, out, err);
 	}
 
+	// NestedCommand is just a way to hide Interpreter and other internals to the modules
+	private class Nested implements CommandWrapper.RedirectableNestedCommand {
+
+		private final InputChannel in;
+
+		private final OutputChannel out;
+
+		private final OutputChannel err;
+
+		public Nested(InputChannel in, OutputChannel out, OutputChannel err) {
+			this.in = in;
+			this.out = out;
+			this.err = err;
+		}
+
+		@Override
+		public ExitStatus run() {
+			return run(in, out);
+		}
+
+		@Override
+		public ExitStatus run(InputChannel in, OutputChannel out) {
+			return interpreter.eval(nested, in, out, err);
+		}
+	}
+
 	@Override
 	public String toString() {
 		return String.format("DefaultCommandDecorator[nested=%s,commandDecorator=%s]", nested, commandWrapper);
@@ -32,21 +32,64 @@ import org.jline.reader.ParsedLine;
 import java.io.File;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
 import java.util.function.UnaryOperator;
-import java.util.stream.Stream;
 
 public class FileSystemCompleter implements Completer {
 
+	// most recently used directories
+	private static final int CACHE_SIZE = 16;
+
+	// a listing taken within this window from the last modification of the directory
+	// could miss a change made in the same mtime tick, so it is not cached
+	private static final Duration RACY_WINDOW = Duration.ofSeconds(2);
+
+	// never closed: nobody waits for an abandoned listing
+	private static final ExecutorService LISTINGS = Executors.newVirtualThreadPerTaskExecutor();
+
 	private final State state;
 
+	// access-ordered: the eldest entry is the least recently used
+	private final Map<Path, Listing> cache = new LinkedHashMap<>(CACHE_SIZE, 0.75f, true);
+
+	private Duration timeout = Duration.ofMillis(500);
+
+	private Predicate<Path> directoryProbe = FileSystemCompleter::isDirectory; // override for unit tests
+
 	public FileSystemCompleter(State state) {
 		this.state = state;
 	}
 
+	// a listing longer than this (i.e. slow network mounts) is abandoned with partial completions
+	public void setTimeout(Duration timeout) {
+		this.timeout = timeout;
+	}
+
+	public void setDirectoryProbe(Predicate<Path> directoryProbe) {
+		this.directoryProbe = directoryProbe;
+	}
+
 	@Override
 	public void complete(LineReader reader, ParsedLine line, List<Candidate> candidates) {
 		Path path = Paths.get(line.word());
@@ -70,27 +113,94 @@ public class FileSystemCompleter implements Completer {
 	}
 
 	private void listCandidates(Path dir, UnaryOperator<Path> toPath, List<Candidate> candidates) {
-		try (Stream<Path> list = Files.list(dir)) {
-			list
-					.map(toPath)
-					.map(this::toCandidate)
-					.forEach(candidates::add);
+		for (Entry entry : list(dir)) {
+			Path path = toPath.apply(dir.resolve(entry.name()));
+			if (entry.directory()) {
+				candidates.add(Candidates.incomplete(path + File.separator));
+			} else {
+				candidates.add(Candidates.complete(path.toString()));
+			}
+		}
+	}
+
+	// The listing runs on a virtual thread, so that even a single hanging stat or open
+	// (i.e. slow network mounts) cannot block the completion for longer than the timeout:
+	// after the timeout the entries read so far are used, and never cached.
+	private List<Entry> list(Path dir) {
+		Path key = dir.toAbsolutePath();
+		Listing cached = cache.get(key);
+		List<Entry> entries = Collections.synchronizedList(new ArrayList<>());
+		AtomicBoolean abandoned = new AtomicBoolean(false);
+		CompletableFuture<Listing> listing = CompletableFuture.supplyAsync(() -> read(dir, cached, entries, abandoned), LISTINGS);
+		try {
+			Listing result = listing.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+			if (result != cached) {
+				if (result.lastModified().toInstant().plus(RACY_WINDOW).isBefore(result.listedAt())) {
+					cache.put(key, result);
+					evictEldest();
+				} else {
+					cache.remove(key);
+				}
+			}
+			return result.entries();
+		} catch (TimeoutException e) {
+			abandoned.set(true);
+			cache.remove(key);
+			return List.copyOf(entries);
+		} catch (InterruptedException e) {
+			abandoned.set(true);
+			Thread.currentThread().interrupt();
+			return List.of();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof UncheckedIOException uncheckedIOException) {
+				throw uncheckedIOException;
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	// yields the cached listing when the directory is not modified since then
+	private Listing read(Path dir, Listing cached, List<Entry> entries, AtomicBoolean abandoned) {
+		try {
+			FileTime lastModified = Files.getLastModifiedTime(dir);
+			if (cached != null && cached.lastModified().equals(lastModified)) {
+				return cached;
+			}
+			Instant listedAt = Instant.now();
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+				for (Path child : stream) {
+					if (abandoned.get()) {
+						break;
+					}
+					entries.add(new Entry(child.getFileName(), directoryProbe.test(child)));
+				}
+			}
+			return new Listing(lastModified, listedAt, List.copyOf(entries));
 		} catch (IOException e) {
 			throw new UncheckedIOException(e);
 		}
 	}
 
-	private Candidate toCandidate(Path path) {
-		Path resolved;
-		if (path.isAbsolute()) {
-			resolved = path;
-		} else {
-			resolved = state.getCwd().resolve(path);
+	// one stat per entry, following symbolic links like Files.isDirectory()
+	private static boolean isDirectory(Path path) {
+		try {
+			return Files.readAttributes(path, BasicFileAttributes.class).isDirectory();
+		} catch (IOException e) {
+			return false; // i.e. broken symbolic link
 		}
-		if (Files.isDirectory(resolved)) {
-			return Candidates.incomplete(path + File.separator);
-		} else {
-			return Candidates.complete(path.toString());
+	}
+
+	private void evictEldest() {
+		Iterator<Path> iterator = cache.keySet().iterator();
+		while (cache.size() > CACHE_SIZE) {
+			iterator.next();
+			iterator.remove();
 		}
 	}
+
+	private record Entry(Path name, boolean directory) {
+	}
+
+	private record Listing(FileTime lastModified, Instant listedAt, List<Entry> entries) {
+	}
 }
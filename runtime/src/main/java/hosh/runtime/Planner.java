@@ -0,0 +1,190 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018-2026 Davide Angelocola
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package hosh.runtime;
+
+import hosh.runtime.Compiler.Composite;
+import hosh.runtime.Compiler.Constant;
+import hosh.runtime.Compiler.Resolvable;
+import hosh.runtime.Compiler.Statement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Rewrites a pipeline into a cheaper but equivalent one before running it,
+ * e.g. {@code lines file | last 10} into {@code lines --last 10 file} that seeks
+ * from the end of the file instead of reading it all, or {@code walk dir | glob '*.java'}
+ * into {@code walk --include '*.java' dir} that skips non-matching files during the traversal,
+ * or {@code from-parquet file | select a b} into {@code from-parquet --columns a --columns b file}
+ * that converts only the selected columns, or {@code from-parquet file | sum a} into
+ * {@code from-parquet --aggregate sum:a file} that does not create a record per row.
+ * <p>
+ * Rules match built-in commands by name: external commands are never rewritten.
+ */
+class Planner {
+
+	private final List<Rule> rules = List.of(
+			new LinesLast(),
+			new WalkGlob(),
+			new ParquetSelect(),
+			new ParquetFilter(),
+			new ParquetAggregate()
+	);
+
+	// returns the statement to run for "producer | consumer"
+	public Statement plan(Statement producer, Statement consumer) {
+		Statement first = consumer;
+		Optional<Statement> rest = Optional.empty();
+		if (consumer.getCommand() instanceof PipelineCommand pipelineCommand) {
+			first = pipelineCommand.getProducer();
+			rest = Optional.of(pipelineCommand.getConsumer());
+		}
+		for (Rule rule : rules) {
+			Optional<Statement> fused = rule.fuse(producer, first);
+			if (fused.isPresent()) {
+				// the fused statement can be fused again with the next one
+				return rest.isPresent() ? plan(fused.get(), rest.get()) : fused.get();
+			}
+		}
+		return new Statement(new PipelineCommand(producer, consumer), List.of(), "");
+	}
+
+	// a rule fusing two adjacent commands into one
+	interface Rule {
+
+		Optional<Statement> fuse(Statement producer, Statement consumer);
+	}
+
+	// lines file | last n -> lines --last n file
+	static class LinesLast implements Rule {
+
+		@Override
+		public Optional<Statement> fuse(Statement producer, Statement consumer) {
+			if (isBuiltin(producer, "lines", 1) && isBuiltin(consumer, "last", 1)) {
+				List<Resolvable> arguments = new ArrayList<>();
+				arguments.add(new Constant("--last"));
+				arguments.add(consumer.getArguments().getFirst());
+				arguments.addAll(producer.getArguments());
+				return Optional.of(new Statement(producer.getCommand(), arguments, producer.getLocation()));
+			}
+			return Optional.empty();
+		}
+	}
+
+	// walk dir | glob pattern -> walk --include pattern dir
+	// (only plain 'walk dir': an existing --include would make it an union instead of an intersection)
+	static class WalkGlob implements Rule {
+
+		@Override
+		public Optional<Statement> fuse(Statement producer, Statement consumer) {
+			if (isBuiltin(producer, "walk", 1) && isBuiltin(consumer, "glob", 1)) {
+				List<Resolvable> arguments = new ArrayList<>();
+				arguments.add(new Constant("--include"));
+				arguments.add(consumer.getArguments().getFirst());
+				arguments.addAll(producer.getArguments());
+				return Optional.of(new Statement(producer.getCommand(), arguments, producer.getLocation()));
+			}
+			return Optional.empty();
+		}
+	}
+
+	// from-parquet [--filter ...] file | select a b -> from-parquet --columns a --columns b [--filter ...] file
+	// (filters are applied to the whole row before the projection, like in the original pipeline)
+	static class ParquetSelect implements Rule {
+
+		@Override
+		public Optional<Statement> fuse(Statement producer, Statement consumer) {
+			if (isFromParquet(producer) && !hasOption(producer, "--columns") && !hasOption(producer, "--aggregate")
+					&& isBuiltin(consumer, "select", consumer.getArguments().size()) && !consumer.getArguments().isEmpty()) {
+				List<Resolvable> arguments = new ArrayList<>();
+				for (Resolvable key : consumer.getArguments()) {
+					arguments.add(new Constant("--columns"));
+					arguments.add(key);
+				}
+				arguments.addAll(producer.getArguments());
+				return Optional.of(new Statement(producer.getCommand(), arguments, producer.getLocation()));
+			}
+			return Optional.empty();
+		}
+	}
+
+	// from-parquet [--filter ...] file | filter key regex -> from-parquet --filter key=regex [--filter ...] file
+	// (not after --columns: the filtered key could be outside of the projection)
+	static class ParquetFilter implements Rule {
+
+		@Override
+		public Optional<Statement> fuse(Statement producer, Statement consumer) {
+			if (isFromParquet(producer) && !hasOption(producer, "--columns") && !hasOption(producer, "--aggregate")
+					&& isBuiltin(consumer, "filter", 2)) {
+				List<Resolvable> arguments = new ArrayList<>();
+				arguments.add(new Constant("--filter"));
+				arguments.add(new Composite(List.of(consumer.getArguments().get(0), new Constant("="), consumer.getArguments().get(1))));
+				arguments.addAll(producer.getArguments());
+				return Optional.of(new Statement(producer.getCommand(), arguments, producer.getLocation()));
+			}
+			return Optional.empty();
+		}
+	}
+
+	// from-parquet [...] file | count -> from-parquet --aggregate count [...] file
+	// from-parquet [...] file | sum key -> from-parquet --aggregate sum:key [...] file (same for min and max)
+	static class ParquetAggregate implements Rule {
+
+		@Override
+		public Optional<Statement> fuse(Statement producer, Statement consumer) {
+			if (!isFromParquet(producer) || hasOption(producer, "--aggregate")) {
+				return Optional.empty();
+			}
+			Resolvable aggregate;
+			if (isBuiltin(consumer, "count", 0)) {
+				aggregate = new Constant("count");
+			} else if (isBuiltin(consumer, "sum", 1) || isBuiltin(consumer, "min", 1) || isBuiltin(consumer, "max", 1)) {
+				aggregate = new Composite(List.of(new Constant(consumer.getLocation() + ":"), consumer.getArguments().getFirst()));
+			} else {
+				return Optional.empty();
+			}
+			List<Resolvable> arguments = new ArrayList<>();
+			arguments.add(new Constant("--aggregate"));
+			arguments.add(aggregate);
+			arguments.addAll(producer.getArguments());
+			return Optional.of(new Statement(producer.getCommand(), arguments, producer.getLocation()));
+		}
+	}
+
+	private static boolean isFromParquet(Statement statement) {
+		return isBuiltin(statement, "from-parquet", statement.getArguments().size()) && !statement.getArguments().isEmpty();
+	}
+
+	private static boolean hasOption(Statement statement, String option) {
+		return statement.getArguments().stream()
+				.anyMatch(argument -> argument instanceof Constant constant && option.equals(constant.getValue()));
+	}
+
+	private static boolean isBuiltin(Statement statement, String name, int arguments) {
+		return name.equals(statement.getLocation())
+				&& !(statement.getCommand() instanceof CompilerCommand)
+				&& statement.getArguments().size() == arguments;
+	}
+}
@@ -40,9 +40,15 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.BDDMockito.given;
@@ -194,4 +200,61 @@ class FileSystemCompleterTest {
 					assertThat(candidate.complete()).isFalse();
 				});
 	}
+
+	@Test
+	void listingIsCachedUntilDirectoryChanges() throws IOException {
+		// Given
+		FileTime lastModified = FileTime.from(Instant.now().minus(1, ChronoUnit.HOURS));
+		Files.setLastModifiedTime(temporaryFolder.toPath(), lastModified);
+		given(state.getCwd()).willReturn(temporaryFolder.toPath());
+		given(line.word()).willReturn("");
+		sut.complete(lineReader, line, new ArrayList<>());
+		temporaryFolder.newFile(temporaryFolder.toPath(), "a");
+		Files.setLastModifiedTime(temporaryFolder.toPath(), lastModified); // same mtime: cached listing still used
+		List<Candidate> cached = new ArrayList<>();
+		sut.complete(lineReader, line, cached);
+		Files.setLastModifiedTime(temporaryFolder.toPath(), FileTime.from(Instant.now()));
+		List<Candidate> candidates = new ArrayList<>();
+		// When
+		sut.complete(lineReader, line, candidates);
+		// Then
+		assertThat(cached).isEmpty();
+		assertThat(candidates)
+				.hasSize(1)
+				.allSatisfy(candidate -> assertThat(candidate.value()).isEqualTo("a"));
+	}
+
+	@Test
+	void partialListingOnTimeout() throws IOException {
+		// Given
+		temporaryFolder.newFile(temporaryFolder.toPath(), "a");
+		temporaryFolder.newFile(temporaryFolder.toPath(), "b");
+		Path slow = temporaryFolder.newFolder(temporaryFolder.toPath(), "c");
+		given(state.getCwd()).willReturn(temporaryFolder.toPath());
+		given(line.word()).willReturn("");
+		CountDownLatch hanging = new CountDownLatch(1);
+		sut.setDirectoryProbe(path -> {
+			if (path.equals(slow)) {
+				awaitUninterruptibly(hanging); // like a stat on a stale network mount
+			}
+			return Files.isDirectory(path);
+		});
+		sut.setTimeout(Duration.ofMillis(100));
+		List<Candidate> candidates = new ArrayList<>();
+		// When
+		sut.complete(lineReader, line, candidates);
+		hanging.countDown();
+		// Then
+		assertThat(candidates)
+				.hasSizeLessThan(3)
+				.noneSatisfy(candidate -> assertThat(candidate.value()).startsWith("c"));
+	}
+
+	private void awaitUninterruptibly(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
 }
@@ -0,0 +1,255 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018-2026 Davide Angelocola
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package hosh.runtime;
+
+import hosh.runtime.Compiler.Constant;
+import hosh.runtime.Compiler.Statement;
+import hosh.spi.Command;
+import hosh.spi.State;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(MockitoExtension.class)
+class PlannerTest {
+
+	@Mock(stubOnly = true)
+	State state;
+
+	@Mock(stubOnly = true)
+	Command lines;
+
+	@Mock(stubOnly = true)
+	Command last;
+
+	@Mock(stubOnly = true)
+	Command count;
+
+	@Mock(stubOnly = true)
+	Command walk;
+
+	@Mock(stubOnly = true)
+	Command glob;
+
+	@Mock(stubOnly = true)
+	Command fromParquet;
+
+	@Mock(stubOnly = true)
+	Command select;
+
+	@Mock(stubOnly = true)
+	Command filter;
+
+	@Mock(stubOnly = true)
+	Command sum;
+
+	@Mock(stubOnly = true)
+	ExternalCommand external;
+
+	Planner sut;
+
+	@BeforeEach
+	void createSut() {
+		sut = new Planner();
+	}
+
+	@Test
+	void linesLast() {
+		// Given
+		Statement producer = new Statement(lines, List.of(new Constant("file.txt")), "lines");
+		Statement consumer = new Statement(last, List.of(new Constant("10")), "last");
+
+		// When
+		Statement result = sut.plan(producer, consumer);
+
+		// Then
+		assertThat(result.getCommand()).isSameAs(lines);
+		assertThat(result.getLocation()).isEqualTo("lines");
+		assertThat(result.getArguments())
+				.map(argument -> argument.resolve(state).asString())
+				.containsExactly("--last", "10", "file.txt");
+	}
+
+	@Test
+	void linesLastInLongerPipeline() {
+		// Given
+		Statement producer = new Statement(lines, List.of(new Constant("file.txt")), "lines");
+		Statement rest = new Statement(count, List.of(), "count");
+		Statement consumer = new Statement(new PipelineCommand(new Statement(last, List.of(new Constant("10")), "last"), rest), List.of(), "");
+
+		// When
+		Statement result = sut.plan(producer, consumer);
+
+		// Then
+		assertThat(result.getCommand()).isInstanceOfSatisfying(PipelineCommand.class, pipeline -> {
+			assertThat(pipeline.getProducer().getCommand()).isSameAs(lines);
+			assertThat(pipeline.getConsumer()).isSameAs(rest);
+		});
+	}
+
+	@Test
+	void walkGlob() {
+		// Given
+		Statement producer = new Statement(walk, List.of(new Constant(".")), "walk");
+		Statement consumer = new Statement(glob, List.of(new Constant("*.java")), "glob");
+
+		// When
+		Statement result = sut.plan(producer, consumer);
+
+		// Then
+		assertThat(result.getCommand()).isSameAs(walk);
+		assertThat(result.getLocation()).isEqualTo("walk");
+		assertThat(result.getArguments())
+				.map(argument -> argument.resolve(state).asString())
+				.containsExactly("--include", "*.java", ".");
+	}
+
+	@Test
+	void walkWithOptionsIsNotRewritten() {
+		// Given
+		Statement producer = new Statement(walk, List.of(new Constant("--include"), new Constant("*.xml"), new Constant(".")), "walk");
+		Statement consumer = new Statement(glob, List.of(new Constant("*.java")), "glob");
+
+		// When
+		Statement result = sut.plan(producer, consumer);
+
+		// Then
+		assertThat(result.getCommand()).isInstanceOf(PipelineCommand.class);
+	}
+
+	@Test
+	void noRule() {
+		// Given
+		Statement producer = new Statement(lines, List.of(new Constant("file.txt")), "lines");
+		Statement consumer = new Statement(count, List.of(), "count");
+
+		// When
+		Statement result = sut.plan(producer, consumer);
+
+		// Then
+		assertThat(result.getCommand()).isInstanceOfSatisfying(PipelineCommand.class, pipeline -> {
+			assertThat(pipeline.getProducer()).isSameAs(producer);
+			assertThat(pipeline.getConsumer()).isSameAs(consumer);
+		});
+	}
+
+	@Test
+	void externalCommandsAreNotRewritten() {
+		// Given
+		Statement producer = new Statement(external, List.of(new Constant("file.txt")), "lines");
+		Statement consumer = new Statement(last, List.of(new Constant("10")), "last");
+
+		// When
+		Statement result = sut.plan(producer, consumer);
+
+		// Then
+		assertThat(result.getCommand()).isInstanceOf(PipelineCommand.class);
+	}
+
+	@Test
+	void linesWithOptionsIsNotRewritten() {
+		// Given
+		Statement producer = new Statement(lines, List.of(new Constant("--last"), new Constant("5"), new Constant("file.txt")), "lines");
+		Statement consumer = new Statement(last, List.of(new Constant("10")), "last");
+
+		// When
+		Statement result = sut.plan(producer, consumer);
+
+		// Then
+		assertThat(result.getCommand()).isInstanceOf(PipelineCommand.class);
+	}
+
+	@Test
+	void parquetFilterThenSelect() {
+		// Given
+		Statement producer = new Statement(fromParquet, List.of(new Constant("data.parquet")), "from-parquet");
+		Statement rest = new Statement(select, List.of(new Constant("a"), new Constant("b")), "select");
+		Statement consumer = new Statement(new PipelineCommand(new Statement(filter, List.of(new Constant("a"), new Constant("x.*")), "filter"), rest), List.of(), "");
+
+		// When
+		Statement result = sut.plan(producer, consumer);
+
+		// Then
+		assertThat(result.getCommand()).isSameAs(fromParquet);
+		assertThat(result.getLocation()).isEqualTo("from-parquet");
+		assertThat(result.getArguments())
+				.map(argument -> argument.resolve(state).asString())
+				.containsExactly("--columns", "a", "--columns", "b", "--filter", "a=x.*", "data.parquet");
+	}
+
+	@Test
+	void parquetFilterAfterSelectIsNotRewritten() {
+		// Given
+		Statement producer = new Statement(fromParquet, List.of(new Constant("--columns"), new Constant("a"), new Constant("data.parquet")), "from-parquet");
+		Statement consumer = new Statement(filter, List.of(new Constant("b"), new Constant("x.*")), "filter");
+
+		// When
+		Statement result = sut.plan(producer, consumer);
+
+		// Then
+		assertThat(result.getCommand()).isInstanceOf(PipelineCommand.class);
+	}
+
+	@Test
+	void parquetFilterThenSum() {
+		// Given
+		Statement producer = new Statement(fromParquet, List.of(new Constant("data.parquet")), "from-parquet");
+		Statement rest = new Statement(sum, List.of(new Constant("size")), "sum");
+		Statement consumer = new Statement(new PipelineCommand(new Statement(filter, List.of(new Constant("a"), new Constant("x.*")), "filter"), rest), List.of(), "");
+
+		// When
+		Statement result = sut.plan(producer, consumer);
+
+		// Then
+		assertThat(result.getCommand()).isSameAs(fromParquet);
+		assertThat(result.getLocation()).isEqualTo("from-parquet");
+		assertThat(result.getArguments())
+				.map(argument -> argument.resolve(state).asString())
+				.containsExactly("--aggregate", "sum:size", "--filter", "a=x.*", "data.parquet");
+	}
+
+	@Test
+	void parquetSelectAfterCountIsNotRewritten() {
+		// Given
+		Statement producer = new Statement(fromParquet, List.of(new Constant("data.parquet")), "from-parquet");
+		Statement rest = new Statement(select, List.of(new Constant("count")), "select");
+		Statement consumer = new Statement(new PipelineCommand(new Statement(count, List.of(), "count"), rest), List.of(), "");
+
+		// When
+		Statement result = sut.plan(producer, consumer);
+
+		// Then
+		assertThat(result.getCommand()).isInstanceOf(PipelineCommand.class);
+		PipelineCommand pipeline = (PipelineCommand) result.getCommand();
+		assertThat(pipeline.getProducer().getArguments())
+				.map(argument -> argument.resolve(state).asString())
+				.containsExactly("--aggregate", "count", "data.parquet");
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018-2026 Davide Angelocola
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package hosh.spi;
+
+import hosh.spi.CommandArguments.CommandArgument;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+
+/**
+ * Options given before the positional arguments of a command,
+ * e.g. {@code --parallel 4} and {@code --unordered} in {@code walk --parallel 4 --unordered dir}.
+ * <p>
+ * Parsing stops at the first argument not starting with {@code --};
+ * a lone {@code --} ends the options as well (e.g. to pass a positional argument starting with {@code --}).
+ */
+public record CommandOptions(Set<String> flags, Map<String, List<CommandArgument>> values, CommandArguments arguments) {
+
+	private static final String PREFIX = "--";
+
+	public CommandOptions {
+		flags = Set.copyOf(flags);
+		values = Map.copyOf(values);
+	}
+
+	/**
+	 * @param args   all the arguments of the command
+	 * @param flags  names of the options without value (e.g. "unordered")
+	 * @param valued names of the options followed by a value (e.g. "parallel")
+	 * @return empty when there is an unknown option or a missing value
+	 */
+	public static Optional<CommandOptions> parse(CommandArguments args, Set<String> flags, Set<String> valued) {
+		Set<String> foundFlags = new HashSet<>();
+		Map<String, List<CommandArgument>> foundValues = new HashMap<>();
+		int i = 0;
+		while (i < args.size() && args.get(i).asString().startsWith(PREFIX)) {
+			String name = args.get(i).asString().substring(PREFIX.length());
+			i += 1;
+			if (name.isEmpty()) {
+				break;
+			}
+			if (flags.contains(name)) {
+				foundFlags.add(name);
+			} else if (valued.contains(name) && i < args.size()) {
+				foundValues.merge(name, List.of(args.get(i)), CommandOptions::concat);
+				i += 1;
+			} else {
+				return Optional.empty();
+			}
+		}
+		CommandArguments arguments = CommandArguments.of(args.args().subList(i, args.size()));
+		return Optional.of(new CommandOptions(foundFlags, foundValues, arguments));
+	}
+
+	public boolean has(String name) {
+		return flags.contains(name) || values.containsKey(name);
+	}
+
+	// last value wins when an option is repeated
+	public Optional<CommandArgument> get(String name) {
+		List<CommandArgument> all = getAll(name);
+		return all.isEmpty() ? Optional.empty() : Optional.of(all.getLast());
+	}
+
+	public List<CommandArgument> getAll(String name) {
+		return values.getOrDefault(name, List.of());
+	}
+
+	/**
+	 * @param name         name of the option (e.g. "parallel")
+	 * @param defaultValue used when the option is not given
+	 * @param err          receives the error when the value is not a number or less than 1
+	 * @return empty when the value is not valid
+	 */
+	public OptionalInt positiveInt(String name, int defaultValue, OutputChannel err) {
+		Optional<CommandArgument> arg = get(name);
+		if (arg.isEmpty()) {
+			return OptionalInt.of(defaultValue);
+		}
+		OptionalInt value = arg.get().asInt();
+		if (value.isEmpty()) {
+			err.send(Errors.message("not a valid number: %s", arg.get().asString()));
+			return OptionalInt.empty();
+		}
+		if (value.getAsInt() < 1) {
+			err.send(Errors.message("%s must be >= 1", name));
+			return OptionalInt.empty();
+		}
+		return value;
+	}
+
+	private static List<CommandArgument> concat(List<CommandArgument> a, List<CommandArgument> b) {
+		List<CommandArgument> result = new ArrayList<>(a);
+		result.addAll(b);
+		return List.copyOf(result);
+	}
+}
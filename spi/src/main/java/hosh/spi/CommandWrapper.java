@@ -38,8 +38,22 @@ public interface CommandWrapper extends Command {
 	/**
 	 * The inner block 'cmd' of 'benchmark { cmd }'.
 	 */
+	@FunctionalInterface
 	interface NestedCommand {
 
 		ExitStatus run();
 	}
+
+	/**
+	 * A nested command that can also run with other channels than the ones of the wrapper command
+	 * (e.g. to collect records of the inner block). The interpreter always provides one.
+	 */
+	interface RedirectableNestedCommand extends NestedCommand {
+
+		/**
+		 * Same as {@link #run()} but reading from {@code in} and writing to {@code out}
+		 * instead of the channels of the wrapper command.
+		 */
+		ExitStatus run(InputChannel in, OutputChannel out);
+	}
 }
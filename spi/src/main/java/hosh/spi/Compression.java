@@ -0,0 +1,325 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018-2026 Davide Angelocola
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package hosh.spi;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Streaming (de)compression of files chosen by file extension, so that commands reading or writing
+ * files handle e.g. {@code app.log.gz} like {@code app.log}:
+ * <ul>
+ *     <li>{@code .gz}: gzip, including files made of many members (e.g. concatenated or appended);</li>
+ *     <li>{@code .deflate} and {@code .zz}: zlib;</li>
+ *     <li>anything else is read and written as it is.</li>
+ * </ul>
+ * Gzip files made of BGZF blocks (e.g. by {@code bgzip}) are decompressed in parallel, since the size of each
+ * member is in its header; other gzip files are decompressed sequentially, as well as the members following
+ * the BGZF blocks (e.g. appended later).
+ * Appending to a gzip file adds a new member, while appending to a zlib file is rejected
+ * (the data after the first stream would be ignored when reading).
+ */
+public class Compression {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/** @return true when the file is (de)compressed by the other methods */
+	public static boolean isCompressed(Path file) {
+		return format(file) != Format.NONE;
+	}
+
+	/** Like {@link Files#newInputStream(Path, OpenOption...)}, decompressing the content. */
+	public static InputStream newInputStream(Path file) throws IOException {
+		InputStream input = new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE);
+		try {
+			return switch (format(file)) {
+				case GZIP -> Bgzf.isBgzf(input) ? new Bgzf(input, Runtime.getRuntime().availableProcessors()) : new GZIPInputStream(input, BUFFER_SIZE);
+				case ZLIB -> new InflaterInputStream(input);
+				case NONE -> input;
+			};
+		} catch (IOException | RuntimeException e) {
+			input.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Like {@link Files#newOutputStream(Path, OpenOption...)}, compressing the content.
+	 *
+	 * @throws UnsupportedOperationException when appending to a zlib file
+	 */
+	public static OutputStream newOutputStream(Path file, OpenOption... options) throws IOException {
+		if (format(file) == Format.ZLIB && Arrays.asList(options).contains(StandardOpenOption.APPEND)) {
+			throw new UnsupportedOperationException("cannot append to zlib file: " + file);
+		}
+		OutputStream output = new BufferedOutputStream(Files.newOutputStream(file, options), BUFFER_SIZE);
+		try {
+			return switch (format(file)) {
+				case GZIP -> new GZIPOutputStream(output, BUFFER_SIZE);
+				case ZLIB -> new DeflaterOutputStream(output);
+				case NONE -> output;
+			};
+		} catch (IOException | RuntimeException e) {
+			output.close();
+			throw e;
+		}
+	}
+
+	/** Like {@link Files#newBufferedReader(Path, Charset)} (malformed input is reported), decompressing the content. */
+	public static BufferedReader newBufferedReader(Path file, Charset charset) throws IOException {
+		if (!isCompressed(file)) {
+			return Files.newBufferedReader(file, charset);
+		}
+		return new BufferedReader(new InputStreamReader(newInputStream(file), charset.newDecoder()));
+	}
+
+	/** Like {@link Files#newBufferedWriter(Path, Charset, OpenOption...)}, compressing the content. */
+	public static BufferedWriter newBufferedWriter(Path file, Charset charset, OpenOption... options) throws IOException {
+		if (!isCompressed(file)) {
+			return Files.newBufferedWriter(file, charset, options);
+		}
+		return new BufferedWriter(new OutputStreamWriter(newOutputStream(file, options), charset.newEncoder()));
+	}
+
+	private enum Format {
+		GZIP, ZLIB, NONE
+	}
+
+	private static Format format(Path file) {
+		Path fileName = file.getFileName();
+		String name = fileName == null ? "" : fileName.toString().toLowerCase(Locale.ROOT);
+		if (name.endsWith(".gz")) {
+			return Format.GZIP;
+		}
+		if (name.endsWith(".deflate") || name.endsWith(".zz")) {
+			return Format.ZLIB;
+		}
+		return Format.NONE;
+	}
+
+	// Decompresses BGZF blocks (gzip members of at most 64KB, with their size in the 'BC' extra field):
+	// blocks are read sequentially and inflated by virtual threads, keeping at most 2 * parallelism
+	// of them in memory, then returned in file order.
+	// From the first member without the block size on, the rest of the file is inflated sequentially.
+	private static class Bgzf extends InputStream {
+
+		private static final int HEADER_SIZE = 18;
+
+		private static final int TRAILER_SIZE = 8;
+
+		private static final int MAX_BLOCK_SIZE = 64 * 1024;
+
+		private final InputStream input;
+
+		private final int window;
+
+		private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+		private final Deque<CompletableFuture<byte[]>> pending = new ArrayDeque<>();
+
+		private boolean eof = false;
+
+		private byte[] current = new byte[0];
+
+		private int position = 0;
+
+		private InputStream rest = InputStream.nullInputStream();
+
+		public Bgzf(InputStream input, int parallelism) {
+			this.input = input;
+			this.window = 2 * parallelism;
+		}
+
+		// peeks the header of the first member
+		public static boolean isBgzf(InputStream input) throws IOException {
+			input.mark(HEADER_SIZE);
+			byte[] header = input.readNBytes(HEADER_SIZE);
+			input.reset();
+			return header.length == HEADER_SIZE && isBgzfHeader(header);
+		}
+
+		private static boolean isBgzfHeader(byte[] header) {
+			return (header[0] & 0xff) == 0x1f && (header[1] & 0xff) == 0x8b && header[2] == 8 // gzip, deflate
+					&& (header[3] & 0x04) != 0 && unsignedShort(header, 10) == 6 // only one extra field...
+					&& header[12] == 'B' && header[13] == 'C' && unsignedShort(header, 14) == 2; // ...with the block size
+		}
+
+		private static int unsignedShort(byte[] bytes, int offset) {
+			return (bytes[offset] & 0xff) | (bytes[offset + 1] & 0xff) << 8;
+		}
+
+		private static int intLE(byte[] bytes, int offset) {
+			return unsignedShort(bytes, offset) | unsignedShort(bytes, offset + 2) << 16;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (!fill()) {
+				return rest.read();
+			}
+			return current[position++] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			if (length == 0) {
+				return 0;
+			}
+			if (!fill()) {
+				return rest.read(buffer, offset, length);
+			}
+			int n = Math.min(length, current.length - position);
+			System.arraycopy(current, position, buffer, offset, n);
+			position += n;
+			return n;
+		}
+
+		@Override
+		public void close() throws IOException {
+			executor.shutdownNow();
+			executor.close();
+			rest.close();
+			input.close();
+		}
+
+		private boolean fill() throws IOException {
+			while (position == current.length) {
+				while (!eof && pending.size() < window) {
+					readBlock();
+				}
+				if (pending.isEmpty()) {
+					return false;
+				}
+				current = await(pending.remove());
+				position = 0;
+			}
+			return true;
+		}
+
+		private void readBlock() throws IOException {
+			byte[] header = input.readNBytes(HEADER_SIZE);
+			if (header.length == 0) {
+				eof = true;
+				return;
+			}
+			if (header.length < HEADER_SIZE || !isBgzfHeader(header)) {
+				// e.g. a member appended by GZIPOutputStream, blocks already read come first
+				rest = new GZIPInputStream(new SequenceInputStream(new ByteArrayInputStream(header), input), BUFFER_SIZE);
+				eof = true;
+				return;
+			}
+			int blockSize = unsignedShort(header, 16) + 1;
+			byte[] block = input.readNBytes(blockSize - HEADER_SIZE);
+			if (block.length < blockSize - HEADER_SIZE || block.length < TRAILER_SIZE) {
+				throw new EOFException("unexpected end of BGZF block");
+			}
+			pending.add(CompletableFuture.supplyAsync(() -> inflate(block), executor));
+		}
+
+		// compressed data followed by CRC32 and size of the uncompressed data
+		private static byte[] inflate(byte[] block) {
+			int compressedSize = block.length - TRAILER_SIZE;
+			int size = intLE(block, compressedSize + 4);
+			if (size < 0 || size > MAX_BLOCK_SIZE) {
+				throw new UncheckedIOException(new ZipException("corrupt BGZF block"));
+			}
+			byte[] result = new byte[size];
+			Inflater inflater = new Inflater(true);
+			try {
+				inflater.setInput(block, 0, compressedSize);
+				int n = 0;
+				while (n < result.length && !inflater.finished()) {
+					int inflated = inflater.inflate(result, n, result.length - n);
+					if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+						break;
+					}
+					n += inflated;
+				}
+				CRC32 crc = new CRC32();
+				crc.update(result, 0, n);
+				if (n != result.length || (int) crc.getValue() != intLE(block, compressedSize)) {
+					throw new UncheckedIOException(new ZipException("corrupt BGZF block"));
+				}
+				return result;
+			} catch (DataFormatException e) {
+				throw new UncheckedIOException(new ZipException(e.getMessage()));
+			} finally {
+				inflater.end();
+			}
+		}
+
+		private static byte[] await(CompletableFuture<byte[]> future) throws IOException {
+			try {
+				return future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof UncheckedIOException uncheckedIOException) {
+					throw uncheckedIOException.getCause();
+				}
+				if (e.getCause() instanceof RuntimeException runtimeException) {
+					throw runtimeException;
+				}
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+	}
+
+	private Compression() {
+	}
+}
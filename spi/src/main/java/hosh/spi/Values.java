@@ -400,6 +400,14 @@ public class Values {
 		public int hashCode() {
 			return Objects.hashCode(duration);
 		}
+
+		@Override
+		public <T> Optional<T> unwrap(Class<T> type) {
+			if (type.equals(Duration.class)) {
+				return Optional.of(type.cast(duration));
+			}
+			return Optional.empty();
+		}
 	}
 
 	static final class InstantValue implements Value {
@@ -446,6 +454,14 @@ public class Values {
 		public int hashCode() {
 			return Objects.hashCode(instant);
 		}
+
+		@Override
+		public <T> Optional<T> unwrap(Class<T> type) {
+			if (type.equals(Instant.class)) {
+				return Optional.of(type.cast(instant));
+			}
+			return Optional.empty();
+		}
 	}
 
 	static final class PathValue implements Value {
@@ -552,6 +568,15 @@ public class Values {
 		public String toString() {
 			return String.format("Bytes[%s]", Arrays.toString(bytes));
 		}
+
+		// defensive copy: values are immutable
+		@Override
+		public <T> Optional<T> unwrap(Class<T> type) {
+			if (type.equals(byte[].class)) {
+				return Optional.of(type.cast(bytes.clone()));
+			}
+			return Optional.empty();
+		}
 	}
 
 	static final class StyledValue implements Value {
@@ -0,0 +1,158 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018-2026 Davide Angelocola
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package hosh.spi;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.then;
+
+@ExtendWith(MockitoExtension.class)
+class CommandOptionsTest {
+
+	@Mock
+	OutputChannel err;
+
+	@Test
+	void noOptions() {
+		// Given
+		CommandArguments args = CommandArguments.of("file.txt");
+		// When
+		Optional<CommandOptions> result = CommandOptions.parse(args, Set.of("unordered"), Set.of("parallel"));
+		// Then
+		assertThat(result).hasValueSatisfying(options -> {
+			assertThat(options.has("unordered")).isFalse();
+			assertThat(options.get("parallel")).isEmpty();
+			assertThat(options.arguments()).isEqualTo(args);
+		});
+	}
+
+	@Test
+	void flagsAndValues() {
+		// Given
+		CommandArguments args = CommandArguments.of("--unordered", "--parallel", "4", "dir");
+		// When
+		Optional<CommandOptions> result = CommandOptions.parse(args, Set.of("unordered"), Set.of("parallel"));
+		// Then
+		assertThat(result).hasValueSatisfying(options -> {
+			assertThat(options.has("unordered")).isTrue();
+			assertThat(options.get("parallel")).hasValue(CommandArguments.CommandArgument.of("4"));
+			assertThat(options.arguments()).isEqualTo(CommandArguments.of("dir"));
+		});
+	}
+
+	@Test
+	void repeatedValues() {
+		// Given
+		CommandArguments args = CommandArguments.of("--include", "*.java", "--include", "*.xml", "dir");
+		// When
+		Optional<CommandOptions> result = CommandOptions.parse(args, Set.of(), Set.of("include"));
+		// Then
+		assertThat(result).hasValueSatisfying(options -> {
+			assertThat(options.getAll("include")).containsExactly(CommandArguments.CommandArgument.of("*.java"), CommandArguments.CommandArgument.of("*.xml"));
+			assertThat(options.get("include")).hasValue(CommandArguments.CommandArgument.of("*.xml"));
+		});
+	}
+
+	@Test
+	void endOfOptions() {
+		// Given
+		CommandArguments args = CommandArguments.of("--unordered", "--", "--file");
+		// When
+		Optional<CommandOptions> result = CommandOptions.parse(args, Set.of("unordered"), Set.of());
+		// Then
+		assertThat(result).hasValueSatisfying(options -> assertThat(options.arguments()).isEqualTo(CommandArguments.of("--file")));
+	}
+
+	@Test
+	void unknownOption() {
+		// Given
+		CommandArguments args = CommandArguments.of("--verbose", "dir");
+		// When
+		Optional<CommandOptions> result = CommandOptions.parse(args, Set.of("unordered"), Set.of("parallel"));
+		// Then
+		assertThat(result).isEmpty();
+	}
+
+	@Test
+	void missingValue() {
+		// Given
+		CommandArguments args = CommandArguments.of("--parallel");
+		// When
+		Optional<CommandOptions> result = CommandOptions.parse(args, Set.of(), Set.of("parallel"));
+		// Then
+		assertThat(result).isEmpty();
+	}
+
+	@Test
+	void positiveIntDefault() {
+		// Given
+		CommandOptions options = CommandOptions.parse(CommandArguments.of("dir"), Set.of(), Set.of("parallel")).orElseThrow();
+		// When
+		OptionalInt result = options.positiveInt("parallel", 8, err);
+		// Then
+		assertThat(result).hasValue(8);
+		then(err).shouldHaveNoInteractions();
+	}
+
+	@Test
+	void positiveIntGiven() {
+		// Given
+		CommandOptions options = CommandOptions.parse(CommandArguments.of("--parallel", "4", "dir"), Set.of(), Set.of("parallel")).orElseThrow();
+		// When
+		OptionalInt result = options.positiveInt("parallel", 8, err);
+		// Then
+		assertThat(result).hasValue(4);
+		then(err).shouldHaveNoInteractions();
+	}
+
+	@Test
+	void positiveIntNotANumber() {
+		// Given
+		CommandOptions options = CommandOptions.parse(CommandArguments.of("--parallel", "many", "dir"), Set.of(), Set.of("parallel")).orElseThrow();
+		// When
+		OptionalInt result = options.positiveInt("parallel", 8, err);
+		// Then
+		assertThat(result).isEmpty();
+		then(err).should().send(Errors.message("not a valid number: many"));
+	}
+
+	@Test
+	void positiveIntZero() {
+		// Given
+		CommandOptions options = CommandOptions.parse(CommandArguments.of("--parallel", "0", "dir"), Set.of(), Set.of("parallel")).orElseThrow();
+		// When
+		OptionalInt result = options.positiveInt("parallel", 8, err);
+		// Then
+		assertThat(result).isEmpty();
+		then(err).should().send(Errors.message("parallel must be >= 1"));
+	}
+}
@@ -0,0 +1,212 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018-2026 Davide Angelocola
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package hosh.spi;
+
+import hosh.test.support.TemporaryFolder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompressionTest {
+
+	@RegisterExtension
+	final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	void chosenByExtension() {
+		// Given
+		// (no setup)
+		// When
+		// Then
+		assertThat(Compression.isCompressed(Path.of("app.log.gz"))).isTrue();
+		assertThat(Compression.isCompressed(Path.of("APP.LOG.GZ"))).isTrue();
+		assertThat(Compression.isCompressed(Path.of("data.deflate"))).isTrue();
+		assertThat(Compression.isCompressed(Path.of("data.zz"))).isTrue();
+		assertThat(Compression.isCompressed(Path.of("app.log"))).isFalse();
+		assertThat(Compression.isCompressed(Path.of("archive.tgz"))).isFalse();
+	}
+
+	@Test
+	void plainFile() throws IOException {
+		// Given
+		Path file = temporaryFolder.toPath().resolve("app.log");
+		// When
+		try (Writer writer = Compression.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			writer.write("hello\n");
+		}
+		// Then
+		assertThat(Files.readString(file)).isEqualTo("hello\n");
+		try (InputStream input = Compression.newInputStream(file)) {
+			assertThat(input.readAllBytes()).isEqualTo("hello\n".getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	@Test
+	void gzipWithManyMembers() throws IOException {
+		// Given
+		Path file = temporaryFolder.toPath().resolve("app.log.gz");
+		try (Writer writer = Compression.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			writer.write("first\n");
+		}
+		// When
+		try (Writer writer = Compression.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.APPEND)) {
+			writer.write("second\n");
+		}
+		// Then
+		try (InputStream input = new GZIPInputStream(Files.newInputStream(file))) {
+			assertThat(new String(input.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("first\nsecond\n");
+		}
+		try (BufferedReader reader = Compression.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			assertThat(reader.lines()).containsExactly("first", "second");
+		}
+	}
+
+	@Test
+	void zlib() throws IOException {
+		// Given
+		Path file = temporaryFolder.toPath().resolve("data.zz");
+		byte[] data = "a".repeat(100_000).getBytes(StandardCharsets.UTF_8);
+		// When
+		try (OutputStream output = Compression.newOutputStream(file)) {
+			output.write(data);
+		}
+		// Then
+		assertThat(Files.size(file)).isLessThan(1000);
+		try (InputStream input = Compression.newInputStream(file)) {
+			assertThat(input.readAllBytes()).isEqualTo(data);
+		}
+	}
+
+	@Test
+	void bgzfBlocks() throws IOException {
+		// Given
+		byte[] data = new byte[1_000_000];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) ('a' + i % 7 + i / 100_000);
+		}
+		Path file = temporaryFolder.toPath().resolve("data.gz");
+		Files.write(file, bgzf(data, 60_000));
+		// When
+		byte[] result;
+		try (InputStream input = Compression.newInputStream(file)) {
+			result = input.readAllBytes();
+		}
+		// Then
+		assertThat(result).isEqualTo(data);
+		try (InputStream input = new GZIPInputStream(Files.newInputStream(file))) {
+			assertThat(input.readAllBytes()).isEqualTo(data); // still a valid gzip file
+		}
+	}
+
+	@Test
+	void zlibAppend() {
+		// Given
+		Path file = temporaryFolder.toPath().resolve("data.zz");
+		// When
+		// Then
+		assertThatThrownBy(() -> Compression.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND))
+				.isInstanceOf(UnsupportedOperationException.class)
+				.hasMessage("cannot append to zlib file: " + file);
+		assertThat(file).doesNotExist();
+	}
+
+	@Test
+	void appendToBgzf() throws IOException {
+		// Given
+		byte[] data = "hello world\n".repeat(10_000).getBytes(StandardCharsets.UTF_8);
+		Path file = temporaryFolder.toPath().resolve("data.gz");
+		Files.write(file, bgzf(data, 60_000));
+		// When
+		try (Writer writer = Compression.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.APPEND)) {
+			writer.write("appended\n");
+		}
+		// Then
+		try (InputStream input = Compression.newInputStream(file)) {
+			assertThat(new String(input.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("hello world\n".repeat(10_000) + "appended\n");
+		}
+	}
+
+	@Test
+	void corruptBgzfBlock() throws IOException {
+		// Given
+		byte[] bytes = bgzf("hello world".repeat(1000).getBytes(StandardCharsets.UTF_8), 5000);
+		bytes[bytes.length - 40] ^= 0x55; // in the compressed data of the last block before the EOF one
+		Path file = temporaryFolder.toPath().resolve("data.gz");
+		Files.write(file, bytes);
+		// When
+		// Then
+		try (InputStream input = Compression.newInputStream(file)) {
+			assertThatThrownBy(input::readAllBytes).isInstanceOf(ZipException.class);
+		}
+	}
+
+	// BGZF blocks of at most blockSize bytes, followed by the empty EOF block (like bgzip)
+	private static byte[] bgzf(byte[] data, int blockSize) {
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		for (int start = 0; start < data.length; start += blockSize) {
+			writeBlock(result, Arrays.copyOfRange(data, start, Math.min(data.length, start + blockSize)));
+		}
+		writeBlock(result, new byte[0]);
+		return result.toByteArray();
+	}
+
+	private static void writeBlock(ByteArrayOutputStream out, byte[] block) {
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		deflater.setInput(block);
+		deflater.finish();
+		byte[] compressed = new byte[block.length + 1024];
+		int size = deflater.deflate(compressed);
+		deflater.end();
+		CRC32 crc = new CRC32();
+		crc.update(block);
+		int blockSize = 18 + size + 8;
+		out.writeBytes(new byte[]{0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff, 6, 0, 'B', 'C', 2, 0,
+				(byte) (blockSize - 1), (byte) ((blockSize - 1) >> 8)});
+		out.write(compressed, 0, size);
+		writeIntLE(out, (int) crc.getValue());
+		writeIntLE(out, block.length);
+	}
+
+	private static void writeIntLE(ByteArrayOutputStream out, int value) {
+		out.writeBytes(new byte[]{(byte) value, (byte) (value >> 8), (byte) (value >> 16), (byte) (value >> 24)});
+	}
+}
@@ -132,6 +132,15 @@ class ValuesTest {
 			assertThat(Values.ofDuration(Duration.ofMillis(1)).show(Locale.ENGLISH)).isEqualTo("PT0.001S");
 		}
 
+		@Test
+		void unwrap() {
+			// Given
+			Value value = Values.ofDuration(Duration.ofMillis(1));
+			// When / Then
+			assertThat(value.unwrap(Duration.class)).hasValue(Duration.ofMillis(1));
+			assertThat(value.unwrap(String.class)).isEmpty();
+		}
+
 		@Test
 		void equalsContract() {
 			// Given
@@ -232,6 +241,15 @@ class ValuesTest {
 					.isInstanceOf(IllegalArgumentException.class)
 					.hasMessage("cannot compare Instant[1970-01-01T00:00:00Z] with Text[2]");
 		}
+
+		@Test
+		void unwrap() {
+			// Given
+			Value value = Values.ofInstant(Instant.EPOCH);
+			// When / Then
+			assertThat(value.unwrap(Instant.class)).hasValue(Instant.EPOCH);
+			assertThat(value.unwrap(String.class)).isEmpty();
+		}
 	}
 
 	@Nested
@@ -609,6 +627,15 @@ class ValuesTest {
 			EqualsVerifier.forClass(Values.BytesValue.class).verify();
 		}
 
+		@Test
+		void unwrap() {
+			// Given
+			Value value = Values.ofBytes(new byte[]{1, 2});
+			// When / Then
+			assertThat(value.unwrap(byte[].class)).hasValueSatisfying(bytes -> assertThat(bytes).containsExactly(1, 2));
+			assertThat(value.unwrap(String.class)).isEmpty();
+		}
+
 		@Test
 		void asString() {
 			// Given